@@ -0,0 +1,89 @@
+package de.timroes.axmlrpc;
+
+import de.timroes.axmlrpc.serializer.SerializerHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sends a SearchSubtitles call of a growing number of queries, with a 64kB
+ * binary parameter, built as a String then written as the client used to
+ * do, and streamed.
+ *
+ * Run with the gc profiler (gradle :axmlrpc:jmh) to compare the allocation
+ * rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CallBenchmark {
+
+	/**
+	 * Discards what is written, as the connection would send it.
+	 */
+	private static final OutputStream NETWORK = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	@Param({"10", "500"})
+	public int queries;
+
+	private Call call;
+
+	@Setup
+	public void setUp() {
+		SerializerHandler.initialize(XMLRPCClient.FLAGS_NONE);
+		Random random = new Random(0);
+		Object[] list = new Object[queries];
+		for(int i = 0; i < queries; i++) {
+			Map<String,Object> query = new HashMap<String,Object>();
+			query.put("sublanguageid", "eng");
+			query.put("moviehash", Long.toHexString(random.nextLong()));
+			query.put("moviebytesize", String.valueOf(random.nextInt(Integer.MAX_VALUE)));
+			query.put("query", "Night of the Living Dead & co " + i);
+			list[i] = query;
+		}
+		byte[] data = new byte[64 * 1024];
+		random.nextBytes(data);
+		call = new Call("SearchSubtitles", new Object[] { "token", list, data });
+	}
+
+	@Benchmark
+	public void string() throws XMLRPCException, IOException {
+		OutputStreamWriter stream = new OutputStreamWriter(NETWORK);
+		stream.write(call.getXML(false));
+		stream.flush();
+	}
+
+	@Benchmark
+	public void streamed() throws XMLRPCException, IOException {
+		call.write(NETWORK, false);
+	}
+
+}
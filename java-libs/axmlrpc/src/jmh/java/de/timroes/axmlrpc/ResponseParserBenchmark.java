@@ -0,0 +1,87 @@
+package de.timroes.axmlrpc;
+
+import de.timroes.axmlrpc.serializer.SerializerHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses SearchSubtitles responses of a growing number of results, built from
+ * a recorded one, with the pull parser and with the DOM.
+ *
+ * Run with the gc profiler (gradle :axmlrpc:jmh) to compare the allocation
+ * rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseParserBenchmark {
+
+	@Param({"10", "500"})
+	public int results;
+
+	private ResponseParser parser;
+	private byte[] response;
+
+	@Setup
+	public void setUp() throws IOException {
+		SerializerHandler.initialize(XMLRPCClient.FLAGS_NONE);
+		parser = new ResponseParser();
+		String result = read("/search_subtitles_result.xml");
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+				.append("<methodResponse><params><param><value><struct>")
+				.append("<member><name>status</name><value><string>200 OK</string></value></member>")
+				.append("<member><name>data</name><value><array><data>");
+		for(int i = 0; i < results; i++) {
+			sb.append(result);
+		}
+		sb.append("</data></array></value></member>")
+				.append("<member><name>seconds</name><value><double>0.128</double></value></member>")
+				.append("</struct></value></param></params></methodResponse>");
+		response = sb.toString().getBytes("UTF-8");
+	}
+
+	private static String read(String resource) throws IOException {
+		InputStream in = ResponseParserBenchmark.class.getResourceAsStream(resource);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int length;
+			while((length = in.read(buffer)) != -1) {
+				out.write(buffer, 0, length);
+			}
+			return out.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+
+	@Benchmark
+	public Object pull() throws XMLRPCException {
+		return parser.parse(new ByteArrayInputStream(response), false);
+	}
+
+	@Benchmark
+	public Object dom() throws XMLRPCException {
+		return parser.parseDocument(new ByteArrayInputStream(response), false);
+	}
+
+}
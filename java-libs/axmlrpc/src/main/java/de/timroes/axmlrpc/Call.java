@@ -3,12 +3,18 @@ package de.timroes.axmlrpc;
 import de.timroes.axmlrpc.serializer.SerializerHandler;
 import de.timroes.axmlrpc.xmlcreator.SimpleXMLCreator;
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import de.timroes.axmlrpc.xmlcreator.XmlWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 
 /**
  * A Call object represents a call of a remote methode.
  * It contains the name of the method to be called and the parameters to use
  * in this remote procedure call. To send it over the network the method getXML
- * returns an xml representation according to the XML-RPC specification as a String.
+ * returns an xml representation according to the XML-RPC specification as a String,
+ * the method write streams the same representation.
  *
  * @author Tim Roes
  */
@@ -74,6 +80,49 @@ public class Call {
 		return result;
 	}
 
+	/**
+	 * Write the xml representation of the method call to the given stream,
+	 * encoded in UTF-8. The parameters are serialized as they are written,
+	 * the representation is never held in memory as a whole.
+	 *
+	 * @param stream The stream to write the call to. It is flushed, not closed.
+	 * @param debugMode Whether to print the xml, which is built as a String then.
+	 * @throws XMLRPCException Will be thrown whenever the xml representation cannot
+	 * 		be build without errors.
+	 * @throws IOException Will be thrown if writing to the stream fails.
+	 * @see #getXML(boolean)
+	 */
+	public void write(OutputStream stream, boolean debugMode) throws XMLRPCException, IOException {
+
+		if(debugMode) {
+			OutputStreamWriter writer = new OutputStreamWriter(stream, "UTF-8");
+			writer.write(getXML(true));
+			writer.flush();
+			return;
+		}
+
+		XmlWriter writer = new XmlWriter(new BufferedWriter(new OutputStreamWriter(stream, "UTF-8")));
+		writer.writeDeclaration();
+		writer.startElement(XMLRPCClient.METHOD_CALL);
+		writer.writeElement(XMLRPCClient.METHOD_NAME, method);
+
+		if(params != null && params.length > 0) {
+			writer.startElement(XMLRPCClient.PARAMS);
+			for(Object o : params) {
+				writer.startElement(XMLRPCClient.PARAM);
+				writer.startElement(XMLRPCClient.VALUE);
+				SerializerHandler.getDefault().serialize(writer, o);
+				writer.endElement(XMLRPCClient.VALUE);
+				writer.endElement(XMLRPCClient.PARAM);
+			}
+			writer.endElement(XMLRPCClient.PARAMS);
+		}
+
+		writer.endElement(XMLRPCClient.METHOD_CALL);
+		writer.flush();
+
+	}
+
 	/**
 	 * Generates the param xml tag for a specific parameter object.
 	 *
@@ -19,10 +19,17 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
 
 /**
  * The ResponseParser parses the response of an XMLRPC server to an object.
  *
+ * The response is read with a pull parser, values are deserialized as they are
+ * read. A DOM of the response is built instead when no pull parser is available,
+ * or in debug mode to print it.
+ *
  * @author Tim Roes
  */
 class ResponseParser {
@@ -30,6 +37,25 @@ class ResponseParser {
 	private static final String FAULT_CODE = "faultCode";
 	private static final String FAULT_STRING = "faultString";
 
+	private final XmlPullParserFactory pullParserFactory = createPullParserFactory();
+	private DocumentBuilderFactory documentBuilderFactory;
+
+	private static XmlPullParserFactory createPullParserFactory() {
+		try {
+			XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			return factory;
+		} catch (XmlPullParserException ex) {
+			return null;
+		} catch (NoClassDefFoundError ex) {
+			// No XmlPullParser implementation outside of Android
+			return null;
+		} catch (RuntimeException ex) {
+			// Stub implementation, as in the android.jar of JVM unit tests
+			return null;
+		}
+	}
+
 	/**
 	 * The given InputStream must contain the xml response from an xmlrpc server.
 	 * This method extract the content of it as an object.
@@ -41,11 +67,73 @@ class ResponseParser {
 	 */
 	public Object parse(InputStream response, boolean debugMode) throws XMLRPCException {
 
+		if(pullParserFactory == null || debugMode) {
+			return parseDocument(response, debugMode);
+		}
+
 		try {
 
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			factory.setNamespaceAware(true);
-			DocumentBuilder builder = factory.newDocumentBuilder();
+			XmlPullParser parser = pullParserFactory.newPullParser();
+			parser.setInput(response, null);
+
+			// Check for root tag
+			if(parser.nextTag() != XmlPullParser.START_TAG
+					|| !XMLRPCClient.METHOD_RESPONSE.equals(XMLUtil.getName(parser))) {
+				throw new XMLRPCException("MethodResponse root tag is missing.");
+			}
+
+			if(parser.nextTag() == XmlPullParser.START_TAG) {
+
+				String name = XMLUtil.getName(parser);
+
+				if(name.equals(XMLRPCClient.PARAMS)) {
+
+					XMLUtil.requireStartTag(parser, XMLRPCClient.PARAM,
+							"The params tag must contain a param tag.");
+
+					return getReturnValue(parser);
+
+				} else if(name.equals(XMLRPCClient.FAULT)) {
+
+					@SuppressWarnings("unchecked")
+					Map<String,Object> o = (Map<String,Object>)getReturnValue(parser);
+
+					throw new XMLRPCServerException((String)o.get(FAULT_STRING), (Integer)o.get(FAULT_CODE));
+
+				}
+
+			}
+
+			throw new XMLRPCException("The methodResponse tag must contain a fault or params tag.");
+
+		} catch (Exception ex) {
+
+			if(ex instanceof XMLRPCServerException)
+				throw (XMLRPCServerException)ex;
+			else
+				throw new XMLRPCException("Error getting result from server.", ex);
+
+		}
+
+	}
+
+	/**
+	 * Parses the response from its DOM.
+	 *
+	 * @see #parse(InputStream, boolean)
+	 */
+	Object parseDocument(InputStream response, boolean debugMode) throws XMLRPCException {
+
+		try {
+
+			DocumentBuilder builder;
+			synchronized(this) {
+				if(documentBuilderFactory == null) {
+					documentBuilderFactory = DocumentBuilderFactory.newInstance();
+					documentBuilderFactory.setNamespaceAware(true);
+				}
+				builder = documentBuilderFactory.newDocumentBuilder();
+			}
 			Document dom = builder.parse(response);
 			if (debugMode ){
 				printDocument(dom, System.out);
@@ -122,4 +210,26 @@ class ResponseParser {
 
 	}
 
+	/**
+	 * This method reads the content of the param or fault element the parser
+	 * is positioned on and returns the deserialized object of this tag.
+	 *
+	 * @param parser A parser positioned on the start tag of a param or fault element.
+	 * @return The deserialized object within this element.
+	 * @throws XMLRPCException Will be thrown when the structure of the document
+	 *		doesn't match the XML-RPC specification.
+	 */
+	private Object getReturnValue(XmlPullParser parser)
+			throws XMLRPCException, XmlPullParserException, IOException {
+
+		XMLUtil.requireStartTag(parser, XMLRPCClient.VALUE, "Value tag is missing around value.");
+
+		Object value = SerializerHandler.getDefault().deserialize(parser);
+
+		XMLUtil.requireEndTag(parser, "Element has more than one children.");
+
+		return value;
+
+	}
+
 }
\ No newline at end of file
@@ -3,7 +3,7 @@ package de.timroes.axmlrpc;
 import de.timroes.axmlrpc.serializer.SerializerHandler;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.net.*;
 import java.security.SecureRandom;
 import java.security.cert.CertificateException;
@@ -157,6 +157,13 @@ public class XMLRPCClient {
 	 */
 	public static final int FLAGS_DEBUG = 0x2000;
 
+	/**
+	 * Send the calls with chunked transfer encoding. The call is then streamed
+	 * to the server as it is serialized, instead of being buffered to compute
+	 * its length. Some servers don't accept chunked requests.
+	 */
+	public static final int FLAGS_CHUNKED_STREAMING = 0x4000;
+
 	/**
 	 * This flag disables all SSL warnings. It is an alternative to use
 	 * FLAGS_SSL_IGNORE_INVALID_CERT | FLAGS_SSL_IGNORE_INVALID_HOST. There
@@ -655,9 +662,12 @@ public class XMLRPCClient {
 				authManager.setAuthentication(http);
 				cookieManager.setCookies(http);
 
-				OutputStreamWriter stream = new OutputStreamWriter(http.getOutputStream());
-				stream.write(c.getXML(isFlagSet(FLAGS_DEBUG)));
-				stream.flush();
+				if(isFlagSet(FLAGS_CHUNKED_STREAMING)) {
+					http.setChunkedStreamingMode(0);
+				}
+
+				OutputStream stream = http.getOutputStream();
+				c.write(stream, isFlagSet(FLAGS_DEBUG));
 				stream.close();
 
 				// Try to get the status code from the connection
@@ -1,12 +1,16 @@
 package de.timroes.axmlrpc;
 
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import java.io.IOException;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 /**
- * This class provides some utility methods for the use with the Java DOM parser.
+ * This class provides some utility methods for the use with the Java DOM parser
+ * and with pull parsers.
  *
  * @author Tim Roes
  */
@@ -86,6 +90,84 @@ public class XMLUtil {
 
 	}
 
+	/**
+	 * Reads the text content of the element the parser is positioned on. If the
+	 * element contains more than text, an exception will be thrown. The parser
+	 * is left on the end tag of the element.
+	 *
+	 * @param parser A parser positioned on a start tag.
+	 * @return The text of the element.
+	 * @throws XMLRPCException Will be thrown if the element contains other elements.
+	 */
+	public static String getOnlyTextContent(XmlPullParser parser)
+			throws XMLRPCException, XmlPullParserException, IOException {
+
+		String text = null;
+		StringBuilder builder = null;
+		int event;
+
+		// Comments are not reported by next(), entities and CDATA are reported as text.
+		while((event = parser.next()) != XmlPullParser.END_TAG) {
+			if(event != XmlPullParser.TEXT) {
+				throw new XMLRPCException("Element must contain only text elements.");
+			}
+			// Most elements contain a single text event, it is not copied.
+			if(text == null) {
+				text = parser.getText();
+			} else {
+				if(builder == null) {
+					builder = new StringBuilder(text);
+				}
+				builder.append(parser.getText());
+			}
+		}
+
+		return builder != null ? builder.toString() : text != null ? text : "";
+
+	}
+
+	/**
+	 * Returns the name of the element the parser is positioned on, with its
+	 * namespace prefix if it has one, as the DOM node name would be.
+	 *
+	 * @param parser A parser positioned on a start or end tag.
+	 * @return The name of the element.
+	 */
+	public static String getName(XmlPullParser parser) {
+		String prefix = parser.getPrefix();
+		return prefix == null ? parser.getName() : prefix + ":" + parser.getName();
+	}
+
+	/**
+	 * Moves the parser to the next start tag, skipping whitespace and comments.
+	 *
+	 * @param parser A parser.
+	 * @param name The expected name of the element.
+	 * @param error The message of the exception thrown if the next tag is not
+	 *		the start tag of an element with this name.
+	 * @throws XMLRPCException Will be thrown if the next tag is not the expected one.
+	 */
+	public static void requireStartTag(XmlPullParser parser, String name, String error)
+			throws XMLRPCException, XmlPullParserException, IOException {
+		if(parser.nextTag() != XmlPullParser.START_TAG || !name.equals(getName(parser))) {
+			throw new XMLRPCException(error);
+		}
+	}
+
+	/**
+	 * Moves the parser to the next end tag, skipping whitespace and comments.
+	 *
+	 * @param parser A parser.
+	 * @param error The message of the exception thrown if the next tag is a start tag.
+	 * @throws XMLRPCException Will be thrown if the next tag is a start tag.
+	 */
+	public static void requireEndTag(XmlPullParser parser, String error)
+			throws XMLRPCException, XmlPullParserException, IOException {
+		if(parser.nextTag() != XmlPullParser.END_TAG) {
+			throw new XMLRPCException(error);
+		}
+	}
+
 	/**
 	 * Checks if the given {@link NodeList} contains a child element.
 	 *
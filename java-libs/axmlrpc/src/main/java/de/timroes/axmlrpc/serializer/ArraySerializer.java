@@ -4,11 +4,15 @@ import de.timroes.axmlrpc.XMLRPCException;
 import de.timroes.axmlrpc.XMLRPCRuntimeException;
 import de.timroes.axmlrpc.XMLUtil;
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import de.timroes.axmlrpc.xmlcreator.XmlWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 /**
  *
@@ -52,6 +56,31 @@ public class ArraySerializer implements Serializer {
 		return list.toArray();
 	}
 
+	/**
+	 * Deserializes the array element the parser is positioned on, the parser
+	 * is left on its end tag.
+	 *
+	 * @param parser A parser positioned on the start tag of an array element.
+	 * @return The deserialized array.
+	 * @throws XMLRPCException Will be thrown whenever the deserialization fails.
+	 */
+	public Object deserialize(XmlPullParser parser)
+			throws XMLRPCException, XmlPullParserException, IOException {
+
+		List<Object> list = new ArrayList<Object>();
+
+		XMLUtil.requireStartTag(parser, ARRAY_DATA, "The array must contain one data tag.");
+
+		// Deserialize every array element
+		while(parser.nextTag() == XmlPullParser.START_TAG) {
+			list.add(SerializerHandler.getDefault().deserialize(parser));
+		}
+
+		XMLUtil.requireEndTag(parser, "The array must contain one data tag.");
+
+		return list.toArray();
+	}
+
 	public XmlElement serialize(Object object) {
 
 		Iterable<?> iter;
@@ -81,4 +110,30 @@ public class ArraySerializer implements Serializer {
 
 	}
 
+	public void serialize(XmlWriter writer, Object object) throws XMLRPCException, IOException {
+
+		writer.startElement(SerializerHandler.TYPE_ARRAY);
+		writer.startElement(ARRAY_DATA);
+
+		if(object instanceof Iterable<?>) {
+			for(Object obj : (Iterable<?>)object) {
+				serializeValue(writer, obj);
+			}
+		} else {
+			for(Object obj : (Object[])object) {
+				serializeValue(writer, obj);
+			}
+		}
+
+		writer.endElement(ARRAY_DATA);
+		writer.endElement(SerializerHandler.TYPE_ARRAY);
+
+	}
+
+	private static void serializeValue(XmlWriter writer, Object obj) throws XMLRPCException, IOException {
+		writer.startElement(ARRAY_VALUE);
+		SerializerHandler.getDefault().serialize(writer, obj);
+		writer.endElement(ARRAY_VALUE);
+	}
+
 }
@@ -3,22 +3,44 @@ package de.timroes.axmlrpc.serializer;
 import de.timroes.axmlrpc.XMLRPCException;
 import de.timroes.axmlrpc.XMLUtil;
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import de.timroes.axmlrpc.xmlcreator.XmlWriter;
 import de.timroes.base64.Base64;
+import java.io.IOException;
 import org.w3c.dom.Element;
 
 /**
  *
  * @author Tim Roes
  */
-public class Base64Serializer implements Serializer {
+public class Base64Serializer implements ScalarSerializer {
 
 	public Object deserialize(Element content) throws XMLRPCException {
-		return Base64.decode(XMLUtil.getOnlyTextContent(content.getChildNodes()));
+		return deserialize(XMLUtil.getOnlyTextContent(content.getChildNodes()));
+	}
+
+	public Object deserialize(String text) {
+		return Base64.decode(text);
 	}
 
 	public XmlElement serialize(Object object) {
 		return XMLUtil.makeXmlTag(SerializerHandler.TYPE_BASE64,
-				Base64.encode((Byte[])object));
+				object instanceof byte[] ? Base64.encode((byte[])object) : Base64.encode((Byte[])object));
+	}
+
+	public void serialize(XmlWriter writer, Object object) throws IOException {
+		writer.startElement(SerializerHandler.TYPE_BASE64);
+		if(object instanceof byte[]) {
+			// Encoded straight from the source bytes
+			Base64.encode((byte[])object, writer);
+		} else {
+			Byte[] boxed = (Byte[])object;
+			byte[] bytes = new byte[boxed.length];
+			for(int i = 0; i < bytes.length; i++) {
+				bytes[i] = boxed[i];
+			}
+			Base64.encode(bytes, writer);
+		}
+		writer.endElement(SerializerHandler.TYPE_BASE64);
 	}
 
 }
\ No newline at end of file
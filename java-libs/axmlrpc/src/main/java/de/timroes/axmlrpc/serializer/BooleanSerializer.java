@@ -3,17 +3,22 @@ package de.timroes.axmlrpc.serializer;
 import de.timroes.axmlrpc.XMLRPCException;
 import de.timroes.axmlrpc.XMLUtil;
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import de.timroes.axmlrpc.xmlcreator.XmlWriter;
+import java.io.IOException;
 import org.w3c.dom.Element;
 
 /**
  *
  * @author Tim Roes
  */
-public class BooleanSerializer implements Serializer {
+public class BooleanSerializer implements ScalarSerializer {
 
 	public Object deserialize(Element content) throws XMLRPCException {
-		return (XMLUtil.getOnlyTextContent(content.getChildNodes()).equals("1"))
-				? Boolean.TRUE : Boolean.FALSE;
+		return deserialize(XMLUtil.getOnlyTextContent(content.getChildNodes()));
+	}
+
+	public Object deserialize(String text) {
+		return text.equals("1") ? Boolean.TRUE : Boolean.FALSE;
 	}
 
 	public XmlElement serialize(Object object) {
@@ -21,4 +26,9 @@ public class BooleanSerializer implements Serializer {
 				((Boolean)object == true) ? "1" : "0");
 	}
 
+	public void serialize(XmlWriter writer, Object object) throws IOException {
+		writer.writeElement(SerializerHandler.TYPE_BOOLEAN,
+				((Boolean)object == true) ? "1" : "0");
+	}
+
 }
\ No newline at end of file
@@ -2,19 +2,22 @@ package de.timroes.axmlrpc.serializer;
 
 import org.w3c.dom.Element;
 
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 
 import de.timroes.axmlrpc.XMLRPCException;
 import de.timroes.axmlrpc.XMLUtil;
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import de.timroes.axmlrpc.xmlcreator.XmlWriter;
 
 /**
  *
  * @author timroes
  */
-public class DateTimeSerializer implements Serializer {
+public class DateTimeSerializer implements ScalarSerializer {
 
 	private static final String DATETIME_FORMAT = "yyyyMMdd'T'HHmmss";
 	private static final SimpleDateFormat DATE_FORMATER = new SimpleDateFormat(DATETIME_FORMAT);
@@ -35,8 +38,18 @@ public class DateTimeSerializer implements Serializer {
 
 	@Override
 	public XmlElement serialize(Object object) {
-		return XMLUtil.makeXmlTag(SerializerHandler.TYPE_DATETIME,
-				DATE_FORMATER.format(object));
+		return XMLUtil.makeXmlTag(SerializerHandler.TYPE_DATETIME, format(object));
+	}
+
+	public void serialize(XmlWriter writer, Object object) throws IOException {
+		writer.writeElement(SerializerHandler.TYPE_DATETIME, format(object));
+	}
+
+	private static String format(Object object) {
+		if(object instanceof Calendar) {
+			object = ((Calendar)object).getTime();
+		}
+		return DATE_FORMATER.format(object);
 	}
 
 }
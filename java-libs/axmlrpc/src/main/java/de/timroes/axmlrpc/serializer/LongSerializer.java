@@ -3,16 +3,22 @@ package de.timroes.axmlrpc.serializer;
 import de.timroes.axmlrpc.XMLRPCException;
 import de.timroes.axmlrpc.XMLUtil;
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import de.timroes.axmlrpc.xmlcreator.XmlWriter;
+import java.io.IOException;
 import org.w3c.dom.Element;
 
 /**
  *
  * @author Tim Roes
  */
-class LongSerializer implements Serializer {
+class LongSerializer implements ScalarSerializer {
 
 	public Object deserialize(Element content) throws XMLRPCException {
-		return Long.parseLong(XMLUtil.getOnlyTextContent(content.getChildNodes()));
+		return deserialize(XMLUtil.getOnlyTextContent(content.getChildNodes()));
+	}
+
+	public Object deserialize(String text) {
+		return Long.parseLong(text);
 	}
 
 	public XmlElement serialize(Object object) {
@@ -20,4 +26,8 @@ class LongSerializer implements Serializer {
 				((Long)object).toString());
 	}
 
+	public void serialize(XmlWriter writer, Object object) throws IOException {
+		writer.writeElement(SerializerHandler.TYPE_LONG, object.toString());
+	}
+
 }
@@ -2,20 +2,30 @@ package de.timroes.axmlrpc.serializer;
 
 import de.timroes.axmlrpc.XMLRPCException;
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import de.timroes.axmlrpc.xmlcreator.XmlWriter;
+import java.io.IOException;
 import org.w3c.dom.Element;
 
 /**
  *
  * @author Tim Roes
  */
-public class NullSerializer implements Serializer {
+public class NullSerializer implements ScalarSerializer {
 
 	public Object deserialize(Element content) throws XMLRPCException {
 		return null;
 	}
 
+	public Object deserialize(String text) {
+		return null;
+	}
+
 	public XmlElement serialize(Object object) {
 		return new XmlElement(SerializerHandler.TYPE_NULL);
 	}
 
+	public void serialize(XmlWriter writer, Object object) throws IOException {
+		writer.writeElement(SerializerHandler.TYPE_NULL, null);
+	}
+
 }
\ No newline at end of file
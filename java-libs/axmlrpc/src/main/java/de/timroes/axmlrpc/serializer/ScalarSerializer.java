@@ -0,0 +1,22 @@
+package de.timroes.axmlrpc.serializer;
+
+import de.timroes.axmlrpc.XMLRPCException;
+
+/**
+ * A Serializer of a type whose xml tag only contains text. The text can be
+ * deserialized without the xml element, when the response is read with a
+ * pull parser.
+ */
+interface ScalarSerializer extends Serializer {
+
+	/**
+	 * This method takes the text content of an xml type element and
+	 * deserialize it to an object.
+	 *
+	 * @param text The text content of an xml element of a specific type.
+	 * @return The deserialized content.
+	 * @throws XMLRPCException Will be thrown whenever the deserialization fails.
+	 */
+	public Object deserialize(String text) throws XMLRPCException;
+
+}
@@ -2,6 +2,8 @@ package de.timroes.axmlrpc.serializer;
 
 import de.timroes.axmlrpc.XMLRPCException;
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import de.timroes.axmlrpc.xmlcreator.XmlWriter;
+import java.io.IOException;
 import org.w3c.dom.Element;
 
 /**
@@ -31,4 +33,16 @@ public interface Serializer {
 	 */
 	public XmlElement serialize(Object object);
 
+	/**
+	 * This method takes an object and writes its xml type tag to the writer,
+	 * without building an XmlElement of it first. The tag is written within
+	 * a value tag.
+	 *
+	 * @param writer The writer of the call.
+	 * @param object The object that should be serialized.
+	 * @throws XMLRPCException Will be thrown whenever the serialization fails.
+	 * @throws IOException Will be thrown if writing fails.
+	 */
+	public void serialize(XmlWriter writer, Object object) throws XMLRPCException, IOException;
+
 }
\ No newline at end of file
@@ -5,11 +5,15 @@ import de.timroes.axmlrpc.XMLRPCException;
 import de.timroes.axmlrpc.XMLRPCRuntimeException;
 import de.timroes.axmlrpc.XMLUtil;
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import de.timroes.axmlrpc.xmlcreator.XmlWriter;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Map;
 import org.w3c.dom.Element;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 /**
  * The serializer handler serializes and deserialized objects.
@@ -114,8 +118,6 @@ public class SerializerHandler {
 		// Grep type element from inside value element
 		element = XMLUtil.getOnlyChildElement(element.getChildNodes());
 
-		Serializer s = null;
-
 		String type;
 
 		// If FLAGS_IGNORE_NAMESPACE has been set, only use local name.
@@ -125,37 +127,105 @@ public class SerializerHandler {
 			type = element.getNodeName();
 		}
 
+		return getDeserializer(type).deserialize(element);
+
+	}
+
+	/**
+	 * Deserializes the value element the parser is positioned on to a java object,
+	 * without building the DOM of the response. The parser is left on the end tag
+	 * of the value element.
+	 *
+	 * @param parser A parser positioned on the start tag of a value element.
+	 * @return The deserialized object.
+	 * @throws XMLRPCException Will be thrown whenever an error occurs.
+	 * @see #deserialize(Element)
+	 */
+	public Object deserialize(XmlPullParser parser)
+			throws XMLRPCException, XmlPullParserException, IOException {
+
+		if(!XMLRPCClient.VALUE.equals(XMLUtil.getName(parser))) {
+			throw new XMLRPCException("Value tag is missing around value.");
+		}
+
+		// Text before the type element, only whitespace is allowed around it
+		String text = null;
+		int event;
+		while((event = parser.next()) == XmlPullParser.TEXT) {
+			text = text == null ? parser.getText() : text + parser.getText();
+		}
+
+		if(event == XmlPullParser.END_TAG) {
+			// Value element doesn't contain a child element
+			if((flags & XMLRPCClient.FLAGS_DEFAULT_TYPE_STRING) != 0) {
+				return string.deserialize(text == null ? "" : text);
+			} else {
+				throw new XMLRPCException("Missing type element inside of value element.");
+			}
+		}
+
+		if(event != XmlPullParser.START_TAG || (text != null && text.trim().length() > 0)) {
+			throw new XMLRPCException("Only element nodes allowed.");
+		}
+
+		// If FLAGS_IGNORE_NAMESPACE has been set, only use local name.
+		String type = (flags & XMLRPCClient.FLAGS_IGNORE_NAMESPACES) != 0
+				? parser.getName() : XMLUtil.getName(parser);
+
+		Serializer s = getDeserializer(type);
+		Object value;
+		if(s == struct) {
+			value = struct.deserialize(parser);
+		} else if(s == array) {
+			value = array.deserialize(parser);
+		} else {
+			value = ((ScalarSerializer)s).deserialize(XMLUtil.getOnlyTextContent(parser));
+		}
+
+		XMLUtil.requireEndTag(parser, "Element has more than one children.");
+
+		return value;
+
+	}
+
+	/**
+	 * Returns the serializer responsible of the given type tag.
+	 *
+	 * @param type The name of the type element.
+	 * @return The serializer of this type.
+	 * @throws XMLRPCException Will be thrown if the type is unknown.
+	 */
+	private Serializer getDeserializer(String type) throws XMLRPCException {
+
 		if((flags & XMLRPCClient.FLAGS_NIL) != 0 && TYPE_NULL.equals(type)) {
-			s = nil;
+			return nil;
 		} else if(TYPE_STRING.equals(type)) {
-			s = string;
+			return string;
 		} else if(TYPE_BOOLEAN.equals(type)) {
-			s = bool;
+			return bool;
 		} else if(TYPE_DOUBLE.equals(type)) {
-			s = floating;
+			return floating;
 		} else if (TYPE_INT.equals(type) || TYPE_INT2.equals(type)) {
-			s = integer;
+			return integer;
 		} else if(TYPE_DATETIME.equals(type)) {
-			s = datetime;
+			return datetime;
 		} else if (TYPE_LONG.equals(type)) {
 			if((flags & XMLRPCClient.FLAGS_8BYTE_INT) != 0) {
-				s = long8;
+				return long8;
 			} else {
 				throw new XMLRPCException("8 byte integer is not in the specification. "
 						+ "You must use FLAGS_8BYTE_INT to enable the i8 tag.");
 			}
 		} else if(TYPE_STRUCT.equals(type)) {
-			s = struct;
+			return struct;
 		} else if(TYPE_ARRAY.equals(type)) {
-			s = array;
+			return array;
 		} else if(TYPE_BASE64.equals(type)) {
-			s = base64;
+			return base64;
 		} else {
 			throw new XMLRPCException("No deserializer found for type '" + type + "'.");
 		}
 
-		return s.deserialize(element);
-
 	}
 
 	/**
@@ -168,25 +238,49 @@ public class SerializerHandler {
 	 * 		cannot be serialized to an xml element.
 	 */
 	public XmlElement serialize(Object object) throws XMLRPCException {
+		return getSerializer(object).serialize(object);
+	}
 
-		Serializer s = null;
+	/**
+	 * Serialize an object to its xml representation, written to the writer.
+	 * The xml element will be the type element for the use within a value tag.
+	 *
+	 * @param writer The writer of the call.
+	 * @param object The object that should be serialized.
+	 * @throws XMLRPCException Will be thrown, if an error occurs (e.g. the object
+	 * 		cannot be serialized to an xml element.
+	 * @throws IOException Will be thrown if writing fails.
+	 * @see #serialize(Object)
+	 */
+	public void serialize(XmlWriter writer, Object object) throws XMLRPCException, IOException {
+		getSerializer(object).serialize(writer, object);
+	}
+
+	/**
+	 * Returns the serializer responsible of the type of the given object.
+	 *
+	 * @param object The object that should be serialized.
+	 * @return The serializer of this object.
+	 * @throws XMLRPCException Will be thrown if the object cannot be serialized.
+	 */
+	private Serializer getSerializer(Object object) throws XMLRPCException {
 
 		if((flags & XMLRPCClient.FLAGS_NIL) != 0 && object == null) {
-			s = nil;
+			return nil;
 		} else if(object instanceof String) {
-			s = string;
+			return string;
 		} else if(object instanceof Boolean) {
-			s = bool;
+			return bool;
 		} else if(object instanceof Double || object instanceof Float
 				|| object instanceof BigDecimal) {
-			s = floating;
+			return floating;
 		} else if (object instanceof Integer || object instanceof Short
 				|| object instanceof Byte) {
-			s = integer;
+			return integer;
 		} else if(object instanceof Long) {
 			// Check whether the 8 byte integer flag was set.
 			if((flags & XMLRPCClient.FLAGS_8BYTE_INT) != 0) {
-				s = long8;
+				return long8;
 			} else {
 				// Allow long values as long as their fit within the 4 byte integer range.
 				long l = (Long)object;
@@ -194,35 +288,22 @@ public class SerializerHandler {
 					throw new XMLRPCException("FLAGS_8BYTE_INT must be set, if values "
 							+ "outside the 4 byte integer range should be transfered.");
 				} else {
-					s = integer;
+					return integer;
 				}
 			}
-		} else if(object instanceof Date) {
-			s = datetime;
-		} else if(object instanceof Calendar) {
-			object = ((Calendar)object).getTime();
-			s = datetime;
+		} else if(object instanceof Date || object instanceof Calendar) {
+			return datetime;
 		} else if (object instanceof Map) {
-			s = struct;
-		} else if(object instanceof byte[]) {
-			byte[] old = (byte[])object;
-			Byte[] boxed = new Byte[old.length];
-			for(int i = 0; i < boxed.length; i++) {
-				boxed[i] = new Byte(old[i]);
-			}
-			object = boxed;
-			s = base64;
-		} else if(object instanceof Byte[]) {
-			s = base64;
+			return struct;
+		} else if(object instanceof byte[] || object instanceof Byte[]) {
+			return base64;
 		} else if(object instanceof Iterable<?> || object instanceof Object[]) {
-			s = array;
+			return array;
 		} else {
 			throw new XMLRPCException("No serializer found for type '"
 					+ object.getClass().getName() + "'.");
 		}
 
-		return s.serialize(object);
-
 	}
 
 }
@@ -3,13 +3,15 @@ package de.timroes.axmlrpc.serializer;
 import de.timroes.axmlrpc.XMLRPCException;
 import de.timroes.axmlrpc.XMLUtil;
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import de.timroes.axmlrpc.xmlcreator.XmlWriter;
+import java.io.IOException;
 import org.w3c.dom.Element;
 
 /**
  *
  * @author Tim Roes
  */
-public class StringSerializer implements Serializer {
+public class StringSerializer implements ScalarSerializer {
 
 	private boolean decodeStrings;
 	private boolean encodeStrings;
@@ -20,7 +22,10 @@ public class StringSerializer implements Serializer {
 	}
 
 	public Object deserialize(Element content) throws XMLRPCException {
-		String text = XMLUtil.getOnlyTextContent(content.getChildNodes());
+		return deserialize(XMLUtil.getOnlyTextContent(content.getChildNodes()));
+	}
+
+	public Object deserialize(String text) {
 		if(decodeStrings) {
 			text = text.replaceAll("&lt;", "<").replaceAll("&amp;", "&");
 		}
@@ -35,4 +40,14 @@ public class StringSerializer implements Serializer {
 		return XMLUtil.makeXmlTag(SerializerHandler.TYPE_STRING, content);
 	}
 
+	public void serialize(XmlWriter writer, Object object) throws IOException {
+		writer.startElement(SerializerHandler.TYPE_STRING);
+		if(encodeStrings) {
+			writer.writeEscaped(object.toString());
+		} else {
+			writer.write(object.toString());
+		}
+		writer.endElement(SerializerHandler.TYPE_STRING);
+	}
+
 }
\ No newline at end of file
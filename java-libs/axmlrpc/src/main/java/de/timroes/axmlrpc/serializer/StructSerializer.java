@@ -4,10 +4,14 @@ import de.timroes.axmlrpc.XMLRPCException;
 import de.timroes.axmlrpc.XMLRPCRuntimeException;
 import de.timroes.axmlrpc.XMLUtil;
 import de.timroes.axmlrpc.xmlcreator.XmlElement;
+import de.timroes.axmlrpc.xmlcreator.XmlWriter;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 /**
  *
@@ -70,6 +74,66 @@ public class StructSerializer implements Serializer {
 
 			}
 
+			if(s == null) {
+				throw new XMLRPCException("A struct member must have a name.");
+			}
+
+			map.put(s, o);
+
+		}
+
+		return map;
+
+	}
+
+	/**
+	 * Deserializes the struct element the parser is positioned on, the parser
+	 * is left on its end tag.
+	 *
+	 * @param parser A parser positioned on the start tag of a struct element.
+	 * @return The deserialized struct.
+	 * @throws XMLRPCException Will be thrown whenever the deserialization fails.
+	 */
+	public Object deserialize(XmlPullParser parser)
+			throws XMLRPCException, XmlPullParserException, IOException {
+
+		Map<String, Object> map = new HashMap<String, Object>();
+
+		String s;
+		Object o;
+		boolean hasValue;
+		while(parser.nextTag() == XmlPullParser.START_TAG) {
+
+			if(!STRUCT_MEMBER.equals(XMLUtil.getName(parser))) {
+				throw new XMLRPCException("Only struct members allowed within a struct.");
+			}
+
+			// Grep name and value from member
+			s = null; o = null; hasValue = false;
+			while(parser.nextTag() == XmlPullParser.START_TAG) {
+				String name = XMLUtil.getName(parser);
+				if(STRUCT_NAME.equals(name)) {
+					if(s != null) {
+						throw new XMLRPCException("Name of a struct member cannot be set twice.");
+					} else {
+						s = XMLUtil.getOnlyTextContent(parser);
+					}
+				} else if(STRUCT_VALUE.equals(name)) {
+					if(hasValue) {
+						throw new XMLRPCException("Value of a struct member cannot be set twice.");
+					} else {
+						o = SerializerHandler.getDefault().deserialize(parser);
+						hasValue = true;
+					}
+				} else {
+					throw new XMLRPCException("A struct member must only contain one name and one value.");
+				}
+			}
+
+			if(s == null) {
+				throw new XMLRPCException("A struct member must have a name.");
+			}
+
 			map.put(s, o);
 
 		}
@@ -109,4 +173,26 @@ public class StructSerializer implements Serializer {
 		return struct;
 	}
 
+	public void serialize(XmlWriter writer, Object object) throws XMLRPCException, IOException {
+
+		writer.startElement(SerializerHandler.TYPE_STRUCT);
+
+		// We can safely cast here, this Serializer should only be called when
+		// the parameter is a map.
+		@SuppressWarnings("unchecked")
+		Map<String,Object> map = (Map<String,Object>)object;
+
+		for(Map.Entry<String,Object> member : map.entrySet()) {
+			writer.startElement(STRUCT_MEMBER);
+			writer.writeElement(STRUCT_NAME, member.getKey());
+			writer.startElement(STRUCT_VALUE);
+			SerializerHandler.getDefault().serialize(writer, member.getValue());
+			writer.endElement(STRUCT_VALUE);
+			writer.endElement(STRUCT_MEMBER);
+		}
+
+		writer.endElement(SerializerHandler.TYPE_STRUCT);
+
+	}
+
 }
\ No newline at end of file
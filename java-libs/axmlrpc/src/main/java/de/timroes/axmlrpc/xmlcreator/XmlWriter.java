@@ -0,0 +1,144 @@
+package de.timroes.axmlrpc.xmlcreator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes an xml document element by element to an underlying writer, without
+ * building its tree first. The output is the same as the string representation
+ * of the equivalent tree of {@link XmlElement}s: an element without content is
+ * written as an empty tag. No attributes are supported.
+ *
+ * Text written between the start and the end of an element is its content.
+ */
+public class XmlWriter extends Writer {
+
+	private final Writer writer;
+
+	/**
+	 * Name of the element whose start tag has not been written yet, as it is
+	 * still unknown whether it is empty.
+	 */
+	private String pending;
+
+	/**
+	 * Create a new xml writer.
+	 *
+	 * @param writer The writer to write the document to. It should be buffered.
+	 */
+	public XmlWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Write the xml declaration, which must be the first thing written.
+	 */
+	public void writeDeclaration() throws IOException {
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+	}
+
+	/**
+	 * Start a new element, which is the child of the current element.
+	 *
+	 * @param name The name of the element.
+	 */
+	public void startElement(String name) throws IOException {
+		writePending();
+		pending = name;
+	}
+
+	/**
+	 * End the current element.
+	 *
+	 * @param name The name of the element, as given to startElement.
+	 */
+	public void endElement(String name) throws IOException {
+		if(pending != null) {
+			writer.write('\n');
+			writer.write('<');
+			writer.write(name);
+			writer.write("/>\n");
+			pending = null;
+		} else {
+			writer.write("</");
+			writer.write(name);
+			writer.write(">\n");
+		}
+	}
+
+	/**
+	 * Write an element containing only the given text.
+	 *
+	 * @param name The name of the element.
+	 * @param content The content of the element, written as is.
+	 */
+	public void writeElement(String name, String content) throws IOException {
+		startElement(name);
+		if(content != null) {
+			write(content);
+		}
+		endElement(name);
+	}
+
+	/**
+	 * Write text as the content of the current element, escaping the
+	 * ampersand and less-than characters.
+	 *
+	 * @param text The text to write.
+	 */
+	public void writeEscaped(String text) throws IOException {
+		int start = 0;
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(c == '&' || c == '<') {
+				write(text, start, i - start);
+				write(c == '&' ? "&amp;" : "&lt;");
+				start = i + 1;
+			}
+		}
+		write(text, start, text.length() - start);
+	}
+
+	private void writePending() throws IOException {
+		if(pending != null) {
+			writer.write('\n');
+			writer.write('<');
+			writer.write(pending);
+			writer.write('>');
+			pending = null;
+		}
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		writePending();
+		writer.write(c);
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		if(len > 0) {
+			writePending();
+			writer.write(cbuf, off, len);
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		if(len > 0) {
+			writePending();
+			writer.write(str, off, len);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+}
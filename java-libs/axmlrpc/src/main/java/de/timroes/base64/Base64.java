@@ -1,5 +1,7 @@
 package de.timroes.base64;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 
 /**
@@ -114,6 +116,37 @@ public class Base64 {
 		return builder.toString();
 	}
 
+	/**
+	 * Encode a byte array to a writer, line by line, without building the
+	 * encoded string. The written characters are the same as those of the
+	 * string returned by encode.
+	 *
+	 * @param in A byte array to encode.
+	 * @param out The writer to write the encoding to.
+	 * @throws IOException Will be thrown if writing fails.
+	 */
+	public static void encode(byte[] in, Writer out) throws IOException {
+		// 72 characters and a line break, as encode(byte[])
+		char[] line = new char[73];
+		int n = 0;
+		int b1, b2, b3;
+		for(int i = 0; i < in.length; i+=3) {
+			b1 = in[i] & 0xFF;
+			b2 = i + 1 < in.length ? in[i+1] & 0xFF : 0;
+			b3 = i + 2 < in.length ? in[i+2] & 0xFF : 0;
+			line[n++] = code[(b1 >>> 2) + 1];
+			line[n++] = code[((b1 & 0x03) << 4 | b2 >>> 4) + 1];
+			line[n++] = i + 1 < in.length ? code[((b2 & 0x0F) << 2 | b3 >>> 6) + 1] : code[0];
+			line[n++] = i + 2 < in.length ? code[(b3 & 0x3F) + 1] : code[0];
+			if(n == 72) {
+				line[n++] = '\n';
+				out.write(line, 0, n);
+				n = 0;
+			}
+		}
+		out.write(line, 0, n);
+	}
+
 	/**
 	 * Encode a String and return the encoded byte array. Bytes that has been
 	 * appended to pad the string to a multiple of four are set to -1 in the array.
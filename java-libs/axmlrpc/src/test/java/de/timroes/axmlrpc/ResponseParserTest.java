@@ -0,0 +1,152 @@
+package de.timroes.axmlrpc;
+
+import de.timroes.axmlrpc.serializer.SerializerHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Parses the same responses with the pull parser and with the DOM, both must
+ * give the same result.
+ */
+public class ResponseParserTest {
+
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<methodResponse>";
+	private static final String FOOTER = "</methodResponse>";
+
+	private ResponseParser parser;
+
+	@Before
+	public void setUp() throws Exception {
+		// the pull path falls back to the DOM without an implementation
+		XmlPullParserFactory.newInstance();
+		SerializerHandler.initialize(XMLRPCClient.FLAGS_NIL | XMLRPCClient.FLAGS_8BYTE_INT);
+		parser = new ResponseParser();
+	}
+
+	private static String params(String value) {
+		return HEADER + "<params><param><value>" + value + "</value></param></params>" + FOOTER;
+	}
+
+	private Object pull(String response) throws Exception {
+		return parser.parse(new ByteArrayInputStream(response.getBytes("UTF-8")), false);
+	}
+
+	private Object dom(String response) throws Exception {
+		return parser.parseDocument(new ByteArrayInputStream(response.getBytes("UTF-8")), false);
+	}
+
+	private void assertSameResult(String response) throws Exception {
+		Object expected = dom(response);
+		assertNotNull(expected);
+		assertEquals(comparable(expected), comparable(pull(response)));
+	}
+
+	/**
+	 * Arrays are deserialized as Object[], compare them as lists
+	 */
+	private static Object comparable(Object value) {
+		if(value instanceof Object[]) {
+			List<Object> list = new ArrayList<Object>();
+			for(Object item : (Object[])value) {
+				list.add(comparable(item));
+			}
+			return list;
+		}
+		if(value instanceof Map) {
+			Map<Object, Object> map = new HashMap<Object, Object>();
+			for(Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+				map.put(entry.getKey(), comparable(entry.getValue()));
+			}
+			return map;
+		}
+		return value;
+	}
+
+	private static String read(String resource) throws IOException {
+		InputStream in = ResponseParserTest.class.getResourceAsStream(resource);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int length;
+			while((length = in.read(buffer)) != -1) {
+				out.write(buffer, 0, length);
+			}
+			return out.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void testScalars() throws Exception {
+		assertSameResult(params("<int>42</int>"));
+		assertSameResult(params("<i4>-7</i4>"));
+		assertSameResult(params("<i8>12345678901</i8>"));
+		assertSameResult(params("<boolean>1</boolean>"));
+		assertSameResult(params("<double>0.128</double>"));
+		assertSameResult(params("<string>a &amp; b</string>"));
+		assertSameResult(params("<dateTime.iso8601>2019-01-17T12:34:56.000+0000</dateTime.iso8601>"));
+		assertSameResult(params("<array><data><value><nil/></value><value><int>1</int></value></data></array>"));
+	}
+
+	@Test
+	public void testSearchSubtitles() throws Exception {
+		String result = read("/search_subtitles_result.xml");
+		assertSameResult(params("<struct>"
+				+ "<member><name>status</name><value><string>200 OK</string></value></member>"
+				+ "<member><name>data</name><value><array><data>" + result + result + "</data></array></value></member>"
+				+ "<member><name>seconds</name><value><double>0.128</double></value></member>"
+				+ "</struct>"));
+	}
+
+	@Test
+	public void testFault() throws Exception {
+		String response = HEADER + "<fault><value><struct>"
+				+ "<member><name>faultCode</name><value><int>401</int></value></member>"
+				+ "<member><name>faultString</name><value><string>Unauthorized</string></value></member>"
+				+ "</struct></value></fault>" + FOOTER;
+		int code = -1;
+		try {
+			dom(response);
+			fail("DOM: fault not thrown");
+		} catch (XMLRPCServerException ex) {
+			code = ex.getErrorNr();
+		}
+		try {
+			pull(response);
+			fail("Pull: fault not thrown");
+		} catch (XMLRPCServerException ex) {
+			assertEquals(code, ex.getErrorNr());
+			assertEquals("Unauthorized [401]", ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testMemberWithoutName() throws Exception {
+		String response = params("<struct><member><value><int>1</int></value></member></struct>");
+		try {
+			dom(response);
+			fail("DOM: member without name accepted");
+		} catch (XMLRPCException ignored) {}
+		try {
+			pull(response);
+			fail("Pull: member without name accepted");
+		} catch (XMLRPCException ignored) {}
+	}
+
+}
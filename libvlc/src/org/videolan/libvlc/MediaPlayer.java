@@ -1300,6 +1300,24 @@ public class MediaPlayer extends VLCObject<MediaPlayer.Event> {
         super.setEventListener(listener);
     }
 
+    /**
+     * Dispatch only the latest TimeChanged and PositionChanged events received before the listener runs,
+     * instead of each of them. Other events are not coalesced.
+     *
+     * The coalesced events are reused: they must not be kept by the listener.
+     *
+     * @param coalescing true to coalesce events, false by default
+     */
+    @Override
+    public synchronized void setEventCoalescing(boolean coalescing) {
+        super.setEventCoalescing(coalescing);
+    }
+
+    @Override
+    protected boolean isEventCoalescable(int eventType) {
+        return eventType == Event.TimeChanged || eventType == Event.PositionChanged;
+    }
+
     @Override
     protected synchronized Event onEventNative(int eventType, long arg1, long arg2, float argf1) {
         switch (eventType) {
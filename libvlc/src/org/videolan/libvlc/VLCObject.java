@@ -27,11 +27,20 @@ import java.lang.ref.WeakReference;
 
 @SuppressWarnings("JniMissingFunction")
 abstract class VLCObject<T extends VLCEvent> {
+    private static final int MAX_RECYCLED_RUNNABLES = 16;
+
     private VLCEvent.Listener<T> mEventListener = null;
     private Handler mHandler = null;
     final LibVLC mLibVLC;
     private int mNativeRefCount = 1;
 
+    /* Runnables posted to mHandler are recycled, this lock guards them and the coalescing slots */
+    private final Object mDispatchLock = new Object();
+    private EventRunnable mRecycledRunnables = null;
+    private int mRecycledCount = 0;
+    private boolean mCoalescing = false;
+    private Slot mSlots = null;
+
     protected VLCObject(LibVLC libvlc) {
         mLibVLC = libvlc;
     }
@@ -115,6 +124,10 @@ abstract class VLCObject<T extends VLCEvent> {
     protected synchronized void setEventListener(VLCEvent.Listener<T> listener, Handler handler) {
         if (mHandler != null)
             mHandler.removeCallbacksAndMessages(null);
+        synchronized (mDispatchLock) {
+            // pending coalesced events were removed with the callbacks
+            mSlots = null;
+        }
         mEventListener = listener;
         if (mEventListener == null)
             mHandler = null;
@@ -122,6 +135,30 @@ abstract class VLCObject<T extends VLCEvent> {
             mHandler = handler != null ? handler : new Handler(Looper.getMainLooper());
     }
 
+    /**
+     * Coalesce high frequency events: for types accepted by {@link #isEventCoalescable(int)}, only the latest
+     * event received before the handler runs is dispatched, other events are still all dispatched, in order.
+     *
+     * @param coalescing true to coalesce events, false by default
+     */
+    protected synchronized void setEventCoalescing(boolean coalescing) {
+        mCoalescing = coalescing;
+        synchronized (mDispatchLock) {
+            sealSlots();
+        }
+    }
+
+    /**
+     * Whether events of this type can be coalesced.
+     * {@link #onEventNative(int, long, long, float)} must not have side effects for these types: it is only called
+     * once for each reused event, and these events are never released.
+     *
+     * @param eventType event type
+     */
+    protected boolean isEventCoalescable(int eventType) {
+        return false;
+    }
+
     /**
      * Called when libvlc send events.
      *
@@ -143,29 +180,146 @@ abstract class VLCObject<T extends VLCEvent> {
     /* JNI */
     @SuppressWarnings("unused") /* Used from JNI */
     private long mInstance = 0;
-    private synchronized void dispatchEventFromNative(int eventType, long arg1, long arg2, float argf1) {
+    /* Used from JNI and tests */
+    synchronized void dispatchEventFromNative(int eventType, long arg1, long arg2, float argf1) {
         if (isReleased())
             return;
+        if (mCoalescing && isEventCoalescable(eventType)) {
+            if (mEventListener != null && mHandler != null)
+                coalesceEvent(eventType, arg1, arg2, argf1);
+            return;
+        }
         final T event = onEventNative(eventType, arg1, arg2, argf1);
 
-        class EventRunnable implements Runnable {
-            private final VLCEvent.Listener<T> listener;
-            private final T event;
+        if (event != null && mEventListener != null && mHandler != null) {
+            final EventRunnable runnable;
+            synchronized (mDispatchLock) {
+                // coalesced events received from now on must be dispatched after this one
+                sealSlots();
+                if (mRecycledRunnables != null) {
+                    runnable = mRecycledRunnables;
+                    mRecycledRunnables = runnable.next;
+                    runnable.next = null;
+                    --mRecycledCount;
+                } else
+                    runnable = new EventRunnable();
+            }
+            runnable.listener = mEventListener;
+            runnable.event = event;
+            mHandler.post(runnable);
+        }
+    }
 
-            private EventRunnable(VLCEvent.Listener<T> listener, T event) {
-                this.listener = listener;
-                this.event = event;
+    private void coalesceEvent(int eventType, long arg1, long arg2, float argf1) {
+        synchronized (mDispatchLock) {
+            Slot slot = mSlots;
+            while (slot != null && slot.type != eventType)
+                slot = slot.next;
+            if (slot == null) {
+                slot = new Slot(eventType);
+                slot.next = mSlots;
+                mSlots = slot;
             }
-            @Override
-            public void run() {
-                listener.onEvent(event);
-                event.release();
+            CoalescedRunnable runnable = slot.pending;
+            if (runnable == null) {
+                if (slot.recycled != null) {
+                    runnable = slot.recycled;
+                    slot.recycled = runnable.next;
+                    runnable.next = null;
+                    --slot.recycledCount;
+                } else {
+                    final T event = onEventNative(eventType, arg1, arg2, argf1);
+                    if (event == null)
+                        return;
+                    runnable = new CoalescedRunnable(slot, event);
+                }
+                runnable.listener = mEventListener;
+                slot.pending = runnable;
+                mHandler.post(runnable);
             }
+            // latest wins
+            runnable.arg1 = arg1;
+            runnable.arg2 = arg2;
+            runnable.argf1 = argf1;
         }
+    }
+
+    /* Called with mDispatchLock held: pending coalesced events stop taking new values */
+    private void sealSlots() {
+        for (Slot slot = mSlots; slot != null; slot = slot.next)
+            slot.pending = null;
+    }
+
+    private final class EventRunnable implements Runnable {
+        private VLCEvent.Listener<T> listener;
+        private T event;
+        private EventRunnable next;
+
+        @Override
+        public void run() {
+            final VLCEvent.Listener<T> listener = this.listener;
+            final T event = this.event;
+            this.listener = null;
+            this.event = null;
+            synchronized (mDispatchLock) {
+                if (mRecycledCount < MAX_RECYCLED_RUNNABLES) {
+                    next = mRecycledRunnables;
+                    mRecycledRunnables = this;
+                    ++mRecycledCount;
+                }
+            }
+            listener.onEvent(event);
+            event.release();
+        }
+    }
 
-        if (event != null && mEventListener != null && mHandler != null)
-            mHandler.post(new EventRunnable(mEventListener, event));
+    /* Pending and recycled coalesced events of one type */
+    private final class Slot {
+        private final int type;
+        private CoalescedRunnable pending;
+        private CoalescedRunnable recycled;
+        private int recycledCount;
+        private Slot next;
+
+        private Slot(int type) {
+            this.type = type;
+        }
     }
+
+    private final class CoalescedRunnable implements Runnable {
+        private final Slot slot;
+        private final T event;
+        private VLCEvent.Listener<T> listener;
+        private long arg1, arg2;
+        private float argf1;
+        private CoalescedRunnable next;
+
+        private CoalescedRunnable(Slot slot, T event) {
+            this.slot = slot;
+            this.event = event;
+        }
+
+        @Override
+        public void run() {
+            final VLCEvent.Listener<T> listener;
+            synchronized (mDispatchLock) {
+                if (slot.pending == this)
+                    slot.pending = null;
+                listener = this.listener;
+                event.update(arg1, arg2, argf1);
+            }
+            listener.onEvent(event);
+            synchronized (mDispatchLock) {
+                this.listener = null;
+                if (slot.recycledCount < MAX_RECYCLED_RUNNABLES) {
+                    next = slot.recycled;
+                    slot.recycled = this;
+                    ++slot.recycledCount;
+                }
+            }
+        }
+    }
+
     private native void nativeDetachEvents();
 
     /* used only before API 7: substitute for NewWeakGlobalRef */
@@ -3,6 +3,7 @@
 #include "log.h"
 // #include "jniloader.h"
 #include <jni.h>
+#include <algorithm>
 
 #define FLAG_MEDIA_UPDATED_AUDIO        1 << 0
 #define FLAG_MEDIA_UPDATED_AUDIO_EMPTY  1 << 1
@@ -312,6 +313,82 @@ AndroidMediaLibrary::albums()
     return p_ml->albums();
 }
 
+template<typename T>
+static std::vector<T>
+pageOf( const std::vector<T>& list, uint32_t offset, uint32_t limit )
+{
+    if (offset >= list.size())
+        return std::vector<T>();
+    const size_t end = std::min<size_t>( list.size(), (size_t) offset + limit );
+    return std::vector<T>( list.begin() + offset, list.begin() + end );
+}
+
+/*
+ * The medialibrary core has no LIMIT/OFFSET support, so the full query is run once and kept
+ * until the library changes. Pages are then sliced from it, only the requested window is
+ * converted to Java objects.
+ */
+const std::vector<medialibrary::ArtistPtr>&
+AndroidMediaLibrary::artistsSnapshot( bool includeAll )
+{
+    const int index = includeAll ? 1 : 0;
+    if (!m_artistsSnapshotValid[index])
+    {
+        m_artistsSnapshot[index] = p_ml->artists(includeAll);
+        m_artistsSnapshotValid[index] = true;
+    }
+    return m_artistsSnapshot[index];
+}
+
+std::vector<medialibrary::AlbumPtr>
+AndroidMediaLibrary::albumsPage( uint32_t offset, uint32_t limit )
+{
+    std::lock_guard<std::mutex> lock( m_snapshotMutex );
+    if (!m_albumsSnapshotValid)
+    {
+        m_albumsSnapshot = p_ml->albums();
+        m_albumsSnapshotValid = true;
+    }
+    return pageOf( m_albumsSnapshot, offset, limit );
+}
+
+uint32_t
+AndroidMediaLibrary::albumsCount()
+{
+    std::lock_guard<std::mutex> lock( m_snapshotMutex );
+    if (!m_albumsSnapshotValid)
+    {
+        m_albumsSnapshot = p_ml->albums();
+        m_albumsSnapshotValid = true;
+    }
+    return m_albumsSnapshot.size();
+}
+
+std::vector<medialibrary::ArtistPtr>
+AndroidMediaLibrary::artistsPage( bool includeAll, uint32_t offset, uint32_t limit )
+{
+    std::lock_guard<std::mutex> lock( m_snapshotMutex );
+    return pageOf( artistsSnapshot(includeAll), offset, limit );
+}
+
+uint32_t
+AndroidMediaLibrary::artistsCount( bool includeAll )
+{
+    std::lock_guard<std::mutex> lock( m_snapshotMutex );
+    return artistsSnapshot(includeAll).size();
+}
+
+void
+AndroidMediaLibrary::invalidateAlbumsSnapshots()
+{
+    std::lock_guard<std::mutex> lock( m_snapshotMutex );
+    m_albumsSnapshot.clear();
+    m_albumsSnapshotValid = false;
+    m_artistsSnapshot[0].clear();
+    m_artistsSnapshot[1].clear();
+    m_artistsSnapshotValid[0] = m_artistsSnapshotValid[1] = false;
+}
+
 medialibrary::AlbumPtr
 AndroidMediaLibrary::album(int64_t albumId)
 {
@@ -537,11 +614,27 @@ void AndroidMediaLibrary::onMediaUpdated( std::vector<medialibrary::MediaPtr> me
 
 void AndroidMediaLibrary::onMediaDeleted( std::vector<int64_t> ids )
 {
-
+    if (ids.empty())
+        return;
+    JNIEnv *env = getEnv();
+    if (env == NULL)
+        return;
+    jobject thiz = getWeakReference(env);
+    if (thiz)
+    {
+        jlongArray idArray = env->NewLongArray(ids.size());
+        std::vector<jlong> values(ids.begin(), ids.end());
+        env->SetLongArrayRegion(idArray, 0, values.size(), values.data());
+        env->CallVoidMethod(thiz, p_fields->MediaLibrary.onMediaDeletedId, idArray);
+        env->DeleteLocalRef(idArray);
+        if (weak_compat)
+            env->DeleteLocalRef(thiz);
+    }
 }
 
 void AndroidMediaLibrary::onArtistsAdded( std::vector<medialibrary::ArtistPtr> artists )
 {
+    invalidateAlbumsSnapshots();
     if (m_mediaAddedType & FLAG_MEDIA_ADDED_AUDIO)
     {
         JNIEnv *env = getEnv();
@@ -559,6 +652,7 @@ void AndroidMediaLibrary::onArtistsAdded( std::vector<medialibrary::ArtistPtr> a
 
 void AndroidMediaLibrary::onArtistsModified( std::vector<medialibrary::ArtistPtr> artist )
 {
+    invalidateAlbumsSnapshots();
     if (m_mediaUpdatedType & FLAG_MEDIA_UPDATED_AUDIO)
     {
         JNIEnv *env = getEnv();
@@ -576,11 +670,12 @@ void AndroidMediaLibrary::onArtistsModified( std::vector<medialibrary::ArtistPtr
 
 void AndroidMediaLibrary::onArtistsDeleted( std::vector<int64_t> ids )
 {
-
+    invalidateAlbumsSnapshots();
 }
 
 void AndroidMediaLibrary::onAlbumsAdded( std::vector<medialibrary::AlbumPtr> albums )
 {
+    invalidateAlbumsSnapshots();
     if (m_mediaAddedType & FLAG_MEDIA_ADDED_AUDIO)
     {
         JNIEnv *env = getEnv();
@@ -598,6 +693,7 @@ void AndroidMediaLibrary::onAlbumsAdded( std::vector<medialibrary::AlbumPtr> alb
 
 void AndroidMediaLibrary::onAlbumsModified( std::vector<medialibrary::AlbumPtr> albums )
 {
+    invalidateAlbumsSnapshots();
     if (m_mediaUpdatedType & FLAG_MEDIA_UPDATED_AUDIO)
     {
         JNIEnv *env = getEnv();
@@ -630,7 +726,7 @@ void AndroidMediaLibrary::onPlaylistsDeleted( std::vector<int64_t> ids )
 
 void AndroidMediaLibrary::onAlbumsDeleted( std::vector<int64_t> ids )
 {
-
+    invalidateAlbumsSnapshots();
 }
 
 void AndroidMediaLibrary::onTracksAdded( std::vector<medialibrary::AlbumTrackPtr> tracks )
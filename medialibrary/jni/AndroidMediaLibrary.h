@@ -2,6 +2,7 @@
 #define ANDROIDMEDIALIBRARY_H
 
 #include <vector>
+#include <mutex>
 #include <string>
 #include <tuple>
 #include <stdlib.h>
@@ -69,6 +70,11 @@ public:
     std::vector<medialibrary::MediaPtr> transportFiles( int is_parsed, medialibrary::SortingCriteria sort = medialibrary::SortingCriteria::Default, bool desc = false );
     std::vector<medialibrary::MediaPtr> audioFiles( int is_p2p, int is_live, medialibrary::SortingCriteria sort = medialibrary::SortingCriteria::Default, bool desc = false );
     std::vector<medialibrary::AlbumPtr> albums();
+    /* Paged queries, served from a snapshot of the full query result */
+    std::vector<medialibrary::AlbumPtr> albumsPage( uint32_t offset, uint32_t limit );
+    uint32_t albumsCount();
+    std::vector<medialibrary::ArtistPtr> artistsPage( bool includeAll, uint32_t offset, uint32_t limit );
+    uint32_t artistsCount( bool includeAll );
     medialibrary::AlbumPtr album(int64_t albumId);
     std::vector<medialibrary::ArtistPtr> artists(bool includeAll);
     medialibrary::ArtistPtr artist(int64_t artistId);
@@ -134,6 +140,8 @@ private:
     jobject getWeakReference(JNIEnv *env);
     JNIEnv *getEnv();
     void detachCurrentThread();
+    const std::vector<medialibrary::ArtistPtr>& artistsSnapshot( bool includeAll );
+    void invalidateAlbumsSnapshots();
 
     pthread_once_t key_once = PTHREAD_ONCE_INIT;
     jweak weak_thiz, weak_compat;
@@ -143,5 +151,12 @@ private:
     medialibrary::IDeviceListerCb* p_DeviceListerCb = nullptr;
     bool m_paused = false;
     uint32_t m_nbDiscovery = 0, m_progress = 0, m_mediaAddedType = 0, m_mediaUpdatedType = 0;
+
+    /* Query results kept for paged access, dropped on any library change. Guarded by m_snapshotMutex */
+    std::mutex m_snapshotMutex;
+    std::vector<medialibrary::AlbumPtr> m_albumsSnapshot;
+    std::vector<medialibrary::ArtistPtr> m_artistsSnapshot[2];
+    bool m_albumsSnapshotValid = false;
+    bool m_artistsSnapshotValid[2] = { false, false };
 };
 #endif // ANDROIDMEDIALIBRARY_H
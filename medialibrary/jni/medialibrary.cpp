@@ -379,6 +379,94 @@ removeOrphanTransportFiles(JNIEnv* env, jobject thiz)
     return aml->removeOrphanTransportFiles();
 }
 
+jlongArray
+getMediaLongMetadataBatch(JNIEnv* env, jobject thiz, jlongArray ids, jintArray types)
+{
+    AndroidMediaLibrary *aml = MediaLibrary_getInstance(env, thiz);
+    const jsize idCount = env->GetArrayLength(ids);
+    const jsize typeCount = env->GetArrayLength(types);
+    jlongArray result = env->NewLongArray(idCount * typeCount);
+    if (result == nullptr)
+        return nullptr;
+    std::vector<jlong> values(idCount * typeCount, 0L);
+    jlong *idValues = env->GetLongArrayElements(ids, nullptr);
+    jint *typeValues = env->GetIntArrayElements(types, nullptr);
+    for (jsize i = 0; i < idCount; ++i) {
+        medialibrary::MediaPtr media = aml->media(idValues[i]);
+        if (media == nullptr)
+            continue;
+        for (jsize j = 0; j < typeCount; ++j) {
+            const medialibrary::IMediaMetadata& metadata = media->metadata((medialibrary::IMedia::MetadataType)typeValues[j]);
+            if (metadata.isSet())
+                values[i * typeCount + j] = metadata.integer();
+        }
+    }
+    env->ReleaseLongArrayElements(ids, idValues, JNI_ABORT);
+    env->ReleaseIntArrayElements(types, typeValues, JNI_ABORT);
+    if (!values.empty())
+        env->SetLongArrayRegion(result, 0, values.size(), values.data());
+    return result;
+}
+
+jobjectArray
+getMediaStringMetadataBatch(JNIEnv* env, jobject thiz, jlongArray ids, jintArray types)
+{
+    AndroidMediaLibrary *aml = MediaLibrary_getInstance(env, thiz);
+    const jsize idCount = env->GetArrayLength(ids);
+    const jsize typeCount = env->GetArrayLength(types);
+    jclass stringClass = env->FindClass("java/lang/String");
+    jobjectArray result = env->NewObjectArray(idCount * typeCount, stringClass, NULL);
+    env->DeleteLocalRef(stringClass);
+    if (result == nullptr)
+        return nullptr;
+    jlong *idValues = env->GetLongArrayElements(ids, nullptr);
+    jint *typeValues = env->GetIntArrayElements(types, nullptr);
+    for (jsize i = 0; i < idCount; ++i) {
+        medialibrary::MediaPtr media = aml->media(idValues[i]);
+        if (media == nullptr)
+            continue;
+        for (jsize j = 0; j < typeCount; ++j) {
+            const medialibrary::IMediaMetadata& metadata = media->metadata((medialibrary::IMedia::MetadataType)typeValues[j]);
+            if (!metadata.isSet())
+                continue;
+            jstring value = env->NewStringUTF(metadata.str().c_str());
+            env->SetObjectArrayElement(result, i * typeCount + j, value);
+            env->DeleteLocalRef(value);
+        }
+    }
+    env->ReleaseLongArrayElements(ids, idValues, JNI_ABORT);
+    env->ReleaseIntArrayElements(types, typeValues, JNI_ABORT);
+    return result;
+}
+
+jboolean
+setMediaMetadataBatch(JNIEnv* env, jobject thiz, jlong id, jintArray types, jlongArray longValues, jobjectArray stringValues)
+{
+    AndroidMediaLibrary *aml = MediaLibrary_getInstance(env, thiz);
+    medialibrary::MediaPtr media = aml->media(id);
+    if (media == nullptr)
+        return false;
+    const jsize count = env->GetArrayLength(types);
+    jint *typeValues = env->GetIntArrayElements(types, nullptr);
+    jlong *values = env->GetLongArrayElements(longValues, nullptr);
+    bool success = true;
+    for (jsize i = 0; i < count; ++i) {
+        const medialibrary::IMedia::MetadataType type = (medialibrary::IMedia::MetadataType)typeValues[i];
+        jstring value = (jstring) env->GetObjectArrayElement(stringValues, i);
+        if (value != nullptr) {
+            const char *char_value = env->GetStringUTFChars(value, JNI_FALSE);
+            success &= media->setMetadata(type, char_value);
+            env->ReleaseStringUTFChars(value, char_value);
+            env->DeleteLocalRef(value);
+        } else {
+            success &= media->setMetadata(type, (int64_t) values[i]);
+        }
+    }
+    env->ReleaseIntArrayElements(types, typeValues, JNI_ABORT);
+    env->ReleaseLongArrayElements(longValues, values, JNI_ABORT);
+    return success;
+}
+
 jobjectArray
 getVideos(JNIEnv* env, jobject thiz, jint is_p2p, jint is_live)
 {
@@ -575,6 +663,27 @@ getAlbums(JNIEnv* env, jobject thiz)
     return albumRefs;
 }
 
+jobjectArray
+getAlbumsPage(JNIEnv* env, jobject thiz, jint offset, jint limit)
+{
+    AndroidMediaLibrary *aml = MediaLibrary_getInstance(env, thiz);
+    std::vector<medialibrary::AlbumPtr> albums = aml->albumsPage(offset, limit);
+    jobjectArray albumRefs = (jobjectArray) env->NewObjectArray(albums.size(), ml_fields.Album.clazz, NULL);
+    int index = -1;
+    for(medialibrary::AlbumPtr const& album : albums) {
+        jobject item = convertAlbumObject(env, &ml_fields, album);
+        env->SetObjectArrayElement(albumRefs, ++index, item);
+        env->DeleteLocalRef(item);
+    }
+    return albumRefs;
+}
+
+jint
+getAlbumsCount(JNIEnv* env, jobject thiz)
+{
+    return MediaLibrary_getInstance(env, thiz)->albumsCount();
+}
+
 jobject
 getAlbum(JNIEnv* env, jobject thiz, jlong id)
 {
@@ -598,6 +707,27 @@ getArtists(JNIEnv* env, jobject thiz, jboolean all)
     return artistRefs;
 }
 
+jobjectArray
+getArtistsPage(JNIEnv* env, jobject thiz, jboolean all, jint offset, jint limit)
+{
+    AndroidMediaLibrary *aml = MediaLibrary_getInstance(env, thiz);
+    std::vector<medialibrary::ArtistPtr> artists = aml->artistsPage(all, offset, limit);
+    jobjectArray artistRefs = (jobjectArray) env->NewObjectArray(artists.size(), ml_fields.Artist.clazz, NULL);
+    int index = -1;
+    for(medialibrary::ArtistPtr const& artist : artists) {
+        jobject item = convertArtistObject(env, &ml_fields, artist);
+        env->SetObjectArrayElement(artistRefs, ++index, item);
+        env->DeleteLocalRef(item);
+    }
+    return artistRefs;
+}
+
+jint
+getArtistsCount(JNIEnv* env, jobject thiz, jboolean all)
+{
+    return MediaLibrary_getInstance(env, thiz)->artistsCount(all);
+}
+
 jobject
 getArtist(JNIEnv* env, jobject thiz, jlong id)
 {
@@ -997,6 +1127,13 @@ static JNINativeMethod methods[] = {
     {"nativeFindDuplicatesByInfohash", "()[Lorg/videolan/medialibrary/media/MediaWrapper;", (void*)findDuplicatesByInfohash },
     {"nativeCopyMetadata", "(JJ)Z", (void*)copyMetadata },
     {"nativeRemoveOrphanTransportFiles", "()Z", (void*)removeOrphanTransportFiles },
+    {"nativeGetMediaLongMetadata", "([J[I)[J", (void*)getMediaLongMetadataBatch },
+    {"nativeGetMediaStringMetadata", "([J[I)[Ljava/lang/String;", (void*)getMediaStringMetadataBatch },
+    {"nativeSetMediaMetadata", "(J[I[J[Ljava/lang/String;)Z", (void*)setMediaMetadataBatch },
+    {"nativeGetAlbumsPage", "(II)[Lorg/videolan/medialibrary/media/Album;", (void*)getAlbumsPage },
+    {"nativeGetAlbumsCount", "()I", (void*)getAlbumsCount },
+    {"nativeGetArtistsPage", "(ZII)[Lorg/videolan/medialibrary/media/Artist;", (void*)getArtistsPage },
+    {"nativeGetArtistsCount", "(Z)I", (void*)getArtistsCount },
 };
 
 static JNINativeMethod media_methods[] = {
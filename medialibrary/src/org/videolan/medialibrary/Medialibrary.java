@@ -26,6 +26,7 @@ import org.videolan.libvlc.LibVLC;
 import org.videolan.medialibrary.interfaces.DevicesDiscoveryCb;
 import org.videolan.medialibrary.interfaces.EntryPointsEventsCb;
 import org.videolan.medialibrary.interfaces.MediaAddedCb;
+import org.videolan.medialibrary.interfaces.MediaDeletedCb;
 import org.videolan.medialibrary.interfaces.MediaUpdatedCb;
 import org.videolan.medialibrary.media.Album;
 import org.videolan.medialibrary.media.Artist;
@@ -77,6 +78,7 @@ public class Medialibrary {
 
     private MediaUpdatedCb mediaUpdatedCb = null;
     private MediaAddedCb mediaAddedCb = null;
+    private volatile MediaDeletedCb mediaDeletedCb = null;
     private ArtistsAddedCb mArtistsAddedCb = null;
     private ArtistsModifiedCb mArtistsModifiedCb = null;
     private AlbumsAddedCb mAlbumsAddedCb = null;
@@ -447,8 +449,9 @@ public class Medialibrary {
 
     @SuppressWarnings("unused")
     public void onMediaDeleted(long[] ids) {
-        for (long id : ids)
-            Log.d(TAG, "onMediaDeleted: "+id);
+        final MediaDeletedCb cb = mediaDeletedCb;
+        if (cb != null)
+            cb.onMediaDeleted(ids);
     }
 
     @SuppressWarnings("unused")
@@ -609,6 +612,17 @@ public class Medialibrary {
         nativeSetMediaAddedCbFlag(flags);
     }
 
+    /**
+     * Deletions are always reported by the native side, no flag is needed.
+     */
+    public void setMediaDeletedCb(MediaDeletedCb mediaDeletedCb) {
+        this.mediaDeletedCb = mediaDeletedCb;
+    }
+
+    public void removeMediaDeletedCb() {
+        mediaDeletedCb = null;
+    }
+
     public void setArtistsAddedCb(ArtistsAddedCb artistsAddedCb) {
         if (!mIsInitiated)
             return;
@@ -811,6 +825,13 @@ public class Medialibrary {
     private native MediaWrapper[] nativeFindDuplicatesByInfohash();
     private native boolean nativeCopyMetadata(long sourceId, long destId);
     private native boolean nativeRemoveOrphanTransportFiles();
+    private native long[] nativeGetMediaLongMetadata(long[] ids, int[] types);
+    private native String[] nativeGetMediaStringMetadata(long[] ids, int[] types);
+    private native boolean nativeSetMediaMetadata(long id, int[] types, long[] longValues, String[] stringValues);
+    private native Album[] nativeGetAlbumsPage(int offset, int limit);
+    private native int nativeGetAlbumsCount();
+    private native Artist[] nativeGetArtistsPage(boolean all, int offset, int limit);
+    private native int nativeGetArtistsCount(boolean all);
 
     @WorkerThread
     public MediaWrapper[] getTransportFiles(int isParsed) {
@@ -861,6 +882,31 @@ public class Medialibrary {
         return getRecentVideos(1, 1);
     }
 
+    /**
+     * Paged albums: only the [offset, offset + limit) window of the result is converted to
+     * {@link Album}. Results are consistent with {@link #getAlbumsCount()} until the next album
+     * change callback.
+     */
+    @WorkerThread
+    public Album[] getAlbums(int offset, int limit) {
+        return mIsInitiated && offset >= 0 && limit > 0 ? nativeGetAlbumsPage(offset, limit) : new Album[0];
+    }
+
+    @WorkerThread
+    public int getAlbumsCount() {
+        return mIsInitiated ? nativeGetAlbumsCount() : 0;
+    }
+
+    @WorkerThread
+    public Artist[] getArtists(boolean all, int offset, int limit) {
+        return mIsInitiated && offset >= 0 && limit > 0 ? nativeGetArtistsPage(all, offset, limit) : new Artist[0];
+    }
+
+    @WorkerThread
+    public int getArtistsCount(boolean all) {
+        return mIsInitiated ? nativeGetArtistsCount(all) : 0;
+    }
+
     @WorkerThread
     public MediaWrapper[] findMediaByInfohash(String infohash, int fileIndex) {
         return mIsInitiated ? nativeFindMediaByInfohash(infohash, fileIndex) : new MediaWrapper[0];
@@ -886,6 +932,52 @@ public class Medialibrary {
         return mIsInitiated ? nativeRemoveOrphanTransportFiles() : false;
     }
 
+    /**
+     * Read metadata of several media in one native call.
+     * @return value of types[j] for ids[i] at index i * types.length + j, 0 when not set
+     */
+    @WorkerThread
+    public long[] getMediaLongMetadata(long[] ids, int[] types) {
+        if (!mIsInitiated || ids.length == 0 || types.length == 0)
+            return new long[ids.length * types.length];
+        return nativeGetMediaLongMetadata(ids, types);
+    }
+
+    /**
+     * Read metadata of several media in one native call.
+     * @return value of types[j] for ids[i] at index i * types.length + j, null when not set
+     */
+    @WorkerThread
+    public String[] getMediaStringMetadata(long[] ids, int[] types) {
+        if (!mIsInitiated || ids.length == 0 || types.length == 0)
+            return new String[ids.length * types.length];
+        return nativeGetMediaStringMetadata(ids, types);
+    }
+
+    /**
+     * Write several metadata of one media in one native call.
+     * For each index, stringValues[i] is written if not null, longValues[i] otherwise.
+     */
+    public boolean setMediaMetadata(long id, int[] types, long[] longValues, String[] stringValues) {
+        return mIsInitiated && id > 0 && types.length > 0 && nativeSetMediaMetadata(id, types, longValues, stringValues);
+    }
+
+    /**
+     * Fetch group names of a whole list in one native call,
+     * so that {@link MediaWrapper#getGroupTitle()} does not query them one by one.
+     * Media which already have their group name are skipped.
+     */
+    @WorkerThread
+    public void loadGroupTitles(MediaWrapper[] list) {
+        if (!mIsInitiated || list.length == 0) return;
+        final long[] ids = new long[list.length];
+        for (int i = 0; i < list.length; ++i)
+            ids[i] = list[i] != null && !list[i].isGroupTitleLoaded() ? list[i].getId() : 0L;
+        final String[] titles = getMediaStringMetadata(ids, new int[] {MediaWrapper.META_GROUP_NAME});
+        for (int i = 0; i < list.length; ++i)
+            if (list[i] != null && ids[i] != 0L) list[i].setCachedGroupTitle(titles[i]);
+    }
+
     private String convertMrl(String mrl, boolean transform) {
         if(mrl == null) return null;
 
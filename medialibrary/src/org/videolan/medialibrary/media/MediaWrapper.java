@@ -56,6 +56,7 @@ import org.videolan.medialibrary.Medialibrary;
 import org.videolan.medialibrary.Tools;
 
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 import java.util.Locale;
 
 @SuppressWarnings("JniMissingFunction")
@@ -149,6 +150,7 @@ public class MediaWrapper extends MediaLibraryItem implements Parcelable {
     private Uri mPlaybackUri = null;
     private P2PItemStartListener mEngineSessionListener = null;
     protected String mGroupTitle = null;
+    private boolean mGroupTitleLoaded = false;
     private String mUserAgent = null;
     ///ace
 
@@ -451,8 +453,9 @@ public class MediaWrapper extends MediaLibraryItem implements Parcelable {
     }
 
     private void initP2PItem() {
-        mTime = getMetaLong(META_PROGRESS);
-        mLength = getMetaLong(META_DURATION);
+        final long[] meta = getMetaLongs(META_PROGRESS, META_DURATION);
+        mTime = meta[0];
+        mLength = meta[1];
     }
 
     public MediaWrapper(Uri uri, long time, long length, int type,
@@ -787,6 +790,15 @@ public class MediaWrapper extends MediaLibraryItem implements Parcelable {
         return mId == 0 || !ml.isInitiated() ? null : nativeGetMediaStringMetadata(ml, mId, metaDataType);
     }
 
+    /**
+     * Read several metadata with a single native call
+     * @return values in the same order as metaDataTypes, 0 when not set
+     */
+    public long[] getMetaLongs(int... metaDataTypes) {
+        if (mId == 0) return new long[metaDataTypes.length];
+        return Medialibrary.getInstance().getMediaLongMetadata(new long[] {mId}, metaDataTypes);
+    }
+
     public boolean setLongMeta(int metaDataType, long metadataValue) {
         Medialibrary ml = Medialibrary.getInstance();
         if (mId != 0 && ml.isInitiated())
@@ -798,9 +810,58 @@ public class MediaWrapper extends MediaLibraryItem implements Parcelable {
         Medialibrary ml = Medialibrary.getInstance();
         if (mId != 0 && ml.isInitiated())
             nativeSetMediaStringMetadata(ml, mId, metaDataType, metadataValue);
+        if (metaDataType == META_GROUP_NAME && mGroupTitleLoaded)
+            mGroupTitle = metadataValue;
         return mId != 0;
     }
 
+    /**
+     * @return an editor writing all its metadata in a single native call on {@link MetaEditor#apply()}
+     */
+    public MetaEditor editMeta() {
+        return new MetaEditor();
+    }
+
+    public class MetaEditor {
+        private int mCount = 0;
+        private int[] mTypes = new int[6];
+        private long[] mLongValues = new long[6];
+        private String[] mStringValues = new String[6];
+
+        private MetaEditor() {}
+
+        public MetaEditor putLong(int metaDataType, long value) {
+            add(metaDataType, value, null);
+            return this;
+        }
+
+        public MetaEditor putString(int metaDataType, String value) {
+            if (value != null) add(metaDataType, 0L, value);
+            return this;
+        }
+
+        private void add(int type, long longValue, String stringValue) {
+            if (mCount == mTypes.length) {
+                mTypes = Arrays.copyOf(mTypes, mCount * 2);
+                mLongValues = Arrays.copyOf(mLongValues, mCount * 2);
+                mStringValues = Arrays.copyOf(mStringValues, mCount * 2);
+            }
+            mTypes[mCount] = type;
+            mLongValues[mCount] = longValue;
+            mStringValues[mCount] = stringValue;
+            ++mCount;
+            if (type == META_GROUP_NAME && mGroupTitleLoaded)
+                mGroupTitle = stringValue;
+        }
+
+        public boolean apply() {
+            if (mId == 0) return false;
+            if (mCount == 0) return true;
+            return Medialibrary.getInstance().setMediaMetadata(mId, Arrays.copyOf(mTypes, mCount),
+                    Arrays.copyOf(mLongValues, mCount), Arrays.copyOf(mStringValues, mCount));
+        }
+    }
+
     private native long nativeGetMediaLongMetadata(Medialibrary ml, long id, int metaDataType);
     private native String nativeGetMediaStringMetadata(Medialibrary ml, long id, int metaDataType);
     private native void nativeSetMediaStringMetadata(Medialibrary ml, long id, int metaDataType, String metadataValue);
@@ -947,7 +1008,7 @@ public class MediaWrapper extends MediaLibraryItem implements Parcelable {
     //:ace
     @NonNull
     public String getGroupTitle() {
-        if(!TextUtils.isEmpty(mGroupTitle)) {
+        if(!TextUtils.isEmpty(mGroupTitle) || mGroupTitleLoaded) {
             return mGroupTitle;
         }
         else {
@@ -955,6 +1016,18 @@ public class MediaWrapper extends MediaLibraryItem implements Parcelable {
         }
     }
 
+    public boolean isGroupTitleLoaded() {
+        return mGroupTitleLoaded;
+    }
+
+    /**
+     * Set the group name previously read from the medialibrary, see {@link Medialibrary#loadGroupTitles(MediaWrapper[])}
+     */
+    public void setCachedGroupTitle(String groupTitle) {
+        mGroupTitle = groupTitle;
+        mGroupTitleLoaded = true;
+    }
+
     public void updateType(int type) {
         // Set type and update type in media library
         setType(type);
@@ -0,0 +1,144 @@
+package org.videolan.libvlc;
+
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays storms of synthetic native events on a MediaPlayer, as libvlc sends them while playing:
+ * TimeChanged and PositionChanged bursts, with ESAdded events in between.
+ * Reports the allocations of the dispatching thread and the time spent on the listener thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventDispatchBenchmark {
+
+    private static final String TAG = "VLC/EventDispatch";
+    private static final int EVENTS = 50000;
+    private static final int TRACKS_INTERVAL = 5000;
+
+    private LibVLC mLibVLC;
+    private MediaPlayer mMediaPlayer;
+    private HandlerThread mThread;
+    private Handler mHandler;
+
+    private int mTimeEvents;
+    private int mPositionEvents;
+    private int mTrackEvents;
+    private long mLastTime;
+    private boolean mOrdered;
+
+    @Before
+    public void setUp() {
+        mLibVLC = new LibVLC(InstrumentationRegistry.getTargetContext());
+        mMediaPlayer = new MediaPlayer(mLibVLC);
+        mThread = new HandlerThread("events");
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        mMediaPlayer.setEventListener(new MediaPlayer.EventListener() {
+            @Override
+            public void onEvent(MediaPlayer.Event event) {
+                switch (event.type) {
+                    case MediaPlayer.Event.TimeChanged:
+                        ++mTimeEvents;
+                        mOrdered &= event.getTimeChanged() >= mLastTime;
+                        mLastTime = event.getTimeChanged();
+                        break;
+                    case MediaPlayer.Event.PositionChanged:
+                        ++mPositionEvents;
+                        break;
+                    case MediaPlayer.Event.ESAdded:
+                        ++mTrackEvents;
+                        // tracks are sent with the time they were added at
+                        mOrdered &= event.getEsChangedID() >= mLastTime;
+                        mLastTime = event.getEsChangedID();
+                        break;
+                }
+            }
+        }, mHandler);
+    }
+
+    @After
+    public void tearDown() {
+        mMediaPlayer.setEventListener(null);
+        mMediaPlayer.release();
+        mLibVLC.release();
+        mThread.quit();
+    }
+
+    private void storm(boolean coalescing) throws InterruptedException {
+        mMediaPlayer.setEventCoalescing(coalescing);
+        mTimeEvents = mPositionEvents = mTrackEvents = 0;
+        mLastTime = 0;
+        mOrdered = true;
+        final long[] threadTime = new long[1];
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                threadTime[0] = SystemClock.currentThreadTimeMillis();
+            }
+        });
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        final long start = SystemClock.elapsedRealtime();
+        for (int i = 1; i <= EVENTS; ++i) {
+            mMediaPlayer.dispatchEventFromNative(MediaPlayer.Event.TimeChanged, i, 0, 0f);
+            mMediaPlayer.dispatchEventFromNative(MediaPlayer.Event.PositionChanged, 0, 0, i / (float) EVENTS);
+            if (i % TRACKS_INTERVAL == 0)
+                mMediaPlayer.dispatchEventFromNative(MediaPlayer.Event.ESAdded, Media.Track.Type.Audio, i, 0f);
+        }
+        final long dispatchTime = SystemClock.elapsedRealtime() - start;
+        final int dispatched = 2 * EVENTS + EVENTS / TRACKS_INTERVAL;
+        Debug.stopAllocCounting();
+        final int allocations = Debug.getThreadAllocCount();
+
+        final CountDownLatch done = new CountDownLatch(1);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                threadTime[0] = SystemClock.currentThreadTimeMillis() - threadTime[0];
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        Log.i(TAG, (coalescing ? "coalescing" : "lossless") + ": " + allocations + " allocations and "
+                + dispatchTime + "ms to dispatch " + dispatched + " events, listener thread busy for "
+                + threadTime[0] + "ms, " + mTimeEvents + " TimeChanged, " + mPositionEvents + " PositionChanged");
+
+        // discrete events are never coalesced, the latest time is always delivered
+        assertEquals(EVENTS / TRACKS_INTERVAL, mTrackEvents);
+        assertEquals(EVENTS, mLastTime);
+        assertTrue(mOrdered);
+    }
+
+    @Test
+    public void benchmarkLossless() throws InterruptedException {
+        storm(false);
+        assertEquals(EVENTS, mTimeEvents);
+        assertEquals(EVENTS, mPositionEvents);
+    }
+
+    @Test
+    public void benchmarkCoalescing() throws InterruptedException {
+        storm(true);
+        assertTrue(mTimeEvents <= EVENTS);
+        assertTrue(mPositionEvents <= EVENTS);
+    }
+}
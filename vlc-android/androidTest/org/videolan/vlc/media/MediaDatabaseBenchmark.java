@@ -0,0 +1,207 @@
+package org.videolan.vlc.media;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.videolan.medialibrary.media.MediaWrapper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bulk reads of a 100k rows media table: OFFSET paging, as MediaDatabase used to do, against keyset paging.
+ * Playlist edits on large playlists, search as you type.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MediaDatabaseBenchmark {
+
+    private static final String TAG = "VLC/MediaDbBenchmark";
+    private static final int ROWS = 100000;
+    private static final int CHUNK_SIZE = 50;
+
+    private MediaDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        mDatabase = new MediaDatabase(context, null, new File(context.getCacheDir(), "benchmark_thumbnails"));
+        final SQLiteDatabase db = mDatabase.getDatabase();
+        db.beginTransaction();
+        try {
+            final SQLiteStatement insert = db.compileStatement(
+                    "INSERT INTO media_table (_id, time, length, type, title) VALUES (?, ?, ?, ?, ?)");
+            for (int i = 0; i < ROWS; ++i) {
+                insert.clearBindings();
+                insert.bindString(1, String.format(Locale.US, "file:///sdcard/Movies/%06d.mkv", i));
+                insert.bindLong(2, i);
+                insert.bindLong(3, i * 1000L);
+                insert.bindLong(4, i % 2 == 0 ? MediaWrapper.TYPE_VIDEO : MediaWrapper.TYPE_AUDIO);
+                insert.bindString(5, "Title " + i);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Test
+    public void benchmarkVideoTimes() {
+        final SQLiteDatabase db = mDatabase.getDatabase();
+        long start = SystemClock.elapsedRealtime();
+        final Map<String, Long> offsetRows = new HashMap<>();
+        int count;
+        int chunk = 0;
+        do {
+            count = 0;
+            final Cursor cursor = db.rawQuery(String.format(Locale.US,
+                    "SELECT _id,time FROM media_table WHERE type=%d ORDER BY _id LIMIT %d OFFSET %d",
+                    MediaWrapper.TYPE_VIDEO, CHUNK_SIZE, chunk * CHUNK_SIZE), null);
+            while (cursor.moveToNext()) {
+                offsetRows.put(cursor.getString(0), cursor.getLong(1));
+                ++count;
+            }
+            cursor.close();
+            ++chunk;
+        } while (count == CHUNK_SIZE);
+        final long offsetTime = SystemClock.elapsedRealtime() - start;
+
+        start = SystemClock.elapsedRealtime();
+        final Map<String, Long> keysetRows = new HashMap<>();
+        mDatabase.forEachVideoTime(new MediaDatabase.VideoTimeVisitor() {
+            @Override
+            public void visit(String location, long time) {
+                assertNull("row visited twice: " + location, keysetRows.put(location, time));
+            }
+        });
+        final long keysetTime = SystemClock.elapsedRealtime() - start;
+
+        // timings depend on the device, they are reported only
+        Log.i(TAG, "video times, offset: " + offsetTime + "ms, keyset: " + keysetTime + "ms");
+        assertEquals(ROWS / 2, offsetRows.size());
+        assertEquals(offsetRows, keysetRows);
+    }
+
+    @Test
+    public void benchmarkMedias() {
+        final long start = SystemClock.elapsedRealtime();
+        final AtomicInteger rows = new AtomicInteger();
+        mDatabase.forEachMedia(new MediaDatabase.MediaVisitor() {
+            @Override
+            public void visit(MediaWrapper media) {
+                rows.incrementAndGet();
+            }
+        });
+        Log.i(TAG, "medias, keyset: " + (SystemClock.elapsedRealtime() - start) + "ms");
+        assertEquals(ROWS, rows.get());
+    }
+
+    @Test
+    public void testLookups() {
+        final String location = String.format(Locale.US, "file:///sdcard/Movies/%06d.mkv", 42);
+        final Uri uri = Uri.parse(location);
+        assertTrue(mDatabase.mediaItemExists(uri));
+        assertEquals(42L, mDatabase.getMedia(uri).getTime());
+        assertFalse(mDatabase.mediaItemExists(Uri.parse("file:///sdcard/none.mkv")));
+        // statements are reused, with their previous bindings cleared
+        assertTrue(mDatabase.mediaItemExists(uri));
+    }
+
+    @Test
+    public void benchmarkPlaylistInsertAtTop() {
+        final String playlist = "benchmark";
+        assertTrue(mDatabase.playlistAdd(playlist));
+        final ArrayList<String> mrls = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i) mrls.add("file:///sdcard/Music/" + i + ".mp3");
+        mDatabase.playlistInsertItems(playlist, 0, mrls);
+
+        final long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < 100; ++i) mDatabase.playlistInsertItem(playlist, 0, "file:///sdcard/Music/top" + i + ".mp3");
+        Log.i(TAG, "100 inserts at the top of a 5000 items playlist: " + (SystemClock.elapsedRealtime() - start) + "ms");
+
+        final String[] items = mDatabase.playlistGetItems(playlist);
+        assertEquals(5100, items.length);
+        assertEquals("file:///sdcard/Music/top99.mp3", items[0]);
+        assertEquals("file:///sdcard/Music/top0.mp3", items[99]);
+        assertEquals("file:///sdcard/Music/0.mp3", items[100]);
+        assertEquals("file:///sdcard/Music/4999.mp3", items[5099]);
+    }
+
+    @Test
+    public void testPlaylistEdits() {
+        final String playlist = "edits";
+        assertTrue(mDatabase.playlistAdd(playlist));
+        mDatabase.playlistInsertItems(playlist, 0, Arrays.asList("a", "d"));
+        mDatabase.playlistInsertItems(playlist, 1, Arrays.asList("b", "c"));
+        mDatabase.playlistInsertItem(playlist, 10, "e");
+        assertArrayEquals(new String[] { "a", "b", "c", "d", "e" }, mDatabase.playlistGetItems(playlist));
+        mDatabase.playlistMoveItem(playlist, 4, 0);
+        mDatabase.playlistMoveItem(playlist, 1, 4);
+        assertArrayEquals(new String[] { "e", "b", "c", "d", "a" }, mDatabase.playlistGetItems(playlist));
+        mDatabase.playlistRemoveItem(playlist, 2);
+        assertArrayEquals(new String[] { "e", "b", "d", "a" }, mDatabase.playlistGetItems(playlist));
+        // exhaust the gap between two items to force a rebalance
+        for (int i = 0; i < 40; ++i) mDatabase.playlistInsertItem(playlist, 1, "x");
+        final String[] items = mDatabase.playlistGetItems(playlist);
+        assertEquals(44, items.length);
+        assertEquals("e", items[0]);
+        assertEquals("x", items[40]);
+        assertEquals("b", items[41]);
+    }
+
+    @Test
+    public void benchmarkSearchAsYouType() {
+        final String typed = "title 4242";
+        List<String> results = null;
+        for (int i = 1; i <= typed.length(); ++i) {
+            final long start = SystemClock.elapsedRealtime();
+            results = mDatabase.searchMedia(typed.substring(0, i), 50);
+            Log.i(TAG, "search '" + typed.substring(0, i) + "': " + results.size() + " results in "
+                    + (SystemClock.elapsedRealtime() - start) + "ms");
+        }
+        assertEquals(1, results.size());
+        assertEquals(String.format(Locale.US, "file:///sdcard/Movies/%06d.mkv", 4242), results.get(0));
+    }
+
+    @Test
+    public void testSearchIndexUpdates() {
+        final String location = String.format(Locale.US, "file:///sdcard/Movies/%06d.mkv", 7);
+        mDatabase.getDatabase().execSQL("UPDATE media_table SET title='Renamed' WHERE _id=?", new Object[] { location });
+        assertEquals(Collections.singletonList(location), mDatabase.searchMedia("renam"));
+        assertTrue(mDatabase.searchMedia("title 7 ").isEmpty());
+
+        // title matches rank before artist ones
+        mDatabase.getDatabase().execSQL("UPDATE media_table SET artist='Renamed' WHERE _id=?",
+                new Object[] { String.format(Locale.US, "file:///sdcard/Movies/%06d.mkv", 8) });
+        assertEquals(location, mDatabase.searchMedia("renamed").get(0));
+
+        mDatabase.rebuildSearchIndex();
+        mDatabase.updateSearchIndex();
+        assertEquals(2, mDatabase.searchMedia("renamed").size());
+        assertEquals(ROWS - 1, mDatabase.searchMedia("title").size());
+    }
+}
@@ -0,0 +1,179 @@
+package org.videolan.vlc.media;
+
+import android.graphics.SurfaceTexture;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.videolan.libvlc.LibVLC;
+import org.videolan.libvlc.Media;
+import org.videolan.libvlc.MediaPlayer;
+import org.videolan.vlc.util.VLCInstance;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Time from the playback request to the first video output, with the spare player of
+ * {@link PlayerPool} and with a player created on request as PlayerController used to do.
+ * Both configurations are run alternately and their median and mean times are logged.
+ *
+ * The video played is given with "-e media /sdcard/path/to/video.mkv". Without it a generated
+ * silent audio file is played and the time to the Playing event is reported instead.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlayerPoolBenchmark {
+
+    private static final String TAG = "VLC/PlayerPoolBench";
+    private static final int RUNS = 10;
+    private static final long TIMEOUT_MS = 10000L;
+
+    private Uri mUri;
+    private boolean mVideo;
+    private SurfaceTexture mSurfaceTexture;
+
+    @Before
+    public void setUp() throws IOException {
+        final String media = InstrumentationRegistry.getArguments().getString("media");
+        mVideo = media != null;
+        mUri = mVideo ? Uri.fromFile(new File(media)) : Uri.fromFile(writeSilence());
+        VLCInstance.get();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mSurfaceTexture = new SurfaceTexture(0);
+                mSurfaceTexture.setDefaultBufferSize(1280, 720);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mSurfaceTexture.release();
+    }
+
+    @Test
+    public void benchmarkFirstFrame() throws InterruptedException {
+        final long[] pooled = new long[RUNS];
+        final long[] created = new long[RUNS];
+        for (int i = 0; i < RUNS; ++i) {
+            waitForSpare();
+            pooled[i] = play(true);
+            // the pool prepares its next spare meanwhile, let it finish before the other run
+            waitForSpare();
+            created[i] = play(false);
+        }
+        Log.i(TAG, (mVideo ? "first video output" : "playing") + " after " + report("pooled", pooled)
+                + ", " + report("created", created));
+    }
+
+    private static void waitForSpare() throws InterruptedException {
+        PlayerPool.warm();
+        final long end = SystemClock.elapsedRealtime() + TIMEOUT_MS;
+        while (!PlayerPool.hasSpare() && SystemClock.elapsedRealtime() < end) Thread.sleep(10);
+        assertTrue("no spare player", PlayerPool.hasSpare());
+    }
+
+    private static String report(String name, long[] times) {
+        final long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long time : sorted) total += time;
+        return name + " player: median " + sorted[sorted.length / 2] + "ms, mean "
+                + (total / sorted.length) + "ms";
+    }
+
+    /**
+     * @return time from the request to the first video output, or to Playing without video
+     */
+    private long play(final boolean pooled) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final long[] times = new long[1];
+        final MediaPlayer[] players = new MediaPlayer[1];
+        final MediaPlayer.EventListener listener = new MediaPlayer.EventListener() {
+            @Override
+            public void onEvent(MediaPlayer.Event event) {
+                final boolean reached = mVideo ? event.type == MediaPlayer.Event.Vout && event.getVoutCount() > 0
+                        : event.type == MediaPlayer.Event.Playing;
+                if (reached && started.getCount() > 0) {
+                    times[0] = SystemClock.elapsedRealtime() - times[0];
+                    started.countDown();
+                }
+            }
+        };
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                times[0] = SystemClock.elapsedRealtime();
+                final LibVLC libVLC = VLCInstance.get();
+                final MediaPlayer player = pooled ? PlayerPool.obtain() : new MediaPlayer(libVLC);
+                players[0] = player;
+                player.setEventListener(listener);
+                player.getVLCVout().setVideoSurface(mSurfaceTexture);
+                player.getVLCVout().setWindowSize(1280, 720);
+                player.getVLCVout().attachViews();
+                final Media media = new Media(libVLC, mUri);
+                player.setMedia(media);
+                media.release();
+                player.play();
+            }
+        });
+        final boolean reached = started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final MediaPlayer player = players[0];
+                player.setEventListener(null);
+                player.stop();
+                player.getVLCVout().detachViews();
+                if (pooled) PlayerPool.release(player);
+                else player.release();
+            }
+        });
+        if (!reached) fail("playback of " + mUri + " did not start");
+        return times[0];
+    }
+
+    /**
+     * 10s of 8kHz mono silence, as a WAV file
+     */
+    private static File writeSilence() throws IOException {
+        final File file = new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "silence.wav");
+        final int rate = 8000;
+        final int length = rate * 2 * 10;
+        final DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeBytes("RIFF");
+            out.writeInt(Integer.reverseBytes(36 + length));
+            out.writeBytes("WAVEfmt ");
+            out.writeInt(Integer.reverseBytes(16));
+            out.writeShort(Short.reverseBytes((short) 1));
+            out.writeShort(Short.reverseBytes((short) 1));
+            out.writeInt(Integer.reverseBytes(rate));
+            out.writeInt(Integer.reverseBytes(rate * 2));
+            out.writeShort(Short.reverseBytes((short) 2));
+            out.writeShort(Short.reverseBytes((short) 16));
+            out.writeBytes("data");
+            out.writeInt(Integer.reverseBytes(length));
+            out.write(new byte[length]);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,70 @@
+package org.videolan.vlc.media;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Groups libraries of 1k, 10k and 100k titles with TitleGrouper and with the previous
+ * MediaGroup.insertInto. Series episodes, titles sharing a few letters and unrelated files.
+ * Times are reported only, they depend on the device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TitleGrouperBenchmark {
+
+    private static final String TAG = "VLC/TitleGrouperBench";
+    private static final int MIN_GROUP_LENGTH = 6;
+
+    @Test
+    public void benchmarkGrouping() {
+        for (int count : new int[] {1000, 10000, 100000}) {
+            final TitleGrouping.Entry[] entries = libraryEntries(new Random(count), count);
+            final int runs = count >= 100000 ? 1 : 3;
+            // warmup, both give the same groups
+            final List<String> grouped = TitleGrouping.grouped(entries, MIN_GROUP_LENGTH);
+            if (count < 100000) assertEquals(TitleGrouping.legacy(entries, MIN_GROUP_LENGTH), grouped);
+            final long grouperTime = measure(entries, runs, false);
+            final long legacyTime = measure(entries, runs, true);
+            Log.i(TAG, count + " medias: insertInto " + legacyTime + "ms, TitleGrouper " + grouperTime + "ms");
+        }
+    }
+
+    private static long measure(TitleGrouping.Entry[] entries, int runs, boolean legacy) {
+        final long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < runs; ++i) {
+            if (legacy) TitleGrouping.legacy(entries, MIN_GROUP_LENGTH);
+            else TitleGrouping.grouped(entries, MIN_GROUP_LENGTH);
+        }
+        return (SystemClock.elapsedRealtime() - start) / runs;
+    }
+
+    private static TitleGrouping.Entry[] libraryEntries(Random random, int count) {
+        final TitleGrouping.Entry[] entries = new TitleGrouping.Entry[count];
+        for (int i = 0; i < count; ++i) {
+            final String title;
+            switch (random.nextInt(3)) {
+                case 0:
+                    title = String.format(Locale.US, "Series %d S%02dE%02d", random.nextInt(count / 20 + 1), random.nextInt(10), random.nextInt(24));
+                    break;
+                case 1:
+                    title = "The Movie " + Integer.toString(random.nextInt(), 36);
+                    break;
+                default:
+                    title = "VID_" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+                    break;
+            }
+            entries[i] = new TitleGrouping.Entry(title, null);
+        }
+        return entries;
+    }
+}
@@ -38,16 +38,17 @@ import android.text.format.DateFormat;
 import org.videolan.vlc.R;
 import org.videolan.vlc.gui.DebugLogActivity;
 import org.videolan.vlc.util.AndroidDevices;
+import org.videolan.vlc.util.LogBuffer;
 import org.videolan.vlc.util.Logcat;
 import org.videolan.vlc.util.Util;
 
-import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.util.LinkedList;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 public class DebugLogService extends Service implements Logcat.Callback, Runnable {
 
@@ -57,10 +58,18 @@ public class DebugLogService extends Service implements Logcat.Callback, Runnabl
     private static final int MSG_SAVED = 3;
 
     private static final int MAX_LINES = 20000;
+    private static final int MAX_BYTES = 4 * 1024 * 1024;
+    /* lines are sent to the callbacks in batches, the latest lines only if the log goes faster */
+    private static final int DELIVERY_INTERVAL = 250;
+    private static final int MAX_DELIVERED_LINES = 500;
+    private static final int MAX_STARTED_LINES = 2000;
 
     private Logcat mLogcat = null;
-    private LinkedList<String> mLogList = new LinkedList<String>();
+    private final LogBuffer mLogBuffer = new LogBuffer(MAX_BYTES, MAX_LINES);
+    private long mDelivered = 0;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
     private Thread mSaveThread = null;
+    private volatile boolean mSaveCompressed = false;
     private final RemoteCallbackList<IDebugLogServiceCallback> mCallbacks = new RemoteCallbackList<IDebugLogServiceCallback>();
     private final IBinder mBinder = new DebugLogServiceStub(this);
 
@@ -83,8 +92,11 @@ public class DebugLogService extends Service implements Logcat.Callback, Runnabl
         public void clear() {
             mService.clear();
         }
-        public void save() {
-            mService.save();
+        public void save(boolean compress) {
+            mService.save(compress);
+        }
+        public void setFilter(int minPriority, String[] tags) {
+            mService.setFilter(minPriority, tags);
         }
         public void registerCallback(IDebugLogServiceCallback cb) {
             mService.registerCallback(cb);
@@ -94,7 +106,7 @@ public class DebugLogService extends Service implements Logcat.Callback, Runnabl
         }
     }
 
-    private synchronized void sendMessage(int what, String str) {
+    private synchronized void sendMessage(int what, String str, List<String> lines) {
         int i = mCallbacks.beginBroadcast();
         while (i > 0) {
             i--;
@@ -105,11 +117,11 @@ public class DebugLogService extends Service implements Logcat.Callback, Runnabl
                     cb.onStopped();
                     break;
                 case MSG_STARTED: {
-                    cb.onStarted(mLogList);
+                    cb.onStarted(lines);
                     break;
                 }
                 case MSG_ONLOG:
-                    cb.onLog(str);
+                    cb.onLog(lines);
                     break;
                 case MSG_SAVED:
                     cb.onSaved(str != null ? true : false, str);
@@ -121,12 +133,36 @@ public class DebugLogService extends Service implements Logcat.Callback, Runnabl
         mCallbacks.finishBroadcast();
     }
 
+    /* Logcat thread, only copies the line in the ring */
     @Override
-    public synchronized void onLog(String log) {
-        if (mLogList.size() > MAX_LINES)
-            mLogList.remove(0);
-        mLogList.add(log);
-        sendMessage(MSG_ONLOG, log);
+    public void onLog(byte[] line, int offset, int length) {
+        mLogBuffer.add(line, offset, length);
+    }
+
+    private final Runnable mDeliverLogs = new Runnable() {
+        @Override
+        public void run() {
+            deliverLogs();
+        }
+    };
+
+    private synchronized void deliverLogs() {
+        if (mLogBuffer.getSequence() != mDelivered) {
+            if (mCallbacks.getRegisteredCallbackCount() > 0) {
+                final List<String> lines = new ArrayList<String>();
+                mDelivered = mLogBuffer.read(mDelivered, MAX_DELIVERED_LINES, lines);
+                sendMessage(MSG_ONLOG, null, lines);
+            } else
+                mDelivered = mLogBuffer.getSequence();
+        }
+        if (mLogcat != null)
+            mHandler.postDelayed(mDeliverLogs, DELIVERY_INTERVAL);
+    }
+
+    private synchronized void sendStarted() {
+        final List<String> lines = new ArrayList<String>();
+        mDelivered = mLogBuffer.read(0, MAX_STARTED_LINES, lines);
+        sendMessage(MSG_STARTED, null, lines);
     }
 
     public synchronized void start() {
@@ -150,19 +186,33 @@ public class DebugLogService extends Service implements Logcat.Callback, Runnabl
         startForeground(R.string.log_service_title, notification);
 
         startService(new Intent(this, DebugLogService.class));
-        sendMessage(MSG_STARTED, null);
+        sendStarted();
+        mHandler.postDelayed(mDeliverLogs, DELIVERY_INTERVAL);
     }
 
     public synchronized void stop() {
         mLogcat.stop();
         mLogcat = null;
-        sendMessage(MSG_STOPPED, null);
+        mHandler.removeCallbacks(mDeliverLogs);
+        deliverLogs();
+        sendMessage(MSG_STOPPED, null, null);
         stopForeground(true);
         stopSelf();
     }
 
     public synchronized void clear() {
-        mLogList.clear();
+        mLogBuffer.clear();
+        mDelivered = mLogBuffer.getSequence();
+    }
+
+    /**
+     * Filter the lines captured from now on
+     *
+     * @param minPriority lowest priority kept, as the {@link android.util.Log} constants
+     * @param tags prefixes of the tags kept, null or empty for all tags
+     */
+    public void setFilter(int minPriority, String[] tags) {
+        mLogBuffer.setFilter(minPriority, tags);
     }
 
     /* mSaveThread */
@@ -170,44 +220,41 @@ public class DebugLogService extends Service implements Logcat.Callback, Runnabl
     public void run() {
         final CharSequence timestamp = DateFormat.format(
                 "yyyyMMdd_kkmmss", System.currentTimeMillis());
-        final String filename = AndroidDevices.EXTERNAL_PUBLIC_DIRECTORY + "/vlc_logcat_" + timestamp + ".log";
+        final boolean compress = mSaveCompressed;
+        final String filename = AndroidDevices.EXTERNAL_PUBLIC_DIRECTORY + "/vlc_logcat_" + timestamp
+                + (compress ? ".log.gz" : ".log");
         boolean saved = true;
         FileOutputStream fos = null;
-        OutputStreamWriter output = null;
-        BufferedWriter bw = null;
+        OutputStream output = null;
 
         try {
             fos = new FileOutputStream(filename);
-            output = new OutputStreamWriter(fos);
-            bw = new BufferedWriter(output);
-            synchronized (this) {
-                for (String line : mLogList) {
-                    bw.write(line);
-                    bw.newLine();
-                }
-            }
+            output = compress ? new GZIPOutputStream(fos) : fos;
+            /* a copy of the ring is written, capture goes on meanwhile */
+            mLogBuffer.writeTo(output);
         } catch (FileNotFoundException e) {
             saved = false;
         } catch (IOException ioe) {
             saved = false;
         } finally {
-            saved &= Util.close(bw);
-            saved &= Util.close(output);
+            if (output != fos)
+                saved &= Util.close(output);
             saved &= Util.close(fos);
         }
         synchronized (this) {
             mSaveThread = null;
-            sendMessage(MSG_SAVED, saved ? filename : null);
+            sendMessage(MSG_SAVED, saved ? filename : null, null);
         }
     }
 
-    public synchronized void save() {
+    public synchronized void save(boolean compress) {
         if (mSaveThread != null) {
             try {
                 mSaveThread.join();
             } catch (InterruptedException e) {}
             mSaveThread = null;
         }
+        mSaveCompressed = compress;
         mSaveThread = new Thread(this);
         mSaveThread.start();
     }
@@ -219,7 +266,10 @@ public class DebugLogService extends Service implements Logcat.Callback, Runnabl
     private void registerCallback(IDebugLogServiceCallback cb) {
         if (cb != null) {
             mCallbacks.register(cb);
-            sendMessage(mLogcat != null ? MSG_STARTED : MSG_STOPPED, null);
+            if (mLogcat != null)
+                sendStarted();
+            else
+                sendMessage(MSG_STOPPED, null, null);
         }
     }
 
@@ -233,7 +283,7 @@ public class DebugLogService extends Service implements Logcat.Callback, Runnabl
         public interface Callback {
             void onStarted(List<String> lostList);
             void onStopped();
-            void onLog(String msg);
+            void onLog(List<String> msgs);
             void onSaved(boolean success, String path);
         }
 
@@ -263,11 +313,11 @@ public class DebugLogService extends Service implements Logcat.Callback, Runnabl
                 });
             }
             @Override
-            public void onLog(final String msg) throws RemoteException {
+            public void onLog(final List<String> msgs) throws RemoteException {
                 mHandler.post(new Runnable() {
                     @Override
                     public void run() {
-                        mCallback.onLog(msg);
+                        mCallback.onLog(msgs);
                     }
                 });
             }
@@ -350,11 +400,23 @@ public class DebugLogService extends Service implements Logcat.Callback, Runnabl
                 return false;
             }
         }
-        public boolean save() {
+        public boolean save(boolean compress) {
+            synchronized (this) {
+                if (mIDebugLogService != null) {
+                    try {
+                        mIDebugLogService.save(compress);
+                        return true;
+                    } catch (RemoteException e) {
+                    }
+                }
+                return false;
+            }
+        }
+        public boolean setFilter(int minPriority, String[] tags) {
             synchronized (this) {
                 if (mIDebugLogService != null) {
                     try {
-                        mIDebugLogService.save();
+                        mIDebugLogService.setFilter(minPriority, tags);
                         return true;
                     } catch (RemoteException e) {
                     }
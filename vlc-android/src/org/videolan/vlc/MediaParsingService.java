@@ -245,6 +245,7 @@ public class MediaParsingService extends Service implements DevicesDiscoveryCb {
                         }
                         mMedialibrary.start();
                         mLocalBroadcastManager.sendBroadcast(new Intent(VLCApplication.ACTION_MEDIALIBRARY_READY));
+                        VLCApplication.onLibraryReady();
                         if (shouldInit) {
                             for (String folder : Medialibrary.getBlackList())
                                 mMedialibrary.banFolder(AndroidDevices.EXTERNAL_PUBLIC_DIRECTORY + folder);
@@ -112,6 +112,7 @@ import org.videolan.vlc.media.MediaUtils;
 import org.videolan.vlc.media.MediaWrapperList;
 import org.videolan.vlc.media.PlayerController;
 import org.videolan.vlc.media.PlaylistManager;
+import org.videolan.vlc.media.QosSampler;
 import org.videolan.vlc.util.AceStreamUtils;
 import org.videolan.vlc.util.AndroidDevices;
 import org.videolan.vlc.util.Constants;
@@ -1955,6 +1956,10 @@ public class PlaybackService extends MediaBrowserServiceCompat implements Render
         return playlistManager.getLastPlaylistSync(type);
     }
 
+    public MediaWrapper getLastP2PItem(int type) {
+        return playlistManager.getLastP2PItemSync(type);
+    }
+
     public void showToast(String text, int duration) {
         final Message msg = new Message();
         final Bundle bundle = new Bundle();
@@ -2163,6 +2168,17 @@ public class PlaybackService extends MediaBrowserServiceCompat implements Render
         return playlistManager.getPlayer().getPreviousMediaStats();
     }
 
+    @MainThread
+    public QosSampler getQosSampler() {
+        return playlistManager.getPlayer().getQos();
+    }
+
+    @MainThread
+    @Nullable
+    public QosSampler.Summary getQosSummary(MediaWrapper media) {
+        return playlistManager.getPlayer().getQosSummary(media.getId() > 0L ? String.valueOf(media.getId()) : media.getLocation());
+    }
+
     /**
      * Loads a selection of files (a non-user-supplied collection of media)
      * into the primary or "currently playing" playlist.
@@ -3425,8 +3441,10 @@ public class PlaybackService extends MediaBrowserServiceCompat implements Render
                 if(uri != null) {
                     MediaWrapper mw = mMedialibrary.findMedia(new MediaWrapper(uri));
                     long time = intent.getLongExtra(AceStreamPlayer.BROADCAST_EXTRA_MEDIA_TIME, 0);
-                    mw.setLongMeta(MediaWrapper.META_PROGRESS, time);
-                    mw.setLongMeta(MediaWrapper.META_DURATION, intent.getLongExtra(AceStreamPlayer.BROADCAST_EXTRA_MEDIA_DURATION, 0));
+                    mw.editMeta()
+                            .putLong(MediaWrapper.META_PROGRESS, time)
+                            .putLong(MediaWrapper.META_DURATION, intent.getLongExtra(AceStreamPlayer.BROADCAST_EXTRA_MEDIA_DURATION, 0))
+                            .apply();
                     //TODO: update 'seen' counter
                 }
                 break;
@@ -9,6 +9,7 @@ import android.net.Uri;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Message;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -32,10 +33,17 @@ import org.videolan.vlc.util.Constants;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ProcessTransportFilesService extends Service implements Handler.Callback {
     public static final String TAG = "AS/PTFS";
@@ -47,6 +55,17 @@ public class ProcessTransportFilesService extends Service implements Handler.Cal
 
     private static final int MIN_ORPHAN_TRANSPORT_FILE_AGE = 3600000;
 
+    // Concurrent getMediaFiles requests, can be changed with Constants.KEY_PTF_MAX_REQUESTS
+    private static final int DEFAULT_MAX_REQUESTS = 4;
+    private static final int MAX_REQUESTS_LIMIT = 16;
+    private static final int PARSER_THREADS = 4;
+    // Transport files written at once
+    private static final int CHUNK_SIZE = 32;
+    // Give up when the engine has not answered any request for this long
+    private static final long STALL_TIMEOUT = 60000L;
+    // A request not answered within this delay is counted as failed and frees its permit
+    private static final long REQUEST_TIMEOUT = 10000L;
+
     private static volatile boolean sJobIsRunning = false;
     private volatile boolean mShutdownFlag = false;
 
@@ -187,121 +206,60 @@ public class ProcessTransportFilesService extends Service implements Handler.Cal
             return;
         }
 
-        int seq = 0;
-        MediaWrapper[] tfiles = ml.getUnparsedTransportFiles();
-        for(final MediaWrapper mw: tfiles) {
-            mHandler.obtainMessage(MSG_NOTIFY_PROGRESS, seq, tfiles.length)
-                    .sendToTarget();
-            ++seq;
-            Logger.v(TAG, "processTransportFiles: seq=" + seq + "/" + tfiles.length + " id=" + mw.getId() + " parsed=" + mw.isParsed() + " uri=" + mw.getUri());
-
-            final CountDownLatch countDown = new CountDownLatch(1);
-            final Object sync = new Object();
-            try {
-                // Pass decoded uri to TFD to avoid double encoding.
-                final Uri decodedUri = Uri.parse(Uri.decode(mw.getUri().toString()));
-                final File transportFile = MiscUtils.getFile(decodedUri);
-                final TransportFileDescriptor descriptor = TransportFileDescriptor.fromContentUri(this.getContentResolver(), decodedUri);
-                mEngineService.getMediaFiles(descriptor, new org.acestream.engine.controller.Callback<MediaFilesResponse>() {
-                    @Override
-                    public void onSuccess(final MediaFilesResponse result) {
-                        // This callback is called on main thread, but we need to process
-                        // in background.
-                        VLCApplication.runBackground(new Runnable() {
-                            @Override
-                            public void run() {
-                                try {
-                                    boolean isMulti = result.files.length > 1;
-                                    for (MediaFilesResponse.MediaFile mf : result.files) {
-                                        MediaWrapper item = ml.addP2PMedia(mw.getId(), descriptor, mf);
-                                        if (isMulti && item != null && !TextUtils.isEmpty(result.name)) {
-                                            // Set group name for multifile torrent
-                                            item.setStringMeta(MediaWrapper.META_GROUP_NAME, result.name);
-                                        }
-                                        if (item != null) {
-                                            if (!mf.isLive()) {
-                                                item.setLongMeta(MediaWrapper.META_FILE_SIZE,
-                                                        mf.size);
-                                            }
-                                            item.setStringMeta(MediaWrapper.META_TRANSPORT_FILE_PATH,
-                                                    decodedUri.getPath());
-                                            if (transportFile != null) {
-                                                item.setLongMeta(MediaWrapper.META_LAST_MODIFIED,
-                                                        transportFile.lastModified());
-                                            }
-                                        }
-                                        if (Logger.verbose()) {
-                                            if (item == null)
-                                                Logger.v(TAG, "processTransportFiles: failed to add p2p item");
-                                            else
-                                                Logger.v(TAG, "processTransportFiles: p2p item added:"
-                                                        + " id=" + item.getId()
-                                                        + " parent=" + item.getParentMediaId()
-                                                        + " p2p=" + item.isP2PItem()
-                                                        + " type=" + item.getType()
-                                                        + " title=" + item.getTitle()
-                                                        + " mrl=" + item.getUri()
-                                                        + " isMulti=" + isMulti
-                                                        + " groupName=" + result.name
-                                                        + " lastModified=" + item.getLastModified()
-                                                );
-                                        }
-                                    }
-
-                                    mw.setParsed(true);
-                                    synchronized(sync) {
-                                        sync.notifyAll();
-                                    }
-                                }
-                                finally {
-                                    countDown.countDown();
-                                }
-                            }
-                        });
-                    }
-
-                    @Override
-                    public void onError(String err) {
-                        countDown.countDown();
-                        Log.e(TAG, "processTransportFiles: failed to process transport file: uri=" + mw.getUri() + " err=" + err);
-                    }
-                });
-            }
-            catch(IOException e) {
-                countDown.countDown();
-                Log.e(TAG, "processTransportFiles: failed to open transport file: uri=" + mw.getUri(), e);
-            }
-
-            synchronized(sync) {
-                while (countDown.getCount() > 0) {
-                    Logger.v(TAG, "processTransportFiles: wait sync...");
-                    try {
-                        sync.wait(1000);
-                        Logger.v(TAG, "processTransportFiles: wait sync done: countDown=" + countDown.getCount());
-                    } catch (InterruptedException e) {
-                        Logger.v(TAG, "processTransportFiles: sync interrupted");
-                        break;
-                    }
+        final MediaWrapper[] tfiles = ml.getUnparsedTransportFiles();
+        final int total = tfiles.length;
+        final int maxRequests = Math.max(1, Math.min(MAX_REQUESTS_LIMIT,
+                VLCApplication.getSettings().getInt(Constants.KEY_PTF_MAX_REQUESTS, DEFAULT_MAX_REQUESTS)));
+        final BlockingQueue<TransportFileJob> results = new LinkedBlockingQueue<>();
+        final Semaphore requestPermits = new Semaphore(maxRequests);
+        final ExecutorService parsers = Executors.newFixedThreadPool(Math.min(PARSER_THREADS, Math.max(1, total)));
+        final long startTime = SystemClock.elapsedRealtime();
+        mHandler.obtainMessage(MSG_NOTIFY_PROGRESS, 0, total, 0f).sendToTarget();
+
+        // Descriptors are parsed in parallel, parsers wait for a request permit so that
+        // they do not get too far ahead of the engine.
+        for (final MediaWrapper mw : tfiles) {
+            parsers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    requestMediaFiles(new TransportFileJob(mw), requestPermits, results);
                 }
-            }
+            });
+        }
 
-            Logger.v(TAG, "processTransportFiles: wait countdown...");
+        // Results are written by this thread, a chunk at a time
+        int done = 0;
+        long lastResultTime = SystemClock.elapsedRealtime();
+        final ArrayList<TransportFileJob> chunk = new ArrayList<>(CHUNK_SIZE);
+        while (done < total && !mShutdownFlag) {
+            final TransportFileJob first;
             try {
-                countDown.await(10, TimeUnit.SECONDS);
-            }
-            catch(InterruptedException e) {
-                Logger.v(TAG, "processTransportFiles: countdown wait interrupted");
-            }
-            Logger.v(TAG, "processTransportFiles: wait countdown done");
-
-            mHandler.obtainMessage(MSG_NOTIFY_PROGRESS, seq, tfiles.length)
-                    .sendToTarget();
-
-            if(mShutdownFlag) {
-                Log.d(TAG, "processTransportFiles: got shutdown flag");
+                first = results.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Logger.v(TAG, "processTransportFiles: interrupted");
                 break;
             }
+            if (first == null) {
+                if (SystemClock.elapsedRealtime() - lastResultTime > STALL_TIMEOUT) {
+                    Log.e(TAG, "processTransportFiles: no response from engine, " + (total - done) + " files left");
+                    break;
+                }
+                continue;
+            }
+            lastResultTime = SystemClock.elapsedRealtime();
+            chunk.add(first);
+            results.drainTo(chunk, CHUNK_SIZE - 1);
+            writeChunk(ml, chunk);
+            done += chunk.size();
+            chunk.clear();
+
+            final long elapsed = SystemClock.elapsedRealtime() - startTime;
+            final float rate = elapsed > 0 ? done * 1000f / elapsed : 0f;
+            Logger.v(TAG, "processTransportFiles: " + done + "/" + total + " files, " + rate + " files/s");
+            mHandler.obtainMessage(MSG_NOTIFY_PROGRESS, done, total, rate).sendToTarget();
         }
+        if (mShutdownFlag) Log.d(TAG, "processTransportFiles: got shutdown flag");
+        parsers.shutdownNow();
 
         Logger.v(TAG, "processTransportFiles: " + tfiles.length + " files processed");
 
@@ -314,6 +272,131 @@ public class ProcessTransportFilesService extends Service implements Handler.Cal
         jobFinished();
     }
 
+    private static class TransportFileJob {
+        final MediaWrapper media;
+        Uri decodedUri;
+        File transportFile;
+        TransportFileDescriptor descriptor;
+        // null when parsing or the request failed
+        MediaFilesResponse response;
+
+        TransportFileJob(MediaWrapper media) {
+            this.media = media;
+        }
+    }
+
+    /**
+     * Parse the descriptor and send the request, the job is queued in results once done
+     * whatever the outcome.
+     */
+    private void requestMediaFiles(final TransportFileJob job, final Semaphore requestPermits, final BlockingQueue<TransportFileJob> results) {
+        final MediaWrapper mw = job.media;
+        if (mShutdownFlag) {
+            results.add(job);
+            return;
+        }
+        try {
+            // Pass decoded uri to TFD to avoid double encoding.
+            job.decodedUri = Uri.parse(Uri.decode(mw.getUri().toString()));
+            job.transportFile = MiscUtils.getFile(job.decodedUri);
+            job.descriptor = TransportFileDescriptor.fromContentUri(getContentResolver(), job.decodedUri);
+        }
+        catch(IOException e) {
+            Log.e(TAG, "processTransportFiles: failed to open transport file: uri=" + mw.getUri(), e);
+            results.add(job);
+            return;
+        }
+
+        try {
+            requestPermits.acquire();
+        } catch (InterruptedException e) {
+            results.add(job);
+            return;
+        }
+        final EngineApi engine = mEngineService;
+        if (engine == null) {
+            requestPermits.release();
+            results.add(job);
+            return;
+        }
+        // The request is completed once, by its answer or by the timeout
+        final AtomicBoolean completed = new AtomicBoolean(false);
+        final Runnable timeout = new Runnable() {
+            @Override
+            public void run() {
+                if (!completed.compareAndSet(false, true)) return;
+                requestPermits.release();
+                Log.e(TAG, "processTransportFiles: request timed out: uri=" + mw.getUri());
+                results.add(job);
+            }
+        };
+        mHandler.postDelayed(timeout, REQUEST_TIMEOUT);
+        engine.getMediaFiles(job.descriptor, new org.acestream.engine.controller.Callback<MediaFilesResponse>() {
+            @Override
+            public void onSuccess(final MediaFilesResponse result) {
+                // Called on main thread, results are written by the job thread
+                if (!completed.compareAndSet(false, true)) return;
+                mHandler.removeCallbacks(timeout);
+                requestPermits.release();
+                job.response = result;
+                results.add(job);
+            }
+
+            @Override
+            public void onError(String err) {
+                if (!completed.compareAndSet(false, true)) return;
+                mHandler.removeCallbacks(timeout);
+                requestPermits.release();
+                Log.e(TAG, "processTransportFiles: failed to process transport file: uri=" + mw.getUri() + " err=" + err);
+                results.add(job);
+            }
+        });
+    }
+
+    /**
+     * Add the media files of a chunk of transport files, with their metadata
+     * written in a single call per media.
+     */
+    private void writeChunk(Medialibrary ml, List<TransportFileJob> chunk) {
+        for (TransportFileJob job : chunk) {
+            final MediaFilesResponse result = job.response;
+            if (result == null) continue;
+            final boolean isMulti = result.files.length > 1;
+            for (MediaFilesResponse.MediaFile mf : result.files) {
+                final MediaWrapper item = ml.addP2PMedia(job.media.getId(), job.descriptor, mf);
+                if (item != null) {
+                    final MediaWrapper.MetaEditor editor = item.editMeta();
+                    if (isMulti && !TextUtils.isEmpty(result.name)) {
+                        // Set group name for multifile torrent
+                        editor.putString(MediaWrapper.META_GROUP_NAME, result.name);
+                    }
+                    if (!mf.isLive()) editor.putLong(MediaWrapper.META_FILE_SIZE, mf.size);
+                    editor.putString(MediaWrapper.META_TRANSPORT_FILE_PATH, job.decodedUri.getPath());
+                    if (job.transportFile != null)
+                        editor.putLong(MediaWrapper.META_LAST_MODIFIED, job.transportFile.lastModified());
+                    editor.apply();
+                }
+                if (Logger.verbose()) {
+                    if (item == null)
+                        Logger.v(TAG, "processTransportFiles: failed to add p2p item");
+                    else
+                        Logger.v(TAG, "processTransportFiles: p2p item added:"
+                                + " id=" + item.getId()
+                                + " parent=" + item.getParentMediaId()
+                                + " p2p=" + item.isP2PItem()
+                                + " type=" + item.getType()
+                                + " title=" + item.getTitle()
+                                + " mrl=" + item.getUri()
+                                + " isMulti=" + isMulti
+                                + " groupName=" + result.name
+                                + " lastModified=" + item.getLastModified()
+                        );
+                }
+            }
+            job.media.setParsed(true);
+        }
+    }
+
     private boolean checkDuplicates(Medialibrary ml) {
         boolean somethingDeleted = false;
         MediaWrapper[] duplicates = ml.findDuplicatesByInfohash();
@@ -443,6 +526,8 @@ public class ProcessTransportFilesService extends Service implements Handler.Cal
                 }
                 sb.append(getResources().getString(R.string.parsing_transport_files));
                 sb.append(" ").append(percent).append("%");
+                if (message.obj instanceof Float && (Float) message.obj > 0f)
+                    sb.append(" (").append(getString(R.string.transport_files_rate, (Float) message.obj)).append(")");
                 mLocalBroadcastManager.sendBroadcast(
                         new Intent(Constants.ACTION_PTF_PROGRESS)
                                 .putExtra(Constants.ACTION_PROGRESS_TEXT, sb.toString())
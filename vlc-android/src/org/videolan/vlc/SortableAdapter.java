@@ -7,6 +7,7 @@ import org.jetbrains.annotations.NotNull;
 import org.videolan.medialibrary.Medialibrary;
 import org.videolan.medialibrary.media.MediaLibraryItem;
 import org.videolan.vlc.gui.DiffUtilAdapter;
+import org.videolan.vlc.util.MediaItemDiffCallback;
 import org.videolan.vlc.util.MediaLibraryItemComparator;
 import org.videolan.vlc.util.Util;
 
@@ -50,6 +51,12 @@ public abstract class SortableAdapter<T extends MediaLibraryItem, VH extends Rec
         return sMediaComparator.sortBy != MediaLibraryItemComparator.SORT_DEFAULT && isSortAllowed(sMediaComparator.sortBy);
     }
 
+    @NotNull
+    @Override
+    protected DiffCallback<T> createCB() {
+        return new MediaItemDiffCallback<>();
+    }
+
     @Override
     protected void onUpdateFinished() {
         mCurrentDirection = getSortDirection();
@@ -32,6 +32,7 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Process;
 import android.preference.PreferenceManager;
 import androidx.multidex.MultiDexApplication;
@@ -39,6 +40,8 @@ import androidx.fragment.app.DialogFragment;
 import androidx.collection.SimpleArrayMap;
 import android.text.TextUtils;
 import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
 
 import org.acestream.sdk.AceStream;
 import org.acestream.sdk.utils.Logger;
@@ -50,7 +53,9 @@ import org.videolan.vlc.gui.dialogs.VlcProgressDialog;
 import org.videolan.vlc.gui.helpers.AudioUtil;
 import org.videolan.vlc.gui.helpers.BitmapCache;
 import org.videolan.vlc.gui.helpers.NotificationHelper;
+import org.videolan.vlc.media.PlayerPool;
 import org.videolan.vlc.util.AndroidDevices;
+import org.videolan.vlc.util.StartupGraph;
 import org.videolan.vlc.util.Strings;
 import org.videolan.vlc.util.Util;
 import org.videolan.vlc.util.VLCInstance;
@@ -58,6 +63,7 @@ import org.videolan.vlc.util.VLCInstance;
 import java.lang.ref.WeakReference;
 import java.util.Calendar;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -91,6 +97,31 @@ public class VLCApplication extends MultiDexApplication {
             new LinkedBlockingQueue<Runnable>(), THREAD_FACTORY);
     private static final Handler handler = new Handler(Looper.getMainLooper());
 
+    /* Startup tasks not needed for the first frame run on their own low priority thread,
+     * instead of competing with the UI work queued on the shared pool */
+    private static final ThreadPoolExecutor startupThread = new ThreadPoolExecutor(0, 1, 5, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "vlc-startup");
+        }
+    });
+    private static final StartupGraph sStartup = new StartupGraph(new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runOnMainThread(runnable);
+        }
+    }, startupThread);
+    /* Idle tasks still run if no activity is shown, when started for a service */
+    private static final long STARTUP_IDLE_TIMEOUT = 5000L;
+    private static volatile boolean sCompatibleCPU;
+
     private static int sDialogCounter = 0;
 
     public VLCApplication() {
@@ -101,37 +132,90 @@ public class VLCApplication extends MultiDexApplication {
     @Override
     public void onCreate() {
         super.onCreate();
-        sSettings = PreferenceManager.getDefaultSharedPreferences(this);
-        sTV = AndroidDevices.isAndroidTv || (!AndroidDevices.isChromeBook && !AndroidDevices.hasTsp);
+        if (AndroidUtil.isNougatOrLater) sStartup.setOrigin(Process.getStartElapsedRealtime());
 
-        // Disable remote control receiver on Fire TV.
-        if (!AndroidDevices.hasTsp) AndroidDevices.setRemoteControlReceiverEnabled(false);
+        sStartup.add("settings", StartupGraph.PRIORITY_FIRST_FRAME, true, new Runnable() {
+            @Override
+            public void run() {
+                sSettings = PreferenceManager.getDefaultSharedPreferences(VLCApplication.this);
+                sTV = AndroidDevices.isAndroidTv || (!AndroidDevices.isChromeBook && !AndroidDevices.hasTsp);
 
-        setLocale();
+                // Disable remote control receiver on Fire TV.
+                if (!AndroidDevices.hasTsp) AndroidDevices.setRemoteControlReceiverEnabled(false);
+            }
+        });
+        sStartup.add("locale", StartupGraph.PRIORITY_FIRST_FRAME, true, new Runnable() {
+            @Override
+            public void run() {
+                setLocale();
+            }
+        }, "settings");
+        sStartup.add("receivers", StartupGraph.PRIORITY_FIRST_FRAME, true, new Runnable() {
+            @Override
+            public void run() {
+                if (sActivityCbListener != null)
+                    registerActivityLifecycleCallbacks(sActivityCbListener);
+                else ExternalMonitor.register(instance);
 
-        runBackground(new Runnable() {
+                IntentFilter filter = new IntentFilter(AceStream.ACTION_RESTART_APP);
+                registerReceiver(mBroadcastReceiver, filter);
+            }
+        });
+        sStartup.add("acestream", StartupGraph.PRIORITY_FIRST_FRAME, true, new Runnable() {
+            @Override
+            public void run() {
+                AceStream.init(VLCApplication.this, null, null, null);
+            }
+        });
+        sStartup.add("logger", StartupGraph.PRIORITY_FIRST_FRAME, true, new Runnable() {
             @Override
             public void run() {
+                Logger.enableDebugLogging(sSettings.getBoolean("enable_debug_logging", BuildConfig.enableDebugLogging));
+            }
+        }, "settings");
 
-                if (AndroidUtil.isOOrLater)
-                    NotificationHelper.createNotificationChannels(VLCApplication.this);
-                // Prepare cache folder constants
+        // Services started in the foreground right after a cold start need the channels
+        if (AndroidUtil.isOOrLater) sStartup.add("notification_channels", StartupGraph.PRIORITY_FIRST_FRAME, true, new Runnable() {
+            @Override
+            public void run() {
+                NotificationHelper.createNotificationChannels(VLCApplication.this);
+            }
+        });
+        // Prepare cache folder constants, required by AudioUtil before its turn
+        sStartup.add("cache_folder", StartupGraph.PRIORITY_FIRST_FRAME, false, new Runnable() {
+            @Override
+            public void run() {
                 AudioUtil.prepareCacheFolder(instance);
-
-                if (!VLCInstance.testCompatibleCPU(instance)) return;
-                Dialog.setCallbacks(VLCInstance.get(), mDialogCallbacks);
             }
         });
+        sStartup.add("cpu_check", StartupGraph.PRIORITY_ON_DEMAND, false, new Runnable() {
+            @Override
+            public void run() {
+                sCompatibleCPU = VLCInstance.testCompatibleCPU(instance);
+            }
+        });
+        sStartup.add("libvlc", StartupGraph.PRIORITY_IDLE, false, new Runnable() {
+            @Override
+            public void run() {
+                if (sCompatibleCPU) Dialog.setCallbacks(VLCInstance.get(), mDialogCallbacks);
+            }
+        }, "cpu_check");
+        sStartup.add("lua", StartupGraph.PRIORITY_IDLE, false, new Runnable() {
+            @Override
+            public void run() {
+                if (sCompatibleCPU) VLCInstance.copyLua();
+            }
+        }, "cpu_check");
+        // Spare player handed out on the first playback
+        sStartup.add("player_pool", StartupGraph.PRIORITY_IDLE, false, new Runnable() {
+            @Override
+            public void run() {
+                if (sCompatibleCPU) PlayerPool.warm();
+            }
+        }, "libvlc");
 
-        if (sActivityCbListener != null)
-            registerActivityLifecycleCallbacks(sActivityCbListener);
-        else ExternalMonitor.register(instance);
-
-        IntentFilter filter = new IntentFilter(AceStream.ACTION_RESTART_APP);
-        registerReceiver(mBroadcastReceiver, filter);
-
-        AceStream.init(this, null, null, null);
-        Logger.enableDebugLogging(sSettings.getBoolean("enable_debug_logging", BuildConfig.enableDebugLogging));
+        sStartup.start();
+        handler.postDelayed(sStartupIdle, STARTUP_IDLE_TIMEOUT);
     }
 
     @Override
@@ -211,6 +295,57 @@ public class VLCApplication extends MultiDexApplication {
         }, delay);
     }
 
+    /**
+     * @return the application startup tasks, to {@link StartupGraph#require(String)} one before its turn
+     */
+    public static StartupGraph getStartup() {
+        return sStartup;
+    }
+
+    private static final Runnable sStartupIdle = new Runnable() {
+        @Override
+        public void run() {
+            sStartup.onIdle();
+        }
+    };
+
+    /**
+     * Wait for the first frame of the first activity shown, then for the main thread to be idle
+     */
+    private static void watchFirstFrame(Activity activity) {
+        final View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                // posted to run once the frame has been drawn
+                handler.postAtFrontOfQueue(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!sStartup.markFirstFrame()) return;
+                        Log.i(TAG, "Startup: first frame after " + sStartup.getTimeToFirstFrame() + "ms");
+                        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                            @Override
+                            public boolean queueIdle() {
+                                handler.removeCallbacks(sStartupIdle);
+                                sStartup.onIdle();
+                                return false;
+                            }
+                        });
+                    }
+                });
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Called once the media library is started, reports the application startup timings
+     */
+    public static void onLibraryReady() {
+        if (sStartup.markLibraryReady()) Log.i(TAG, sStartup.getReport());
+    }
+
     public static boolean removeTask(Runnable runnable) {
         return threadPool.remove(runnable);
     }
@@ -332,7 +467,9 @@ public class VLCApplication extends MultiDexApplication {
         }
 
         @Override
-        public void onActivityResumed(Activity activity) {}
+        public void onActivityResumed(Activity activity) {
+            if (sStartup.getTimeToFirstFrame() < 0) watchFirstFrame(activity);
+        }
 
         @Override
         public void onActivityPaused(Activity activity) {}
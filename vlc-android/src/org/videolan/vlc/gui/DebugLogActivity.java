@@ -22,15 +22,19 @@ package org.videolan.vlc.gui;
 
 import android.app.Activity;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
+import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.ListView;
+import android.widget.Spinner;
 
 import org.videolan.vlc.DebugLogService;
 import org.videolan.vlc.R;
 import org.videolan.vlc.VLCApplication;
 import org.videolan.vlc.gui.helpers.UiTools;
+import org.videolan.vlc.media.MediaDatabase;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -43,6 +47,8 @@ public class DebugLogActivity extends Activity implements DebugLogService.Client
     private Button mCopyButton = null;
     private Button mClearButton = null;
     private Button mSaveButton = null;
+    private Button mDatabaseStatsButton = null;
+    private Spinner mPrioritySpinner = null;
     private ListView mLogView;
     private List<String> mLogList = null;
     private ArrayAdapter<String> mLogAdapter;
@@ -58,17 +64,23 @@ public class DebugLogActivity extends Activity implements DebugLogService.Client
         mCopyButton = (Button)findViewById(R.id.copy_to_clipboard);
         mClearButton = (Button)findViewById(R.id.clear_log);
         mSaveButton = (Button)findViewById(R.id.save_to_file);
+        mDatabaseStatsButton = (Button)findViewById(R.id.dump_database_stats);
+        mPrioritySpinner = (Spinner)findViewById(R.id.log_priority);
 
         mClient = new DebugLogService.Client(this, this);
 
         mStartButton.setEnabled(false);
         mStopButton.setEnabled(false);
+        mDatabaseStatsButton.setEnabled(false);
         setOptionsButtonsEnabled(false);
 
         mStartButton.setOnClickListener(mStartClickListener);
         mStopButton.setOnClickListener(mStopClickListener);
         mClearButton.setOnClickListener(mClearClickListener);
         mSaveButton.setOnClickListener(mSaveClickListener);
+        mSaveButton.setOnLongClickListener(mSaveLongClickListener);
+        mDatabaseStatsButton.setOnClickListener(mDatabaseStatsClickListener);
+        mPrioritySpinner.setOnItemSelectedListener(mPriorityListener);
 
         mCopyButton.setOnClickListener(mCopyClickListener);
     }
@@ -118,10 +130,48 @@ public class DebugLogActivity extends Activity implements DebugLogService.Client
     private View.OnClickListener mSaveClickListener = new View.OnClickListener() {
         @Override
         public void onClick(View v) {
-            mClient.save();
+            mClient.save(false);
         }
     };
 
+    /* Long logs are better shared compressed */
+    private View.OnLongClickListener mSaveLongClickListener = new View.OnLongClickListener() {
+        @Override
+        public boolean onLongClick(View v) {
+            mClient.save(true);
+            return true;
+        }
+    };
+
+    /* Statistics are logged, to be captured along with the rest of the log */
+    private View.OnClickListener mDatabaseStatsClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            VLCApplication.runBackground(new Runnable() {
+                @Override
+                public void run() {
+                    for (String line : MediaDatabase.getInstance().dumpStats())
+                        Log.i(MediaDatabase.TAG, line);
+                }
+            });
+        }
+    };
+
+    /* The service keeps the filter until it stops, lines already captured stay */
+    private AdapterView.OnItemSelectedListener mPriorityListener = new AdapterView.OnItemSelectedListener() {
+        @Override
+        public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+            applyFilter();
+        }
+
+        @Override
+        public void onNothingSelected(AdapterView<?> parent) {}
+    };
+
+    private void applyFilter() {
+        mClient.setFilter(Log.VERBOSE + mPrioritySpinner.getSelectedItemPosition(), null);
+    }
+
     @SuppressWarnings("deprecation")
     private View.OnClickListener mCopyClickListener = new View.OnClickListener() {
         @Override
@@ -139,8 +189,10 @@ public class DebugLogActivity extends Activity implements DebugLogService.Client
 
     @Override
     public void onStarted(List<String> logList) {
+        applyFilter();
         mStartButton.setEnabled(false);
         mStopButton.setEnabled(true);
+        mDatabaseStatsButton.setEnabled(true);
         if (logList.size() > 0)
             setOptionsButtonsEnabled(true);
         mLogList = new ArrayList<String>(logList);
@@ -153,14 +205,16 @@ public class DebugLogActivity extends Activity implements DebugLogService.Client
 
     @Override
     public void onStopped() {
+        applyFilter();
         mStartButton.setEnabled(true);
         mStopButton.setEnabled(false);
+        mDatabaseStatsButton.setEnabled(false);
     }
 
     @Override
-    public void onLog(String msg) {
+    public void onLog(List<String> msgs) {
         if (mLogList != null) {
-            mLogList.add(msg);
+            mLogList.addAll(msgs);
             mLogAdapter.notifyDataSetChanged();
             setOptionsButtonsEnabled(true);
         }
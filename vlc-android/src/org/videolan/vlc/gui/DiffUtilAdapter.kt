@@ -2,7 +2,9 @@ package org.videolan.vlc.gui
 
 import androidx.annotation.MainThread
 import androidx.annotation.WorkerThread
+import androidx.recyclerview.widget.AdapterListUpdateCallback
 import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListUpdateCallback
 import kotlinx.coroutines.*
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.channels.actor
@@ -30,11 +32,32 @@ abstract class DiffUtilAdapter<D, VH : androidx.recyclerview.widget.RecyclerView
 
     @WorkerThread
     private suspend fun internalUpdate(list: List<D>) {
-        val finalList = prepareList(list)
-        val result = DiffUtil.calculateDiff(diffCallback.apply { update(dataset, finalList) }, detectMoves())
+        if (list is IncrementalList<*> && acceptsIncrementalUpdates()) {
+            val applied = withContext(Dispatchers.Main) {
+                if (list.base == null || list.base !== dataset) false
+                else {
+                    dataset = list
+                    list.dispatchUpdatesTo(AdapterListUpdateCallback(this@DiffUtilAdapter))
+                    onUpdateFinished()
+                    true
+                }
+            }
+            if (applied) return
+        }
+        // Incremental lists are immutable snapshots: shown as is, they stay the base of the next ones.
+        // Otherwise they are copied, prepareList may sort in place.
+        val finalList = when {
+            list !is IncrementalList<*> -> prepareList(list)
+            acceptsIncrementalUpdates() -> list
+            else -> prepareList(ArrayList(list))
+        }
+        diffCallback.update(dataset, finalList)
+        val linearDiff = diffCallback.linearDiff()
+        val result = if (linearDiff === null) DiffUtil.calculateDiff(diffCallback, detectMoves()) else null
         withContext(Dispatchers.Main) {
             dataset = finalList
-            result.dispatchUpdatesTo(this@DiffUtilAdapter)
+            if (result !== null) result.dispatchUpdatesTo(this@DiffUtilAdapter)
+            else linearDiff?.dispatchUpdatesTo(AdapterListUpdateCallback(this@DiffUtilAdapter))
             onUpdateFinished()
         }
     }
@@ -47,23 +70,119 @@ abstract class DiffUtilAdapter<D, VH : androidx.recyclerview.widget.RecyclerView
 
     protected open fun detectMoves() = false
 
+    /**
+     * Whether an [IncrementalList] can be shown as is, without [prepareList]. Adapters whose
+     * [prepareList] transforms the list (sections, grouping) have to diff it instead.
+     */
+    protected open fun acceptsIncrementalUpdates() = true
+
     protected open fun createCB() = DiffCallback<D>()
 
+    /**
+     * A list which knows the changes applied to a previous list, its [base].
+     * If the adapter currently shows [base], changes are dispatched without diffing.
+     */
+    interface IncrementalList<D> : List<D> {
+        val base: List<D>?
+        fun dispatchUpdatesTo(callback: ListUpdateCallback)
+    }
+
+    /**
+     * Compares items by identity and contents by fingerprint. Fingerprints are computed once per list,
+     * when it is diffed: items updated in place are still seen as changed.
+     */
     open class DiffCallback<D> : DiffUtil.Callback() {
         lateinit var oldList: List<D>
         lateinit var newList: List<D>
+        private var oldFingerprints = LongArray(0)
+        private var newFingerprints = LongArray(0)
 
         fun update(oldList: List<D>, newList: List<D>) {
+            // The old list is usually the one diffed last time, reuse its fingerprints
+            oldFingerprints = if (this::newList.isInitialized && oldList === this.newList) newFingerprints else fingerprints(oldList)
+            newFingerprints = fingerprints(newList)
             this.oldList = oldList
             this.newList = newList
         }
 
+        private fun fingerprints(list: List<D>) = LongArray(list.size) { fingerprint(list[it]) }
+
+        /**
+         * Hash of the fields shown for this item, 0 if contents are not compared
+         */
+        open fun fingerprint(item: D) = 0L
+
         override fun getOldListSize() = oldList.size
 
         override fun getNewListSize() = newList.size
 
-        override fun areContentsTheSame(oldItemPosition : Int, newItemPosition : Int) = true
+        override fun areContentsTheSame(oldItemPosition : Int, newItemPosition : Int) = oldFingerprints[oldItemPosition] == newFingerprints[newItemPosition]
 
         override fun areItemsTheSame(oldItemPosition : Int, newItemPosition : Int) = oldList[oldItemPosition] == newList[newItemPosition]
+
+        /**
+         * Find the changes in one pass when items are only appended or only removed,
+         * which avoids the Myers diff on large lists.
+         * @return null if the lists need a full diff
+         */
+        fun linearDiff(): LinearDiff? {
+            val oldSize = oldList.size
+            val newSize = newList.size
+            val diff = LinearDiff()
+            if (newSize >= oldSize) {
+                for (i in 0 until oldSize) {
+                    if (!areItemsTheSame(i, i)) return null
+                    if (!areContentsTheSame(i, i)) diff.change(i, getChangePayload(i, i))
+                }
+                if (newSize > oldSize) diff.insert(oldSize, newSize - oldSize)
+                return diff
+            }
+            var newPosition = 0
+            for (oldPosition in 0 until oldSize) {
+                if (newPosition < newSize && areItemsTheSame(oldPosition, newPosition)) {
+                    if (!areContentsTheSame(oldPosition, newPosition)) diff.change(newPosition, getChangePayload(oldPosition, newPosition))
+                    ++newPosition
+                } else diff.remove(newPosition)
+            }
+            return if (newPosition == newSize) diff else null
+        }
+    }
+
+    /**
+     * Removals, then insertions, then changes at their final positions
+     */
+    class LinearDiff {
+        private val removals = ArrayList<Int>()
+        private var insertPosition = -1
+        private var insertCount = 0
+        private val changes = ArrayList<Int>()
+        private val payloads = ArrayList<Any?>()
+
+        fun remove(position: Int) {
+            removals.add(position)
+        }
+
+        fun insert(position: Int, count: Int) {
+            insertPosition = position
+            insertCount = count
+        }
+
+        fun change(position: Int, payload: Any?) {
+            changes.add(position)
+            payloads.add(payload)
+        }
+
+        fun dispatchUpdatesTo(callback: ListUpdateCallback) {
+            // Removed positions are counted after previous removals, so consecutive ones repeat
+            var i = 0
+            while (i < removals.size) {
+                var count = 1
+                while (i + count < removals.size && removals[i + count] == removals[i]) ++count
+                callback.onRemoved(removals[i], count)
+                i += count
+            }
+            if (insertCount > 0) callback.onInserted(insertPosition, insertCount)
+            for (j in changes.indices) callback.onChanged(changes[j], 1, payloads[j])
+        }
     }
-}
\ No newline at end of file
+}
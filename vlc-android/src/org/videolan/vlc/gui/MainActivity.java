@@ -1075,23 +1075,7 @@ public class MainActivity
         }
 
         // Get first p2p item from last playlist
-        List<MediaWrapper> lastPlaylist = mService.getLastPlaylist(Constants.PLAYLIST_TYPE_VIDEO);
-        if (lastPlaylist == null) {
-            Log.v(TAG, "getLastP2PMedia: no last playlist");
-            return null;
-        }
-        if (lastPlaylist.size() == 0) {
-            Log.v(TAG, "getLastP2PMedia: empty last playlist");
-            return null;
-        }
-
-        // Get first p2p item
-        for (MediaWrapper mw : lastPlaylist) {
-            if (mw.isP2PItem()) {
-                media = mw;
-                break;
-            }
-        }
+        media = mService.getLastP2PItem(Constants.PLAYLIST_TYPE_VIDEO);
         if (media == null) {
             Log.v(TAG, "getLastP2PMedia: no p2p items in last playlist");
         }
@@ -349,6 +349,11 @@ public class AudioBrowserAdapter extends SortableAdapter<MediaLibraryItem, Audio
         mIEventsHandler.onUpdateFinished(AudioBrowserAdapter.this);
     }
 
+    @Override
+    protected boolean acceptsIncrementalUpdates() {
+        return !mMakeSections;
+    }
+
     @SuppressWarnings("unchecked")
     @NonNull
     @Override
@@ -46,6 +46,7 @@ import android.widget.TextView;
 import org.acestream.sdk.utils.Logger;
 import org.videolan.medialibrary.Medialibrary;
 import org.videolan.medialibrary.interfaces.MediaAddedCb;
+import org.videolan.medialibrary.interfaces.MediaDeletedCb;
 import org.videolan.medialibrary.interfaces.MediaUpdatedCb;
 import org.videolan.medialibrary.media.MediaLibraryItem;
 import org.videolan.medialibrary.media.MediaWrapper;
@@ -62,9 +63,11 @@ import org.videolan.vlc.gui.helpers.UiTools;
 import org.videolan.vlc.gui.view.ContextMenuRecyclerView;
 import org.videolan.vlc.gui.view.FastScroller;
 import org.videolan.vlc.gui.view.SwipeRefreshLayout;
+import org.videolan.vlc.media.MediaIndex;
 import org.videolan.vlc.util.AndroidDevices;
 import org.videolan.vlc.util.Constants;
 import org.videolan.vlc.util.FileUtils;
+import org.videolan.vlc.util.MediaLibraryItemComparator;
 import org.videolan.vlc.util.Util;
 import org.videolan.vlc.util.WeakHandler;
 
@@ -73,7 +76,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
-public class AudioBrowserFragment extends BaseAudioBrowser implements SwipeRefreshLayout.OnRefreshListener, ViewPager.OnPageChangeListener, Medialibrary.ArtistsAddedCb, Medialibrary.ArtistsModifiedCb, Medialibrary.AlbumsAddedCb, Medialibrary.AlbumsModifiedCb, MediaAddedCb, MediaUpdatedCb, TabLayout.OnTabSelectedListener {
+public class AudioBrowserFragment extends BaseAudioBrowser implements SwipeRefreshLayout.OnRefreshListener, ViewPager.OnPageChangeListener, Medialibrary.ArtistsAddedCb, Medialibrary.ArtistsModifiedCb, Medialibrary.AlbumsAddedCb, Medialibrary.AlbumsModifiedCb, MediaAddedCb, MediaUpdatedCb, MediaDeletedCb, TabLayout.OnTabSelectedListener {
     public final static String TAG = "AS/VLC/ABF";
 
     private AudioBrowserAdapter mSongsAdapter;
@@ -81,6 +84,9 @@ public class AudioBrowserFragment extends BaseAudioBrowser implements SwipeRefre
     private AudioBrowserAdapter mAlbumsAdapter;
     private AudioBrowserAdapter mGenresAdapter;
     private AudioBrowserAdapter mPlaylistAdapter;
+    /* Songs, kept up to date with the medialibrary callbacks */
+    private final MediaIndex<MediaWrapper> mSongsIndex = new MediaIndex<>(new MediaLibraryItemComparator(AudioBrowserAdapter.class));
+    private volatile boolean mSongsIndexLoaded = false;
 
     private ViewPager mViewPager;
     private TabLayout mTabLayout;
@@ -202,6 +208,8 @@ public class AudioBrowserFragment extends BaseAudioBrowser implements SwipeRefre
         } else {
             mMediaLibrary.removeMediaUpdatedCb();
             mMediaLibrary.removeMediaAddedCb();
+            mMediaLibrary.removeMediaDeletedCb();
+            mSongsIndexLoaded = false;
             mMediaLibrary.setArtistsAddedCb(null);
             mMediaLibrary.setAlbumsAddedCb(null);
             for (View rv : mLists)
@@ -232,8 +240,10 @@ public class AudioBrowserFragment extends BaseAudioBrowser implements SwipeRefre
         super.onMedialibraryReady();
         mMediaLibrary.setArtistsAddedCb(this);
         mMediaLibrary.setAlbumsAddedCb(this);
-        mMediaLibrary.setMediaAddedCb(this, Medialibrary.FLAG_MEDIA_ADDED_AUDIO_EMPTY);
-        mMediaLibrary.setMediaUpdatedCb(this, Medialibrary.FLAG_MEDIA_UPDATED_AUDIO_EMPTY);
+        // Added and updated songs are needed to update the songs list without a new query
+        mMediaLibrary.setMediaAddedCb(this, Medialibrary.FLAG_MEDIA_ADDED_AUDIO);
+        mMediaLibrary.setMediaUpdatedCb(this, Medialibrary.FLAG_MEDIA_UPDATED_AUDIO);
+        mMediaLibrary.setMediaDeletedCb(this);
         if (mArtistsAdapter.isEmpty() || mGenresAdapter.isEmpty() ||
                 mAlbumsAdapter.isEmpty() || mSongsAdapter.isEmpty())
             mHandler.sendEmptyMessage(UPDATE_LIST);
@@ -563,12 +573,47 @@ public class AudioBrowserFragment extends BaseAudioBrowser implements SwipeRefre
 
     @Override
     public void onMediaAdded(MediaWrapper[] mediaList) {
-        updateSongs();
+        onMediaUpdated(mediaList);
     }
 
     @Override
     public void onMediaUpdated(MediaWrapper[] mediaList) {
-        updateSongs();
+        if (!mSongsIndexLoaded) return;
+        syncSongsSort();
+        final MediaIndex.Snapshot<MediaWrapper> snapshot = mSongsIndex.addOrUpdate(mediaList);
+        if (snapshot != null) showSongs(snapshot);
+    }
+
+    @Override
+    public void onMediaDeleted(long[] ids) {
+        if (!mSongsIndexLoaded) return;
+        final MediaIndex.Snapshot<MediaWrapper> snapshot = mSongsIndex.remove(ids);
+        if (snapshot != null) showSongs(snapshot);
+    }
+
+    private boolean acceptSong(MediaWrapper media) {
+        if (media.getType() != MediaWrapper.TYPE_AUDIO) return false;
+        if (mCategory == MediaWrapper.CATEGORY_P2P_AUDIO) return media.isP2PItem() && !media.isLive();
+        return !media.isP2PItem();
+    }
+
+    private void syncSongsSort() {
+        final int sortBy = mSongsAdapter.getSortBy();
+        mSongsIndex.sortBy(sortBy == MediaLibraryItemComparator.SORT_DEFAULT ? mSongsAdapter.getDefaultSort() : sortBy, mSongsAdapter.getSortDirection());
+    }
+
+    /**
+     * Snapshots may be computed on different threads, only the latest one is shown.
+     */
+    @SuppressWarnings("unchecked")
+    private void showSongs(final MediaIndex.Snapshot<MediaWrapper> snapshot) {
+        VLCApplication.runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                if (snapshot == mSongsIndex.getSnapshot())
+                    mSongsAdapter.update((List<MediaLibraryItem>) (List<?>) snapshot);
+            }
+        });
     }
 
     public AudioBrowserAdapter getCurrentAdapter() {
@@ -704,12 +749,16 @@ public class AudioBrowserFragment extends BaseAudioBrowser implements SwipeRefre
                 final MediaWrapper[] media = (mCategory == MediaWrapper.CATEGORY_P2P_AUDIO)
                         ? mMediaLibrary.getP2PAudio()
                         : mMediaLibrary.getRegularAudio();
-                VLCApplication.runOnMainThread(new Runnable() {
+                // Later changes are applied from the medialibrary callbacks
+                mSongsIndex.setFilter(new MediaIndex.Filter<MediaWrapper>() {
                     @Override
-                    public void run() {
-                        mSongsAdapter.update(Arrays.asList(media));
+                    public boolean accept(MediaWrapper item) {
+                        return acceptSong(item);
                     }
                 });
+                syncSongsSort();
+                showSongs(mSongsIndex.reset(media));
+                mSongsIndexLoaded = true;
             }
         });
 
@@ -48,6 +48,14 @@ import org.videolan.vlc.media.MediaGroup;
 import org.videolan.vlc.util.HttpImageLoader;
 import org.videolan.vlc.util.ThumbnailsProvider;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 public class AsyncImageLoader {
 
     public interface Callbacks {
@@ -69,6 +77,17 @@ public class AsyncImageLoader {
     private static final BitmapCache sBitmapCache = BitmapCache.getInstance();
     private static final Medialibrary sMedialibrary = VLCApplication.getMLInstance();
 
+    private static final int MAX_PENDING_REQUESTS = 64;
+    private static final int THREAD_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS,
+            new LifoBlockingDeque(MAX_PENDING_REQUESTS), VLCApplication.THREAD_FACTORY);
+    /* Pending decodes, by request key */
+    private static final Map<String, ImageRequest> sInFlight = new HashMap<>();
+
+    static {
+        sExecutor.allowCoreThreadTimeOut(true);
+    }
+
     /*
      * Custom bindings to trigger image (down)loading
      */
@@ -76,7 +95,7 @@ public class AsyncImageLoader {
     @BindingAdapter({"imageUri"})
     public static void downloadIcon(final View v, final Uri imageUri) {
         if (imageUri != null && imageUri.getScheme().equals("http"))
-            loadImage(new HttpImageLoader(imageUri.toString(), DataBindingUtil.findBinding(v)), v);
+            loadImage(new HttpImageLoader(imageUri.toString(), DataBindingUtil.findBinding(v), v.getWidth()), v);
     }
 
     @BindingAdapter({"media"})
@@ -109,12 +128,114 @@ public class AsyncImageLoader {
     }
 
     private static void loadImage(final Callbacks cbs, final View target){
-        VLCApplication.runBackground(new Runnable() {
-            @Override
-            public void run() {
-                cbs.updateImage(cbs.getImage(), target);
+        final String key = cbs instanceof CoverFetcher ? ((CoverFetcher) cbs).getRequestKey() : null;
+        ImageRequest request = null;
+        synchronized (sInFlight) {
+            if (key != null) request = sInFlight.get(key);
+            if (request != null && request.addWaiter(cbs, target)) return;
+            request = new ImageRequest(key);
+            request.addWaiter(cbs, target);
+            if (key != null) sInFlight.put(key, request);
+        }
+        sExecutor.execute(request);
+    }
+
+    /**
+     * Called when a pending fetcher is not needed anymore.
+     * The decode is dropped from the queue if no other view is waiting for it.
+     */
+    private static void cancel(CoverFetcher fetcher) {
+        final ImageRequest request;
+        synchronized (sInFlight) {
+            request = fetcher.request;
+            if (request == null || request.started || !request.isCanceled()) return;
+            request.started = true;
+            if (request.key != null) sInFlight.remove(request.key);
+        }
+        if (sExecutor.remove(request)) request.deliver(null);
+    }
+
+    /**
+     * One image decode, shared by all the views bound to the same key while it is pending.
+     * Waiters list is guarded by sInFlight.
+     */
+    private static final class ImageRequest implements Runnable {
+        final String key;
+        private final List<Callbacks> waiters = new ArrayList<>(1);
+        private final List<View> targets = new ArrayList<>(1);
+        boolean started = false;
+
+        ImageRequest(String key) {
+            this.key = key;
+        }
+
+        boolean addWaiter(Callbacks cbs, View target) {
+            if (started) return false;
+            waiters.add(cbs);
+            targets.add(target);
+            if (cbs instanceof CoverFetcher) ((CoverFetcher) cbs).request = this;
+            return true;
+        }
+
+        boolean isCanceled() {
+            for (Callbacks cbs : waiters)
+                if (!(cbs instanceof CoverFetcher) || !((CoverFetcher) cbs).bindChanged) return false;
+            return true;
+        }
+
+        @Override
+        public void run() {
+            Callbacks loader = null;
+            synchronized (sInFlight) {
+                started = true;
+                if (key != null) sInFlight.remove(key);
+                for (Callbacks cbs : waiters) {
+                    if (!(cbs instanceof CoverFetcher) || !((CoverFetcher) cbs).bindChanged) {
+                        loader = cbs;
+                        break;
+                    }
+                }
+            }
+            deliver(loader != null ? loader.getImage() : null);
+        }
+
+        /**
+         * Waiters are released to their fetcher, canceled ones only get recycled.
+         */
+        void deliver(Bitmap bitmap) {
+            for (int i = 0; i < waiters.size(); ++i) {
+                final Callbacks cbs = waiters.get(i);
+                if (cbs instanceof CoverFetcher) ((CoverFetcher) cbs).request = null;
+                cbs.updateImage(bitmap, targets.get(i));
+            }
+        }
+    }
+
+    /**
+     * Bounded LIFO queue: most recently bound views are decoded first,
+     * and the oldest pending request is dropped once the queue is full.
+     */
+    private static final class LifoBlockingDeque extends LinkedBlockingDeque<Runnable> {
+
+        LifoBlockingDeque(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            while (!offerFirst(runnable)) {
+                final Runnable dropped = pollLast();
+                if (dropped instanceof ImageRequest) {
+                    final ImageRequest request = (ImageRequest) dropped;
+                    synchronized (sInFlight) {
+                        request.started = true;
+                        if (request.key != null && sInFlight.get(request.key) == request) sInFlight.remove(request.key);
+                    }
+                    request.deliver(null);
+                }
             }
-        });
+            return true;
+        }
     }
 
     private static class MLItemCoverFetcher extends AsyncImageLoader.CoverFetcher {
@@ -142,6 +263,11 @@ public class AsyncImageLoader {
             sPool.release(this);
         }
 
+        @Override
+        protected String getRequestKey() {
+            return item instanceof MediaGroup ? "group:" + item.getTitle() + "_" + width : item.getArtworkMrl() + "_" + width;
+        }
+
         @Override
         public Bitmap getImage() {
             if (bindChanged) return null;
@@ -186,17 +312,21 @@ public class AsyncImageLoader {
 
     abstract public static class CoverFetcher implements AsyncImageLoader.Callbacks {
         protected ViewDataBinding binding = null;
-        boolean bindChanged = false;
+        volatile boolean bindChanged = false;
+        ImageRequest request = null;
         private final OnRebindCallback<ViewDataBinding> rebindCallbacks = new OnRebindCallback<ViewDataBinding>() {
             @Override
             public boolean onPreBind(ViewDataBinding binding) {
                 bindChanged = true;
+                cancel(CoverFetcher.this);
                 return super.onPreBind(binding);
             }
 
             @Override
             public void onCanceled(ViewDataBinding binding) {
                 super.onCanceled(binding);
+                bindChanged = true;
+                cancel(CoverFetcher.this);
             }
 
             @Override
@@ -213,6 +343,14 @@ public class AsyncImageLoader {
             }
         }
 
+        /**
+         * @return the key identifying the image, so that identical requests share one decode.
+         * null disables sharing.
+         */
+        protected String getRequestKey() {
+            return null;
+        }
+
         protected void clear() {
             if (binding != null) {
                 this.binding.removeOnRebindCallback(rebindCallbacks);
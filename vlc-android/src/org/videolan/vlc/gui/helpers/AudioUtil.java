@@ -46,6 +46,7 @@ import org.videolan.vlc.util.AndroidDevices;
 import org.videolan.vlc.util.HttpImageLoader;
 import org.videolan.vlc.util.MurmurHash;
 import org.videolan.vlc.util.Permissions;
+import org.videolan.vlc.util.SingleFlight;
 import org.videolan.vlc.util.Util;
 
 import java.io.BufferedOutputStream;
@@ -61,6 +62,9 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class AudioUtil {
@@ -78,6 +82,15 @@ public class AudioUtil {
      * Cover caching directory
      */
     private static AtomicReference<String> COVER_DIR = new AtomicReference<>();
+    /**
+     * Cover lookups in progress, by cache path
+     */
+    private static final SingleFlight<String, Bitmap> sCoverRequests = new SingleFlight<>();
+    /**
+     * Cache paths of albums without cover, with the time of the lookup
+     */
+    private static final Map<String, Long> sMissingCovers = new ConcurrentHashMap<>();
+    private static final long MISSING_COVER_TTL = 24 * 60 * 60 * 1000L;
 //    /**
 //     * User-defined playlist storage directory
 //     */
@@ -150,12 +163,27 @@ public class AudioUtil {
         }
     }
 
+    /**
+     * The cache folders are set by a startup task, wait for it if it is not done yet
+     */
+    private static String getArtDir() {
+        VLCApplication.getStartup().require("cache_folder");
+        return ART_DIR.get();
+    }
+
+    private static String getCoverDir() {
+        VLCApplication.getStartup().require("cache_folder");
+        return COVER_DIR.get();
+    }
+
     public static void clearCacheFolders() {
-        for(String path : Arrays.asList(ART_DIR.get(), COVER_DIR.get())) {
+        for(String path : Arrays.asList(getArtDir(), getCoverDir())) {
             File file = new File(path);
             if (file.exists())
                 deleteContent(file, false);
         }
+        BitmapCache.getInstance().clearDiskCache();
+        sMissingCovers.clear();
     }
 
     private static void deleteContent(File dir, boolean deleteDir) {
@@ -220,10 +248,10 @@ public class AudioUtil {
                     titleHash = "0" + titleHash;
                 }
                 /* Use generated hash to find art */
-                artworkURL = ART_DIR.get() + "/arturl/" + titleHash + "/art.png";
+                artworkURL = getArtDir() + "/arturl/" + titleHash + "/art.png";
             } else {
                 /* Otherwise, it was cached by artist and album */
-                artworkURL = ART_DIR.get() + "/artistalbum/" + mArtist + "/" + mAlbum + "/art.png";
+                artworkURL = getArtDir() + "/artistalbum/" + mArtist + "/" + mAlbum + "/art.png";
             }
 
             return artworkURL;
@@ -279,7 +307,7 @@ public class AudioUtil {
 
     private static String getCoverCachePath(Context context, MediaWrapper media, int width) {
         final int hash = MurmurHash.hash32(MediaUtils.getMediaArtist(context, media) + MediaUtils.getMediaAlbum(context, media));
-        return COVER_DIR.get() + (hash >= 0 ? "" + hash : "m" + (-hash)) + "_" + width;
+        return getCoverDir() + (hash >= 0 ? "" + hash : "m" + (-hash)) + "_" + width;
     }
 
     public static Bitmap getCoverFromMemCache(Context context, MediaWrapper media, int width) {
@@ -295,14 +323,12 @@ public class AudioUtil {
         return cover;
     }
 
-    @SuppressLint("NewApi")
-    public synchronized static Bitmap getCover(Context context, MediaWrapper media, int width) {
-        BitmapCache cache = BitmapCache.getInstance();
-        String coverPath = null;
-        Bitmap cover = null;
-        String cachePath = null;
-        File cacheFile = null;
-
+    /**
+     * Resolve the cover of an album, lookups for the same album and width are done once
+     * and shared between the callers while independent albums are resolved in parallel.
+     */
+    @WorkerThread
+    public static Bitmap getCover(final Context context, final MediaWrapper media, final int width) {
         if (width <= 0) {
             Log.e(TAG, "Invalid cover width requested");
             return null;
@@ -312,12 +338,47 @@ public class AudioUtil {
         if (!AndroidDevices.hasExternalStorage())
             return null;
 
+        if (media.getArtist() == null || media.getAlbum() == null)
+            return resolveCover(context, media, width, null);
+
+        final String cachePath = getCoverCachePath(context, media, width);
+        // try to get the cover from the LRUCache first
+        final Bitmap cover = BitmapCache.getInstance().getBitmapFromMemCache(cachePath);
+        if (cover != null)
+            return cover;
+        if (isMissingCover(cachePath))
+            return null;
+        return sCoverRequests.run(cachePath, new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return resolveCover(context, media, width, cachePath);
+            }
+        });
+    }
+
+    /**
+     * Albums without cover are remembered for some time, so that they are not looked up
+     * on every bind. A missing cover is recorded in memory and as an empty cache file.
+     */
+    private static boolean isMissingCover(String cachePath) {
+        final Long time = sMissingCovers.get(cachePath);
+        if (time == null) return false;
+        if (System.currentTimeMillis() - time < MISSING_COVER_TTL) return true;
+        sMissingCovers.remove(cachePath);
+        return false;
+    }
+
+    @SuppressLint("NewApi")
+    private static Bitmap resolveCover(Context context, MediaWrapper media, int width, String cachePath) {
+        BitmapCache cache = BitmapCache.getInstance();
+        String coverPath = null;
+        Bitmap cover = null;
+        File cacheFile = null;
+
         try {
             // try to load from cache
-            if (media.getArtist() != null && media.getAlbum() != null) {
-                cachePath = getCoverCachePath(context, media, width);
-
-                // try to get the cover from the LRUCache first
+            if (cachePath != null) {
+                // a previous request may have just resolved it
                 cover = cache.getBitmapFromMemCache(cachePath);
                 if (cover != null)
                     return cover;
@@ -327,6 +388,10 @@ public class AudioUtil {
                 if (cacheFile.exists()) {
                     if (cacheFile.length() > 0)
                         coverPath = cachePath;
+                    else if (System.currentTimeMillis() - cacheFile.lastModified() < MISSING_COVER_TTL) {
+                        sMissingCovers.put(cachePath, cacheFile.lastModified());
+                        return null;
+                    }
                 }
             } else
 
@@ -348,7 +413,8 @@ public class AudioUtil {
             // store cover into both cache
             if (cachePath != null) {
                 writeBitmap(cover, cachePath);
-                cache.addBitmapToMemCache(cachePath, cover);
+                if (cover != null) cache.addBitmapToMemCache(cachePath, cover);
+                else sMissingCovers.put(cachePath, System.currentTimeMillis());
             }
 
         } catch (Exception e) {
@@ -363,6 +429,7 @@ public class AudioUtil {
             File file = new File(path);
             if (file.exists() && file.length() > 0)
                 return;
+            // an empty file records a missing cover
             out = new BufferedOutputStream(new FileOutputStream(file), 4096);
             if (bitmap != null)
                 bitmap.compress(CompressFormat.JPEG, 90, out);
@@ -378,10 +445,17 @@ public class AudioUtil {
         if (path == null)
             return null;
         if (path.startsWith("http"))
-            return HttpImageLoader.downloadBitmap(path);
+            return HttpImageLoader.downloadBitmap(path, width);
         if (path.startsWith("file"))
             path = path.substring(7);
-        Bitmap cover = null;
+        final BitmapCache cache = BitmapCache.getInstance();
+
+        // Pre-scaled copy from a previous session
+        Bitmap cover = cache.getBitmapFromDiskCache(path, width);
+        if (cover != null) {
+            cache.addBitmapToMemCache(path, cover);
+            return cover;
+        }
         BitmapFactory.Options options = new BitmapFactory.Options();
 
         /* Get the resolution of the bitmap without allocating the memory */
@@ -399,8 +473,9 @@ public class AudioUtil {
             }
 
             // Decode the file (with memory allocation this time)
-            cover = BitmapFactory.decodeFile(path, options);
-            BitmapCache.getInstance().addBitmapToMemCache(path, cover);
+            cover = cache.decodeFile(path, options);
+            cache.addBitmapToMemCache(path, cover);
+            if (cover != null) cache.addBitmapToDiskCache(path, width, cover);
         }
         return cover;
     }
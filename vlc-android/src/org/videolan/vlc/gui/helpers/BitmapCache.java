@@ -20,31 +20,55 @@
 
 package org.videolan.vlc.gui.helpers;
 
-import android.annotation.TargetApi;
+import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.os.Build;
-import androidx.collection.LruCache;
+import androidx.annotation.WorkerThread;
 import android.util.Log;
 
 import org.videolan.vlc.BuildConfig;
+import org.videolan.vlc.VLCApplication;
+import org.videolan.vlc.util.SegmentedLruCache;
 import org.videolan.vlc.util.Strings;
 
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class BitmapCache {
 
     private final static String TAG = "VLC/BitmapCache";
 
-    private static BitmapCache mInstance;
-    private final LruCache<String, Bitmap> mMemCache;
+    private final static String DISK_CACHE_DIR = "bitmaps";
+    private final static long DISK_CACHE_SIZE = 50 * 1024 * 1024;
+    private final static int MAX_REUSABLE_BITMAPS = 16;
+    private final static int CONCURRENCY_LEVEL = 8;
+
+    private static volatile BitmapCache mInstance;
+    private final SegmentedLruCache<String, Bitmap> mMemCache;
+    private volatile BitmapDiskCache mDiskCache;
+    /* Bitmaps known not to be shown, candidates for BitmapFactory.Options.inBitmap, eldest first.
+     * Bitmaps evicted from the memory cache may still be shown by a view, they are never reused. */
+    private final ArrayDeque<SoftReference<Bitmap>> mReusableBitmaps = new ArrayDeque<>();
+
+    private final AtomicLong mMemHits = new AtomicLong();
+    private final AtomicLong mMemMisses = new AtomicLong();
+    private final AtomicLong mDiskHits = new AtomicLong();
+    private final AtomicLong mDiskMisses = new AtomicLong();
 
-    public synchronized static BitmapCache getInstance() {
-        if (mInstance == null)
-            mInstance = new BitmapCache();
+    public static BitmapCache getInstance() {
+        if (mInstance == null) {
+            synchronized (BitmapCache.class) {
+                if (mInstance == null)
+                    mInstance = new BitmapCache();
+            }
+        }
         return mInstance;
     }
 
-    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
     private BitmapCache() {
 
         // Use 20% of the available memory for this memory cache.
@@ -53,28 +77,30 @@ public class BitmapCache {
         if (BuildConfig.DEBUG)
             Log.i(TAG, "LRUCache size set to " +  Strings.readableSize(cacheSize));
 
-        mMemCache = new LruCache<String, Bitmap>((int) cacheSize) {
-
+        mMemCache = new SegmentedLruCache<>(cacheSize, CONCURRENCY_LEVEL, new SegmentedLruCache.Weigher<String, Bitmap>() {
             @Override
-            protected int sizeOf(String key, Bitmap value) {
+            public int weightOf(String key, Bitmap value) {
                 return value.getRowBytes() * value.getHeight();
             }
-        };
+        });
     }
 
-    public synchronized Bitmap getBitmapFromMemCache(String key) {
-        final Bitmap b = mMemCache.get(key);
+    public Bitmap getBitmapFromMemCache(String key) {
+        final Bitmap b = key != null ? mMemCache.get(key) : null;
         if (b == null){
-            mMemCache.remove(key);
+            mMemMisses.incrementAndGet();
             return null;
         }
+        mMemHits.incrementAndGet();
         return b;
     }
 
-    public synchronized void addBitmapToMemCache(String key, Bitmap bitmap) {
-        if (key != null && bitmap != null && getBitmapFromMemCache(key) == null) {
-            mMemCache.put(key, bitmap);
-        }
+    public void addBitmapToMemCache(String key, Bitmap bitmap) {
+        if (key != null && bitmap != null) mMemCache.putIfAbsent(key, bitmap);
+    }
+
+    public void removeBitmapFromMemCache(String key) {
+        if (key != null) mMemCache.remove(key);
     }
 
     private Bitmap getBitmapFromMemCache(int resId) {
@@ -85,8 +111,154 @@ public class BitmapCache {
         addBitmapToMemCache("res:" + resId, bitmap);
     }
 
-    public synchronized void clear() {
-        mMemCache.evictAll();
+    public void clear() {
+        mMemCache.clear();
+        synchronized (mReusableBitmaps) {
+            mReusableBitmaps.clear();
+        }
+    }
+
+    private BitmapDiskCache getDiskCache() {
+        if (mDiskCache == null) {
+            synchronized (this) {
+                if (mDiskCache == null) {
+                    final Context ctx = VLCApplication.getAppContext();
+                    if (ctx == null) return null;
+                    mDiskCache = new BitmapDiskCache(new File(ctx.getCacheDir(), DISK_CACHE_DIR), DISK_CACHE_SIZE);
+                }
+            }
+        }
+        return mDiskCache;
+    }
+
+    /**
+     * Decode a pre-scaled image from the disk cache
+     * @param mrl artwork MRL of the image
+     * @param width the width the image has been scaled to
+     * @return the decoded Bitmap or null if it is not cached
+     */
+    @WorkerThread
+    public Bitmap getBitmapFromDiskCache(String mrl, int width) {
+        final BitmapDiskCache diskCache = mrl != null ? getDiskCache() : null;
+        final File file = diskCache != null ? diskCache.get(mrl, width) : null;
+        if (file == null) {
+            mDiskMisses.incrementAndGet();
+            return null;
+        }
+        final String path = file.getPath();
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        final Bitmap bitmap = decodeFile(path, options);
+        if (bitmap == null) {
+            diskCache.remove(file.getName());
+            file.delete();
+            mDiskMisses.incrementAndGet();
+        } else mDiskHits.incrementAndGet();
+        return bitmap;
+    }
+
+    /**
+     * Store the image on disk, scaled down to the requested width
+     */
+    @WorkerThread
+    public void addBitmapToDiskCache(String mrl, int width, Bitmap bitmap) {
+        if (mrl == null || bitmap == null) return;
+        final BitmapDiskCache diskCache = getDiskCache();
+        if (diskCache == null) return;
+        if (width > 0 && bitmap.getWidth() > width) {
+            final int height = Math.max(1, (int) (bitmap.getHeight() * (width / (double) bitmap.getWidth())));
+            final Bitmap scaled;
+            try {
+                scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+            } catch (OutOfMemoryError e) {
+                return;
+            }
+            diskCache.put(mrl, width, scaled);
+            // The scaled copy is only written, it can back the next decode
+            if (scaled != bitmap) addReusableBitmap(scaled);
+            return;
+        }
+        diskCache.put(mrl, width, bitmap);
+    }
+
+    @WorkerThread
+    public void clearDiskCache() {
+        final BitmapDiskCache diskCache = getDiskCache();
+        if (diskCache != null) diskCache.clear();
+    }
+
+    /**
+     * Decode a file, trying to reuse a released Bitmap for the allocation.
+     * options must have been filled by a previous inJustDecodeBounds pass.
+     */
+    @WorkerThread
+    public Bitmap decodeFile(String path, BitmapFactory.Options options) {
+        addInBitmapOptions(options);
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // inBitmap could not be reused, decode again with a new allocation
+            options.inBitmap = null;
+            try {
+                return BitmapFactory.decodeFile(path, options);
+            } catch (OutOfMemoryError oom) {
+                return null;
+            }
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+    }
+
+    private void addInBitmapOptions(BitmapFactory.Options options) {
+        options.inMutable = true;
+        final Bitmap inBitmap = getBitmapFromReusableSet(options);
+        if (inBitmap != null) options.inBitmap = inBitmap;
+    }
+
+    /**
+     * Give back a bitmap which is neither shown nor cached, so that its allocation can be reused
+     */
+    public void addReusableBitmap(Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled()) return;
+        synchronized (mReusableBitmaps) {
+            if (mReusableBitmaps.size() >= MAX_REUSABLE_BITMAPS) mReusableBitmaps.pollFirst();
+            mReusableBitmaps.addLast(new SoftReference<>(bitmap));
+        }
+    }
+
+    private Bitmap getBitmapFromReusableSet(BitmapFactory.Options options) {
+        synchronized (mReusableBitmaps) {
+            final Iterator<SoftReference<Bitmap>> it = mReusableBitmaps.iterator();
+            while (it.hasNext()) {
+                final Bitmap item = it.next().get();
+                if (item != null && item.isMutable() && !item.isRecycled()) {
+                    if (BitmapUtil.canUseForInBitmap(item, options)) {
+                        it.remove();
+                        return item;
+                    }
+                } else it.remove();
+            }
+        }
+        return null;
+    }
+
+    public long getMemHitCount() {
+        return mMemHits.get();
+    }
+
+    public long getMemMissCount() {
+        return mMemMisses.get();
+    }
+
+    public long getDiskHitCount() {
+        return mDiskHits.get();
+    }
+
+    public long getDiskMissCount() {
+        return mDiskMisses.get();
     }
 
     public static Bitmap getFromResource(Resources res, int resId) {
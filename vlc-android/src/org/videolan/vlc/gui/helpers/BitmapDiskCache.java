@@ -0,0 +1,178 @@
+/*****************************************************************************
+ * BitmapDiskCache.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.gui.helpers;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import org.videolan.vlc.BuildConfig;
+import org.videolan.vlc.util.MurmurHash;
+import org.videolan.vlc.util.Strings;
+import org.videolan.vlc.util.Util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent tier of {@link BitmapCache}.
+ * Stores already scaled down images, encoded as JPEG, keyed by artwork MRL and target width.
+ * Entries are evicted in LRU order once the directory grows over the configured size.
+ */
+class BitmapDiskCache {
+
+    private final static String TAG = "VLC/BitmapDiskCache";
+    private final static String TMP_SUFFIX = ".tmp";
+    private final static int JPEG_QUALITY = 85;
+
+    private final File mDirectory;
+    private final long mMaxSize;
+    /* file name -> file size, in access order */
+    private final LinkedHashMap<String, Long> mIndex = new LinkedHashMap<>(64, 0.75f, true);
+    private long mSize = 0L;
+    private boolean mIndexed = false;
+
+    BitmapDiskCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+
+    static String getFileName(String mrl, int width) {
+        final long hash = MurmurHash.hash64(mrl);
+        return Long.toHexString(hash) + "_" + width;
+    }
+
+    /**
+     * @return the cached file for this key, or null if it is not available
+     */
+    @WorkerThread
+    File get(String mrl, int width) {
+        final String name = getFileName(mrl, width);
+        synchronized (this) {
+            ensureIndex();
+            if (mIndex.get(name) == null) return null;
+        }
+        final File file = new File(mDirectory, name);
+        if (!file.exists()) {
+            remove(name);
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    @WorkerThread
+    void put(String mrl, int width, Bitmap bitmap) {
+        if (bitmap == null) return;
+        final String name = getFileName(mrl, width);
+        synchronized (this) {
+            ensureIndex();
+            if (mIndex.containsKey(name)) return;
+        }
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) return;
+        final File tmp = new File(mDirectory, name + "." + Thread.currentThread().getId() + TMP_SUFFIX);
+        final File file = new File(mDirectory, name);
+        OutputStream out = null;
+        boolean success = false;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(tmp), 8192);
+            success = bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to write " + name + ": " + e.getMessage());
+        } finally {
+            Util.close(out);
+        }
+        if (!success || !tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        synchronized (this) {
+            final Long previous = mIndex.put(name, file.length());
+            if (previous != null) mSize -= previous;
+            mSize += file.length();
+            trimToSize();
+        }
+    }
+
+    synchronized void remove(String name) {
+        final Long size = mIndex.remove(name);
+        if (size != null) mSize -= size;
+    }
+
+    @WorkerThread
+    synchronized void clear() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        mIndex.clear();
+        mSize = 0L;
+    }
+
+    synchronized long size() {
+        return mSize;
+    }
+
+    private void trimToSize() {
+        final Iterator<Map.Entry<String, Long>> it = mIndex.entrySet().iterator();
+        while (mSize > mMaxSize && it.hasNext()) {
+            final Map.Entry<String, Long> eldest = it.next();
+            new File(mDirectory, eldest.getKey()).delete();
+            mSize -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    /**
+     * Rebuild the LRU index from the directory content, oldest files first.
+     */
+    private void ensureIndex() {
+        if (mIndexed) return;
+        mIndexed = true;
+        final File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                final long l1 = f1.lastModified(), l2 = f2.lastModified();
+                return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TMP_SUFFIX)) {
+                file.delete();
+                continue;
+            }
+            final long length = file.length();
+            mIndex.put(file.getName(), length);
+            mSize += length;
+        }
+        trimToSize();
+        if (BuildConfig.DEBUG)
+            Log.i(TAG, "Disk cache indexed: " + mIndex.size() + " entries, " + Strings.readableSize(mSize));
+    }
+}
@@ -0,0 +1,73 @@
+/*****************************************************************************
+ * PagedObjectAdapter.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.gui.tv;
+
+import androidx.leanback.widget.ObjectAdapter;
+import androidx.leanback.widget.Presenter;
+import androidx.paging.PagedList;
+
+/**
+ * Leanback adapter showing a PagedList built without placeholders: the list grows as the
+ * items bound get close to its end.
+ */
+public class PagedObjectAdapter<T> extends ObjectAdapter {
+
+    private final PagedList<T> mList;
+    private final int mOffset;
+
+    private final PagedList.Callback mCallback = new PagedList.Callback() {
+        @Override
+        public void onChanged(int position, int count) {
+            notifyItemRangeChanged(Math.max(0, position - mOffset), count);
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(Math.max(0, position - mOffset), count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(Math.max(0, position - mOffset), count);
+        }
+    };
+
+    /**
+     * @param offset number of leading items of the list which are not shown
+     */
+    public PagedObjectAdapter(Presenter presenter, PagedList<T> list, int offset) {
+        super(presenter);
+        mList = list;
+        mOffset = offset;
+        list.addWeakCallback(null, mCallback);
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, mList.size() - mOffset);
+    }
+
+    @Override
+    public Object get(int position) {
+        mList.loadAround(position + mOffset);
+        return mList.get(position + mOffset);
+    }
+}
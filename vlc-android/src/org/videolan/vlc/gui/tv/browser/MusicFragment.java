@@ -31,6 +31,7 @@ import androidx.leanback.widget.OnItemViewClickedListener;
 import androidx.leanback.widget.Presenter;
 import androidx.leanback.widget.Row;
 import androidx.leanback.widget.RowPresenter;
+import androidx.paging.PagedList;
 import android.text.TextUtils;
 
 import org.videolan.medialibrary.media.Artist;
@@ -39,12 +40,16 @@ import org.videolan.medialibrary.media.MediaLibraryItem;
 import org.videolan.medialibrary.media.MediaWrapper;
 import org.videolan.vlc.R;
 import org.videolan.vlc.VLCApplication;
+import org.videolan.vlc.gui.tv.CardPresenter;
+import org.videolan.vlc.gui.tv.PagedObjectAdapter;
 import org.videolan.vlc.gui.tv.TvUtil;
 import org.videolan.vlc.gui.tv.browser.interfaces.BrowserActivityInterface;
+import org.videolan.vlc.media.MedialibraryDataSource;
 import org.videolan.vlc.util.Constants;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
 public class MusicFragment extends MediaLibBrowserFragment implements OnItemViewClickedListener {
@@ -65,8 +70,28 @@ public class MusicFragment extends MediaLibBrowserFragment implements OnItemView
     public static final long CATEGORY_P2P_SONGS = 5;
     ///ace
 
+    private static final int PAGE_SIZE = 40;
+    private static final PagedList.Config PAGED_CONFIG = new PagedList.Config.Builder()
+            .setPageSize(PAGE_SIZE)
+            .setEnablePlaceholders(false)
+            .build();
+    private static final Executor MAIN_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            VLCApplication.runOnMainThread(command);
+        }
+    };
+    private static final Executor BACKGROUND_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            VLCApplication.runBackground(command);
+        }
+    };
+
     private volatile AsyncAudioUpdate mUpdater = null;
     MediaLibraryItem[] mDataList;
+    /* All artists and albums are paged, only the cards shown are loaded */
+    PagedList<? extends MediaLibraryItem> mPagedList;
 
     long mCategory;
     long mType;
@@ -141,6 +166,13 @@ public class MusicFragment extends MediaLibBrowserFragment implements OnItemView
             TvUtil.openAudioCategory(mContext, mediaLibraryItem);
     }
 
+    private static <T extends MediaLibraryItem> PagedList<T> buildPagedList(MedialibraryDataSource.Factory<T> factory) {
+        return new PagedList.Builder<>(factory.create(), PAGED_CONFIG)
+                .setFetchExecutor(BACKGROUND_EXECUTOR)
+                .setNotifyExecutor(MAIN_EXECUTOR)
+                .build();
+    }
+
     public class AsyncAudioUpdate extends AsyncTask<Void, MediaLibraryItem[], String> {
 
         AsyncAudioUpdate() {}
@@ -155,14 +187,15 @@ public class MusicFragment extends MediaLibBrowserFragment implements OnItemView
         @Override
         protected String doInBackground(Void... params) {
             String title;
+            mPagedList = null;
 
             if (CATEGORY_ARTISTS == mCategory) {
-                mDataList = mMediaLibrary.getArtists(VLCApplication.getSettings().getBoolean(Constants.KEY_ARTISTS_SHOW_ALL, false));
+                mPagedList = buildPagedList(MedialibraryDataSource.artists(VLCApplication.getSettings().getBoolean(Constants.KEY_ARTISTS_SHOW_ALL, false)));
                 title = getString(R.string.artists);
             } else if (CATEGORY_ALBUMS == mCategory){
                 title = mCurrentItem == null ?getString(R.string.albums) :  mCurrentItem.getTitle();
                 if (mCurrentItem == null)
-                    mDataList = mMediaLibrary.getAlbums();
+                    mPagedList = buildPagedList(MedialibraryDataSource.albums());
                 else if (mCurrentItem.getItemType() == MediaLibraryItem.TYPE_ARTIST)
                     mDataList = ((Artist)mCurrentItem).getAlbums();
                 else if (mCurrentItem.getItemType() == MediaLibraryItem.TYPE_GENRE)
@@ -186,6 +219,12 @@ public class MusicFragment extends MediaLibBrowserFragment implements OnItemView
         }
 
         protected void onProgressUpdate(MediaLibraryItem[]... datalist){
+            if (mPagedList != null) {
+                final PagedList<? extends MediaLibraryItem> list = mPagedList;
+                final int offset = list.size() > 1 && TextUtils.isEmpty(list.get(0).getTitle()) ? 1 : 0;
+                setAdapter(new PagedObjectAdapter<>(new CardPresenter(mContext), list, offset));
+                return;
+            }
             if(datalist == null || datalist.length == 0 || datalist[0] == null) {
                 return;
             }
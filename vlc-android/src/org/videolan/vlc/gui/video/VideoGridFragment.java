@@ -55,6 +55,7 @@ import org.acestream.sdk.AceStreamManager;
 import org.acestream.sdk.utils.Logger;
 import org.videolan.medialibrary.Medialibrary;
 import org.videolan.medialibrary.interfaces.MediaAddedCb;
+import org.videolan.medialibrary.interfaces.MediaDeletedCb;
 import org.videolan.medialibrary.interfaces.MediaUpdatedCb;
 import org.videolan.medialibrary.media.MediaLibraryItem;
 import org.videolan.medialibrary.media.MediaWrapper;
@@ -72,16 +73,17 @@ import org.videolan.vlc.gui.view.SwipeRefreshLayout;
 import org.videolan.vlc.interfaces.Filterable;
 import org.videolan.vlc.interfaces.IEventsHandler;
 import org.videolan.vlc.media.MediaGroup;
+import org.videolan.vlc.media.MediaIndex;
 import org.videolan.vlc.media.MediaUtils;
 import org.videolan.vlc.util.AceStreamUtils;
 import org.videolan.vlc.util.Constants;
+import org.videolan.vlc.util.MediaLibraryItemComparator;
 import org.videolan.vlc.util.Util;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
-public class VideoGridFragment extends SortableFragment<VideoListAdapter> implements MediaUpdatedCb, SwipeRefreshLayout.OnRefreshListener, MediaAddedCb, Filterable, IEventsHandler {
+public class VideoGridFragment extends SortableFragment<VideoListAdapter> implements MediaUpdatedCb, SwipeRefreshLayout.OnRefreshListener, MediaAddedCb, MediaDeletedCb, Filterable, IEventsHandler {
 
     private final static String TAG = "VLC/VideoListFragment";
 
@@ -99,6 +101,10 @@ public class VideoGridFragment extends SortableFragment<VideoListAdapter> implem
     private int mCategory = -1;
     private View mSearchButtonView;
     private DividerItemDecoration mDividerItemDecoration;
+    /* Library content of this view, before grouping. Unused when showing a group by name */
+    private final MediaIndex<MediaWrapper> mIndex = new MediaIndex<>(new MediaLibraryItemComparator(VideoListAdapter.class));
+    private volatile boolean mIndexLoaded = false;
+    private volatile int mMinGroupLength = 6;
 
     /* All subclasses of Fragment must include a public empty constructor. */
     public VideoGridFragment() { }
@@ -198,6 +204,8 @@ public class VideoGridFragment extends SortableFragment<VideoListAdapter> implem
         } else {
             mMediaLibrary.removeMediaUpdatedCb();
             mMediaLibrary.removeMediaAddedCb();
+            mMediaLibrary.removeMediaDeletedCb();
+            mIndexLoaded = false;
             unregisterForContextMenu(mGridView);
             restart = true;
         }
@@ -217,6 +225,7 @@ public class VideoGridFragment extends SortableFragment<VideoListAdapter> implem
         if (mGroup == null) {
             mMediaLibrary.setMediaUpdatedCb(this, Medialibrary.FLAG_MEDIA_UPDATED_VIDEO);
             mMediaLibrary.setMediaAddedCb(this, Medialibrary.FLAG_MEDIA_ADDED_VIDEO);
+            mMediaLibrary.setMediaDeletedCb(this);
         }
         if (!isHidden()) {
             updateListDelayed();
@@ -381,12 +390,76 @@ public class VideoGridFragment extends SortableFragment<VideoListAdapter> implem
 
     @Override
     public void onMediaUpdated(final MediaWrapper[] mediaList) {
-        mAdapter.add(mediaList);
+        if (!mIndexLoaded) return;
+        syncIndexSort();
+        final MediaIndex.Snapshot<MediaWrapper> snapshot = mIndex.addOrUpdate(mediaList);
+        if (snapshot != null) showSnapshot(snapshot);
     }
 
     @Override
     public void onMediaAdded(final MediaWrapper[] mediaList) {
-        mAdapter.add(mediaList);
+        onMediaUpdated(mediaList);
+    }
+
+    @Override
+    public void onMediaDeleted(long[] ids) {
+        if (!mIndexLoaded) return;
+        final MediaIndex.Snapshot<MediaWrapper> snapshot = mIndex.remove(ids);
+        if (snapshot != null) showSnapshot(snapshot);
+    }
+
+    /**
+     * Whether the media received in callbacks belong to this view
+     */
+    private boolean acceptMedia(MediaWrapper media) {
+        if (mGroupParentId != 0) return media.getParentMediaId() == mGroupParentId;
+        if (media.getType() != MediaWrapper.TYPE_VIDEO) return false;
+        if (mCategory == MediaWrapper.CATEGORY_P2P_VIDEO) return media.isP2PItem() && !media.isLive();
+        if (mCategory == MediaWrapper.CATEGORY_P2P_STREAM) return media.isP2PItem() && media.isLive();
+        return !media.isP2PItem();
+    }
+
+    private boolean isGrouped() {
+        return mGroupParentId == 0 && mMinGroupLength != 0;
+    }
+
+    private void syncIndexSort() {
+        final int sortBy = mAdapter.getSortBy();
+        mIndex.sortBy(sortBy == MediaLibraryItemComparator.SORT_DEFAULT ? mAdapter.getDefaultSort() : sortBy, mAdapter.getSortDirection());
+    }
+
+    /**
+     * Flat lists are given as is to the adapter, which applies the recorded changes without diffing.
+     * Grouped lists are grouped again from the index, without querying the library.
+     */
+    private void showSnapshot(final MediaIndex.Snapshot<MediaWrapper> snapshot) {
+        if (!isGrouped()) {
+            showList(snapshot, snapshot);
+            return;
+        }
+        VLCApplication.runBackground(new Runnable() {
+            @Override
+            public void run() {
+                if (snapshot != mIndex.getSnapshot()) return;
+                final MediaWrapper[] items = snapshot.toArray(new MediaWrapper[snapshot.size()]);
+                mMediaLibrary.loadGroupTitles(items);
+                final List<MediaWrapper> displayList = new ArrayList<>();
+                for (MediaGroup item : MediaGroup.group(items, mMinGroupLength)) displayList.add(item.getMedia());
+                showList(snapshot, displayList);
+            }
+        });
+    }
+
+    /**
+     * Updates may be computed on different threads, only the latest state of the index is shown.
+     */
+    private void showList(final MediaIndex.Snapshot<MediaWrapper> snapshot, final List<MediaWrapper> displayList) {
+        VLCApplication.runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                if (snapshot == mIndex.getSnapshot()) mAdapter.update(displayList);
+            }
+        });
     }
 
     @MainThread
@@ -420,31 +493,37 @@ public class VideoGridFragment extends SortableFragment<VideoListAdapter> implem
                     }
                 }
 
-                final List<MediaWrapper> displayList = new ArrayList<>();
-                if(mGroupParentId != 0) {
-                    // Items are already filtered so just add all of them.
-                    displayList.addAll(Arrays.asList(itemList));
-                }
-                else if (mGroup != null) {
+                if (mGroup != null) {
+                    final List<MediaWrapper> displayList = new ArrayList<>();
                     int groupOffset = mGroup.startsWith("the") ? 4 : 0;
                     final String groupTitle = mGroup.substring(groupOffset);
 
+                    mMediaLibrary.loadGroupTitles(itemList);
                     for (MediaWrapper item : itemList) {
                         String title = item.getTitle().substring(item.getTitle().toLowerCase().startsWith("the") ? 4 : 0);
-                        if (title.toLowerCase().startsWith(groupTitle.toLowerCase()) || TextUtils.equals(mGroup, item.getMetaString(MediaWrapper.META_GROUP_NAME)))
+                        if (title.toLowerCase().startsWith(groupTitle.toLowerCase()) || TextUtils.equals(mGroup, item.getGroupTitle()))
                             displayList.add(item);
                     }
+                    VLCApplication.runOnMainThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            mAdapter.update(displayList);
+                        }
+                    });
                 } else {
                     final SharedPreferences preferences = ctx != null ? PreferenceManager.getDefaultSharedPreferences(ctx) : null;
-                    final int minGroupLengthValue = preferences != null ? Integer.valueOf(preferences.getString("video_min_group_length", "6")) : 6;
-                    for (MediaGroup item : MediaGroup.group(itemList, minGroupLengthValue)) displayList.add(item.getMedia());
+                    mMinGroupLength = preferences != null ? Integer.valueOf(preferences.getString("video_min_group_length", "6")) : 6;
+                    // Later changes are applied from the medialibrary callbacks
+                    mIndex.setFilter(new MediaIndex.Filter<MediaWrapper>() {
+                        @Override
+                        public boolean accept(MediaWrapper item) {
+                            return acceptMedia(item);
+                        }
+                    });
+                    syncIndexSort();
+                    showSnapshot(mIndex.reset(itemList));
+                    mIndexLoaded = true;
                 }
-                VLCApplication.runOnMainThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        mAdapter.update(displayList);
-                    }
-                });
                 mHandler.sendEmptyMessage(UNSET_REFRESHING);
             }
         });
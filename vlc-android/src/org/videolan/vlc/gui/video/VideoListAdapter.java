@@ -396,12 +396,10 @@ public class VideoListAdapter extends SortableAdapter<MediaWrapper, VideoListAda
         }
 
         @Override
-        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-            final MediaWrapper oldItem = oldList.get(oldItemPosition);
-            final MediaWrapper newItem = newList.get(newItemPosition);
-            return oldItem == newItem || (oldItem.getTime() == newItem.getTime()
-                    && TextUtils.equals(oldItem.getArtworkMrl(), newItem.getArtworkMrl())
-                    && oldItem.getSeen() == newItem.getSeen());
+        public long fingerprint(MediaWrapper item) {
+            if (item == null) return 0L;
+            final long fingerprint = 31L * super.fingerprint(item) + item.getSeen();
+            return item instanceof MediaGroup ? 31L * fingerprint + ((MediaGroup) item).size() : fingerprint;
         }
 
         @Nullable
@@ -409,12 +407,17 @@ public class VideoListAdapter extends SortableAdapter<MediaWrapper, VideoListAda
         public Object getChangePayload(int oldItemPosition, int newItemPosition) {
             final MediaWrapper oldItem = oldList.get(oldItemPosition);
             final MediaWrapper newItem = newList.get(newItemPosition);
+            // Updated in place, changed fields are unknown
+            if (oldItem == newItem)
+                return null;
             if (oldItem.getTime() != newItem.getTime())
                 return UPDATE_TIME;
             if (!TextUtils.equals(oldItem.getArtworkMrl(), newItem.getArtworkMrl()))
                 return UPDATE_THUMB;
-            else
+            if (oldItem.getSeen() != newItem.getSeen() && oldItem.getType() != MediaWrapper.TYPE_GROUP)
                 return UPDATE_SEEN;
+            // title, length or group size
+            return null;
         }
     }
 
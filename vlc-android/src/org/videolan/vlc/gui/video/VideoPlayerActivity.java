@@ -5605,6 +5605,8 @@ public class VideoPlayerActivity extends AppCompatActivity
 
     protected void setEngineStatus(EngineStatus status) {
         mLastEngineStatus = status;
+        if (mService != null && status != null)
+            mService.getQosSampler().onEngineStatus(status.status, status.peers, status.speedDown, status.speedUp);
         updatePlaybackStatus();
     }
 
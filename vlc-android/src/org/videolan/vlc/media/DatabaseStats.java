@@ -0,0 +1,133 @@
+/*****************************************************************************
+ * DatabaseStats.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.media;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call counts, latencies and rows touched per table, recorded without locking.
+ *
+ * Latencies are counted in buckets growing by half a power of two, so percentiles are
+ * reported as the upper bound of their bucket, within 50% of the actual value.
+ */
+public class DatabaseStats {
+
+    /* Two buckets per power of two of microseconds, up to about an hour */
+    private static final int BUCKETS = 64;
+
+    private final ConcurrentHashMap<String, Table> mTables = new ConcurrentHashMap<>();
+
+    private static class Table {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * @param startNanos {@link System#nanoTime()} when the call started
+     * @param rows number of rows read or written
+     */
+    public void record(String table, long startNanos, int rows) {
+        add(table, System.nanoTime() - startNanos, rows);
+    }
+
+    void add(String table, long nanos, int rows) {
+        Table stats = mTables.get(table);
+        if (stats == null) {
+            final Table created = new Table();
+            stats = mTables.putIfAbsent(table, created);
+            if (stats == null) stats = created;
+        }
+        stats.calls.incrementAndGet();
+        if (rows > 0) stats.rows.addAndGet(rows);
+        stats.latencies.incrementAndGet(bucket(nanos / 1000));
+    }
+
+    public long getCalls(String table) {
+        final Table stats = mTables.get(table);
+        return stats == null ? 0 : stats.calls.get();
+    }
+
+    public long getRows(String table) {
+        final Table stats = mTables.get(table);
+        return stats == null ? 0 : stats.rows.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency under which this percentile of the calls completed, in microseconds
+     */
+    public long getLatency(String table, int percentile) {
+        final Table stats = mTables.get(table);
+        if (stats == null) return 0;
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i) total += stats.latencies.get(i);
+        if (total == 0) return 0;
+        final long rank = Math.max(1, (total * percentile + 99) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += stats.latencies.get(i);
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * @return one line per table, sorted by table name
+     */
+    public List<String> dump() {
+        final TreeMap<String, Table> tables = new TreeMap<>(mTables);
+        final List<String> lines = new ArrayList<>(tables.size());
+        for (Map.Entry<String, Table> entry : tables.entrySet()) {
+            final String table = entry.getKey();
+            lines.add(String.format(Locale.US, "%s: %d calls, %d rows, p50 %.1fms, p99 %.1fms",
+                    table, getCalls(table), getRows(table),
+                    getLatency(table, 50) / 1000f, getLatency(table, 99) / 1000f));
+        }
+        return lines;
+    }
+
+    public void reset() {
+        mTables.clear();
+    }
+
+    /**
+     * Bucket 2n holds [2^n, 1.5 * 2^n) microseconds, bucket 2n + 1 holds [1.5 * 2^n, 2^(n + 1))
+     */
+    static int bucket(long micros) {
+        if (micros < 1) return 0;
+        final int log = 63 - Long.numberOfLeadingZeros(micros);
+        final int half = log > 0 ? (int) (micros >> (log - 1)) & 1 : 0;
+        return Math.min(BUCKETS - 1, log * 2 + half);
+    }
+
+    static long upperBound(int bucket) {
+        final long power = 1L << (bucket / 2);
+        return bucket % 2 == 0 ? power + power / 2 : power * 2;
+    }
+}
@@ -22,16 +22,21 @@ package org.videolan.vlc.media;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteFullException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.collection.ArrayMap;
+import androidx.collection.LongSparseArray;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -44,18 +49,32 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-
+import java.util.PriorityQueue;
+
+/**
+ * The database runs in WAL mode: readers do not take any lock and run concurrently on the
+ * connection pool, while methods writing to the database are synchronized so that writes
+ * are serialized, multi-statement edits included. Per-table statistics are available
+ * through {@link #dumpStats()}.
+ */
 public class MediaDatabase {
     public final static String TAG = "VLC/MediaDatabase";
 
     private static MediaDatabase instance;
 
     private SQLiteDatabase mDb;
+    private final ThumbnailStore mThumbnails;
+    /* Statements compiled by getStatement(), guarded by this */
+    private final ArrayMap<String, SQLiteStatement> mStatements = new ArrayMap<>();
+    private final DatabaseStats mStats = new DatabaseStats();
     private static final String DB_NAME = "vlc_database";
     private static final int DB_VERSION = 26;
     private static final int CHUNK_SIZE = 50;
@@ -65,6 +84,12 @@ public class MediaDatabase {
 
     private static final String MEDIA_TABLE_NAME = "media_table";
     private static final String MEDIA_VIRTUAL_TABLE_NAME = "media_table_fts";
+    /* Rows of the media table up to this rowid are in the search index */
+    private static final String MEDIA_SEARCH_STATE_TABLE_NAME = "media_search_state";
+    private static final String MEDIA_SEARCH_STATE_INDEXED = "indexed_rowid";
+    private static final long SEARCH_INDEX_COMPLETE = Long.MAX_VALUE;
+    /* Rows added to the search index per transaction while it is being built */
+    private static final int SEARCH_INDEX_CHUNK = 500;
     public static final String MEDIA_LOCATION = "_id"; //standard key for primary key, needed for search suggestions
     private static final String MEDIA_TIME = "time";
     private static final String MEDIA_LENGTH = "length";
@@ -92,6 +117,14 @@ public class MediaDatabase {
     private static final String PLAYLIST_MEDIA_PLAYLISTNAME = "playlist_name";
     private static final String PLAYLIST_MEDIA_MEDIALOCATION = "media_location";
     private static final String PLAYLIST_MEDIA_ORDER = "playlist_order";
+    private static final String PLAYLIST_MEDIA_ORDER_INDEX = "playlist_media_order_index";
+    /*
+     * Items are sorted by sparse ranks: an item is inserted between its neighbours without
+     * renumbering the following ones. Ranks are only rewritten when two neighbours have no
+     * room left between them, which takes about 20 inserts at the same place.
+     */
+    private static final long PLAYLIST_RANK_GAP = 1 << 20;
+    private static final String PLAYLIST_MEDIA_SORT = PLAYLIST_MEDIA_ORDER + "," + PLAYLIST_MEDIA_ID;
 
     private static final String SEARCHHISTORY_TABLE_NAME = "searchhistory_table";
     private static final String SEARCHHISTORY_DATE = "date";
@@ -125,6 +158,86 @@ public class MediaDatabase {
     private static final String NETWORK_FAV_TITLE = "title";
     private static final String NETWORK_FAV_ICON_URL = "icon_url";
 
+    private static final String THUMBNAIL_TABLE_NAME = "thumbnail_table";
+    private static final String THUMBNAIL_LOCATION = "location";
+    private static final String THUMBNAIL_HASH = "hash";
+    /* Hash recorded for medias parsed without picture */
+    private static final String THUMBNAIL_NONE = "";
+    private static final String THUMBNAIL_DIR = "thumbnails";
+    /* Pictures moved out of the media table per transaction */
+    private static final int THUMBNAIL_MIGRATION_CHUNK = 16;
+    private static final String KEY_THUMBNAILS_MIGRATED = "thumbnails_migrated";
+
+    private static final String SEARCH_COLUMNS = MEDIA_LOCATION + ", " + MEDIA_TITLE + ", " + MEDIA_ARTIST + ", "
+            + MEDIA_GENRE + ", " + MEDIA_ALBUM + ", " + MEDIA_ALBUMARTIST;
+    /* BM25 weights of the SEARCH_COLUMNS */
+    private static final double[] SEARCH_WEIGHTS = { 0.5, 10, 4, 1, 2, 2 };
+    private static final String SEARCH_QUERY = "SELECT " + MEDIA_LOCATION + "," + MEDIA_TITLE
+            + ",matchinfo(" + MEDIA_VIRTUAL_TABLE_NAME + ",'" + SearchRanking.MATCHINFO_FORMAT + "')"
+            + " FROM " + MEDIA_VIRTUAL_TABLE_NAME + " WHERE " + MEDIA_VIRTUAL_TABLE_NAME + " MATCH ?";
+    /* Contents are only read for the best results: SEARCH_LOCATIONS_QUERY */
+    private static final String SEARCH_RANK_QUERY = "SELECT docid,matchinfo(" + MEDIA_VIRTUAL_TABLE_NAME
+            + ",'" + SearchRanking.MATCHINFO_FORMAT + "') FROM " + MEDIA_VIRTUAL_TABLE_NAME
+            + " WHERE " + MEDIA_VIRTUAL_TABLE_NAME + " MATCH ?";
+    /* Format argument is a list of rowids */
+    private static final String SEARCH_LOCATIONS_QUERY = "SELECT rowid," + MEDIA_LOCATION
+            + " FROM " + MEDIA_TABLE_NAME + " WHERE rowid IN (%s)";
+    private static final int SEARCH_LOCATIONS_CHUNK = 500;
+    private static final String SEARCH_STATE_QUERY = "SELECT " + MEDIA_SEARCH_STATE_INDEXED
+            + " FROM " + MEDIA_SEARCH_STATE_TABLE_NAME;
+    private static final String SEARCH_STATE_UPDATE_QUERY = "UPDATE " + MEDIA_SEARCH_STATE_TABLE_NAME
+            + " SET " + MEDIA_SEARCH_STATE_INDEXED + "=?";
+    private static final String SEARCH_INDEX_NEXT_CHUNK_QUERY = "SELECT MAX(rowid) FROM (SELECT rowid FROM "
+            + MEDIA_TABLE_NAME + " WHERE rowid>? ORDER BY rowid LIMIT " + SEARCH_INDEX_CHUNK + ")";
+    private static final String SEARCH_INDEX_RANGE_QUERY = "INSERT INTO " + MEDIA_VIRTUAL_TABLE_NAME
+            + " (docid, " + SEARCH_COLUMNS + ") SELECT rowid, " + SEARCH_COLUMNS
+            + " FROM " + MEDIA_TABLE_NAME + " WHERE rowid>? AND rowid<=?";
+
+    /* Columns read by mediaFromCursor() */
+    private static final String MEDIA_COLUMNS = MEDIA_TIME + "," + MEDIA_LENGTH + "," + MEDIA_TYPE + ","
+            + MEDIA_TITLE + "," + MEDIA_ARTIST + "," + MEDIA_GENRE + "," + MEDIA_ALBUM + ","
+            + MEDIA_ALBUMARTIST + "," + MEDIA_WIDTH + "," + MEDIA_HEIGHT + "," + MEDIA_ARTWORKURL + ","
+            + MEDIA_AUDIOTRACK + "," + MEDIA_SPUTRACK + "," + MEDIA_TRACKNUMBER + ","
+            + MEDIA_DISCNUMBER + "," + MEDIA_LAST_MODIFIED;
+    /*
+     * Bulk reads are paged on the primary key (keyset): each chunk is a seek in the location
+     * index instead of skipping all the previous rows as with OFFSET. Constant SQL strings are
+     * compiled once and reused from the connection statement cache.
+     */
+    private static final String MEDIA_FIRST_PAGE_QUERY = "SELECT " + MEDIA_LOCATION + "," + MEDIA_COLUMNS
+            + " FROM " + MEDIA_TABLE_NAME + " ORDER BY " + MEDIA_LOCATION + " LIMIT " + CHUNK_SIZE;
+    private static final String MEDIA_NEXT_PAGE_QUERY = "SELECT " + MEDIA_LOCATION + "," + MEDIA_COLUMNS
+            + " FROM " + MEDIA_TABLE_NAME + " WHERE " + MEDIA_LOCATION + ">?"
+            + " ORDER BY " + MEDIA_LOCATION + " LIMIT " + CHUNK_SIZE;
+    private static final String VIDEO_TIME_FIRST_PAGE_QUERY = "SELECT " + MEDIA_LOCATION + "," + MEDIA_TIME
+            + " FROM " + MEDIA_TABLE_NAME + " WHERE " + MEDIA_TYPE + "=" + MediaWrapper.TYPE_VIDEO
+            + " ORDER BY " + MEDIA_LOCATION + " LIMIT " + CHUNK_SIZE;
+    private static final String VIDEO_TIME_NEXT_PAGE_QUERY = "SELECT " + MEDIA_LOCATION + "," + MEDIA_TIME
+            + " FROM " + MEDIA_TABLE_NAME + " WHERE " + MEDIA_TYPE + "=" + MediaWrapper.TYPE_VIDEO
+            + " AND " + MEDIA_LOCATION + ">?" + " ORDER BY " + MEDIA_LOCATION + " LIMIT " + CHUNK_SIZE;
+    private static final String MEDIA_BY_LOCATION_QUERY = "SELECT " + MEDIA_COLUMNS
+            + " FROM " + MEDIA_TABLE_NAME + " WHERE " + MEDIA_LOCATION + "=?";
+    private static final String MEDIA_EXISTS_QUERY = "SELECT COUNT(*) FROM " + MEDIA_TABLE_NAME
+            + " WHERE " + MEDIA_LOCATION + "=?";
+    private static final String NETWORK_FAV_EXISTS_QUERY = "SELECT COUNT(*) FROM " + NETWORK_FAV_TABLE_NAME
+            + " WHERE " + NETWORK_FAV_URI + "=?";
+    /* Format arguments are the limit and the offset, -1 for no limit */
+    private static final String PLAYLIST_ITEM_AT_QUERY = "SELECT " + PLAYLIST_MEDIA_ID + "," + PLAYLIST_MEDIA_ORDER
+            + " FROM " + PLAYLIST_MEDIA_TABLE_NAME
+            + " WHERE " + PLAYLIST_MEDIA_PLAYLISTNAME + "=? AND " + PLAYLIST_MEDIA_ID + "<>?"
+            + " ORDER BY " + PLAYLIST_MEDIA_SORT + " LIMIT %d OFFSET %d";
+    private static final String PLAYLIST_SIZE_QUERY = "SELECT COUNT(*) FROM " + PLAYLIST_MEDIA_TABLE_NAME
+            + " WHERE " + PLAYLIST_MEDIA_PLAYLISTNAME + "=? AND " + PLAYLIST_MEDIA_ID + "<>?";
+    private static final String PLAYLIST_INSERT_QUERY = "INSERT INTO " + PLAYLIST_MEDIA_TABLE_NAME + " ("
+            + PLAYLIST_MEDIA_PLAYLISTNAME + "," + PLAYLIST_MEDIA_MEDIALOCATION + "," + PLAYLIST_MEDIA_ORDER
+            + ") VALUES (?,?,?)";
+    private static final String PLAYLIST_UPDATE_RANK_QUERY = "UPDATE " + PLAYLIST_MEDIA_TABLE_NAME
+            + " SET " + PLAYLIST_MEDIA_ORDER + "=? WHERE " + PLAYLIST_MEDIA_ID + "=?";
+    private static final String PLAYLIST_DELETE_ITEM_QUERY = "DELETE FROM " + PLAYLIST_MEDIA_TABLE_NAME
+            + " WHERE " + PLAYLIST_MEDIA_ID + "=?";
+    private static final String SLAVES_QUERY = "SELECT " + SLAVES_TYPE + "," + SLAVES_PRIORITY + "," + SLAVES_URI
+            + " FROM " + SLAVES_TABLE_NAME + " WHERE " + SLAVES_MEDIA_PATH + "=?";
+
     //    public static final int INDEX_MEDIA_TABLE_NAME = 0;
 //    public static final int INDEX_MEDIA_PATH = 1;
     public static final int INDEX_MEDIA_TIME = 2;
@@ -151,9 +264,36 @@ public class MediaDatabase {
      * @param context
      */
     private MediaDatabase(Context context) {
+        this(context, DB_NAME, new File(context.getFilesDir(), THUMBNAIL_DIR));
+        VLCApplication.runBackground(new Runnable() {
+            @Override
+            public void run() {
+                migrateThumbnails();
+                updateSearchIndex();
+            }
+        });
+    }
+
+    /**
+     * @param name of the database file, null for an in-memory database
+     */
+    @VisibleForTesting
+    MediaDatabase(Context context, @Nullable String name, File thumbnailDir) {
         // create or open database
-        DatabaseHelper helper = new DatabaseHelper(context);
+        DatabaseHelper helper = new DatabaseHelper(context, name);
         this.mDb = helper.getWritableDatabase();
+        // Readers get their own connections from the pool instead of waiting for the writer
+        mDb.enableWriteAheadLogging();
+        // Replacing a media deletes the previous row, which has to be removed from the search index
+        mDb.execSQL("PRAGMA recursive_triggers='ON'");
+        mThumbnails = new ThumbnailStore(thumbnailDir);
+        // Not a version upgrade: onUpgrade drops the media table, with the pictures to migrate
+        helper.createThumbnailTableQuery(mDb);
+        // Adds the order index to existing playlist tables
+        helper.createPlaylistTablesQuery(mDb);
+        // Replaces the FTS3 index of previous versions, which is built again by updateSearchIndex()
+        if (!DatabaseHelper.hasSearchIndex(mDb))
+            resetSearchIndex();
     }
 
     public synchronized static MediaDatabase getInstance() {
@@ -165,8 +305,8 @@ public class MediaDatabase {
 
     private static class DatabaseHelper extends SQLiteOpenHelper {
 
-        public DatabaseHelper(Context context) {
-            super(context, DB_NAME, null, DB_VERSION);
+        public DatabaseHelper(Context context, String name) {
+            super(context, name, null, DB_VERSION);
         }
 
         @Override
@@ -176,7 +316,8 @@ public class MediaDatabase {
                 return super.getWritableDatabase();
             } catch(SQLiteException e) {
                 try {
-                    db = SQLiteDatabase.openOrCreateDatabase(VLCApplication.getAppContext().getDatabasePath(DB_NAME), null);
+                    db = getDatabaseName() == null ? SQLiteDatabase.create(null)
+                            : SQLiteDatabase.openOrCreateDatabase(VLCApplication.getAppContext().getDatabasePath(getDatabaseName()), null);
                 } catch(SQLiteException e2) {
                     Log.w(TAG, "SQLite database could not be created! Media library cannot be saved.");
                     db = SQLiteDatabase.create(null);
@@ -204,8 +345,7 @@ public class MediaDatabase {
             try {
                 String query = "DROP TABLE " + MEDIA_TABLE_NAME + ";";
                 db.execSQL(query);
-                query = "DROP TABLE " + MEDIA_VIRTUAL_TABLE_NAME + ";";
-                db.execSQL(query);
+                dropSearchIndexQuery(db);
             } catch(SQLiteException e)
             {
                 Log.w(TAG, "SQLite tables could not be dropped! Maybe they were missing...");
@@ -236,28 +376,53 @@ public class MediaDatabase {
                     + ");";
             db.execSQL(query);
             db.execSQL("PRAGMA recursive_triggers='ON'"); //Needed for delete trigger
-            query = "CREATE VIRTUAL TABLE "
-                    + MEDIA_VIRTUAL_TABLE_NAME + " USING FTS3 ("
-                    + MEDIA_LOCATION + ", "
-                    + MEDIA_TITLE + ", "
-                    + MEDIA_ARTIST + ", "
-                    + MEDIA_GENRE + ", "
-                    + MEDIA_ALBUM + ", "
-                    + MEDIA_ALBUMARTIST
-                    + ");";
-            db.execSQL(query);
-            query = " CREATE TRIGGER IF NOT EXISTS media_insert_trigger AFTER INSERT ON "+
-                    MEDIA_TABLE_NAME+ " BEGIN "+
-                    "INSERT INTO "+MEDIA_VIRTUAL_TABLE_NAME+" ("+MEDIA_LOCATION+", "+MEDIA_TITLE+
-                    ", "+MEDIA_ARTIST+", "+MEDIA_GENRE+", "+MEDIA_ALBUM+", "+MEDIA_ALBUMARTIST+" )"+
-                    " VALUES (new."+MEDIA_LOCATION+", new."+MEDIA_TITLE+", new."+MEDIA_ARTIST+
-                    ", new."+MEDIA_GENRE+", new."+MEDIA_ALBUM+", new."+MEDIA_ALBUMARTIST+
-                    "); END;";
-            db.execSQL(query);
-            query = " CREATE TRIGGER IF NOT EXISTS media_delete_trigger AFTER DELETE ON "+MEDIA_TABLE_NAME+ " BEGIN "+
-                    "DELETE FROM "+MEDIA_VIRTUAL_TABLE_NAME+" WHERE "+MEDIA_LOCATION+" = old."+MEDIA_LOCATION+";"+
-                    " END;";
-            db.execSQL(query);
+            createSearchIndexQuery(db, SEARCH_INDEX_COMPLETE);
+        }
+
+        /**
+         * The search index is an FTS4 table reading its contents from the media table, kept
+         * up to date by triggers for the rows already indexed.
+         *
+         * @param indexed rowid of the last media in the index, SEARCH_INDEX_COMPLETE for all
+         */
+        private static void createSearchIndexQuery(SQLiteDatabase db, long indexed) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS " + MEDIA_SEARCH_STATE_TABLE_NAME + " ("
+                    + MEDIA_SEARCH_STATE_INDEXED + " INTEGER NOT NULL);");
+            db.execSQL("DELETE FROM " + MEDIA_SEARCH_STATE_TABLE_NAME + ";");
+            db.execSQL("INSERT INTO " + MEDIA_SEARCH_STATE_TABLE_NAME + " VALUES (" + indexed + ");");
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + MEDIA_VIRTUAL_TABLE_NAME
+                    + " USING FTS4 (" + SEARCH_COLUMNS + ", content=\"" + MEDIA_TABLE_NAME + "\", prefix=\"2,3\");");
+            final String indexedRow = " <= (SELECT " + MEDIA_SEARCH_STATE_INDEXED + " FROM " + MEDIA_SEARCH_STATE_TABLE_NAME + ")";
+            final String newValues = "new." + SEARCH_COLUMNS.replace(", ", ", new.");
+            // Deletions run before the change: the index reads the old values in the media table
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS media_fts_insert AFTER INSERT ON " + MEDIA_TABLE_NAME
+                    + " WHEN new.rowid" + indexedRow + " BEGIN"
+                    + " INSERT INTO " + MEDIA_VIRTUAL_TABLE_NAME + " (docid, " + SEARCH_COLUMNS + ")"
+                    + " VALUES (new.rowid, " + newValues + "); END;");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS media_fts_delete BEFORE DELETE ON " + MEDIA_TABLE_NAME
+                    + " WHEN old.rowid" + indexedRow + " BEGIN"
+                    + " DELETE FROM " + MEDIA_VIRTUAL_TABLE_NAME + " WHERE docid=old.rowid; END;");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS media_fts_update_before BEFORE UPDATE OF " + SEARCH_COLUMNS
+                    + " ON " + MEDIA_TABLE_NAME + " WHEN old.rowid" + indexedRow + " BEGIN"
+                    + " DELETE FROM " + MEDIA_VIRTUAL_TABLE_NAME + " WHERE docid=old.rowid; END;");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS media_fts_update_after AFTER UPDATE OF " + SEARCH_COLUMNS
+                    + " ON " + MEDIA_TABLE_NAME + " WHEN new.rowid" + indexedRow + " BEGIN"
+                    + " INSERT INTO " + MEDIA_VIRTUAL_TABLE_NAME + " (docid, " + SEARCH_COLUMNS + ")"
+                    + " VALUES (new.rowid, " + newValues + "); END;");
+        }
+
+        private static void dropSearchIndexQuery(SQLiteDatabase db) {
+            // Triggers of the FTS3 index of previous versions included
+            for (String trigger : new String[] { "media_insert_trigger", "media_delete_trigger",
+                    "media_fts_insert", "media_fts_delete", "media_fts_update_before", "media_fts_update_after" })
+                db.execSQL("DROP TRIGGER IF EXISTS " + trigger + ";");
+            db.execSQL("DROP TABLE IF EXISTS " + MEDIA_VIRTUAL_TABLE_NAME + ";");
+            db.execSQL("DROP TABLE IF EXISTS " + MEDIA_SEARCH_STATE_TABLE_NAME + ";");
+        }
+
+        private static boolean hasSearchIndex(SQLiteDatabase db) {
+            return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master WHERE type='table' AND name=?",
+                    new String[] { MEDIA_SEARCH_STATE_TABLE_NAME }) > 0;
         }
 
         private void createPlaylistTablesQuery(SQLiteDatabase db) {
@@ -275,6 +440,9 @@ public class MediaDatabase {
                     PLAYLIST_MEDIA_ORDER + " INTEGER NOT NULL);";
 
             db.execSQL(createPlaylistMediaTableQuery);
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + PLAYLIST_MEDIA_ORDER_INDEX + " ON " +
+                    PLAYLIST_MEDIA_TABLE_NAME + " (" +
+                    PLAYLIST_MEDIA_PLAYLISTNAME + ", " + PLAYLIST_MEDIA_ORDER + ");");
         }
 
         private void createMRLTableQuery(SQLiteDatabase db) {
@@ -369,6 +537,14 @@ public class MediaDatabase {
             db.execSQL(createMrlTableQuery);
         }
 
+        private void createThumbnailTableQuery(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS " +
+                    THUMBNAIL_TABLE_NAME + " (" +
+                    THUMBNAIL_LOCATION + " TEXT PRIMARY KEY NOT NULL, " +
+                    THUMBNAIL_HASH + " TEXT NOT NULL" +
+                    ");");
+        }
+
         @Override
         public void onCreate(SQLiteDatabase db) {
 
@@ -405,6 +581,8 @@ public class MediaDatabase {
                 createExtSubsTableQuery(db);
 
                 createSlavesTableQuery(db);
+
+                createThumbnailTableQuery(db);
             }
         }
 
@@ -463,7 +641,7 @@ public class MediaDatabase {
      *
      * @return An array of all the playlist names
      */
-    public synchronized String[] getPlaylists() {
+    public String[] getPlaylists() {
         List<String> playlists = new ArrayList<String>();
         Cursor c = mDb.query(
                 PLAYLIST_TABLE_NAME,
@@ -518,7 +696,7 @@ public class MediaDatabase {
      * @param name Unique name of the playlist
      * @return true if playlist exists, false otherwise
      */
-    public synchronized boolean playlistExists(String name) {
+    public boolean playlistExists(String name) {
         // Check duplicates
         Cursor c = mDb.query(PLAYLIST_TABLE_NAME,
                 new String[] { PLAYLIST_NAME }, PLAYLIST_NAME + "= ?",
@@ -538,16 +716,17 @@ public class MediaDatabase {
      * @return Array containing MRLs of the playlist in order, or null on error
      */
     @Nullable
-    public synchronized String[] playlistGetItems(String playlistName) {
+    public String[] playlistGetItems(String playlistName) {
         if(!playlistExists(playlistName))
             return null;
 
+        final long start = System.nanoTime();
         Cursor c = mDb.query(
                 PLAYLIST_MEDIA_TABLE_NAME,
                 new String[] { PLAYLIST_MEDIA_MEDIALOCATION },
                 PLAYLIST_MEDIA_PLAYLISTNAME + "= ?",
                 new String[] { playlistName }, null, null,
-                PLAYLIST_MEDIA_ORDER + " ASC");
+                PLAYLIST_MEDIA_SORT);
 
         if (c != null) {
             int count = c.getCount();
@@ -558,6 +737,7 @@ public class MediaDatabase {
                 i++;
             }
             c.close();
+            mStats.record(PLAYLIST_MEDIA_TABLE_NAME, start, count);
             return ret;
         } else
             return null;
@@ -571,54 +751,60 @@ public class MediaDatabase {
      * @param mrl MRL of the media
      */
     public synchronized void playlistInsertItem(String playlistName, int position, String mrl) {
-        playlistShiftItems(playlistName, position, 1);
-
-        ContentValues values = new ContentValues();
-        values.put(PLAYLIST_MEDIA_PLAYLISTNAME, playlistName);
-        values.put(PLAYLIST_MEDIA_MEDIALOCATION, mrl);
-        values.put(PLAYLIST_MEDIA_ORDER, position);
-        mDb.insert(PLAYLIST_MEDIA_TABLE_NAME, "NULL", values);
+        playlistInsertItems(playlistName, position, Collections.singletonList(mrl));
     }
 
     /**
-     * Shifts all items starting at position by the given factor.
-     *
-     * For instance:
-     * Before:
-     * 0 - A
-     * 1 - B
-     * 2 - C
-     * 3 - D
-     *
-     * After playlistShiftItems(playlist, 1, 1):
-     * 0 - A
-     * 2 - B
-     * 3 - C
-     * 4 - D
+     * Insert items with locations into playlistName, the first one at the specified position,
+     * in a single transaction.
      *
      * @param playlistName Unique name of the playlist
-     * @param position Position to start shifting at
-     * @param factor Factor to shift the order by
+     * @param position Position to insert into, items past the end are appended
+     * @param mrls MRLs of the medias, in order
      */
-    private synchronized void playlistShiftItems(String playlistName, int position, int factor) {
-        // Increment all media orders by 1 after the insert position
-        Cursor c = mDb.query(
-                PLAYLIST_MEDIA_TABLE_NAME,
-                new String[] { PLAYLIST_MEDIA_ID, PLAYLIST_MEDIA_ORDER },
-                PLAYLIST_MEDIA_PLAYLISTNAME + "=? AND " + PLAYLIST_MEDIA_ORDER + " >= ?",
-                new String[] { playlistName, String.valueOf(position) },
-                null, null,
-                PLAYLIST_MEDIA_ORDER + " ASC");
-        if (c != null) {
-            while (c.moveToNext()) {
-                ContentValues cv = new ContentValues();
-                int ii = c.getInt(c.getColumnIndex(PLAYLIST_MEDIA_ORDER)) + factor;
-                Log.d(TAG, "ii = " + ii);
-                cv.put(PLAYLIST_MEDIA_ORDER, ii /* i */);
-                mDb.update(PLAYLIST_MEDIA_TABLE_NAME, cv, PLAYLIST_MEDIA_ID + "=?",
-                        new String[]{c.getString(c.getColumnIndex(PLAYLIST_MEDIA_ID))});
+    public synchronized void playlistInsertItems(String playlistName, int position, List<String> mrls) {
+        if (mrls.isEmpty()) return;
+        final long start = System.nanoTime();
+        mDb.beginTransaction();
+        try {
+            final long[] ranks = playlistNewRanks(playlistName, position, mrls.size(), -1);
+            final SQLiteStatement insert = getStatement(PLAYLIST_INSERT_QUERY);
+            for (int i = 0; i < ranks.length; ++i) {
+                insert.bindString(1, playlistName);
+                insert.bindString(2, mrls.get(i));
+                insert.bindLong(3, ranks[i]);
+                insert.executeInsert();
             }
-            c.close();
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+            mStats.record(PLAYLIST_MEDIA_TABLE_NAME, start, mrls.size());
+        }
+    }
+
+    /**
+     * Move the item at position from to position to, only its rank is updated.
+     *
+     * @param playlistName Unique name of the playlist
+     * @param from Current position of the item
+     * @param to Position of the item once moved
+     */
+    public synchronized void playlistMoveItem(String playlistName, int from, int to) {
+        if (from == to) return;
+        final long start = System.nanoTime();
+        mDb.beginTransaction();
+        try {
+            final long id = playlistItemId(playlistName, from);
+            if (id == -1) return;
+            final long rank = playlistNewRanks(playlistName, to, 1, id)[0];
+            final SQLiteStatement update = getStatement(PLAYLIST_UPDATE_RANK_QUERY);
+            update.bindLong(1, rank);
+            update.bindLong(2, id);
+            update.executeUpdateDelete();
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+            mStats.record(PLAYLIST_MEDIA_TABLE_NAME, start, 1);
         }
     }
 
@@ -629,12 +815,86 @@ public class MediaDatabase {
      * @param position Position to remove
      */
     public synchronized void playlistRemoveItem(String playlistName, int position) {
-        mDb.delete(PLAYLIST_MEDIA_TABLE_NAME,
-                PLAYLIST_MEDIA_PLAYLISTNAME + "=? AND " +
-                        PLAYLIST_MEDIA_ORDER + "=?",
-                new String[]{playlistName, Integer.toString(position)});
+        final long start = System.nanoTime();
+        final long id = playlistItemId(playlistName, position);
+        if (id == -1) return;
+        final SQLiteStatement delete = getStatement(PLAYLIST_DELETE_ITEM_QUERY);
+        delete.bindLong(1, id);
+        mStats.record(PLAYLIST_MEDIA_TABLE_NAME, start, delete.executeUpdateDelete());
+    }
+
+    /**
+     * @return the id of the item at position, -1 if there is none
+     */
+    private long playlistItemId(String playlistName, int position) {
+        final Cursor c = mDb.rawQuery(String.format(Locale.US, PLAYLIST_ITEM_AT_QUERY, 1, position),
+                new String[] { playlistName, "-1" });
+        try {
+            return c.moveToFirst() ? c.getLong(0) : -1;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Find count ranks for items inserted at position, between the ranks of their neighbours.
+     * The playlist is rebalanced when there is not enough room left between them.
+     *
+     * @param excludedId id of an item ignored for positions, the one being moved, or -1
+     */
+    private long[] playlistNewRanks(String playlistName, int position, int count, long excludedId) {
+        final String[] args = new String[] { playlistName, String.valueOf(excludedId) };
+        final SQLiteStatement size = getStatement(PLAYLIST_SIZE_QUERY);
+        size.bindString(1, playlistName);
+        size.bindLong(2, excludedId);
+        position = (int) Math.max(0, Math.min(position, size.simpleQueryForLong()));
+
+        // Ranks of the items before and after position, if any
+        final Cursor c = mDb.rawQuery(String.format(Locale.US, PLAYLIST_ITEM_AT_QUERY,
+                position > 0 ? 2 : 1, Math.max(position - 1, 0)), args);
+        long low, high;
+        try {
+            final boolean hasPrevious = position > 0 && c.moveToNext();
+            final long previous = hasPrevious ? c.getLong(1) : 0;
+            final boolean hasNext = c.moveToNext();
+            final long next = hasNext ? c.getLong(1) : 0;
+            final long span = (count + 1) * PLAYLIST_RANK_GAP;
+            low = hasPrevious ? previous : hasNext ? next - span : 0;
+            high = hasNext ? next : low + span;
+        } finally {
+            c.close();
+        }
 
-        playlistShiftItems(playlistName, position + 1, -1);
+        final long step = (high - low) / (count + 1);
+        if (step < 1) {
+            playlistRebalance(playlistName, position, count, excludedId);
+            return playlistNewRanks(playlistName, position, count, excludedId);
+        }
+        final long[] ranks = new long[count];
+        for (int i = 0; i < count; ++i)
+            ranks[i] = low + step * (i + 1);
+        return ranks;
+    }
+
+    /**
+     * Spread the ranks of the playlist again, leaving room for count items at position.
+     * Has to run in a transaction.
+     */
+    private void playlistRebalance(String playlistName, int position, int count, long excludedId) {
+        final Cursor c = mDb.rawQuery(String.format(Locale.US, PLAYLIST_ITEM_AT_QUERY, -1, 0),
+                new String[] { playlistName, String.valueOf(excludedId) });
+        final SQLiteStatement update = getStatement(PLAYLIST_UPDATE_RANK_QUERY);
+        try {
+            int i = 0;
+            while (c.moveToNext()) {
+                update.bindLong(1, (i < position ? i : i + count) * PLAYLIST_RANK_GAP);
+                update.bindLong(2, c.getLong(0));
+                update.executeUpdateDelete();
+                ++i;
+            }
+        } finally {
+            c.close();
+        }
     }
 
     /**
@@ -677,7 +937,7 @@ public class MediaDatabase {
      * @param media which you like to add to the database
      */
     public synchronized void addMedia(MediaWrapper media) {
-
+        final long start = System.nanoTime();
         ContentValues values = new ContentValues();
 
         values.put(MEDIA_LOCATION, media.getUri().toString());
@@ -699,7 +959,7 @@ public class MediaDatabase {
         values.put(MEDIA_LAST_MODIFIED, media.getLastModified());
 
         mDb.replace(MEDIA_TABLE_NAME, "NULL", values);
-
+        mStats.record(MEDIA_TABLE_NAME, start, 1);
     }
 
     /**
@@ -707,22 +967,15 @@ public class MediaDatabase {
      * @param location of the item (primary key)
      * @return True if the item exists, false if it does not
      */
-    public synchronized boolean mediaItemExists(Uri uri) {
+    public boolean mediaItemExists(Uri uri) {
+        final long start = System.nanoTime();
         try {
-            Cursor cursor = mDb.query(MEDIA_TABLE_NAME,
-                    new String[] { MEDIA_LOCATION },
-                    MEDIA_LOCATION + "=?",
-                    new String[] { uri.toString() },
-                    null, null, null);
-            if (cursor != null) {
-                final boolean exists = cursor.moveToFirst();
-                cursor.close();
-                return exists;
-            } else
-                return false;
+            return DatabaseUtils.longForQuery(mDb, MEDIA_EXISTS_QUERY, new String[] { uri.toString() }) > 0;
         } catch (Exception e) {
             Log.e(TAG, "Query failed");
             return false;
+        } finally {
+            mStats.record(MEDIA_TABLE_NAME, start, 1);
         }
     }
 
@@ -731,7 +984,7 @@ public class MediaDatabase {
      * @return list of File
      */
     @SuppressWarnings("unused")
-    private synchronized HashSet<File> getMediaFiles() {
+    private HashSet<File> getMediaFiles() {
 
         HashSet<File> files = new HashSet<File>();
         Cursor cursor;
@@ -754,243 +1007,469 @@ public class MediaDatabase {
         return files;
     }
 
-    public synchronized Cursor queryMedia(String query){
-        String[] queryColumns = new String[]{MEDIA_LOCATION, MEDIA_TITLE};
-        return mDb.query(MEDIA_VIRTUAL_TABLE_NAME, queryColumns, MEDIA_VIRTUAL_TABLE_NAME+" MATCH ?",
-                new String[]{query + "*"}, null, null, null, null);
+    /**
+     * @return location, title and matchinfo() of the medias matching query, null if there is nothing to search
+     */
+    @Nullable
+    public Cursor queryMedia(String query){
+        final String match = SearchRanking.toMatchQuery(query);
+        return match != null ? mDb.rawQuery(SEARCH_QUERY, new String[] { match }) : null;
     }
 
-    public synchronized List<String> searchMedia(String filter){
+    /**
+     * @return locations of the medias matching filter, the last word being a prefix, best matches first
+     */
+    public List<String> searchMedia(String filter){
+        return searchMedia(filter, Integer.MAX_VALUE);
+    }
 
-        List<String> mediaList = new ArrayList<String>();
-        Cursor cursor = queryMedia(filter);
-        if (cursor != null) {
-            if (cursor.moveToFirst()) {
-                do {
-                    mediaList.add(cursor.getString(0));
-                } while (cursor.moveToNext());
+    /**
+     * @param limit maximum number of results, ranking is cheaper with a few
+     * @return locations of the best medias matching filter, the last word being a prefix, best matches first
+     */
+    public List<String> searchMedia(String filter, int limit) {
+        final long start = System.nanoTime();
+        final String match = SearchRanking.toMatchQuery(filter);
+        if (match == null || limit <= 0)
+            return new ArrayList<>();
+        // Worst of the best results on top
+        final PriorityQueue<SearchResult> best = new PriorityQueue<>(Math.min(limit, 64), SearchResult.BY_SCORE);
+        final Cursor cursor = mDb.rawQuery(SEARCH_RANK_QUERY, new String[] { match });
+        try {
+            while (cursor.moveToNext()) {
+                final double score = SearchRanking.bm25(SearchRanking.parseMatchinfo(cursor.getBlob(1)), SEARCH_WEIGHTS);
+                if (best.size() < limit)
+                    best.add(new SearchResult(cursor.getLong(0), score));
+                else if (score > best.peek().score) {
+                    best.poll();
+                    best.add(new SearchResult(cursor.getLong(0), score));
+                }
             }
+        } finally {
             cursor.close();
         }
+        final SearchResult[] results = best.toArray(new SearchResult[best.size()]);
+        Arrays.sort(results, Collections.reverseOrder(SearchResult.BY_SCORE));
+
+        final LongSparseArray<String> locations = new LongSparseArray<>(results.length);
+        final StringBuilder rowids = new StringBuilder();
+        for (int i = 0; i < results.length; i += SEARCH_LOCATIONS_CHUNK) {
+            rowids.setLength(0);
+            for (int j = i; j < Math.min(i + SEARCH_LOCATIONS_CHUNK, results.length); ++j) {
+                if (j > i) rowids.append(',');
+                rowids.append(results[j].rowid);
+            }
+            final Cursor locationCursor = mDb.rawQuery(String.format(Locale.US, SEARCH_LOCATIONS_QUERY, rowids), null);
+            while (locationCursor.moveToNext())
+                locations.put(locationCursor.getLong(0), locationCursor.getString(1));
+            locationCursor.close();
+        }
+        final List<String> mediaList = new ArrayList<String>(results.length);
+        for (SearchResult result : results) {
+            final String location = locations.get(result.rowid);
+            if (location != null) mediaList.add(location);
+        }
+        mStats.record(MEDIA_VIRTUAL_TABLE_NAME, start, mediaList.size());
         return mediaList;
     }
 
-    public synchronized ArrayMap<String, MediaWrapper> getMedias() {
+    private static class SearchResult {
+        static final Comparator<SearchResult> BY_SCORE = new Comparator<SearchResult>() {
+            @Override
+            public int compare(SearchResult r1, SearchResult r2) {
+                return Double.compare(r1.score, r2.score);
+            }
+        };
 
-        Cursor cursor;
-        ArrayMap<String, MediaWrapper> medias = new ArrayMap<String, MediaWrapper>();
-        int chunk_count = 0;
-        int count;
+        final long rowid;
+        final double score;
 
-        do {
-            count = 0;
-            cursor = mDb.rawQuery(String.format(Locale.US,
-                    "SELECT %s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s FROM %s LIMIT %d OFFSET %d",
-                    MEDIA_LOCATION, //0 string
-                    MEDIA_TIME, //1 long
-                    MEDIA_LENGTH, //2 long
-                    MEDIA_TYPE, //3 int
-                    MEDIA_TITLE, //4 string
-                    MEDIA_ARTIST, //5 string
-                    MEDIA_GENRE, //6 string
-                    MEDIA_ALBUM, //7 string
-                    MEDIA_ALBUMARTIST, //8 string
-                    MEDIA_WIDTH, //9 int
-                    MEDIA_HEIGHT, //10 int
-                    MEDIA_ARTWORKURL, //11 string
-                    MEDIA_AUDIOTRACK, //12 int
-                    MEDIA_SPUTRACK, //13 int
-                    MEDIA_TRACKNUMBER, // 14 int
-                    MEDIA_DISCNUMBER, //15 int
-                    MEDIA_LAST_MODIFIED, //16 long
-                    MEDIA_TABLE_NAME,
-                    CHUNK_SIZE,
-                    chunk_count * CHUNK_SIZE), null);
-
-            if (cursor != null) {
-                if (cursor.moveToFirst()) {
-                    try {
-                        do {
-                            final Uri uri = AndroidUtil.LocationToUri(cursor.getString(0));
-                            MediaWrapper media = new MediaWrapper(uri,
-                                    cursor.getLong(1),      // MEDIA_TIME
-                                    cursor.getLong(2),      // MEDIA_LENGTH
-                                    cursor.getInt(3),       // MEDIA_TYPE
-                                    null,                   // MEDIA_PICTURE
-                                    cursor.getString(4),    // MEDIA_TITLE
-                                    cursor.getString(5),    // MEDIA_ARTIST
-                                    cursor.getString(6),    // MEDIA_GENRE
-                                    cursor.getString(7),    // MEDIA_ALBUM
-                                    cursor.getString(8),    // MEDIA_ALBUMARTIST
-                                    cursor.getInt(9),       // MEDIA_WIDTH
-                                    cursor.getInt(10),       // MEDIA_HEIGHT
-                                    cursor.getString(11),   // MEDIA_ARTWORKURL
-                                    cursor.getInt(12),      // MEDIA_AUDIOTRACK
-                                    cursor.getInt(13),      // MEDIA_SPUTRACK
-                                    cursor.getInt(14),      // MEDIA_TRACKNUMBER
-                                    cursor.getInt(15),     // MEDIA_DISCNUMBER
-                                    cursor.getLong(16),    // MEDIA_LAST_MODIFIED
-                                    0L,
-                                    false,
-                                    false,    // is p2p
-                                    0, // parent media id
-                                    null,  // p2p infohash
-                                    -1,     // p2p file index
-                                    -1
-                            );
-                            medias.put(media.getUri().toString(), media);
-
-                            count++;
-                        } while (cursor.moveToNext());
-                    } catch (IllegalStateException e) {
-                    } //Google bug causing IllegalStateException, see https://code.google.com/p/android/issues/detail?id=32472
-                }
+        SearchResult(long rowid, double score) {
+            this.rowid = rowid;
+            this.score = score;
+        }
+    }
 
-                cursor.close();
+    /**
+     * Build the search index again from the media table, in the background.
+     * Medias are searchable as they are added back to the index.
+     */
+    public void rebuildSearchIndex() {
+        resetSearchIndex();
+        VLCApplication.runBackground(new Runnable() {
+            @Override
+            public void run() {
+                updateSearchIndex();
             }
-            chunk_count++;
-        } while (count == CHUNK_SIZE);
+        });
+    }
 
-        return medias;
+    private synchronized void resetSearchIndex() {
+        mDb.beginTransaction();
+        try {
+            DatabaseHelper.dropSearchIndexQuery(mDb);
+            DatabaseHelper.createSearchIndexQuery(mDb, 0);
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
     }
 
-    public synchronized ArrayMap<String, Long> getVideoTimes() {
+    /**
+     * Add the medias missing from the search index, a chunk per transaction
+     * so that other writers are not blocked meanwhile.
+     */
+    @VisibleForTesting
+    void updateSearchIndex() {
+        int indexed = 0, count;
+        while ((count = indexSearchChunk()) > 0)
+            indexed += count;
+        if (indexed > 0) Log.i(TAG, indexed + " medias added to the search index");
+    }
 
-        Cursor cursor;
-        ArrayMap<String, Long> times = new ArrayMap<String, Long>();
-        int chunk_count = 0;
-        int count;
+    /**
+     * @return the number of medias added to the search index, 0 once it is complete
+     */
+    private synchronized int indexSearchChunk() {
+        final long start = System.nanoTime();
+        int count = 0;
+        mDb.beginTransaction();
+        try {
+            final long indexed = DatabaseUtils.longForQuery(mDb, SEARCH_STATE_QUERY, null);
+            if (indexed == SEARCH_INDEX_COMPLETE)
+                return 0;
+            final String last = DatabaseUtils.stringForQuery(mDb, SEARCH_INDEX_NEXT_CHUNK_QUERY,
+                    new String[] { String.valueOf(indexed) });
+            final SQLiteStatement state = getStatement(SEARCH_STATE_UPDATE_QUERY);
+            if (last == null) {
+                state.bindLong(1, SEARCH_INDEX_COMPLETE);
+            } else {
+                final SQLiteStatement insert = getStatement(SEARCH_INDEX_RANGE_QUERY);
+                insert.bindLong(1, indexed);
+                insert.bindLong(2, Long.parseLong(last));
+                count = insert.executeUpdateDelete();
+                state.bindLong(1, Long.parseLong(last));
+            }
+            state.executeUpdateDelete();
+            mDb.setTransactionSuccessful();
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Search index update failed", e);
+            count = 0;
+        } finally {
+            mDb.endTransaction();
+            mStats.record(MEDIA_VIRTUAL_TABLE_NAME, start, count);
+        }
+        return count;
+    }
+
+    public interface MediaVisitor {
+        void visit(MediaWrapper media);
+    }
+
+    public interface VideoTimeVisitor {
+        void visit(String location, long time);
+    }
 
+    /**
+     * Read all medias, CHUNK_SIZE rows at a time in location order. The database is only
+     * locked while a chunk is read: the visitor is called without holding it.
+     */
+    public void forEachMedia(MediaVisitor visitor) {
+        final ArrayList<MediaWrapper> chunk = new ArrayList<>(CHUNK_SIZE);
+        String last = null;
         do {
-            count = 0;
-            cursor = mDb.rawQuery(String.format(Locale.US,
-                    "SELECT %s,%s FROM %s WHERE %s=%d LIMIT %d OFFSET %d",
-                    MEDIA_LOCATION, //0 string
-                    MEDIA_TIME, //1 long
-                    MEDIA_TABLE_NAME,
-                    MEDIA_TYPE,
-                    MediaWrapper.TYPE_VIDEO,
-                    CHUNK_SIZE,
-                    chunk_count * CHUNK_SIZE), null);
-
-            if (cursor != null) {
-                if (cursor.moveToFirst()) {
-                    do {
-                        String location = cursor.getString(0);
-                        long time = cursor.getLong(1);
-                        times.put(location, time);
-                        count++;
-                    } while (cursor.moveToNext());
-                }
+            chunk.clear();
+            last = readMediaChunk(last, chunk);
+            for (MediaWrapper media : chunk) visitor.visit(media);
+        } while (chunk.size() == CHUNK_SIZE);
+    }
+
+    /**
+     * @return the location of the last media read, to start the next chunk from
+     */
+    private String readMediaChunk(@Nullable String after, List<MediaWrapper> chunk) {
+        final long start = System.nanoTime();
+        final Cursor cursor = after == null
+                ? mDb.rawQuery(MEDIA_FIRST_PAGE_QUERY, null)
+                : mDb.rawQuery(MEDIA_NEXT_PAGE_QUERY, new String[] { after });
+        if (cursor == null) return after;
+        try {
+            while (cursor.moveToNext()) {
+                after = cursor.getString(0);
+                chunk.add(mediaFromCursor(AndroidUtil.LocationToUri(after), cursor, 1));
+            }
+        } catch (IllegalStateException e) {
+        } //Google bug causing IllegalStateException, see https://code.google.com/p/android/issues/detail?id=32472
+        finally {
+            cursor.close();
+            mStats.record(MEDIA_TABLE_NAME, start, chunk.size());
+        }
+        return after;
+    }
 
-                cursor.close();
+    public ArrayMap<String, MediaWrapper> getMedias() {
+        final ArrayMap<String, MediaWrapper> medias = new ArrayMap<String, MediaWrapper>();
+        forEachMedia(new MediaVisitor() {
+            @Override
+            public void visit(MediaWrapper media) {
+                medias.put(media.getUri().toString(), media);
             }
-            chunk_count++;
+        });
+        return medias;
+    }
+
+    /**
+     * Read the playback time of all videos, see {@link #forEachMedia(MediaVisitor)}
+     */
+    public void forEachVideoTime(VideoTimeVisitor visitor) {
+        final String[] locations = new String[CHUNK_SIZE];
+        final long[] times = new long[CHUNK_SIZE];
+        String last = null;
+        int count;
+        do {
+            count = readVideoTimeChunk(last, locations, times);
+            if (count > 0) last = locations[count - 1];
+            for (int i = 0; i < count; ++i) visitor.visit(locations[i], times[i]);
         } while (count == CHUNK_SIZE);
+    }
 
-        return times;
+    private int readVideoTimeChunk(@Nullable String after, String[] locations, long[] times) {
+        final long start = System.nanoTime();
+        final Cursor cursor = after == null
+                ? mDb.rawQuery(VIDEO_TIME_FIRST_PAGE_QUERY, null)
+                : mDb.rawQuery(VIDEO_TIME_NEXT_PAGE_QUERY, new String[] { after });
+        if (cursor == null) return 0;
+        int count = 0;
+        try {
+            while (count < CHUNK_SIZE && cursor.moveToNext()) {
+                locations[count] = cursor.getString(0);
+                times[count] = cursor.getLong(1);
+                ++count;
+            }
+        } finally {
+            cursor.close();
+            mStats.record(MEDIA_TABLE_NAME, start, count);
+        }
+        return count;
     }
 
-    public synchronized MediaWrapper getMedia(Uri uri) {
+    public ArrayMap<String, Long> getVideoTimes() {
+        final ArrayMap<String, Long> times = new ArrayMap<String, Long>();
+        forEachVideoTime(new VideoTimeVisitor() {
+            @Override
+            public void visit(String location, long time) {
+                times.put(location, time);
+            }
+        });
+        return times;
+    }
 
-        Cursor cursor;
+    public MediaWrapper getMedia(Uri uri) {
+        final long start = System.nanoTime();
         MediaWrapper media = null;
-
+        final Cursor cursor;
         try {
-            cursor = mDb.query(
-                    MEDIA_TABLE_NAME,
-                    new String[] {
-                            MEDIA_TIME, //0 long
-                            MEDIA_LENGTH, //1 long
-                            MEDIA_TYPE, //2 int
-                            MEDIA_TITLE, //3 string
-                            MEDIA_ARTIST, //4 string
-                            MEDIA_GENRE, //5 string
-                            MEDIA_ALBUM, //6 string
-                            MEDIA_ALBUMARTIST, //7 string
-                            MEDIA_WIDTH, //8 int
-                            MEDIA_HEIGHT, //9 int
-                            MEDIA_ARTWORKURL, //10 string
-                            MEDIA_AUDIOTRACK, //11 int
-                            MEDIA_SPUTRACK, //12 int
-                            MEDIA_TRACKNUMBER, //13 int
-                            MEDIA_DISCNUMBER, //14 int
-                            MEDIA_LAST_MODIFIED, //15 long
-                    },
-                    MEDIA_LOCATION + "=?",
-                    new String[] { uri.toString() },
-                    null, null, null);
+            cursor = mDb.rawQuery(MEDIA_BY_LOCATION_QUERY, new String[] { uri.toString() });
         } catch(IllegalArgumentException e) {
             // java.lang.IllegalArgumentException: the bind value at index 1 is null
             return null;
         }
         if (cursor != null) {
-            if (cursor.moveToFirst()) {
-                media = new MediaWrapper(uri,
-                        cursor.getLong(0),
-                        cursor.getLong(1),
-                        cursor.getInt(2),
-                        null, // lazy loading, see getPicture()
-                        cursor.getString(3),
-                        cursor.getString(4),
-                        cursor.getString(5),
-                        cursor.getString(6),
-                        cursor.getString(7),
-                        cursor.getInt(8),
-                        cursor.getInt(9),
-                        cursor.getString(10),
-                        cursor.getInt(11),
-                        cursor.getInt(12),
-                        cursor.getInt(13),
-                        cursor.getInt(14),
-                        cursor.getLong(15),
-                        0L,
-                        false,
-                        false,
-                        0,
-                        null,
-                        -1,
-                        -1
-                );
-            }
+            if (cursor.moveToFirst()) media = mediaFromCursor(uri, cursor, 0);
             cursor.close();
         }
+        mStats.record(MEDIA_TABLE_NAME, start, media != null ? 1 : 0);
         return media;
     }
 
-    public synchronized Bitmap getPicture(Uri uri) {
+    /**
+     * Build a media from the MEDIA_COLUMNS of the cursor, starting at column offset
+     */
+    private static MediaWrapper mediaFromCursor(Uri uri, Cursor cursor, int offset) {
+        return new MediaWrapper(uri,
+                cursor.getLong(offset),             // MEDIA_TIME
+                cursor.getLong(offset + 1),         // MEDIA_LENGTH
+                cursor.getInt(offset + 2),          // MEDIA_TYPE
+                null,                               // MEDIA_PICTURE, lazy loading, see getPicture()
+                cursor.getString(offset + 3),       // MEDIA_TITLE
+                cursor.getString(offset + 4),       // MEDIA_ARTIST
+                cursor.getString(offset + 5),       // MEDIA_GENRE
+                cursor.getString(offset + 6),       // MEDIA_ALBUM
+                cursor.getString(offset + 7),       // MEDIA_ALBUMARTIST
+                cursor.getInt(offset + 8),          // MEDIA_WIDTH
+                cursor.getInt(offset + 9),          // MEDIA_HEIGHT
+                cursor.getString(offset + 10),      // MEDIA_ARTWORKURL
+                cursor.getInt(offset + 11),         // MEDIA_AUDIOTRACK
+                cursor.getInt(offset + 12),         // MEDIA_SPUTRACK
+                cursor.getInt(offset + 13),         // MEDIA_TRACKNUMBER
+                cursor.getInt(offset + 14),         // MEDIA_DISCNUMBER
+                cursor.getLong(offset + 15),        // MEDIA_LAST_MODIFIED
+                0L,
+                false,
+                false,    // is p2p
+                0, // parent media id
+                null,  // p2p infohash
+                -1,     // p2p file index
+                -1
+        );
+    }
+
+    @VisibleForTesting
+    SQLiteDatabase getDatabase() {
+        return mDb;
+    }
+
+    /**
+     * Compiled once, the bindings of the previous call are cleared.
+     * Must be called by a writer, with the lock held, as statements are shared.
+     */
+    private SQLiteStatement getStatement(String sql) {
+        SQLiteStatement statement = mStatements.get(sql);
+        if (statement == null) {
+            statement = mDb.compileStatement(sql);
+            mStatements.put(sql, statement);
+        } else
+            statement.clearBindings();
+        return statement;
+    }
+
+    public Bitmap getPicture(Uri uri) {
         /* Used for the lazy loading */
-        Cursor cursor;
-        Bitmap picture = null;
-        byte[] blob;
+        final File file = getPictureFile(uri);
+        if (file == null)
+            return null;
+        try {
+            // Store files are never modified, decode without holding the database lock
+            return BitmapFactory.decodeFile(file.getPath());
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+    }
 
-        cursor = mDb.query(
-                MEDIA_TABLE_NAME,
-                new String[] { MEDIA_PICTURE },
-                MEDIA_LOCATION + "=?",
+    /**
+     * @return the thumbnail file of this media, null if it has none
+     */
+    @Nullable
+    public File getPictureFile(Uri uri) {
+        final long start = System.nanoTime();
+        final Cursor cursor = mDb.query(
+                THUMBNAIL_TABLE_NAME,
+                new String[] { THUMBNAIL_HASH },
+                THUMBNAIL_LOCATION + "=?",
                 new String[] { uri.toString() },
                 null, null, null);
-        if (cursor != null) {
-            if (cursor.moveToFirst()) {
-                blob = cursor.getBlob(0);
-                if (blob != null && blob.length > 1 && blob.length < 500000) {
-                    try {
-                        picture = BitmapFactory.decodeByteArray(blob, 0, blob.length);
-                    } catch (OutOfMemoryError e) {
-                        picture = null;
-                    } finally {
-                        blob = null;
-                    }
+        if (cursor == null)
+            return null;
+        final String hash = cursor.moveToFirst() ? cursor.getString(0) : null;
+        cursor.close();
+        mStats.record(THUMBNAIL_TABLE_NAME, start, hash != null ? 1 : 0);
+        return hash != null && mThumbnails.contains(hash) ? mThumbnails.getFile(hash) : null;
+    }
+
+    private void savePicture(String location, @Nullable byte[] data) {
+        final long start = System.nanoTime();
+        String hash = THUMBNAIL_NONE;
+        if (data != null) {
+            hash = mThumbnails.put(data);
+            if (hash == null)
+                return;
+        }
+        final ContentValues values = new ContentValues();
+        values.put(THUMBNAIL_LOCATION, location);
+        values.put(THUMBNAIL_HASH, hash);
+        mDb.replace(THUMBNAIL_TABLE_NAME, null, values);
+        mStats.record(THUMBNAIL_TABLE_NAME, start, 1);
+    }
+
+    /**
+     * Move the pictures stored in the media table by previous versions to the thumbnail store,
+     * then delete the thumbnail files not referenced anymore.
+     * Pictures are moved a few at a time, so that other requests are not blocked meanwhile.
+     */
+    private void migrateThumbnails() {
+        final SharedPreferences settings = VLCApplication.getSettings();
+        if (!settings.getBoolean(KEY_THUMBNAILS_MIGRATED, false)) {
+            int migrated = 0, count;
+            do {
+                count = migrateThumbnailsChunk();
+                if (count > 0) migrated += count;
+            } while (count == THUMBNAIL_MIGRATION_CHUNK);
+            if (migrated > 0) Log.i(TAG, "Moved " + migrated + " pictures to the thumbnail store");
+            // try again on next start after a failure
+            if (count >= 0) settings.edit().putBoolean(KEY_THUMBNAILS_MIGRATED, true).apply();
+        }
+        final int deleted = compactThumbnails();
+        if (deleted > 0) Log.i(TAG, deleted + " orphaned thumbnails deleted");
+    }
+
+    /**
+     * @return the number of pictures moved, -1 on error
+     */
+    private synchronized int migrateThumbnailsChunk() {
+        final Cursor cursor;
+        try {
+            cursor = mDb.query(MEDIA_TABLE_NAME,
+                    new String[] { MEDIA_LOCATION, MEDIA_PICTURE },
+                    MEDIA_PICTURE + " IS NOT NULL",
+                    null, null, null, null,
+                    String.valueOf(THUMBNAIL_MIGRATION_CHUNK));
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Thumbnail migration failed", e);
+            return -1;
+        }
+        if (cursor == null)
+            return -1;
+        int count = 0;
+        mDb.beginTransaction();
+        try {
+            final ContentValues cleared = new ContentValues();
+            cleared.putNull(MEDIA_PICTURE);
+            while (cursor.moveToNext()) {
+                final String location = cursor.getString(0);
+                byte[] blob = null;
+                try {
+                    blob = cursor.getBlob(1);
+                } catch (IllegalStateException|SQLiteException e) {
+                    // row too big for the cursor window, the picture is dropped
                 }
+                savePicture(location, blob != null && blob.length > 1 ? blob : null);
+                mDb.update(MEDIA_TABLE_NAME, cleared, MEDIA_LOCATION + "=?", new String[] { location });
+                ++count;
             }
+            mDb.setTransactionSuccessful();
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Thumbnail migration failed", e);
+            count = -1;
+        } finally {
+            mDb.endTransaction();
             cursor.close();
         }
-        return picture;
+        return count;
+    }
+
+    /**
+     * Delete the thumbnail files of medias which have been removed
+     * @return the number of deleted files
+     */
+    public synchronized int compactThumbnails() {
+        final HashSet<String> hashes = new HashSet<>();
+        final Cursor cursor = mDb.query(true, THUMBNAIL_TABLE_NAME, new String[] { THUMBNAIL_HASH },
+                null, null, null, null, null, null);
+        if (cursor == null)
+            return 0;
+        while (cursor.moveToNext())
+            hashes.add(cursor.getString(0));
+        cursor.close();
+        return mThumbnails.compact(hashes);
     }
 
     public synchronized void removeMedia(Uri uri) {
+        final long start = System.nanoTime();
         try {
-            mDb.delete(MEDIA_TABLE_NAME, MEDIA_LOCATION + "=?", new String[]{uri.toString()});
+            final int rows = mDb.delete(MEDIA_TABLE_NAME, MEDIA_LOCATION + "=?", new String[]{uri.toString()});
+            // the file is deleted by compactThumbnails() if no other media uses it
+            mDb.delete(THUMBNAIL_TABLE_NAME, THUMBNAIL_LOCATION + "=?", new String[]{uri.toString()});
+            mStats.record(MEDIA_TABLE_NAME, start, rows);
         } catch (SQLiteException e) {
             // Some devices have weird issues with FTS table
         }
@@ -1027,16 +1506,15 @@ public class MediaDatabase {
         ContentValues values = new ContentValues();
         switch (col) {
             case INDEX_MEDIA_PICTURE:
+                byte[] data = null;
                 if (object != null) {
                     Bitmap picture = (Bitmap) object;
                     ByteArrayOutputStream out = new ByteArrayOutputStream();
                     picture.compress(Bitmap.CompressFormat.JPEG, 90, out);
-                    values.put(MEDIA_PICTURE, out.toByteArray());
-                }
-                else {
-                    values.put(MEDIA_PICTURE, new byte[1]);
+                    data = out.toByteArray();
                 }
-                break;
+                savePicture(uri.toString(), data);
+                return;
             case INDEX_MEDIA_TIME:
                 if (object != null)
                     values.put(MEDIA_TIME, (Long)object);
@@ -1056,7 +1534,9 @@ public class MediaDatabase {
             default:
                 return;
         }
-        mDb.update(MEDIA_TABLE_NAME, values, MEDIA_LOCATION + "=?", new String[]{uri.toString()});
+        final long start = System.nanoTime();
+        mStats.record(MEDIA_TABLE_NAME, start,
+                mDb.update(MEDIA_TABLE_NAME, values, MEDIA_LOCATION + "=?", new String[]{uri.toString()}));
     }
 
     /**
@@ -1097,7 +1577,7 @@ public class MediaDatabase {
      *
      * @return
      */
-    public synchronized List<File> getMediaDirs() {
+    public List<File> getMediaDirs() {
 
         List<File> paths = new ArrayList<File>();
         Cursor cursor;
@@ -1120,7 +1600,7 @@ public class MediaDatabase {
         return paths;
     }
 
-    private synchronized boolean mediaDirExists(String path) {
+    private boolean mediaDirExists(String path) {
         Cursor cursor = mDb.query(DIR_TABLE_NAME,
                 new String[] { DIR_ROW_PATH },
                 DIR_ROW_PATH + "=?",
@@ -1143,10 +1623,13 @@ public class MediaDatabase {
         values.put(SEARCHHISTORY_KEY, key);
         values.put(SEARCHHISTORY_DATE, dateFormat.format(date));
 
+        final long start = System.nanoTime();
         mDb.replace(SEARCHHISTORY_TABLE_NAME, null, values);
+        mStats.record(SEARCHHISTORY_TABLE_NAME, start, 1);
     }
 
-    public synchronized List<String> getSearchhistory(int size) {
+    public List<String> getSearchhistory(int size) {
+        final long start = System.nanoTime();
         List<String> history = new ArrayList<String>();
 
         Cursor cursor = mDb.query(SEARCHHISTORY_TABLE_NAME,
@@ -1159,6 +1642,7 @@ public class MediaDatabase {
             history.add(cursor.getString(0));
         }
         cursor.close();
+        mStats.record(SEARCHHISTORY_TABLE_NAME, start, history.size());
 
         return history;
     }
@@ -1175,10 +1659,13 @@ public class MediaDatabase {
         values.put(MRL_URI, uri);
         values.put(MRL_DATE, dateFormat.format(date));
 
+        final long start = System.nanoTime();
         mDb.replace(MRL_TABLE_NAME, null, values);
+        mStats.record(MRL_TABLE_NAME, start, 1);
     }
 
-    public synchronized List<String> getMrlhistory() {
+    public List<String> getMrlhistory() {
+        final long start = System.nanoTime();
         List<String> history = new ArrayList<>();
 
         Cursor cursor = mDb.query(MRL_TABLE_NAME,
@@ -1193,6 +1680,7 @@ public class MediaDatabase {
             }
             cursor.close();
         }
+        mStats.record(MRL_TABLE_NAME, start, history.size());
 
         return history;
     }
@@ -1215,24 +1703,20 @@ public class MediaDatabase {
         values.put(NETWORK_FAV_URI, uri.toString());
         values.put(NETWORK_FAV_TITLE, Uri.encode(title));
         values.put(NETWORK_FAV_ICON_URL, Uri.encode(iconUrl));
+        final long start = System.nanoTime();
         mDb.replace(NETWORK_FAV_TABLE_NAME, null, values);
+        mStats.record(NETWORK_FAV_TABLE_NAME, start, 1);
     }
 
-    public synchronized boolean networkFavExists(Uri uri) {
-        Cursor cursor = mDb.query(NETWORK_FAV_TABLE_NAME,
-                new String[] { NETWORK_FAV_URI },
-                NETWORK_FAV_URI + "=?",
-                new String[] { uri.toString() },
-                null, null, null);
-        if (cursor != null) {
-            final boolean exists = cursor.moveToFirst();
-            cursor.close();
-            return exists;
-        } else
-            return false;
+    public boolean networkFavExists(Uri uri) {
+        final long start = System.nanoTime();
+        final boolean exists = DatabaseUtils.longForQuery(mDb, NETWORK_FAV_EXISTS_QUERY, new String[] { uri.toString() }) > 0;
+        mStats.record(NETWORK_FAV_TABLE_NAME, start, 1);
+        return exists;
     }
 
-    public synchronized List<MediaWrapper> getAllNetworkFav() {
+    public List<MediaWrapper> getAllNetworkFav() {
+        final long start = System.nanoTime();
         List<MediaWrapper> favs = new ArrayList<MediaWrapper>();
 
         MediaWrapper mw;
@@ -1251,6 +1735,7 @@ public class MediaDatabase {
             }
             cursor.close();
         }
+        mStats.record(NETWORK_FAV_TABLE_NAME, start, favs.size());
 
         return favs;
     }
@@ -1273,12 +1758,15 @@ public class MediaDatabase {
         ContentValues values = new ContentValues();
         values.put(EXTERNAL_SUBTITLES_URI, path);
         values.put(EXTERNAL_SUBTITLES_MEDIA_NAME, mediaName);
+        final long start = System.nanoTime();
         mDb.replace(EXTERNAL_SUBTITLES_TABLE_NAME, null, values);
+        mStats.record(EXTERNAL_SUBTITLES_TABLE_NAME, start, 1);
     }
 
-    public synchronized List<String> getSubtitles(String mediaName) {
+    public List<String> getSubtitles(String mediaName) {
         if (TextUtils.isEmpty(mediaName))
             return new ArrayList<>();
+        final long start = System.nanoTime();
         Cursor cursor = mDb.query(EXTERNAL_SUBTITLES_TABLE_NAME,
                 new String[] {EXTERNAL_SUBTITLES_MEDIA_NAME, EXTERNAL_SUBTITLES_URI },
                 EXTERNAL_SUBTITLES_MEDIA_NAME + "=?",
@@ -1298,6 +1786,7 @@ public class MediaDatabase {
             }
             cursor.close();
         }
+        mStats.record(EXTERNAL_SUBTITLES_TABLE_NAME, start, list.size());
         return list;
     }
 
@@ -1319,31 +1808,37 @@ public class MediaDatabase {
         values.put(SLAVES_TYPE, type);
         values.put(SLAVES_PRIORITY, priority);
         values.put(SLAVES_URI, uriString);
+        final long start = System.nanoTime();
         mDb.replace(SLAVES_TABLE_NAME, null, values);
+        mStats.record(SLAVES_TABLE_NAME, start, 1);
     }
 
     public synchronized void saveSlaves(MediaWrapper mw) {
-        for (Media.Slave slave : mw.getSlaves())
-            saveSlave(mw.getLocation(), slave.type, slave.priority, slave.uri);
+        mDb.beginTransaction();
+        try {
+            for (Media.Slave slave : mw.getSlaves())
+                saveSlave(mw.getLocation(), slave.type, slave.priority, slave.uri);
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
     }
 
-    public synchronized List<Media.Slave> getSlaves(String mrl) {
-        Cursor cursor = mDb.query(SLAVES_TABLE_NAME,
-                new String[] {SLAVES_MEDIA_PATH, SLAVES_TYPE, SLAVES_PRIORITY, SLAVES_URI },
-                SLAVES_MEDIA_PATH + "=?",
-                new String[] { mrl },
-                null, null, null);
-        List<Media.Slave> list = new ArrayList<>(cursor.getCount());
+    public List<Media.Slave> getSlaves(String mrl) {
+        final long start = System.nanoTime();
+        final Cursor cursor = mDb.rawQuery(SLAVES_QUERY, new String[] { mrl });
+        List<Media.Slave> list = new ArrayList<>();
         if (cursor != null) {
             while (cursor.moveToNext()) {
-                String uri = cursor.getString(3);
+                String uri = cursor.getString(2);
                 if (!TextUtils.isEmpty(uri)) {
                     uri = Uri.decode(uri);
-                list.add(new Media.Slave(cursor.getInt(1), cursor.getInt(2), uri));
+                list.add(new Media.Slave(cursor.getInt(0), cursor.getInt(1), uri));
                 }
             }
             cursor.close();
         }
+        mStats.record(SLAVES_TABLE_NAME, start, list.size());
         return list;
     }
 
@@ -1361,6 +1856,15 @@ public class MediaDatabase {
 
     public synchronized void emptyDatabase() {
         mDb.delete(MEDIA_TABLE_NAME, null, null);
+        mDb.delete(THUMBNAIL_TABLE_NAME, null, null);
+        compactThumbnails();
+    }
+
+    /**
+     * @return call counts, latencies and rows touched per table since the application started
+     */
+    public List<String> dumpStats() {
+        return mStats.dump();
     }
 
     public static void setPicture(MediaWrapper m, Bitmap p) {
@@ -112,61 +112,27 @@ public class MediaGroup extends MediaWrapper {
 
     public static List<MediaGroup> group(MediaWrapper[] mediaList, int minGroupLengthValue) {
         final ArrayList<MediaGroup> groups = new ArrayList<>();
-        for (MediaWrapper media : mediaList) if (media != null) insertInto(groups, media, minGroupLengthValue);
+        final TitleGrouper grouper = new TitleGrouper(minGroupLengthValue);
+        for (MediaWrapper media : mediaList) if (media != null) insertInto(groups, grouper, media);
         return groups;
     }
 
     public static List<MediaGroup> group(List<MediaWrapper> mediaList, int minGroupLengthValue) {
         final ArrayList<MediaGroup> groups = new ArrayList<>();
-        for (MediaWrapper media : mediaList) if (media != null) insertInto(groups, media, minGroupLengthValue);
+        final TitleGrouper grouper = new TitleGrouper(minGroupLengthValue);
+        for (MediaWrapper media : mediaList) if (media != null) insertInto(groups, grouper, media);
         return groups;
     }
 
-    private static void insertInto(ArrayList<MediaGroup> groups, MediaWrapper media, int minGroupLengthValue) {
-        String mediaGroupTitle = media.getGroupTitle();
-
-        for (MediaGroup mediaGroup : groups) {
-            if(!TextUtils.isEmpty(mediaGroupTitle)) {
-                // Don't try to find common prefix when media has explicit group title.
-                // Just add to group or create new one.
-                if(TextUtils.equals(mediaGroupTitle, mediaGroup.getGroupTitle())) {
-                    mediaGroup.add(media);
-                    return;
-                }
-                else {
-                    continue;
-                }
-            }
-
-            final String group = mediaGroup.getTitle().toLowerCase();
-            String title = media.getTitle().toLowerCase();
-
-            //Handle titles starting with "The"
-            int groupOffset = group.startsWith("the") ? 4 : 0;
-            if (title.startsWith("the"))
-                title = title.substring(4);
-
-            // find common prefix
-            int commonLength = 0;
-            final String groupTitle = group.substring(groupOffset);
-            final int minLength = Math.min(groupTitle.length(), title.length());
-            while (commonLength < minLength
-                    && groupTitle.charAt(commonLength) == title.charAt(commonLength))
-                ++commonLength;
-
-            if (commonLength >= minGroupLengthValue && minGroupLengthValue != 0) {
-                if (commonLength == group.length()) {
-                    // same prefix name, just add
-                    mediaGroup.add(media);
-                } else {
-                    // not the same prefix, but close : merge
-                    mediaGroup.merge(media, group.substring(0, commonLength+groupOffset));
-                }
-                return;
-            }
+    private static void insertInto(ArrayList<MediaGroup> groups, TitleGrouper grouper, MediaWrapper media) {
+        final int index = grouper.add(media.getTitle(), media.getGroupTitle());
+        if (index == groups.size()) {
+            // does not match any group, so add one
+            groups.add(new MediaGroup(media));
+            return;
         }
-
-        // does not match any group, so add one
-        groups.add(new MediaGroup(media));
+        final String mergedTitle = grouper.getMergedTitle();
+        if (mergedTitle != null) groups.get(index).merge(media, mergedTitle);
+        else groups.get(index).add(media);
     }
 }
@@ -0,0 +1,429 @@
+/*****************************************************************************
+ * MediaIndex.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.media;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import org.videolan.medialibrary.media.MediaLibraryItem;
+import org.videolan.vlc.gui.DiffUtilAdapter;
+import org.videolan.vlc.util.MediaLibraryItemComparator;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Sorted, id indexed copy of a medialibrary list, kept up to date with the media
+ * added/updated/deleted callbacks instead of querying the whole library again.
+ *
+ * Every change returns a {@link Snapshot} of the new list which records the operations applied
+ * since the previous snapshot, so that an adapter showing the previous one can be notified
+ * without running DiffUtil. Items are positioned with a binary search on the current sort.
+ *
+ * Items are stored in chunks shared with the snapshots and copied when modified: a snapshot only
+ * copies the chunk references, not the whole list.
+ */
+public class MediaIndex<T extends MediaLibraryItem> {
+
+    public interface Filter<T> {
+        boolean accept(T item);
+    }
+
+    private static final int OP_INSERT = 0;
+    private static final int OP_REMOVE = 1;
+    private static final int OP_CHANGE = 2;
+    private static final int OP_MOVE = 3;
+
+    private final MediaLibraryItemComparator mComparator;
+    private final Chunks<T> mItems = new Chunks<>();
+    private final HashMap<Long, T> mById = new HashMap<>();
+    private Filter<T> mFilter;
+    private Snapshot<T> mSnapshot = new Snapshot<>(mItems, null, null);
+
+    /**
+     * @param comparator used for this index only, its sort is set with {@link #sortBy(int, int)}
+     */
+    public MediaIndex(MediaLibraryItemComparator comparator) {
+        mComparator = comparator;
+    }
+
+    /**
+     * Added items rejected by the filter are ignored, updated ones are removed.
+     */
+    public synchronized void setFilter(@Nullable Filter<T> filter) {
+        mFilter = filter;
+    }
+
+    public synchronized Snapshot<T> getSnapshot() {
+        return mSnapshot;
+    }
+
+    public synchronized boolean isEmpty() {
+        return mItems.size() == 0;
+    }
+
+    /**
+     * Replace the whole content with the result of a full query, which is not filtered.
+     * The returned snapshot has no base, it has to be diffed.
+     */
+    public synchronized Snapshot<T> reset(@Nullable T[] items) {
+        mById.clear();
+        final ArrayList<T> list = new ArrayList<>(items != null ? items.length : 0);
+        if (items != null) for (T item : items) {
+            if (item == null || mById.put(item.getId(), item) != null) continue;
+            list.add(item);
+        }
+        Collections.sort(list, mComparator);
+        mItems.setAll(list);
+        return mSnapshot = new Snapshot<>(mItems, null, null);
+    }
+
+    /**
+     * Sort the index again if the sort changed. The returned snapshot has no base.
+     */
+    public synchronized Snapshot<T> sortBy(int sortBy, int direction) {
+        if (mComparator.sortBy == sortBy && mComparator.sortDirection == direction) return mSnapshot;
+        mComparator.sortBy(sortBy, direction);
+        final ArrayList<T> list = mItems.toList();
+        Collections.sort(list, mComparator);
+        mItems.setAll(list);
+        return mSnapshot = new Snapshot<>(mItems, null, null);
+    }
+
+    /**
+     * Insert new items at their sorted position, replace and move known ones.
+     * @return the new snapshot, or null if nothing changed
+     */
+    @Nullable
+    public synchronized Snapshot<T> addOrUpdate(@Nullable T[] items) {
+        if (items == null || items.length == 0) return null;
+        final OpList ops = new OpList();
+        for (T item : items) {
+            if (item == null) continue;
+            final T previous = mById.get(item.getId());
+            final int from = previous != null ? indexOf(previous) : -1;
+            if (!accept(item)) {
+                if (from != -1) {
+                    mItems.remove(from);
+                    mById.remove(item.getId());
+                    ops.add(OP_REMOVE, from, 0);
+                }
+                continue;
+            }
+            if (from == -1) {
+                final int to = insertionPoint(item);
+                mItems.add(to, item);
+                mById.put(item.getId(), item);
+                ops.add(OP_INSERT, to, 0);
+                continue;
+            }
+            mItems.remove(from);
+            final int to = insertionPoint(item);
+            mItems.add(to, item);
+            mById.put(item.getId(), item);
+            if (from != to) ops.add(OP_MOVE, from, to);
+            ops.add(OP_CHANGE, to, 0);
+        }
+        return publish(ops);
+    }
+
+    /**
+     * @return the new snapshot, or null if none of these ids was indexed
+     */
+    @Nullable
+    public synchronized Snapshot<T> remove(@Nullable long[] ids) {
+        if (ids == null || ids.length == 0) return null;
+        final OpList ops = new OpList();
+        for (long id : ids) {
+            final T previous = mById.remove(id);
+            if (previous == null) continue;
+            final int position = indexOf(previous);
+            if (position == -1) continue;
+            mItems.remove(position);
+            ops.add(OP_REMOVE, position, 0);
+        }
+        return publish(ops);
+    }
+
+    private Snapshot<T> publish(OpList ops) {
+        if (ops.size == 0) return null;
+        return mSnapshot = new Snapshot<>(mItems, mSnapshot, ops);
+    }
+
+    private boolean accept(T item) {
+        return mFilter == null || mFilter.accept(item);
+    }
+
+    /**
+     * First position after the items sorting equal to this one
+     */
+    private int insertionPoint(T item) {
+        int low = 0, high = mItems.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mComparator.compare(mItems.get(mid), item) <= 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the indexed instance, then a linear scan in case
+     * its sort fields were modified after it was indexed.
+     */
+    private int indexOf(T item) {
+        int low = 0, high = mItems.size();
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mComparator.compare(mItems.get(mid), item) < 0) low = mid + 1;
+            else high = mid;
+        }
+        for (int i = low; i < mItems.size() && mComparator.compare(mItems.get(i), item) == 0; ++i)
+            if (mItems.get(i) == item) return i;
+        for (int i = 0; i < mItems.size(); ++i)
+            if (mItems.get(i) == item) return i;
+        return -1;
+    }
+
+    /**
+     * Items split in chunks of at most {@link #MAX_CHUNK}. Chunks handed to a snapshot are frozen,
+     * they are copied before being modified.
+     */
+    private static class Chunks<T> {
+        private static final int MAX_CHUNK = 512;
+
+        private final ArrayList<ArrayList<T>> mChunks = new ArrayList<>();
+        /* chunks created since the last snapshot, which can be modified in place */
+        private final Set<ArrayList<T>> mOwned = Collections.newSetFromMap(new IdentityHashMap<ArrayList<T>, Boolean>());
+        private int[] mStarts = new int[0];
+        private boolean mStartsValid = true;
+        private int mSize;
+
+        int size() {
+            return mSize;
+        }
+
+        T get(int index) {
+            final int chunk = chunkOf(index);
+            return mChunks.get(chunk).get(index - mStarts[chunk]);
+        }
+
+        void add(int index, T item) {
+            if (mChunks.isEmpty()) {
+                final ArrayList<T> chunk = new ArrayList<>();
+                mChunks.add(chunk);
+                mOwned.add(chunk);
+                mStartsValid = false;
+            }
+            final int c = index == mSize ? mChunks.size() - 1 : chunkOf(index);
+            final ArrayList<T> chunk = own(c);
+            chunk.add(index - start(c), item);
+            if (chunk.size() > MAX_CHUNK) {
+                final List<T> half = chunk.subList(chunk.size() / 2, chunk.size());
+                final ArrayList<T> tail = new ArrayList<>(half);
+                half.clear();
+                mChunks.add(c + 1, tail);
+                mOwned.add(tail);
+            }
+            ++mSize;
+            mStartsValid = false;
+        }
+
+        T remove(int index) {
+            final int c = chunkOf(index);
+            final ArrayList<T> chunk = own(c);
+            final T item = chunk.remove(index - mStarts[c]);
+            if (chunk.isEmpty()) {
+                mChunks.remove(c);
+                mOwned.remove(chunk);
+            }
+            --mSize;
+            mStartsValid = false;
+            return item;
+        }
+
+        /**
+         * Replace the content, without modifying the chunks of the snapshots
+         */
+        void setAll(List<T> items) {
+            mChunks.clear();
+            mOwned.clear();
+            for (int i = 0; i < items.size(); i += MAX_CHUNK / 2) {
+                final ArrayList<T> chunk = new ArrayList<>(items.subList(i, Math.min(items.size(), i + MAX_CHUNK / 2)));
+                mChunks.add(chunk);
+                mOwned.add(chunk);
+            }
+            mSize = items.size();
+            mStartsValid = false;
+        }
+
+        ArrayList<T> toList() {
+            final ArrayList<T> list = new ArrayList<>(mSize);
+            for (ArrayList<T> chunk : mChunks) list.addAll(chunk);
+            return list;
+        }
+
+        /**
+         * @return the current chunks, which are not modified anymore
+         */
+        Object[] freeze() {
+            mOwned.clear();
+            return mChunks.toArray();
+        }
+
+        int[] starts() {
+            updateStarts();
+            return Arrays.copyOf(mStarts, mChunks.size());
+        }
+
+        private ArrayList<T> own(int c) {
+            final ArrayList<T> chunk = mChunks.get(c);
+            if (mOwned.contains(chunk)) return chunk;
+            final ArrayList<T> copy = new ArrayList<>(chunk.size() + 1);
+            copy.addAll(chunk);
+            mChunks.set(c, copy);
+            mOwned.add(copy);
+            return copy;
+        }
+
+        private int start(int c) {
+            updateStarts();
+            return mStarts[c];
+        }
+
+        private int chunkOf(int index) {
+            if (index < 0 || index >= mSize) throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+            updateStarts();
+            return findChunk(mStarts, mChunks.size(), index);
+        }
+
+        private void updateStarts() {
+            if (mStartsValid) return;
+            if (mStarts.length < mChunks.size()) mStarts = new int[mChunks.size() * 2];
+            int start = 0;
+            for (int i = 0; i < mChunks.size(); ++i) {
+                mStarts[i] = start;
+                start += mChunks.get(i).size();
+            }
+            mStartsValid = true;
+        }
+    }
+
+    /**
+     * Last chunk starting at or before this index
+     */
+    private static int findChunk(int[] starts, int count, int index) {
+        int low = 0, high = count - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= index) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    private static class OpList {
+        int[] ops = new int[12];
+        int size = 0;
+
+        void add(int type, int position, int to) {
+            if (size + 3 > ops.length) {
+                final int[] grown = new int[ops.length * 2];
+                System.arraycopy(ops, 0, grown, 0, size);
+                ops = grown;
+            }
+            ops[size++] = type;
+            ops[size++] = position;
+            ops[size++] = to;
+        }
+    }
+
+    /**
+     * Immutable state of the index content. When it has a base, it also knows
+     * the operations which turn the base into this list.
+     * The base is weakly referenced so that snapshots do not retain their whole history.
+     */
+    public static class Snapshot<T> extends AbstractList<T> implements RandomAccess, DiffUtilAdapter.IncrementalList<T> {
+        private final Object[] mChunks;
+        private final int[] mStarts;
+        private final int mSize;
+        private final WeakReference<Snapshot<T>> mBase;
+        private final OpList mOps;
+
+        Snapshot(Chunks<T> items, @Nullable Snapshot<T> base, @Nullable OpList ops) {
+            mStarts = items.starts();
+            mChunks = items.freeze();
+            mSize = items.size();
+            mBase = base != null ? new WeakReference<>(base) : null;
+            mOps = ops;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= mSize) throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+            final int chunk = findChunk(mStarts, mStarts.length, index);
+            return ((List<T>) mChunks[chunk]).get(index - mStarts[chunk]);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        @Nullable
+        @Override
+        public List<T> getBase() {
+            return mBase != null ? mBase.get() : null;
+        }
+
+        @Override
+        public void dispatchUpdatesTo(@NonNull ListUpdateCallback callback) {
+            if (mOps == null) return;
+            final int[] ops = mOps.ops;
+            for (int i = 0; i < mOps.size; i += 3) {
+                switch (ops[i]) {
+                    case OP_INSERT:
+                        callback.onInserted(ops[i + 1], 1);
+                        break;
+                    case OP_REMOVE:
+                        callback.onRemoved(ops[i + 1], 1);
+                        break;
+                    case OP_CHANGE:
+                        callback.onChanged(ops[i + 1], 1, null);
+                        break;
+                    case OP_MOVE:
+                        callback.onMoved(ops[i + 1], ops[i + 2]);
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*****************************************************************************
+ * MedialibraryDataSource.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.media;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.paging.PositionalDataSource;
+
+import org.videolan.medialibrary.Medialibrary;
+import org.videolan.medialibrary.media.Album;
+import org.videolan.medialibrary.media.Artist;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads medialibrary lists window by window, for use with a PagedList.
+ *
+ * Only the total count and the visible pages are converted from native objects, instead of
+ * the whole list. The medialibrary callbacks are single listeners owned by the fragments,
+ * so the owner is expected to call {@link Factory#invalidate()} when it is notified of a change.
+ * A source never invalidates itself: a page cut short by a concurrent change ends the list.
+ */
+public abstract class MedialibraryDataSource<T> extends PositionalDataSource<T> {
+
+    protected final Medialibrary mMedialibrary = Medialibrary.getInstance();
+
+    protected abstract int count();
+
+    protected abstract T[] load(int offset, int limit);
+
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams params, @NonNull LoadInitialCallback<T> callback) {
+        final int count = count();
+        if (count == 0) {
+            callback.onResult(Collections.<T>emptyList(), 0, 0);
+            return;
+        }
+        final int position = computeInitialLoadPosition(params, count);
+        final int size = computeInitialLoadSize(params, position, count);
+        final List<T> page = Arrays.asList(load(position, size));
+        if (!params.placeholdersEnabled) callback.onResult(page, position);
+        // The library changed between both native calls: end the list at this page, the owner
+        // invalidates the source when notified of the change
+        else if (page.size() != size) callback.onResult(page, position, position + page.size());
+        else callback.onResult(page, position, count);
+    }
+
+    @Override
+    public void loadRange(@NonNull LoadRangeParams params, @NonNull LoadRangeCallback<T> callback) {
+        callback.onResult(Arrays.asList(load(params.startPosition, params.loadSize)));
+    }
+
+    public static Factory<Album> albums() {
+        return new Factory<Album>() {
+            @Override
+            MedialibraryDataSource<Album> createSource() {
+                return new MedialibraryDataSource<Album>() {
+                    @Override
+                    protected int count() {
+                        return mMedialibrary.getAlbumsCount();
+                    }
+
+                    @Override
+                    protected Album[] load(int offset, int limit) {
+                        return mMedialibrary.getAlbums(offset, limit);
+                    }
+                };
+            }
+        };
+    }
+
+    public static Factory<Artist> artists(final boolean all) {
+        return new Factory<Artist>() {
+            @Override
+            MedialibraryDataSource<Artist> createSource() {
+                return new MedialibraryDataSource<Artist>() {
+                    @Override
+                    protected int count() {
+                        return mMedialibrary.getArtistsCount(all);
+                    }
+
+                    @Override
+                    protected Artist[] load(int offset, int limit) {
+                        return mMedialibrary.getArtists(all, offset, limit);
+                    }
+                };
+            }
+        };
+    }
+
+    public static abstract class Factory<T> extends DataSource.Factory<Integer, T> {
+        private volatile MedialibraryDataSource<T> mCurrent;
+
+        abstract MedialibraryDataSource<T> createSource();
+
+        @NonNull
+        @Override
+        public DataSource<Integer, T> create() {
+            final MedialibraryDataSource<T> source = createSource();
+            mCurrent = source;
+            return source;
+        }
+
+        /**
+         * Drop the current source, the PagedList will reload from a new one.
+         */
+        @MainThread
+        public void invalidate() {
+            final MedialibraryDataSource<T> source = mCurrent;
+            if (source != null) source.invalidate();
+        }
+    }
+}
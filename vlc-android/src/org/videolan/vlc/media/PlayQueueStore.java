@@ -0,0 +1,418 @@
+/*****************************************************************************
+ * PlayQueueStore.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.media;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * The play queue saved as a log of its edits.
+ *
+ * The file starts with a snapshot of the whole queue, each edit is then appended to it. Edits
+ * are queued by the caller and written on the executor, those queued meanwhile are written
+ * together, and a new snapshot drops the edits queued before it. The file is rewritten with a
+ * snapshot once the log holds more edits than the queue holds items.
+ *
+ * Each append is framed with its length and CRC32, an append interrupted by the process being
+ * killed is ignored when the queue is loaded. Items are opaque strings, null items are kept
+ * to preserve the positions of the following ones but are not returned by {@link #load()}.
+ */
+public class PlayQueueStore {
+    private static final String TAG = "VLC/PlayQueueStore";
+
+    private static final int MAGIC = 0x564c4351; // VLCQ
+    private static final int VERSION = 1;
+    private static final int MIN_LOG_SIZE = 64;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte OP_RESET = 0;
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_MOVE = 3;
+
+    private static class Op {
+        final byte type;
+        final int arg1, arg2;
+        final String item;
+        final List<String> items;
+
+        Op(byte type, int arg1, int arg2, String item, List<String> items) {
+            this.type = type;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.item = item;
+            this.items = items;
+        }
+    }
+
+    private final File mFile;
+    private final Executor mExecutor;
+    private final Object mWriteLock = new Object();
+
+    /* Guarded by this, swapped with mWriteLock held too. Lock order: mWriteLock, then this */
+    private ArrayList<Op> mPending = new ArrayList<>();
+    private boolean mWriteScheduled = false;
+
+    /* Guarded by mWriteLock, what the file holds once the log is replayed */
+    private final ArrayList<byte[]> mItems = new ArrayList<>();
+    private boolean mSnapshotWritten = false;
+    private int mLogSize = 0;
+
+    /* Pending edits are taken with mWriteLock held, so that batches are written in the order
+     * they were queued whichever thread runs this */
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (mWriteLock) {
+                final ArrayList<Op> ops;
+                synchronized (PlayQueueStore.this) {
+                    ops = mPending;
+                    mPending = new ArrayList<>();
+                    mWriteScheduled = false;
+                }
+                if (!ops.isEmpty()) write(ops);
+            }
+        }
+    };
+
+    public PlayQueueStore(File file, Executor executor) {
+        mFile = file;
+        mExecutor = executor;
+    }
+
+    /**
+     * @return true if a queue has been saved, or is about to be
+     */
+    public boolean exists() {
+        synchronized (this) {
+            if (!mPending.isEmpty()) return true;
+        }
+        return mFile.exists();
+    }
+
+    /**
+     * Replace the whole queue. Edits must be preceded by a reset, the log starts from it.
+     */
+    public void reset(List<String> items) {
+        final Op op = new Op(OP_RESET, 0, 0, null, new ArrayList<>(items));
+        synchronized (this) {
+            mPending.clear();
+            enqueue(op);
+        }
+    }
+
+    public void add(int index, @Nullable String item) {
+        enqueue(new Op(OP_ADD, index, 0, item, null));
+    }
+
+    public void remove(int index) {
+        enqueue(new Op(OP_REMOVE, index, 0, null, null));
+    }
+
+    /**
+     * Same semantics as {@link MediaWrapperList#move(int, int)}
+     */
+    public void move(int from, int to) {
+        enqueue(new Op(OP_MOVE, from, to, null, null));
+    }
+
+    private synchronized void enqueue(Op op) {
+        mPending.add(op);
+        if (mWriteScheduled) return;
+        mWriteScheduled = true;
+        mExecutor.execute(mWriteRunnable);
+    }
+
+    private void write(List<Op> ops) {
+        synchronized (mWriteLock) {
+            int start = 0;
+            for (int i = ops.size() - 1; i >= 0; --i) {
+                if (ops.get(i).type == OP_RESET) {
+                    start = i;
+                    break;
+                }
+            }
+            final boolean reset = ops.get(start).type == OP_RESET;
+            // Edits of a queue the file does not hold, the next reset will save it
+            if (!reset && !mSnapshotWritten) return;
+            for (int i = start; i < ops.size(); ++i) apply(mItems, ops.get(i));
+            try {
+                if (reset || mLogSize + ops.size() - start > Math.max(MIN_LOG_SIZE, mItems.size()))
+                    writeSnapshot();
+                else {
+                    appendFrame(encode(ops, start));
+                    mLogSize += ops.size() - start;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to save the play queue", e);
+                // The next edits would not match the file anymore
+                mSnapshotWritten = false;
+                mFile.delete();
+            }
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(bytes);
+        data.writeByte(OP_RESET);
+        data.writeInt(mItems.size());
+        for (byte[] item : mItems) writeItem(data, item);
+        final File tmp = new File(mFile.getPath() + ".tmp");
+        final FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            final DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            writeFrame(header, bytes.toByteArray());
+            header.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(mFile)) {
+            tmp.delete();
+            throw new IOException("Failed to rename " + tmp);
+        }
+        mSnapshotWritten = true;
+        mLogSize = 0;
+    }
+
+    private void appendFrame(byte[] frame) throws IOException {
+        final FileOutputStream out = new FileOutputStream(mFile, true);
+        try {
+            final DataOutputStream data = new DataOutputStream(out);
+            writeFrame(data, frame);
+            data.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(frame);
+        out.writeInt(frame.length);
+        out.writeInt((int) crc.getValue());
+        out.write(frame);
+    }
+
+    private static byte[] encode(List<Op> ops, int start) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(bytes);
+        for (int i = start; i < ops.size(); ++i) {
+            final Op op = ops.get(i);
+            data.writeByte(op.type);
+            switch (op.type) {
+                case OP_ADD:
+                    data.writeInt(op.arg1);
+                    writeItem(data, encode(op.item));
+                    break;
+                case OP_REMOVE:
+                    data.writeInt(op.arg1);
+                    break;
+                case OP_MOVE:
+                    data.writeInt(op.arg1);
+                    data.writeInt(op.arg2);
+                    break;
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeItem(DataOutputStream out, byte[] item) throws IOException {
+        if (item == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(item.length);
+        out.write(item);
+    }
+
+    private static void apply(ArrayList<byte[]> items, Op op) {
+        if (op.type == OP_RESET) {
+            items.clear();
+            for (String item : op.items) items.add(encode(item));
+        } else
+            apply(items, op.type, op.arg1, op.arg2, encode(op.item));
+    }
+
+    private static byte[] encode(@Nullable String item) {
+        return item == null ? null : item.getBytes(UTF8);
+    }
+
+    /**
+     * Edits shared by the writer, on encoded items, and the loader, on their positions in the file
+     */
+    private static <T> void apply(List<T> items, byte type, int arg1, int arg2, T item) {
+        final int size = items.size();
+        switch (type) {
+            case OP_ADD:
+                items.add(Math.min(Math.max(arg1, 0), size), item);
+                break;
+            case OP_REMOVE:
+                if (arg1 >= 0 && arg1 < size) items.remove(arg1);
+                break;
+            case OP_MOVE:
+                if (arg1 < 0 || arg1 >= size || arg2 < 0 || arg2 > size) break;
+                final T moved = items.remove(arg1);
+                items.add(arg1 >= arg2 ? arg2 : arg2 - 1, moved);
+                break;
+        }
+    }
+
+    /**
+     * Read the saved queue, once the pending edits are written. Items are decoded when they
+     * are accessed.
+     * @return null if there is no saved queue or it can't be read
+     */
+    @Nullable
+    public List<String> load() {
+        synchronized (mWriteLock) {
+            mWriteRunnable.run();
+            if (!mFile.exists()) return null;
+            try {
+                return read(readFile(mFile));
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to load the play queue", e);
+                return null;
+            }
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                final int count = in.read(data, read, data.length - read);
+                if (count < 0) break;
+                read += count;
+            }
+            if (read == data.length) return data;
+            final byte[] truncated = new byte[read];
+            System.arraycopy(data, 0, truncated, 0, read);
+            return truncated;
+        } finally {
+            in.close();
+        }
+    }
+
+    @Nullable
+    static List<String> read(byte[] data) {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+        /* Offset of each item in data, or -1 for null items */
+        final ArrayList<Integer> items = new ArrayList<>();
+        boolean snapshot = false;
+        final CRC32 crc = new CRC32();
+        while (buffer.remaining() >= 8) {
+            final int length = buffer.getInt();
+            final int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) break;
+            crc.reset();
+            crc.update(data, buffer.position(), length);
+            if ((int) crc.getValue() != checksum) break;
+            final int end = buffer.position() + length;
+            try {
+                while (buffer.position() < end) {
+                    final byte type = buffer.get();
+                    if (type == OP_RESET) {
+                        items.clear();
+                        final int count = buffer.getInt();
+                        for (int i = 0; i < count; ++i) items.add(skipItem(buffer));
+                        snapshot = true;
+                    } else if (type == OP_ADD) {
+                        final int index = buffer.getInt();
+                        apply(items, OP_ADD, index, 0, skipItem(buffer));
+                    } else if (type == OP_REMOVE) {
+                        apply(items, OP_REMOVE, buffer.getInt(), 0, null);
+                    } else if (type == OP_MOVE) {
+                        final int from = buffer.getInt();
+                        apply(items, OP_MOVE, from, buffer.getInt(), null);
+                    } else
+                        return null;
+                }
+            } catch (RuntimeException e) {
+                // checksum matched, but the content is not what we wrote
+                return null;
+            }
+        }
+        if (!snapshot) return null;
+        int count = 0;
+        for (Integer offset : items) if (offset >= 0) ++count;
+        final int[] offsets = new int[count];
+        int i = 0;
+        for (Integer offset : items) if (offset >= 0) offsets[i++] = offset;
+        return new LazyItems(data, offsets);
+    }
+
+    /**
+     * @return the offset of the item length, or -1 for a null item
+     */
+    private static int skipItem(ByteBuffer buffer) {
+        final int offset = buffer.position();
+        final int length = buffer.getInt();
+        if (length < 0) return -1;
+        buffer.position(buffer.position() + length);
+        return offset;
+    }
+
+    private static class LazyItems extends AbstractList<String> implements RandomAccess {
+        private final byte[] mData;
+        private final int[] mOffsets;
+
+        LazyItems(byte[] data, int[] offsets) {
+            mData = data;
+            mOffsets = offsets;
+        }
+
+        @Override
+        public String get(int index) {
+            final int offset = mOffsets[index];
+            final int length = ByteBuffer.wrap(mData, offset, 4).getInt();
+            return new String(mData, offset + 4, length, UTF8);
+        }
+
+        @Override
+        public int size() {
+            return mOffsets.length;
+        }
+    }
+}
@@ -1,21 +1,24 @@
 package org.videolan.vlc.media
 
+import android.content.Context
+import android.content.SharedPreferences
 import android.net.Uri
+import android.os.SystemClock
 import androidx.annotation.MainThread
 import android.support.v4.media.session.PlaybackStateCompat
 import android.util.Log
-import android.widget.Toast
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.*
 import org.videolan.libvlc.*
 import org.videolan.medialibrary.media.MediaWrapper
-import org.videolan.vlc.BuildConfig
 import org.videolan.vlc.RendererDelegate
 import org.videolan.vlc.VLCApplication
 import org.videolan.vlc.gui.preferences.PreferencesActivity
-import org.videolan.vlc.util.VLCInstance
 import org.videolan.vlc.util.VLCOptions
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
 
 @ObsoleteCoroutinesApi
 @ExperimentalCoroutinesApi
@@ -27,7 +30,14 @@ class PlayerController : IVLCVout.Callback, MediaPlayer.EventListener, Coroutine
 
     private val playerContext by lazy(LazyThreadSafetyMode.NONE) { newSingleThreadContext("vlc-player") }
     private val settings by lazy(LazyThreadSafetyMode.NONE) { VLCApplication.getSettings() }
-
+    private val qosPrefs by lazy(LazyThreadSafetyMode.NONE) { VLCApplication.getAppContext().getSharedPreferences(QOS_PREFERENCES, Context.MODE_PRIVATE) }
+    val qos by lazy(LazyThreadSafetyMode.NONE) { QosSampler(qosExecutor, QOS_SAMPLES, QOS_INTERVAL) }
+    private var qosMedia: Media? = null
+
+    /* time taken to get the current player, and time playback of its media was requested at,
+     * logged with the first frame to compare the pooled and created players */
+    private var obtainTime = 0L
+    private var playbackRequest = 0L
     private var mediaplayer = newMediaPlayer()
     var switchToVideo = false
     var seekable = false
@@ -60,6 +70,7 @@ class PlayerController : IVLCVout.Callback, MediaPlayer.EventListener, Coroutine
 
     fun stop() {
         if (mediaplayer.hasMedia()) mediaplayer.stop()
+        finishQosSession()
         setPlaybackStopped()
     }
 
@@ -69,8 +80,16 @@ class PlayerController : IVLCVout.Callback, MediaPlayer.EventListener, Coroutine
     }
 
     private var mediaplayerEventListener: MediaPlayer.EventListener? = null
-    internal fun startPlayback(media: Media, listener: MediaPlayer.EventListener) {
+    internal fun startPlayback(media: Media, listener: MediaPlayer.EventListener, qosKey: String? = null) {
         mediaplayerEventListener = listener
+        finishQosSession()
+        playbackRequest = SystemClock.elapsedRealtime()
+        if (qosKey !== null) {
+            media.retain()
+            qosMedia = media
+            qos.setInterval(settings.getString(KEY_QOS_INTERVAL, null)?.toLongOrNull() ?: QOS_INTERVAL)
+            qos.start(qosKey, QosSampler.StatsSource { media.stats })
+        }
         seekable = true
         pausable = true
         currentTime = 0L
@@ -89,7 +108,7 @@ class PlayerController : IVLCVout.Callback, MediaPlayer.EventListener, Coroutine
     fun restart() {
         val mp = mediaplayer
         mediaplayer = newMediaPlayer()
-        release(mp)
+        release(mp, true)
     }
 
     fun seek(position: Long, length: Double = this.length.toDouble()) {
@@ -98,11 +117,15 @@ class PlayerController : IVLCVout.Callback, MediaPlayer.EventListener, Coroutine
     }
 
     fun setPosition(position: Float) {
-        if (seekable) mediaplayer.position = position
+        if (!seekable) return
+        qosMedia?.let { qos.onSeek() }
+        mediaplayer.position = position
     }
 
     fun setTime(time: Long) {
-        if (seekable) mediaplayer.time = time
+        if (!seekable) return
+        qosMedia?.let { qos.onSeek() }
+        mediaplayer.time = time
     }
 
     fun isPlaying() = playbackState == PlaybackStateCompat.STATE_PLAYING
@@ -133,9 +156,15 @@ class PlayerController : IVLCVout.Callback, MediaPlayer.EventListener, Coroutine
 
     fun setAudioDigitalOutputEnabled(enabled: Boolean) = mediaplayer.setAudioDigitalOutputEnabled(enabled)
 
-    fun setAudioOutput(aout: String?) = mediaplayer.setAudioOutput(aout)
+    fun setAudioOutput(aout: String?): Boolean {
+        PlayerPool.discard(mediaplayer)
+        return mediaplayer.setAudioOutput(aout)
+    }
 
-    fun setAudioOutputDevice(id: String?) = mediaplayer.setAudioOutputDevice(id)
+    fun setAudioOutputDevice(id: String?): Boolean {
+        PlayerPool.discard(mediaplayer)
+        return mediaplayer.setAudioOutputDevice(id)
+    }
 
     fun getAudioDelay() = mediaplayer.audioDelay
 
@@ -177,18 +206,15 @@ class PlayerController : IVLCVout.Callback, MediaPlayer.EventListener, Coroutine
         hasRenderer = renderer !== null
     }
 
-    fun release(player: MediaPlayer = mediaplayer) {
+    /**
+     * @param recycle true to give the player back to the pool, to be reset and reused
+     */
+    fun release(player: MediaPlayer = mediaplayer, recycle: Boolean = false) {
         player.setEventListener(null)
-        if (isVideoPlaying()) player.vlcVout.detachViews()
-        launch(newSingleThreadContext("vlc-player-release")) {
-            if (BuildConfig.DEBUG) { // Warn if player release is blocking
-                try {
-                    withTimeout(5000, { player.release() })
-                } catch (exception: TimeoutCancellationException) {
-                    launch { Toast.makeText(VLCApplication.getAppContext(), "media stop has timeouted!", Toast.LENGTH_LONG).show() }
-                }
-            } else player.release()
-        }
+        if (player === mediaplayer) finishQosSession()
+        if (player.vlcVout.areViewsAttached()) player.vlcVout.detachViews()
+        player.vlcVout.removeCallback(this)
+        if (recycle) PlayerPool.recycle(player) else PlayerPool.release(player)
         setPlaybackStopped()
     }
 
@@ -198,9 +224,16 @@ class PlayerController : IVLCVout.Callback, MediaPlayer.EventListener, Coroutine
     }
 
     private fun newMediaPlayer() : MediaPlayer {
-        return MediaPlayer(VLCInstance.get()).apply {
+        val start = SystemClock.elapsedRealtime()
+        return PlayerPool.obtain().apply {
+            obtainTime = SystemClock.elapsedRealtime() - start
+            setEventCoalescing(true)
             setAudioDigitalOutputEnabled(VLCOptions.isAudioDigitalOutputEnabled(VLCApplication.getSettings()));
-            VLCOptions.getAout(VLCApplication.getSettings())?.let { setAudioOutput(it) }
+            VLCOptions.getAout(VLCApplication.getSettings())?.let {
+                // the default output can't be restored, this player won't be reused
+                PlayerPool.discard(this)
+                setAudioOutput(it)
+            }
             setRenderer(RendererDelegate.selectedRenderer?.vlcRenderer)
             this.vlcVout.addCallback(this@PlayerController)
         }
@@ -240,6 +273,43 @@ class PlayerController : IVLCVout.Callback, MediaPlayer.EventListener, Coroutine
         return id != Media.Meta.NowPlaying || mw?.nowPlaying !== null
     }
 
+    /**
+     * Stop sampling the current media and persist its quality of service summary
+     */
+    private fun finishQosSession() {
+        val media = qosMedia ?: return
+        qosMedia = null
+        val summary = qos.stop()
+        media.release()
+        if (summary !== null) {
+            val editor = qosPrefs.edit().putString(summary.key, summary.encode())
+            pruneQosSessions(editor, summary.key)
+            editor.apply()
+        }
+    }
+
+    /**
+     * Keep the [QOS_MAX_SESSIONS] most recent summaries, dropping the oldest ones and the unreadable ones
+     */
+    private fun pruneQosSessions(editor: SharedPreferences.Editor, added: String) {
+        val saved = qosPrefs.all
+        if (saved.size - (if (saved.containsKey(added)) 1 else 0) < QOS_MAX_SESSIONS) return
+        val summaries = ArrayList<QosSampler.Summary>(saved.size)
+        for ((key, value) in saved) {
+            if (key == added) continue
+            val summary = (value as? String)?.let { QosSampler.Summary.decode(key, it) }
+            if (summary === null) editor.remove(key) else summaries.add(summary)
+        }
+        summaries.sortBy { it.date }
+        for (i in 0 until summaries.size - (QOS_MAX_SESSIONS - 1)) editor.remove(summaries[i].key)
+    }
+
+    /**
+     * @param key id of the media, as given to [startPlayback]
+     * @return the summary of the last playback of this media, null if none was saved
+     */
+    fun getQosSummary(key: String): QosSampler.Summary? = QosSampler.Summary.decode(key, qosPrefs.getString(key, null))
+
     fun setPreviousStats() {
         val media = mediaplayer.media ?: return
         previousMediaStats = media.stats
@@ -285,13 +355,21 @@ class PlayerController : IVLCVout.Callback, MediaPlayer.EventListener, Coroutine
     override fun onEvent(event: MediaPlayer.Event?) {
         if (event === null) return
         when(event.type) {
-            MediaPlayer.Event.Playing -> playbackState = PlaybackStateCompat.STATE_PLAYING
+            MediaPlayer.Event.Playing -> {
+                playbackState = PlaybackStateCompat.STATE_PLAYING
+                qosMedia?.let { qos.onPlaying() }
+            }
+            MediaPlayer.Event.Buffering -> qosMedia?.let { qos.onBuffering(event.buffering) }
             MediaPlayer.Event.Paused -> playbackState = PlaybackStateCompat.STATE_PAUSED
             MediaPlayer.Event.EncounteredError -> setPlaybackStopped()
             MediaPlayer.Event.PausableChanged -> pausable = event.pausable
             MediaPlayer.Event.SeekableChanged -> seekable = event.seekable
             MediaPlayer.Event.TimeChanged -> currentTime = event.timeChanged
             MediaPlayer.Event.LengthChanged -> length = event.lengthChanged
+            MediaPlayer.Event.Vout -> if (event.voutCount > 0 && playbackRequest > 0L) {
+                Log.i(TAG, "First frame ${SystemClock.elapsedRealtime() - playbackRequest}ms after playback request, player obtained in ${obtainTime}ms")
+                playbackRequest = 0L
+            }
         }
         mediaplayerEventListener?.onEvent(event)
     }
@@ -302,6 +380,22 @@ class PlayerController : IVLCVout.Callback, MediaPlayer.EventListener, Coroutine
         length = 0L
     }
 
+    companion object {
+        private const val QOS_PREFERENCES = "qos_sessions"
+        private const val QOS_SAMPLES = 120
+        private const val QOS_INTERVAL = 1000L
+        private const val QOS_MAX_SESSIONS = 100
+        const val KEY_QOS_INTERVAL = "qos_sample_interval"
+
+        /* Shared by all the controllers, its daemon thread stops once no media is sampled */
+        private val qosExecutor by lazy {
+            ScheduledThreadPoolExecutor(1, ThreadFactory { Thread(it, "vlc-qos").apply { isDaemon = true } }).apply {
+                setKeepAliveTime(10L, TimeUnit.SECONDS)
+                allowCoreThreadTimeOut(true)
+            }
+        }
+    }
+
 //    private fun onPlayerError() {
 //        launch(UI) {
 //            restart()
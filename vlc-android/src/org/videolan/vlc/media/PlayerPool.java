@@ -0,0 +1,239 @@
+/*****************************************************************************
+ * PlayerPool.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.media;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import org.videolan.libvlc.LibVLC;
+import org.videolan.libvlc.MediaPlayer;
+import org.videolan.vlc.BuildConfig;
+import org.videolan.vlc.util.VLCInstance;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one spare MediaPlayer of the current LibVLC instance, so that starting playback does not
+ * wait for the player creation.
+ *
+ * The spare player is created in the background, after the application startup and each time it
+ * is handed out. Players given back are reset and kept as the spare one if there is none, or
+ * released otherwise. A player of a previous LibVLC instance is never handed out:
+ * {@link VLCInstance#restart()} invalidates the spare player.
+ *
+ * Only the player settings {@link #reset(MediaPlayer)} restores are undone. Callers changing
+ * other player wide settings, like the audio output, must {@link #discard(MediaPlayer)} the
+ * player so that it is released instead of reused. Track selections and delays belong to the
+ * media played and go away with it.
+ *
+ * Creating, resetting and releasing players is done on a single worker thread.
+ */
+public class PlayerPool {
+    private static final String TAG = "VLC/PlayerPool";
+
+    private static final long SLOW_RELEASE = 5000L;
+
+    private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(0, 1, 5, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "vlc-player-pool");
+        }
+    });
+
+    /* Never call VLCInstance with this lock held: VLCInstance.restart() takes it to invalidate */
+    private static final Object sLock = new Object();
+    private static MediaPlayer sSpare = null;
+    private static LibVLC sSpareLibVLC = null;
+    private static boolean sWarming = false;
+    /* LibVLC instance of the players handed out */
+    private static final Map<MediaPlayer, LibVLC> sOwners = new WeakHashMap<>();
+
+    private static final Runnable sWarmUp = new Runnable() {
+        @Override
+        public void run() {
+            final long start = SystemClock.elapsedRealtime();
+            MediaPlayer player = null;
+            LibVLC libVLC = null;
+            try {
+                libVLC = VLCInstance.get();
+                player = new MediaPlayer(libVLC);
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "Player not created", e);
+            }
+            synchronized (sLock) {
+                sWarming = false;
+                if (player != null && sSpare == null) {
+                    sSpare = player;
+                    sSpareLibVLC = libVLC;
+                    player = null;
+                }
+            }
+            if (player != null) player.release();
+            if (BuildConfig.DEBUG) Log.d(TAG, "Spare player created in " + (SystemClock.elapsedRealtime() - start) + "ms");
+        }
+    };
+
+    /**
+     * Create the spare player in the background, if there is none
+     */
+    public static void warm() {
+        synchronized (sLock) {
+            if (sSpare != null || sWarming) return;
+            sWarming = true;
+        }
+        sExecutor.execute(sWarmUp);
+    }
+
+    /**
+     * Can be called from any thread, the player is created on the calling thread if there is no
+     * spare one.
+     *
+     * @return the spare player if it belongs to the current LibVLC instance, a new one otherwise
+     */
+    @NonNull
+    public static MediaPlayer obtain() {
+        final LibVLC libVLC = VLCInstance.get();
+        MediaPlayer player = null;
+        MediaPlayer stale = null;
+        synchronized (sLock) {
+            if (sSpare != null) {
+                if (sSpareLibVLC == libVLC) player = sSpare;
+                else stale = sSpare;
+                sSpare = null;
+                sSpareLibVLC = null;
+            }
+        }
+        if (stale != null) release(stale);
+        if (player == null) player = new MediaPlayer(libVLC);
+        synchronized (sLock) {
+            sOwners.put(player, libVLC);
+        }
+        warm();
+        return player;
+    }
+
+    /**
+     * Give a player back once its event listener and views are detached. It is stopped and reset
+     * to its default settings, then kept as the spare player if it can be used again.
+     */
+    public static void recycle(@NonNull final MediaPlayer player) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (player.isReleased()) return;
+                reset(player);
+                final LibVLC current = VLCInstance.get(false);
+                synchronized (sLock) {
+                    final LibVLC owner = sOwners.remove(player);
+                    if (sSpare == null && owner != null && owner == current && !player.isReleased()) {
+                        sSpare = player;
+                        sSpareLibVLC = owner;
+                        return;
+                    }
+                }
+                doRelease(player);
+            }
+        });
+    }
+
+    @VisibleForTesting
+    static boolean hasSpare() {
+        synchronized (sLock) {
+            return sSpare != null;
+        }
+    }
+
+    /**
+     * Keep a player handed out from being reused once given back, its settings can't be reset
+     */
+    public static void discard(@NonNull MediaPlayer player) {
+        synchronized (sLock) {
+            sOwners.remove(player);
+        }
+    }
+
+    /**
+     * Release a player on the pool thread
+     */
+    public static void release(@NonNull final MediaPlayer player) {
+        synchronized (sLock) {
+            sOwners.remove(player);
+        }
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                doRelease(player);
+            }
+        });
+    }
+
+    /**
+     * Drop the spare player, its LibVLC instance is no longer the current one
+     *
+     * @param rewarm true to create a new spare player for the next instance
+     */
+    public static void invalidate(boolean rewarm) {
+        final MediaPlayer spare;
+        synchronized (sLock) {
+            spare = sSpare;
+            sSpare = null;
+            sSpareLibVLC = null;
+        }
+        if (spare != null) release(spare);
+        if (rewarm) warm();
+    }
+
+    private static void reset(MediaPlayer player) {
+        player.setEventListener(null);
+        player.stop();
+        player.setMedia(null);
+        player.setRenderer(null);
+        player.setEqualizer(null);
+        player.setRate(1.0f);
+        player.setVolume(100);
+        player.setScale(0f);
+        player.setAspectRatio(null);
+        player.setVideoTitleDisplay(MediaPlayer.Position.Disable, 0);
+    }
+
+    private static void doRelease(MediaPlayer player) {
+        final long start = SystemClock.elapsedRealtime();
+        player.release();
+        final long duration = SystemClock.elapsedRealtime() - start;
+        if (BuildConfig.DEBUG && duration > SLOW_RELEASE) Log.w(TAG, "Player release took " + duration + "ms");
+    }
+}
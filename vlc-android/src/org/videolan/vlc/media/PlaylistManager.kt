@@ -28,7 +28,9 @@ import org.videolan.vlc.gui.preferences.PreferencesActivity
 import org.videolan.vlc.gui.preferences.PreferencesFragment
 import org.videolan.vlc.gui.video.VideoPlayerActivity
 import org.videolan.vlc.util.*
+import java.io.File
 import java.util.*
+import java.util.concurrent.Executors
 import org.videolan.vlc.util.Constants
 
 @ObsoleteCoroutinesApi
@@ -50,6 +52,11 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
     private val settings by lazy(LazyThreadSafetyMode.NONE) { VLCApplication.getSettings() }
     private val ctx by lazy(LazyThreadSafetyMode.NONE) { VLCApplication.getAppContext() }
     private val mediaList = MediaWrapperList()
+    // Reached from the main thread and from the IO dispatcher when the queue is loaded
+    private val videoQueue by lazy { PlayQueueStore(File(ctx.filesDir, "play_queue_video"), queueExecutor) }
+    private val audioQueue by lazy { PlayQueueStore(File(ctx.filesDir, "play_queue_audio"), queueExecutor) }
+    // Store holding mediaList, its edits are saved as they happen
+    private var savedQueue: PlayQueueStore? = null
     var currentIndex = -1
     private var nextIndex = -1
     private var prevIndex = -1
@@ -122,6 +129,7 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
              skipPlayer: Boolean=false,
              extras: Bundle?=null) {
         mediaList.removeEventListener(this)
+        savedQueue = null
         mediaList.clear(service.aceStreamManager)
         previous.clear()
         for (media in list) mediaList.add(media)
@@ -138,36 +146,63 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
         onPlaylistLoaded()
     }
 
-    fun getLastPlaylistSync(type: Int): ArrayList<MediaWrapper>? {
-        var playlist: ArrayList<MediaWrapper>? = null
+    fun getLastPlaylistSync(type: Int): List<MediaWrapper>? {
+        var playlist: List<MediaWrapper>? = null
         runBlocking {
             playlist = getLastPlaylist(type)
         }
         return playlist
     }
 
-    suspend fun getLastPlaylist(type: Int): ArrayList<MediaWrapper>? {
+    /**
+     * @return the saved play queue, decoded in the background without its unreadable items
+     */
+    suspend fun getLastPlaylist(type: Int): List<MediaWrapper>? {
+        val items = loadSavedQueue(type) ?: return null
+        return withContext(Dispatchers.Default) { items.mapNotNull { decodeQueueItem(it) } }
+    }
+
+    /**
+     * Look for the first P2P item of the saved play queue, decoding the items up to it only
+     */
+    fun getLastP2PItemSync(type: Int): MediaWrapper? {
+        var item: MediaWrapper? = null
+        runBlocking {
+            val items = loadSavedQueue(type)
+            if (items !== null) item = withContext(Dispatchers.Default) {
+                items.asSequence().mapNotNull { decodeQueueItem(it) }.firstOrNull { it.isP2PItem }
+            }
+        }
+        return item
+    }
+
+    private suspend fun loadSavedQueue(type: Int): List<String>? {
         val audio = type == Constants.PLAYLIST_TYPE_AUDIO
-        val locationsJson = settings.getString(if (audio) "audio_list" else "media_list", null)
-        if(locationsJson == null) {
+        val items = withContext(Dispatchers.IO) { queueStore(audio).load() ?: migrateLastPlaylist(audio) }
+        if(items == null || items.isEmpty()) {
             Logger.v(TAG, "loadLastPlaylist: empty playlist")
             return null
         }
+        return items
+    }
+
+    private fun decodeQueueItem(item: String) = try {
+        MediaWrapper.fromJson(item)
+    } catch (e: RuntimeException) {
+        Log.w(TAG, "Skipping unreadable play queue item", e)
+        null
+    }
+
+    /**
+     * Move the play queue saved as JSON in the preferences by previous versions to its store
+     */
+    private fun migrateLastPlaylist(audio: Boolean): List<String>? {
+        val key = if (audio) "audio_list" else "media_list"
+        val locationsJson = settings.getString(key, null) ?: return null
         val locations = Gson().fromJson<List<String>>(locationsJson, object : TypeToken<List<String>>() {}.getType())
-        if(locations == null || locations.isEmpty()) {
-            Logger.v(TAG, "loadLastPlaylist: empty playlist")
-            return null
-        }
-        return withContext(Dispatchers.Default) {
-            try {
-                locations.mapTo(ArrayList(locations.size)) { MediaWrapper.fromJson(it) }
-            }
-            catch(e: Throwable) {
-                AceStream.toast("Failed to load last playlist")
-                Logger.wtf(TAG, "Failed to load last playlist", e)
-                ArrayList<MediaWrapper>()
-            }
-        }
+        if (locations !== null) queueStore(audio).reset(locations)
+        settings.edit().remove(key).apply()
+        return locations
     }
 
     @Volatile
@@ -179,7 +214,7 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
         launch {
             val audio = type == Constants.PLAYLIST_TYPE_AUDIO
             val playList = getLastPlaylist(type)
-            if (playList === null) {
+            if (playList === null || playList.isEmpty()) {
                 loadingLastPlaylist = false
                 return@launch
             }
@@ -255,6 +290,7 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
 
         if(clearPlaylist) {
             mediaList.removeEventListener(this)
+            savedQueue = null
             previous.clear()
             currentIndex = -1
             mediaList.clear(service.aceStreamManager)
@@ -511,7 +547,7 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
                 if(mw.userAgent !== null) {
                     VLCInstance.setUserAgent(mw.userAgent)
                 }
-                player.startPlayback(media, mediaplayerEventListener)
+                player.startPlayback(media, mediaplayerEventListener, if (mw.id > 0L) mw.id.toString() else mw.location)
                 media.release()
 
                 playbackPostInit(mw)
@@ -646,10 +682,10 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
     override fun onItemAdded(index: Int, mrl: String?) {
         if (BuildConfig.DEBUG) Log.i(TAG, "CustomMediaListItemAdded")
         if (currentIndex >= index && !expanding) ++currentIndex
+        saveQueueEdit { it.add(index, mediaList.getMedia(index)?.toQueueItem()) }
         launch {
             determinePrevAndNextIndices()
             executeUpdate()
-            saveMediaList()
         }
     }
 
@@ -657,6 +693,7 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
         if (BuildConfig.DEBUG) Log.i(TAG, "CustomMediaListItemDeleted")
         val currentRemoved = currentIndex == index
         if (currentIndex >= index && !expanding) --currentIndex
+        saveQueueEdit { it.remove(index) }
         launch {
             determinePrevAndNextIndices()
             if (currentRemoved && !expanding) {
@@ -667,7 +704,6 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
                 }
             }
             executeUpdate()
-            saveMediaList()
         }
     }
 
@@ -682,6 +718,7 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
         Logger.v(TAG, "saveMediaMeta: uri=${media.metaUri}")
 
         val canSwitchToVideo = player.canSwitchToVideo()
+        val meta = media.editMeta()
         if (media.type == MediaWrapper.TYPE_VIDEO || canSwitchToVideo || media.isPodcast) {
             //Save progress
             val time = service.time
@@ -695,33 +732,35 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
             if (progress > 0.95f || length - time < 10000) {
                 //increase seen counter if more than 95% of the media have been seen
                 //and reset progress to 0
-                media.setLongMeta(MediaWrapper.META_SEEN, ++media.seen)
+                meta.putLong(MediaWrapper.META_SEEN, ++media.seen)
                 progress = 0f
             }
             media.time = if (progress == 0f) 0L else time
-            media.setLongMeta(MediaWrapper.META_PROGRESS, media.time)
+            meta.putLong(MediaWrapper.META_PROGRESS, media.time)
             //:ace
             if(media.isP2PItem) {
-                media.setLongMeta(MediaWrapper.META_DURATION, length)
+                meta.putLong(MediaWrapper.META_DURATION, length)
             }
             ///ace
         }
         if (canSwitchToVideo) {
             //Save audio delay
             if (settings.getBoolean("save_individual_audio_delay", false))
-                media.setLongMeta(MediaWrapper.META_AUDIODELAY, player.getAudioDelay())
-            media.setLongMeta(MediaWrapper.META_SUBTITLE_DELAY, player.getSpuDelay())
-            media.setLongMeta(MediaWrapper.META_SUBTITLE_TRACK, player.getSpuTrack().toLong())
+                meta.putLong(MediaWrapper.META_AUDIODELAY, player.getAudioDelay())
+            meta.putLong(MediaWrapper.META_SUBTITLE_DELAY, player.getSpuDelay())
+            meta.putLong(MediaWrapper.META_SUBTITLE_TRACK, player.getSpuTrack().toLong())
         }
+        meta.apply()
     }
 
     private fun loadMediaMeta(media: MediaWrapper) {
         if (media.id == 0L) return
         if (player.canSwitchToVideo()) {
+            val meta = media.getMetaLongs(MediaWrapper.META_AUDIODELAY, MediaWrapper.META_SUBTITLE_TRACK, MediaWrapper.META_SUBTITLE_DELAY)
             if (settings.getBoolean("save_individual_audio_delay", false))
-                player.setAudioDelay(media.getMetaLong(MediaWrapper.META_AUDIODELAY))
-            player.setSpuTrack(media.getMetaLong(MediaWrapper.META_SUBTITLE_TRACK).toInt())
-            player.setSpuDelay(media.getMetaLong(MediaWrapper.META_SUBTITLE_DELAY))
+                player.setAudioDelay(meta[0])
+            player.setSpuTrack(meta[1].toInt())
+            player.setSpuDelay(meta[2])
         }
     }
 
@@ -732,38 +771,54 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
                 .apply()
     }
 
-    @Synchronized
+    /**
+     * Save the whole media list, or the given one. Once saved, the edits of the media list are
+     * saved as they happen and saving it again does nothing.
+     */
     fun saveMediaList(list: MediaWrapperList?=null) {
         Log.v(TAG, "saveMediaList")
 
-        val listToSave: MediaWrapperList
-        val isAudio: Boolean
-        if(list === null) {
-            listToSave = mediaList
-            if (getCurrentMedia() === null) return
-            isAudio = isAudioList()
+        // Edits are saved from the media list events, under its lock
+        synchronized(mediaList) {
+            val store: PlayQueueStore
+            if(list === null) {
+                if (getCurrentMedia() === null) return
+                store = queueStore(isAudioList())
+                if (savedQueue === store) return
+                savedQueue = store
+            }
+            else {
+                store = queueStore(list.isAudioList)
+                if (savedQueue === store) savedQueue = null
+            }
+
+            store.reset((list ?: mediaList).all.map { it.toQueueItem() })
         }
+    }
+
+    private fun saveQueueEdit(edit: (PlayQueueStore) -> Unit) = synchronized(mediaList) {
+        val store = savedQueue
+        // The list switched between audio and video, it is saved whole in the other store
+        if (store !== null && store === queueStore(isAudioList())) edit(store)
         else {
-            listToSave = list
-            isAudio = list.isAudioList
+            savedQueue = null
+            saveMediaList()
         }
+    }
 
-        val locations = ArrayList<String>()
-        for (mw in listToSave.all) {
-            if(mw.uri !== null && mw.uri.toString().startsWith("acestream:?data=content%3A%2F%2F")) {
-                // Skip p2p items with "content://" scheme
-                continue
-            }
-            locations.add(mw.toJson())
-        }
-        val data = Gson().toJson(locations)
-        settings.edit()
-                .putString(if (!isAudio) "media_list" else "audio_list", data)
-                .apply()
+    private fun queueStore(audio: Boolean) = if (audio) audioQueue else videoQueue
+
+    /**
+     * @return null for items which can't be restored
+     */
+    private fun MediaWrapper.toQueueItem(): String? {
+        // Skip p2p items with "content://" scheme
+        if(uri !== null && uri.toString().startsWith("acestream:?data=content%3A%2F%2F")) return null
+        return toJson()
     }
 
     fun hasLastPlaylist(): Boolean {
-        return settings.contains("media_list")
+        return videoQueue.exists() || settings.contains("media_list")
     }
 
     override fun onItemMoved(indexBefore: Int, indexAfter: Int, mrl: String?) {
@@ -780,10 +835,10 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
         // If we are in random mode, we completely reset the stored previous track
         // as their indices changed.
         previous.clear()
+        saveQueueEdit { it.move(indexBefore, indexAfter) }
         launch {
             determinePrevAndNextIndices()
             executeUpdate()
-            saveMediaList()
         }
     }
 
@@ -1122,4 +1177,7 @@ class PlaylistManager(val service: PlaybackService) : MediaWrapperList.EventList
         }
     }
     ///ace
-}
\ No newline at end of file
+}
+
+// Writes of both queues, in the order of the edits
+private val queueExecutor by lazy { Executors.newSingleThreadExecutor() }
@@ -0,0 +1,517 @@
+/*****************************************************************************
+ * QosSampler.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.media;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import org.videolan.libvlc.Media;
+
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Playback quality of service of the current media.
+ *
+ * The libvlc stats of the media are polled at a fixed interval into a ring of the latest samples,
+ * kept in primitive arrays along with the last state of the P2P engine. Stalls are counted from the
+ * Buffering events received once playback started, except those following a seek.
+ *
+ * libvlc counters are cumulative for a media, a session is the playback of one media and its
+ * {@link Summary} is returned when it stops.
+ */
+public class QosSampler {
+
+    public static final int ENGINE_NONE = 0;
+    public static final int ENGINE_STARTING = 1;
+    public static final int ENGINE_PREBUFFERING = 2;
+    public static final int ENGINE_DOWNLOADING = 3;
+    public static final int ENGINE_ERROR = 4;
+    public static final int ENGINE_OTHER = 5;
+
+    /* libvlc bitrates are in bytes per microsecond */
+    private static final float KBPS = 8000f;
+
+    public interface StatsSource {
+        @Nullable
+        Media.Stats getStats();
+    }
+
+    /**
+     * One sample, filled by {@link #getSample(int, Sample)}
+     */
+    public static class Sample {
+        public long time;
+        public float inputBitrate;
+        public float demuxBitrate;
+        public int displayedPictures;
+        public int lostPictures;
+        public int playedAudioBuffers;
+        public int lostAudioBuffers;
+        public int corrupted;
+        public int discontinuities;
+        public boolean stalled;
+        public int engineState;
+        public int peers;
+        public int speedDown;
+        public int speedUp;
+    }
+
+    private final ScheduledExecutorService mExecutor;
+    private final int mCapacity;
+    private long mInterval;
+
+    private final long[] mTimes;
+    private final float[] mInputBitrates;
+    private final float[] mDemuxBitrates;
+    private final int[] mDisplayedPictures;
+    private final int[] mLostPictures;
+    private final int[] mPlayedAudioBuffers;
+    private final int[] mLostAudioBuffers;
+    private final int[] mCorrupted;
+    private final int[] mDiscontinuities;
+    private final boolean[] mStalled;
+    private final byte[] mEngineStates;
+    private final int[] mPeers;
+    private final int[] mSpeedDown;
+    private final int[] mSpeedUp;
+    /* index of the next sample */
+    private int mHead = 0;
+    private int mCount = 0;
+
+    private String mKey = null;
+    private StatsSource mSource = null;
+    private ScheduledFuture<?> mTask = null;
+    private long mStartTime;
+    private boolean mPlaying;
+    private boolean mSeeking;
+    private boolean mStalledNow;
+    private long mStallStart;
+    private int mRebuffers;
+    private long mRebufferTime;
+
+    /* whole session, the ring only holds the latest samples */
+    private int mSessionSamples;
+    private double mBitrateSum;
+    private double mBitrateSquares;
+    private int mEngineSamples;
+    private long mPeersSum;
+    private int mPeersMin;
+    private long mSpeedDownSum;
+
+    private int mEngineState = ENGINE_NONE;
+    private int mEnginePeers;
+    private int mEngineSpeedDown;
+    private int mEngineSpeedUp;
+
+    private final Runnable mSampleTask = new Runnable() {
+        @Override
+        public void run() {
+            sample();
+        }
+    };
+
+    /**
+     * @param executor executor polling the stats, null to call {@link #sample()} directly
+     * @param capacity number of samples kept
+     * @param interval polling interval in ms
+     */
+    public QosSampler(@Nullable ScheduledExecutorService executor, int capacity, long interval) {
+        mExecutor = executor;
+        mCapacity = capacity;
+        mInterval = interval;
+        mTimes = new long[capacity];
+        mInputBitrates = new float[capacity];
+        mDemuxBitrates = new float[capacity];
+        mDisplayedPictures = new int[capacity];
+        mLostPictures = new int[capacity];
+        mPlayedAudioBuffers = new int[capacity];
+        mLostAudioBuffers = new int[capacity];
+        mCorrupted = new int[capacity];
+        mDiscontinuities = new int[capacity];
+        mStalled = new boolean[capacity];
+        mEngineStates = new byte[capacity];
+        mPeers = new int[capacity];
+        mSpeedDown = new int[capacity];
+        mSpeedUp = new int[capacity];
+    }
+
+    @VisibleForTesting
+    long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Start a new session, the previous one is dropped if it was not stopped.
+     *
+     * @param key id of the media played
+     * @param source stats of the media, only polled until {@link #stop()} returns
+     */
+    public synchronized void start(String key, StatsSource source) {
+        cancelTask();
+        mKey = key;
+        mSource = source;
+        mStartTime = now();
+        mHead = mCount = 0;
+        mPlaying = mSeeking = mStalledNow = false;
+        mRebuffers = 0;
+        mRebufferTime = 0L;
+        mSessionSamples = mEngineSamples = 0;
+        mBitrateSum = mBitrateSquares = 0.0;
+        mPeersSum = mSpeedDownSum = 0L;
+        mPeersMin = Integer.MAX_VALUE;
+        mEngineState = ENGINE_NONE;
+        mEnginePeers = mEngineSpeedDown = mEngineSpeedUp = 0;
+        schedule();
+    }
+
+    /**
+     * Stop the current session
+     *
+     * @return its summary, null if there was no session
+     */
+    @Nullable
+    public synchronized Summary stop() {
+        if (mSource == null) return null;
+        cancelTask();
+        sample();
+        final Summary summary = getSummary();
+        mSource = null;
+        mKey = null;
+        return summary;
+    }
+
+    public synchronized void setInterval(long interval) {
+        mInterval = interval;
+        if (mTask != null) {
+            cancelTask();
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (mExecutor != null && mSource != null)
+            mTask = mExecutor.scheduleAtFixedRate(mSampleTask, mInterval, mInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelTask() {
+        if (mTask != null) {
+            mTask.cancel(false);
+            mTask = null;
+        }
+    }
+
+    public synchronized void onPlaying() {
+        mPlaying = true;
+        endStall();
+    }
+
+    public synchronized void onSeek() {
+        mSeeking = true;
+    }
+
+    /**
+     * @param percent buffering percentage of the player Buffering event
+     */
+    public synchronized void onBuffering(float percent) {
+        if (percent >= 100f) {
+            mSeeking = false;
+            endStall();
+        } else if (mPlaying && !mSeeking && !mStalledNow) {
+            mStalledNow = true;
+            mStallStart = now();
+            ++mRebuffers;
+        }
+    }
+
+    private void endStall() {
+        if (mStalledNow) {
+            mStalledNow = false;
+            mRebufferTime += now() - mStallStart;
+        }
+    }
+
+    /**
+     * Update the P2P engine state, sampled with the following stats
+     *
+     * @param status status of the engine, as reported by its status listener
+     */
+    public synchronized void onEngineStatus(@Nullable String status, int peers, int speedDown, int speedUp) {
+        mEngineState = getEngineState(status);
+        mEnginePeers = peers;
+        mEngineSpeedDown = speedDown;
+        mEngineSpeedUp = speedUp;
+    }
+
+    static int getEngineState(@Nullable String status) {
+        if (status == null) return ENGINE_NONE;
+        switch (status) {
+            case "engine_unpacking":
+            case "engine_starting":
+            case "loading":
+            case "starting":
+            case "checking":
+                return ENGINE_STARTING;
+            case "prebuf":
+            case "buf":
+                return ENGINE_PREBUFFERING;
+            case "dl":
+                return ENGINE_DOWNLOADING;
+            case "error":
+            case "engine_failed":
+                return ENGINE_ERROR;
+            default:
+                return ENGINE_OTHER;
+        }
+    }
+
+    /**
+     * Poll the stats of the current session
+     */
+    public synchronized void sample() {
+        if (mSource == null) return;
+        final Media.Stats stats = mSource.getStats();
+        if (stats == null) return;
+        final int i = mHead;
+        final float bitrate = stats.inputBitrate * KBPS;
+        mTimes[i] = now();
+        mInputBitrates[i] = bitrate;
+        mDemuxBitrates[i] = stats.demuxBitrate * KBPS;
+        mDisplayedPictures[i] = stats.displayedPictures;
+        mLostPictures[i] = stats.lostPictures;
+        mPlayedAudioBuffers[i] = stats.playedAbuffers;
+        mLostAudioBuffers[i] = stats.lostAbuffers;
+        mCorrupted[i] = stats.demuxCorrupted;
+        mDiscontinuities[i] = stats.demuxDiscontinuity;
+        mStalled[i] = mStalledNow;
+        mEngineStates[i] = (byte) mEngineState;
+        mPeers[i] = mEnginePeers;
+        mSpeedDown[i] = mEngineSpeedDown;
+        mSpeedUp[i] = mEngineSpeedUp;
+        mHead = (i + 1) % mCapacity;
+        if (mCount < mCapacity) ++mCount;
+
+        ++mSessionSamples;
+        mBitrateSum += bitrate;
+        mBitrateSquares += (double) bitrate * bitrate;
+        if (mEngineState != ENGINE_NONE) {
+            ++mEngineSamples;
+            mPeersSum += mEnginePeers;
+            mPeersMin = Math.min(mPeersMin, mEnginePeers);
+            mSpeedDownSum += mEngineSpeedDown;
+        }
+    }
+
+    public synchronized int getSampleCount() {
+        return mCount;
+    }
+
+    /**
+     * @param index index of the sample, 0 being the oldest one kept
+     * @param sample filled with the sample
+     */
+    public synchronized void getSample(int index, Sample sample) {
+        if (index < 0 || index >= mCount) throw new IndexOutOfBoundsException("index " + index + ", count " + mCount);
+        final int i = ringIndex(index);
+        sample.time = mTimes[i];
+        sample.inputBitrate = mInputBitrates[i];
+        sample.demuxBitrate = mDemuxBitrates[i];
+        sample.displayedPictures = mDisplayedPictures[i];
+        sample.lostPictures = mLostPictures[i];
+        sample.playedAudioBuffers = mPlayedAudioBuffers[i];
+        sample.lostAudioBuffers = mLostAudioBuffers[i];
+        sample.corrupted = mCorrupted[i];
+        sample.discontinuities = mDiscontinuities[i];
+        sample.stalled = mStalled[i];
+        sample.engineState = mEngineStates[i];
+        sample.peers = mPeers[i];
+        sample.speedDown = mSpeedDown[i];
+        sample.speedUp = mSpeedUp[i];
+    }
+
+    private int ringIndex(int index) {
+        return (mHead - mCount + index + mCapacity) % mCapacity;
+    }
+
+    /**
+     * Percentage of the pictures lost over the samples kept
+     */
+    public synchronized float getDroppedFramePercent() {
+        if (mCount == 0) return 0f;
+        final int first = ringIndex(0), last = ringIndex(mCount - 1);
+        final int since = mCount == 1 ? -1 : first;
+        return percent(delta(mLostPictures, since, last), delta(mDisplayedPictures, since, last));
+    }
+
+    /**
+     * Percentage of the audio buffers lost over the samples kept
+     */
+    public synchronized float getLostAudioPercent() {
+        if (mCount == 0) return 0f;
+        final int first = ringIndex(0), last = ringIndex(mCount - 1);
+        final int since = mCount == 1 ? -1 : first;
+        return percent(delta(mLostAudioBuffers, since, last), delta(mPlayedAudioBuffers, since, last));
+    }
+
+    private static int delta(int[] counters, int since, int last) {
+        return since == -1 ? counters[last] : counters[last] - counters[since];
+    }
+
+    private static float percent(int lost, int done) {
+        return lost <= 0 ? 0f : 100f * lost / (lost + Math.max(done, 0));
+    }
+
+    /**
+     * Mean input bitrate over the samples kept, in kb/s
+     */
+    public synchronized float getMeanBitrate() {
+        if (mCount == 0) return 0f;
+        double sum = 0.0;
+        for (int i = 0; i < mCount; ++i) sum += mInputBitrates[ringIndex(i)];
+        return (float) (sum / mCount);
+    }
+
+    /**
+     * Variance of the input bitrate over the samples kept, in (kb/s)²
+     */
+    public synchronized float getBitrateVariance() {
+        if (mCount == 0) return 0f;
+        final double mean = getMeanBitrate();
+        double squares = 0.0;
+        for (int i = 0; i < mCount; ++i) {
+            final double d = mInputBitrates[ringIndex(i)] - mean;
+            squares += d * d;
+        }
+        return (float) (squares / mCount);
+    }
+
+    public synchronized int getRebufferCount() {
+        return mRebuffers;
+    }
+
+    /**
+     * Summary of the current session
+     *
+     * @return the summary, null if there is no session
+     */
+    @Nullable
+    public synchronized Summary getSummary() {
+        if (mKey == null) return null;
+        final long now = now();
+        final int last = mCount == 0 ? -1 : ringIndex(mCount - 1);
+        final double meanBitrate = mSessionSamples == 0 ? 0.0 : mBitrateSum / mSessionSamples;
+        final double variance = mSessionSamples == 0 ? 0.0 : Math.max(0.0, mBitrateSquares / mSessionSamples - meanBitrate * meanBitrate);
+        return new Summary(mKey, System.currentTimeMillis(), now - mStartTime, mSessionSamples,
+                last == -1 ? 0f : percent(mLostPictures[last], mDisplayedPictures[last]),
+                last == -1 ? 0f : percent(mLostAudioBuffers[last], mPlayedAudioBuffers[last]),
+                mRebuffers, mRebufferTime + (mStalledNow ? now - mStallStart : 0L),
+                (float) meanBitrate, (float) Math.sqrt(variance),
+                last == -1 ? 0 : mCorrupted[last], last == -1 ? 0 : mDiscontinuities[last],
+                mEngineSamples == 0 ? 0f : (float) mPeersSum / mEngineSamples,
+                mEngineSamples == 0 ? 0 : mPeersMin,
+                mEngineSamples == 0 ? 0f : (float) mSpeedDownSum / mEngineSamples,
+                mEngineState);
+    }
+
+    /**
+     * Quality of service of a whole session, encoded in a compact string to be persisted
+     */
+    public static class Summary {
+        private static final int VERSION = 1;
+        private static final int FIELDS = 16;
+
+        public final String key;
+        /* wall clock time, in ms */
+        public final long date;
+        public final long duration;
+        public final int samples;
+        public final float droppedFramePercent;
+        public final float lostAudioPercent;
+        public final int rebuffers;
+        public final long rebufferTime;
+        /* in kb/s */
+        public final float meanBitrate;
+        public final float bitrateDeviation;
+        public final int corrupted;
+        public final int discontinuities;
+        public final float meanPeers;
+        public final int minPeers;
+        public final float meanSpeedDown;
+        public final int engineState;
+
+        public Summary(String key, long date, long duration, int samples, float droppedFramePercent,
+                       float lostAudioPercent, int rebuffers, long rebufferTime, float meanBitrate,
+                       float bitrateDeviation, int corrupted, int discontinuities, float meanPeers,
+                       int minPeers, float meanSpeedDown, int engineState) {
+            this.key = key;
+            this.date = date;
+            this.duration = duration;
+            this.samples = samples;
+            this.droppedFramePercent = droppedFramePercent;
+            this.lostAudioPercent = lostAudioPercent;
+            this.rebuffers = rebuffers;
+            this.rebufferTime = rebufferTime;
+            this.meanBitrate = meanBitrate;
+            this.bitrateDeviation = bitrateDeviation;
+            this.corrupted = corrupted;
+            this.discontinuities = discontinuities;
+            this.meanPeers = meanPeers;
+            this.minPeers = minPeers;
+            this.meanSpeedDown = meanSpeedDown;
+            this.engineState = engineState;
+        }
+
+        /**
+         * @return the summary without its key, which the caller stores it with
+         */
+        public String encode() {
+            return String.format(Locale.US, "%d,%d,%d,%d,%.2f,%.2f,%d,%d,%.1f,%.1f,%d,%d,%.1f,%d,%.1f,%d",
+                    VERSION, date, duration, samples, droppedFramePercent, lostAudioPercent, rebuffers,
+                    rebufferTime, meanBitrate, bitrateDeviation, corrupted, discontinuities, meanPeers,
+                    minPeers, meanSpeedDown, engineState);
+        }
+
+        /**
+         * @return the summary, null if it can't be decoded
+         */
+        @Nullable
+        public static Summary decode(String key, @Nullable String encoded) {
+            if (encoded == null) return null;
+            final String[] fields = encoded.split(",");
+            if (fields.length != FIELDS) return null;
+            try {
+                if (Integer.parseInt(fields[0]) != VERSION) return null;
+                return new Summary(key, Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                        Integer.parseInt(fields[3]), Float.parseFloat(fields[4]), Float.parseFloat(fields[5]),
+                        Integer.parseInt(fields[6]), Long.parseLong(fields[7]), Float.parseFloat(fields[8]),
+                        Float.parseFloat(fields[9]), Integer.parseInt(fields[10]), Integer.parseInt(fields[11]),
+                        Float.parseFloat(fields[12]), Integer.parseInt(fields[13]), Float.parseFloat(fields[14]),
+                        Integer.parseInt(fields[15]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
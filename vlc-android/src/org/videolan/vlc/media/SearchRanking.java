@@ -0,0 +1,109 @@
+/*****************************************************************************
+ * SearchRanking.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.media;
+
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Full text queries and BM25 scoring of their results.
+ *
+ * The bm25() function of FTS5 is not available with the SQLite versions we support, the
+ * score is computed from the FTS4 matchinfo(table, 'pcnalx') statistics instead.
+ */
+public class SearchRanking {
+
+    public static final String MATCHINFO_FORMAT = "pcnalx";
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * Build a MATCH expression from what the user typed: words are matched as terms and the
+     * last one, still being typed, as a prefix. Operators and quotes are not interpreted.
+     * @return null if there is no word to search
+     */
+    @Nullable
+    public static String toMatchQuery(String input) {
+        if (input == null) return null;
+        final StringBuilder query = new StringBuilder(input.length() + 2);
+        final int length = input.length();
+        boolean inWord = false;
+        for (int i = 0; i < length; ++i) {
+            final char c = input.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (!inWord && query.length() > 0) query.append(' ');
+                // The simple tokenizer only folds ASCII letters, and upper case words could be operators
+                query.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+                inWord = true;
+            } else
+                inWord = false;
+        }
+        if (query.length() == 0) return null;
+        // A separator after the last word means it is complete
+        if (inWord) query.append('*');
+        return query.toString();
+    }
+
+    /**
+     * @param blob result of matchinfo(), an array of native order 32 bits unsigned integers
+     */
+    public static int[] parseMatchinfo(byte[] blob) {
+        final ByteBuffer buffer = ByteBuffer.wrap(blob).order(ByteOrder.nativeOrder());
+        final int[] values = new int[blob.length / 4];
+        for (int i = 0; i < values.length; ++i) values[i] = buffer.getInt();
+        return values;
+    }
+
+    /**
+     * Okapi BM25 score of a row, summed over phrases and columns.
+     * @param matchinfo values of matchinfo() with the {@link #MATCHINFO_FORMAT} format
+     * @param weights weight of each column, columns without weight are ignored
+     * @return the score, higher is better
+     */
+    public static double bm25(int[] matchinfo, double[] weights) {
+        final int phrases = matchinfo[0];
+        final int columns = matchinfo[1];
+        final long rows = matchinfo[2] & 0xffffffffL;
+        final int averages = 3;
+        final int lengths = averages + columns;
+        final int hits = lengths + columns;
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; ++phrase) {
+            for (int column = 0; column < columns && column < weights.length; ++column) {
+                if (weights[column] == 0) continue;
+                final int x = hits + 3 * (phrase * columns + column);
+                final int frequency = matchinfo[x];
+                if (frequency == 0) continue;
+                final long rowsWithHits = matchinfo[x + 2] & 0xffffffffL;
+                // Kept positive for terms found in most rows, as in FTS5
+                final double idf = Math.max(1e-6, Math.log((rows - rowsWithHits + 0.5) / (rowsWithHits + 0.5)));
+                final double average = Math.max(1, matchinfo[averages + column]);
+                final double length = matchinfo[lengths + column];
+                score += weights[column] * idf * (frequency * (K1 + 1))
+                        / (frequency + K1 * (1 - B + B * length / average));
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,128 @@
+/*****************************************************************************
+ * ThumbnailStore.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.media;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+/**
+ * Thumbnails stored as files named after the SHA-1 of their content.
+ *
+ * Identical images are stored once, and a file never changes once written, so it can be
+ * read without holding any lock. Files are spread in 256 sub-directories named after the
+ * first byte of the hash. Which media uses which hash is recorded by the caller,
+ * {@link #compact(Set)} removes the files it does not reference anymore.
+ */
+public class ThumbnailStore {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File mDirectory;
+
+    public ThumbnailStore(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Store an image, if an identical one is not already stored.
+     * @return the hash of the image, or null if it could not be written
+     */
+    @Nullable
+    public String put(byte[] data) {
+        final String hash = hash(data);
+        if (hash == null) return null;
+        final File file = getFile(hash);
+        if (file.exists() && file.length() == data.length) return hash;
+        final File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs() && !dir.exists()) return null;
+        final File tmp = new File(dir, hash + "." + Thread.currentThread().getId() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            out.write(data);
+            out.close();
+            out = null;
+            if (tmp.renameTo(file)) return hash;
+            // written meanwhile by another thread
+            return file.exists() ? hash : null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (out != null) try {
+                out.close();
+            } catch (IOException ignored) {}
+            tmp.delete();
+        }
+    }
+
+    /**
+     * @return the file of this hash, to be read directly. It may not exist.
+     */
+    public File getFile(String hash) {
+        return new File(new File(mDirectory, hash.substring(0, 2)), hash);
+    }
+
+    public boolean contains(String hash) {
+        return hash != null && hash.length() > 2 && getFile(hash).exists();
+    }
+
+    /**
+     * Delete the images which are not referenced anymore, and leftovers of interrupted writes.
+     * @param liveHashes hashes still in use
+     * @return the number of deleted files
+     */
+    public int compact(Set<String> liveHashes) {
+        int deleted = 0;
+        final File[] dirs = mDirectory.listFiles();
+        if (dirs == null) return 0;
+        for (File dir : dirs) {
+            final File[] files = dir.listFiles();
+            if (files == null) continue;
+            for (File file : files) {
+                if (!liveHashes.contains(file.getName()) && file.delete()) ++deleted;
+            }
+            dir.delete(); // only succeeds if empty
+        }
+        return deleted;
+    }
+
+    @Nullable
+    static String hash(byte[] data) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+            final char[] chars = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; ++i) {
+                chars[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+                chars[i * 2 + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*****************************************************************************
+ * TitleGrouper.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.media;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * Grouping of titles by common prefix, as done by {@link MediaGroup#group(java.util.List, int)}.
+ *
+ * A title joins the first group sharing at least minGroupLength characters with it, once
+ * lowercased and stripped of a leading "the". Merging only shortens a group title down to
+ * the common prefix, so the first minGroupLength characters of a group never change:
+ * groups are looked up by this prefix in a map instead of comparing the title with every
+ * group. Titles with an explicit group name join the first group having this name.
+ */
+public class TitleGrouper {
+
+    private final int mMinGroupLength;
+    private final ArrayList<Group> mGroups = new ArrayList<>();
+    /* First minGroupLength characters of the normalized title -> first group with this prefix */
+    private final HashMap<String, Group> mByPrefix = new HashMap<>();
+    /* Group name -> groups having this name, in creation order */
+    private final HashMap<String, TreeSet<Integer>> mByName = new HashMap<>();
+    private String mMergedTitle;
+
+    private static final class Group {
+        final int index;
+        /* Title shown for the group, and its lowercase form */
+        String title;
+        String lowerTitle;
+        /* Explicit or merged group name, null if none */
+        String name;
+
+        Group(int index, String title, String name) {
+            this.index = index;
+            this.title = title;
+            this.lowerTitle = title.toLowerCase();
+            this.name = name;
+        }
+    }
+
+    /**
+     * @param minGroupLength minimum common prefix length, 0 disables grouping
+     */
+    public TitleGrouper(int minGroupLength) {
+        mMinGroupLength = Math.max(0, minGroupLength);
+    }
+
+    /**
+     * @param title title of the media
+     * @param groupName explicit group name of the media, or null
+     * @return index of the group the media belongs to. It is equal to the previous
+     * number of groups when a new group has been created.
+     */
+    public int add(String title, String groupName) {
+        mMergedTitle = null;
+        if (groupName != null && !groupName.isEmpty()) {
+            // Explicit group name: no prefix matching
+            final TreeSet<Integer> named = mByName.get(groupName);
+            if (named != null && !named.isEmpty()) return named.first();
+            return create(groupName, groupName);
+        }
+        final String key = normalize(title.toLowerCase());
+        if (mMinGroupLength == 0 || key.length() < mMinGroupLength) return create(title, null);
+        final Group group = mByPrefix.get(key.substring(0, mMinGroupLength));
+        if (group == null) return create(title, null);
+
+        final String lowerTitle = group.lowerTitle;
+        final int offset = lowerTitle.startsWith("the") ? 4 : 0;
+        final String groupKey = normalize(lowerTitle);
+        final int minLength = Math.min(groupKey.length(), key.length());
+        int commonLength = mMinGroupLength;
+        while (commonLength < minLength && groupKey.charAt(commonLength) == key.charAt(commonLength))
+            ++commonLength;
+        if (commonLength != lowerTitle.length()) {
+            // not the same prefix, but close: merge
+            final String merged = lowerTitle.substring(0, commonLength + offset);
+            setName(group, merged);
+            group.title = merged;
+            group.lowerTitle = merged;
+            mMergedTitle = merged;
+        }
+        return group.index;
+    }
+
+    /**
+     * @return the new title of the group if the last added title has been merged into it, null otherwise
+     */
+    public String getMergedTitle() {
+        return mMergedTitle;
+    }
+
+    public int getGroupCount() {
+        return mGroups.size();
+    }
+
+    public String getTitle(int index) {
+        return mGroups.get(index).title;
+    }
+
+    private int create(String title, String name) {
+        final Group group = new Group(mGroups.size(), title, name);
+        mGroups.add(group);
+        if (name != null) setName(group, name);
+        if (mMinGroupLength > 0) {
+            final String key = normalize(group.lowerTitle);
+            if (key.length() >= mMinGroupLength) {
+                final String prefix = key.substring(0, mMinGroupLength);
+                if (!mByPrefix.containsKey(prefix)) mByPrefix.put(prefix, group);
+            }
+        }
+        return group.index;
+    }
+
+    private void setName(Group group, String name) {
+        if (group.name != null) {
+            final TreeSet<Integer> previous = mByName.get(group.name);
+            if (previous != null) previous.remove(group.index);
+        }
+        group.name = name;
+        TreeSet<Integer> named = mByName.get(name);
+        if (named == null) {
+            named = new TreeSet<>();
+            mByName.put(name, named);
+        }
+        named.add(group.index);
+    }
+
+    /**
+     * Handle titles starting with "The"
+     */
+    private static String normalize(String lowerTitle) {
+        return lowerTitle.startsWith("the") ? lowerTitle.substring(Math.min(4, lowerTitle.length())) : lowerTitle;
+    }
+}
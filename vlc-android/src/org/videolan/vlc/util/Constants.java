@@ -111,5 +111,6 @@ public class Constants {
 
     //:ace
     public final static String ACTION_MEDIALIBRARY_UPDATED = "action_ml_updated";
+    public final static String KEY_PTF_MAX_REQUESTS = "ptf_max_requests";
     ///ace
 }
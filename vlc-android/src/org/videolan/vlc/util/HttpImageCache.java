@@ -0,0 +1,330 @@
+/*****************************************************************************
+ * HttpImageCache.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.util;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Disk cache for remote images.
+ *
+ * Responses are stored with their validators (ETag, Last-Modified) and expiration date.
+ * Stale entries are revalidated with a conditional request, a 304 answer only refreshes
+ * the metadata. Connections are not disconnected after a successful read so that
+ * HttpURLConnection can keep them alive, and the number of simultaneous requests per
+ * host is bounded.
+ */
+public class HttpImageCache {
+
+    private static final String DATA_SUFFIX = ".img";
+    private static final String META_SUFFIX = ".meta";
+    private static final String KEY_URL = "url";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "last-modified";
+    private static final String KEY_EXPIRES = "expires";
+
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 15000;
+    /* Used when the server does not send any freshness information */
+    private static final long DEFAULT_MAX_AGE = 24 * 60 * 60 * 1000L;
+
+    private final File mDirectory;
+    private final long mMaxSize;
+    private final int mMaxRequestsPerHost;
+    private final Map<String, Semaphore> mHostPermits = new HashMap<>();
+    private long mSize = -1L;
+
+    /* Statistics, mainly for tests and debug logs */
+    private final AtomicInteger mNetworkCount = new AtomicInteger();
+    private final AtomicInteger mRevalidatedCount = new AtomicInteger();
+
+    public HttpImageCache(File directory, long maxSize, int maxRequestsPerHost) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+        mMaxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * Get the local copy of the image, downloading or revalidating it if needed.
+     * A stale copy is returned if the server cannot be reached.
+     * @return the image file, or null if it is not available
+     */
+    @Nullable
+    @WorkerThread
+    public File get(String imageUrl) {
+        final String name = getFileName(imageUrl);
+        final File data = new File(mDirectory, name + DATA_SUFFIX);
+        final File metaFile = new File(mDirectory, name + META_SUFFIX);
+        final Properties meta = data.exists() ? readMeta(metaFile) : null;
+        if (meta != null && !imageUrl.equals(meta.getProperty(KEY_URL))) {
+            // hash collision, drop the previous entry
+            return fetch(imageUrl, data, metaFile, null) ? data : null;
+        }
+        if (meta != null && parseLong(meta.getProperty(KEY_EXPIRES)) > System.currentTimeMillis()) {
+            data.setLastModified(System.currentTimeMillis());
+            return data;
+        }
+        if (fetch(imageUrl, data, metaFile, meta)) return data;
+        return meta != null && data.exists() ? data : null;
+    }
+
+    public int getNetworkCount() {
+        return mNetworkCount.get();
+    }
+
+    public int getRevalidatedCount() {
+        return mRevalidatedCount.get();
+    }
+
+    @WorkerThread
+    public synchronized void clear() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        mSize = 0L;
+    }
+
+    private boolean fetch(String imageUrl, File data, File metaFile, @Nullable Properties meta) {
+        HttpURLConnection connection = null;
+        InputStream in = null;
+        final URL url;
+        final Semaphore permits;
+        try {
+            url = new URL(imageUrl);
+            permits = getHostPermits(url.getHost());
+            permits.acquire();
+        } catch (IOException|InterruptedException e) {
+            return false;
+        }
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            connection.setUseCaches(false);
+            if (meta != null) {
+                final String etag = meta.getProperty(KEY_ETAG);
+                final String lastModified = meta.getProperty(KEY_LAST_MODIFIED);
+                if (etag != null) connection.setRequestProperty("If-None-Match", etag);
+                if (lastModified != null) connection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+            mNetworkCount.incrementAndGet();
+            final int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && meta != null) {
+                mRevalidatedCount.incrementAndGet();
+                // Keep previous validators if the server omits them
+                fillMeta(meta, connection);
+                writeMeta(metaFile, meta);
+                data.setLastModified(System.currentTimeMillis());
+                consume(connection);
+                return true;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                consume(connection);
+                return false;
+            }
+            in = new BufferedInputStream(connection.getInputStream());
+            final File tmp = new File(mDirectory, data.getName() + "." + Thread.currentThread().getId());
+            if (!mDirectory.exists()) mDirectory.mkdirs();
+            if (!copy(in, tmp)) {
+                tmp.delete();
+                return false;
+            }
+            final Properties newMeta = new Properties();
+            newMeta.setProperty(KEY_URL, imageUrl);
+            fillMeta(newMeta, connection);
+            synchronized (this) {
+                final long previousLength = data.exists() ? data.length() : 0L;
+                if (!tmp.renameTo(data)) {
+                    tmp.delete();
+                    return false;
+                }
+                writeMeta(metaFile, newMeta);
+                if (mSize >= 0) mSize += data.length() - previousLength;
+                trimToSize(data);
+            }
+            return true;
+        } catch (IOException|IllegalArgumentException e) {
+            if (connection != null) connection.disconnect();
+            return false;
+        } finally {
+            Util.close(in);
+            permits.release();
+        }
+    }
+
+    private synchronized Semaphore getHostPermits(String host) {
+        Semaphore semaphore = mHostPermits.get(host);
+        if (semaphore == null) {
+            semaphore = new Semaphore(mMaxRequestsPerHost, true);
+            mHostPermits.put(host, semaphore);
+        }
+        return semaphore;
+    }
+
+    private static void fillMeta(Properties meta, HttpURLConnection connection) {
+        final String etag = connection.getHeaderField("ETag");
+        final String lastModified = connection.getHeaderField("Last-Modified");
+        if (etag != null) meta.setProperty(KEY_ETAG, etag);
+        if (lastModified != null) meta.setProperty(KEY_LAST_MODIFIED, lastModified);
+        meta.setProperty(KEY_EXPIRES, String.valueOf(getExpiration(connection)));
+    }
+
+    private static long getExpiration(HttpURLConnection connection) {
+        final long now = System.currentTimeMillis();
+        final String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-cache") || directive.equals("no-store")) return 0L;
+                if (directive.startsWith("max-age=")) {
+                    final long maxAge = parseLong(directive.substring(8));
+                    return maxAge > 0 ? now + maxAge * 1000L : 0L;
+                }
+            }
+        }
+        final long expires = connection.getHeaderFieldDate("Expires", 0L);
+        if (expires > 0L) return expires;
+        return now + DEFAULT_MAX_AGE;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) return 0L;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    @Nullable
+    private static Properties readMeta(File file) {
+        if (!file.exists()) return null;
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            final Properties meta = new Properties();
+            meta.load(in);
+            return meta;
+        } catch (IOException|IllegalArgumentException e) {
+            return null;
+        } finally {
+            Util.close(in);
+        }
+    }
+
+    private static void writeMeta(File file, Properties meta) {
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            meta.store(out, null);
+        } catch (IOException ignored) {
+        } finally {
+            Util.close(out);
+        }
+    }
+
+    private static boolean copy(InputStream in, File dest) {
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(dest), 8192);
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            Util.close(out);
+        }
+    }
+
+    /**
+     * Read remaining bytes so that the connection can be reused
+     */
+    private static void consume(HttpURLConnection connection) {
+        InputStream in;
+        try {
+            in = connection.getInputStream();
+        } catch (IOException e) {
+            in = connection.getErrorStream();
+        }
+        if (in == null) return;
+        try {
+            final byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1);
+        } catch (IOException ignored) {
+        } finally {
+            Util.close(in);
+        }
+    }
+
+    /**
+     * Evict least recently used images until the data files fit in the cache size
+     * @param keep the entry which has just been written
+     */
+    private void trimToSize(File keep) {
+        if (mSize < 0) {
+            mSize = 0L;
+            final File[] files = mDirectory.listFiles();
+            if (files != null) for (File file : files)
+                if (file.getName().endsWith(DATA_SUFFIX)) mSize += file.length();
+        }
+        if (mSize <= mMaxSize) return;
+        final File[] files = mDirectory.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                final long l1 = f1.lastModified(), l2 = f2.lastModified();
+                return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (mSize <= mMaxSize) break;
+            final String name = file.getName();
+            if (!name.endsWith(DATA_SUFFIX) || file.equals(keep)) continue;
+            mSize -= file.length();
+            file.delete();
+            new File(mDirectory, name.substring(0, name.length() - DATA_SUFFIX.length()) + META_SUFFIX).delete();
+        }
+    }
+
+    private static String getFileName(String url) {
+        return Long.toHexString(MurmurHash.hash64(url));
+    }
+}
@@ -24,76 +24,105 @@
 
 package org.videolan.vlc.util;
 
+import android.content.Context;
 import androidx.databinding.ViewDataBinding;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.os.Handler;
-import android.os.Looper;
 import androidx.annotation.Nullable;
-import androidx.collection.SimpleArrayMap;
+import androidx.annotation.WorkerThread;
 import android.view.View;
 
+import org.videolan.vlc.VLCApplication;
 import org.videolan.vlc.gui.helpers.AsyncImageLoader;
+import org.videolan.vlc.gui.helpers.BitmapCache;
 
-import java.io.BufferedInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.lang.ref.SoftReference;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.File;
 
 public class HttpImageLoader extends AsyncImageLoader.CoverFetcher {
 
-    private static SimpleArrayMap<String, SoftReference<Bitmap>> iconsMap = new SimpleArrayMap<>();
-    private String mImageLink;
-    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+    private static final String CACHE_DIR = "http_images";
+    private static final long CACHE_SIZE = 20 * 1024 * 1024;
+    private static final int MAX_REQUESTS_PER_HOST = 2;
+
+    private static volatile HttpImageCache sDiskCache;
+    private final String mImageLink;
+    private final int mWidth;
 
     public HttpImageLoader(String imageLink, ViewDataBinding binding) {
+        this(imageLink, binding, 0);
+    }
+
+    public HttpImageLoader(String imageLink, ViewDataBinding binding, int width) {
         init(binding);
         mImageLink = imageLink;
+        mWidth = width;
+    }
+
+    @Override
+    protected String getRequestKey() {
+        return mImageLink + "_" + mWidth;
     }
 
     @Override
     public Bitmap getImage() {
-        return downloadBitmap(mImageLink);
+        return downloadBitmap(mImageLink, mWidth);
     }
 
     @Nullable
     public static Bitmap getBitmapFromIconCache(String imageUrl) {
-        synchronized (iconsMap) {
-            if (iconsMap.containsKey(imageUrl)) {
-                final Bitmap bd = iconsMap.get(imageUrl).get();
-                if (bd != null) {
-                    return bd;
-                } else
-                    iconsMap.remove(imageUrl);
-            }
-        }
-        return null;
+        return BitmapCache.getInstance().getBitmapFromMemCache(imageUrl);
     }
 
     @Nullable
     public static Bitmap downloadBitmap(String imageUrl) {
-        HttpURLConnection urlConnection = null;
-        InputStream in = null;
+        return downloadBitmap(imageUrl, 0);
+    }
+
+    /**
+     * Get the image from the memory cache, the disk cache or the network.
+     * @param width the target width, the image is subsampled to be at least as wide. 0 to decode at full resolution
+     */
+    @Nullable
+    @WorkerThread
+    public static Bitmap downloadBitmap(String imageUrl, int width) {
         Bitmap icon = getBitmapFromIconCache(imageUrl);
-        if (icon != null)
+        if (icon != null && (width <= 0 || icon.getWidth() >= width))
+            return icon;
+        final HttpImageCache diskCache = getDiskCache();
+        final File file = diskCache != null ? diskCache.get(imageUrl) : null;
+        if (file == null)
+            return icon;
+        final String path = file.getPath();
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0)
             return icon;
-        try {
-            final URL url = new URL(imageUrl);
-            urlConnection = (HttpURLConnection) url.openConnection();
-            in = new BufferedInputStream(urlConnection.getInputStream());
-            icon = BitmapFactory.decodeStream(in);
-            synchronized (iconsMap) {
-                iconsMap.put(imageUrl, new SoftReference<>(icon));
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        if (width > 0) {
+            while (options.outWidth / (options.inSampleSize * 2) >= width)
+                options.inSampleSize = options.inSampleSize * 2;
+        }
+        final Bitmap decoded = BitmapCache.getInstance().decodeFile(path, options);
+        if (decoded == null)
+            return icon;
+        if (icon != null) BitmapCache.getInstance().removeBitmapFromMemCache(imageUrl);
+        BitmapCache.getInstance().addBitmapToMemCache(imageUrl, decoded);
+        return decoded;
+    }
+
+    private static HttpImageCache getDiskCache() {
+        if (sDiskCache == null) {
+            synchronized (HttpImageLoader.class) {
+                if (sDiskCache == null) {
+                    final Context ctx = VLCApplication.getAppContext();
+                    if (ctx == null) return null;
+                    sDiskCache = new HttpImageCache(new File(ctx.getCacheDir(), CACHE_DIR), CACHE_SIZE, MAX_REQUESTS_PER_HOST);
+                }
             }
-        } catch (IOException|IllegalArgumentException ignored) {
-        } finally {
-            Util.close(in);
-            if (urlConnection != null)
-                urlConnection.disconnect();
         }
-        return icon;
+        return sDiskCache;
     }
 
     @Override
@@ -0,0 +1,201 @@
+/*****************************************************************************
+ * LogBuffer.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.util;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Ring of the latest log lines, kept as UTF-8 bytes in a buffer allocated once.
+ *
+ * Each line is stored followed by its line feed, so the ring content is the log as saved. The
+ * oldest lines are dropped once the byte or the line capacity is reached.
+ * Lines are numbered in the order they were added: readers keep the sequence number of the next
+ * line they want, and only decode the lines added since.
+ *
+ * Lines in the "logcat -v time" format can be filtered by priority and tag when added, other
+ * lines are always kept.
+ */
+public class LogBuffer {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String PRIORITIES = "VDIWEF";
+
+    private final byte[] mData;
+    private final int[] mStarts;
+    private final int[] mLengths;
+
+    /* index of the oldest line */
+    private int mHead;
+    private int mCount;
+    /* position of the first free byte, and number of bytes used */
+    private int mWrite;
+    private int mUsed;
+    /* sequence number of the next line added */
+    private long mSequence;
+
+    private int mMinPriority = Log.VERBOSE;
+    private byte[][] mTags;
+
+    /* decoding buffer of the lines wrapping around the end of the ring */
+    private byte[] mScratch;
+
+    /**
+     * @param capacity size of the ring in bytes, a longer line is truncated
+     * @param maxLines maximum number of lines kept
+     */
+    public LogBuffer(int capacity, int maxLines) {
+        mData = new byte[capacity];
+        mStarts = new int[maxLines];
+        mLengths = new int[maxLines];
+    }
+
+    /**
+     * Filter the next lines added
+     *
+     * @param minPriority lowest priority kept, as the {@link Log} constants
+     * @param tags prefixes of the tags kept, null or empty to keep all tags
+     */
+    public synchronized void setFilter(int minPriority, String[] tags) {
+        mMinPriority = minPriority;
+        if (tags == null || tags.length == 0) {
+            mTags = null;
+            return;
+        }
+        mTags = new byte[tags.length][];
+        for (int i = 0; i < tags.length; ++i) mTags[i] = tags[i].getBytes(UTF8);
+    }
+
+    /**
+     * Add a line, without its line feed
+     *
+     * @return false if the line has been filtered out
+     */
+    public synchronized boolean add(byte[] line, int offset, int length) {
+        if (length > 0 && line[offset + length - 1] == '\r') --length;
+        if (!accept(line, offset, length)) return false;
+        length = Math.min(length, mData.length - 1);
+        final int size = length + 1;
+        while (mCount > 0 && (mCount == mStarts.length || mData.length - mUsed < size)) {
+            mUsed -= mLengths[mHead];
+            mHead = (mHead + 1) % mStarts.length;
+            --mCount;
+        }
+        final int index = (mHead + mCount) % mStarts.length;
+        mStarts[index] = mWrite;
+        mLengths[index] = size;
+        final int first = Math.min(length, mData.length - mWrite);
+        System.arraycopy(line, offset, mData, mWrite, first);
+        System.arraycopy(line, offset + first, mData, 0, length - first);
+        mData[(mWrite + length) % mData.length] = '\n';
+        mWrite = (mWrite + size) % mData.length;
+        mUsed += size;
+        ++mCount;
+        ++mSequence;
+        return true;
+    }
+
+    /**
+     * Matches "MM-DD hh:mm:ss.mmm P/Tag( pid): message" against the filter
+     */
+    private boolean accept(byte[] line, int offset, int length) {
+        if (mMinPriority <= Log.VERBOSE && mTags == null) return true;
+        final int end = offset + length;
+        final int slash = offset + 20;
+        if (slash >= end || line[slash] != '/') return true;
+        final int priority = PRIORITIES.indexOf(line[slash - 1]);
+        if (priority >= 0 && priority + Log.VERBOSE < mMinPriority) return false;
+        if (mTags == null) return true;
+        for (byte[] tag : mTags) {
+            if (end - slash - 1 < tag.length) continue;
+            int i = 0;
+            while (i < tag.length && line[slash + 1 + i] == tag[i]) ++i;
+            if (i == tag.length) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the sequence number of the next line added
+     */
+    public synchronized long getSequence() {
+        return mSequence;
+    }
+
+    public synchronized int size() {
+        return mCount;
+    }
+
+    /**
+     * Decode the lines added since a sequence number
+     *
+     * @param from sequence number of the first line wanted
+     * @param max maximum number of lines, only the latest ones are decoded
+     * @param lines list the lines are appended to
+     * @return the sequence number following the last line read
+     */
+    public synchronized long read(long from, int max, List<String> lines) {
+        final long first = Math.max(from, Math.max(mSequence - mCount, mSequence - max));
+        for (long sequence = first; sequence < mSequence; ++sequence) {
+            final int index = (int) ((mHead + mCount - (mSequence - sequence)) % mStarts.length);
+            final int start = mStarts[index];
+            final int length = mLengths[index] - 1;
+            if (start + length <= mData.length) {
+                lines.add(new String(mData, start, length, UTF8));
+            } else {
+                if (mScratch == null || mScratch.length < length) mScratch = new byte[length];
+                final int part = mData.length - start;
+                System.arraycopy(mData, start, mScratch, 0, part);
+                System.arraycopy(mData, 0, mScratch, part, length - part);
+                lines.add(new String(mScratch, 0, length, UTF8));
+            }
+        }
+        return mSequence;
+    }
+
+    /**
+     * Write all the lines kept, oldest first. The lines are copied first, lines can be added
+     * while they are written.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        final byte[] copy;
+        synchronized (this) {
+            if (mCount == 0) return;
+            copy = new byte[mUsed];
+            final int start = mStarts[mHead];
+            final int first = Math.min(mUsed, mData.length - start);
+            System.arraycopy(mData, start, copy, 0, first);
+            System.arraycopy(mData, 0, copy, first, mUsed - first);
+        }
+        out.write(copy);
+    }
+
+    /**
+     * Drop all the lines kept, sequence numbers are not reset
+     */
+    public synchronized void clear() {
+        mHead = mCount = mWrite = mUsed = 0;
+    }
+}
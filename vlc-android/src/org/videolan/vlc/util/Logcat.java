@@ -25,6 +25,7 @@ import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 
@@ -36,38 +37,71 @@ public class Logcat implements Runnable {
     private boolean mRun = false;
 
     public interface Callback {
-        public void onLog(String log);
+        /**
+         * @param line buffer of the line, without its line feed, only valid during the call
+         */
+        public void onLog(byte[] line, int offset, int length);
     }
 
+    private static final int LINE_BUFFER_SIZE = 8 * 1024;
+
     public Logcat() {
     }
 
     @Override
     public void run() {
         final String[] args = { "logcat", "-v", "time" };
-        InputStreamReader input = null;
-        BufferedReader br = null;
+        InputStream input = null;
         try {
             synchronized (this) {
                 if (!mRun)
                     return;
                 mProcess = Runtime.getRuntime().exec(args);
-                input = new InputStreamReader(
-                        mProcess.getInputStream());
+                input = mProcess.getInputStream();
             }
-            br = new BufferedReader(input);
-            String line;
-
-            while ((line = br.readLine()) != null)
-                mCallback.onLog(line);
-
+            split(input, mCallback);
         } catch (IOException e) {
         } finally {
             Util.close(input);
-            Util.close(br);
         }
     }
 
+    /**
+     * Splits the stream in lines, in place. A line longer than the buffer is cut: its first
+     * {@link #LINE_BUFFER_SIZE} bytes are given and the rest is dropped up to the next line feed.
+     */
+    static void split(InputStream input, Callback callback) throws IOException {
+        final byte[] buffer = new byte[LINE_BUFFER_SIZE];
+        int fill = 0;
+        int read;
+        boolean skipping = false;
+        while ((read = input.read(buffer, fill, buffer.length - fill)) != -1) {
+            int start = 0;
+            for (int i = fill; i < fill + read; ++i) {
+                if (buffer[i] == '\n') {
+                    if (skipping)
+                        skipping = false;
+                    else
+                        callback.onLog(buffer, start, i - start);
+                    start = i + 1;
+                }
+            }
+            fill += read;
+            if (skipping) {
+                fill = 0;
+            } else if (start == 0 && fill == buffer.length) {
+                callback.onLog(buffer, 0, fill);
+                skipping = true;
+                fill = 0;
+            } else if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, fill - start);
+                fill -= start;
+            }
+        }
+        if (fill > 0)
+            callback.onLog(buffer, 0, fill);
+    }
+
     /**
      * Start a thread that will send logcat via a callback
      * @param callback
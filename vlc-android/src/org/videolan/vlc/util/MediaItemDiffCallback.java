@@ -1,6 +1,7 @@
 package org.videolan.vlc.util;
 
 import org.videolan.medialibrary.media.MediaLibraryItem;
+import org.videolan.medialibrary.media.MediaWrapper;
 import org.videolan.vlc.gui.DiffUtilAdapter;
 
 
@@ -25,7 +26,13 @@ public class MediaItemDiffCallback< T extends MediaLibraryItem> extends DiffUtil
     }
 
     @Override
-    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-        return true;
+    public long fingerprint(T item) {
+        if (item == null) return 0L;
+        final StringBuilder sb = new StringBuilder(64).append(item.getTitle()).append('\0').append(item.getArtworkMrl());
+        if (item instanceof MediaWrapper) {
+            final MediaWrapper media = (MediaWrapper) item;
+            sb.append('\0').append(media.getTime()).append('\0').append(media.getLength());
+        }
+        return MurmurHash.hash64(sb.toString());
     }
 }
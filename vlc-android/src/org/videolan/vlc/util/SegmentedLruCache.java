@@ -0,0 +1,225 @@
+/*****************************************************************************
+ * SegmentedLruCache.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Weight bounded LRU cache, split in segments selected by key hash.
+ *
+ * Reads never block: values are looked up in a {@link ConcurrentHashMap} and the LRU order
+ * is only refreshed if the segment lock is free. Writes lock their segment only, so
+ * an insertion from a worker thread never holds back lookups done on the UI thread.
+ */
+public class SegmentedLruCache<K, V> {
+
+    public interface Weigher<K, V> {
+        int weightOf(K key, V value);
+    }
+
+    public interface EvictionListener<K, V> {
+        void onEvicted(K key, V value);
+    }
+
+    private final Segment<K, V>[] mSegments;
+    private final int mSegmentMask;
+    private final Weigher<K, V> mWeigher;
+    private volatile EvictionListener<K, V> mEvictionListener;
+
+    /**
+     * @param maxWeight total weight of the cache, shared equally between segments
+     * @param concurrencyLevel wanted number of segments, rounded up to a power of two
+     * @param weigher computes the weight of an entry, must be non-negative
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(long maxWeight, int concurrencyLevel, Weigher<K, V> weigher) {
+        int count = 1;
+        while (count < concurrencyLevel) count <<= 1;
+        mSegments = (Segment<K, V>[]) new Segment<?, ?>[count];
+        mSegmentMask = count - 1;
+        mWeigher = weigher;
+        final long segmentWeight = Math.max(1L, maxWeight / count);
+        for (int i = 0; i < count; ++i) mSegments[i] = new Segment<>(segmentWeight);
+    }
+
+    public void setEvictionListener(EvictionListener<K, V> listener) {
+        mEvictionListener = listener;
+    }
+
+    public V get(K key) {
+        return segmentFor(key).get(key);
+    }
+
+    /**
+     * Insert the value if there is no mapping yet for this key.
+     * @return the value already cached, or null if value has been inserted
+     */
+    public V putIfAbsent(K key, V value) {
+        final List<Map.Entry<K, V>> evicted = new ArrayList<>(0);
+        final V previous = segmentFor(key).putIfAbsent(key, value, mWeigher.weightOf(key, value), evicted);
+        notifyEvicted(evicted);
+        return previous;
+    }
+
+    public V remove(K key) {
+        return segmentFor(key).remove(key);
+    }
+
+    /**
+     * Drop all entries, without notifying the eviction listener
+     */
+    public void clear() {
+        for (Segment<K, V> segment : mSegments) segment.clear();
+    }
+
+    public long weight() {
+        long weight = 0L;
+        for (Segment<K, V> segment : mSegments) weight += segment.weight;
+        return weight;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : mSegments) size += segment.map.size();
+        return size;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        // Spread bits so that keys differing in high bits do not pile up in one segment
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return mSegments[h & mSegmentMask];
+    }
+
+    private void notifyEvicted(List<Map.Entry<K, V>> evicted) {
+        final EvictionListener<K, V> listener = mEvictionListener;
+        if (listener == null) return;
+        for (Map.Entry<K, V> entry : evicted) listener.onEvicted(entry.getKey(), entry.getValue());
+    }
+
+    private static final class Segment<K, V> {
+        final ConcurrentHashMap<K, V> map = new ConcurrentHashMap<>();
+        /* key -> weight, in access order. Guarded by lock */
+        final LinkedHashMap<K, Integer> order = new LinkedHashMap<>(16, 0.75f, true);
+        final ReentrantLock lock = new ReentrantLock();
+        final long maxWeight;
+        volatile long weight = 0L;
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        V get(K key) {
+            final V value = map.get(key);
+            if (value != null && lock.tryLock()) {
+                try {
+                    order.get(key);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return value;
+        }
+
+        V putIfAbsent(K key, V value, int entryWeight, List<Map.Entry<K, V>> evicted) {
+            lock.lock();
+            try {
+                final V previous = map.get(key);
+                if (previous != null) {
+                    order.get(key);
+                    return previous;
+                }
+                map.put(key, value);
+                order.put(key, entryWeight);
+                long w = weight + entryWeight;
+                final Iterator<Map.Entry<K, Integer>> it = order.entrySet().iterator();
+                while (w > maxWeight && it.hasNext()) {
+                    final Map.Entry<K, Integer> eldest = it.next();
+                    final K eldestKey = eldest.getKey();
+                    if (eldestKey.equals(key)) continue;
+                    w -= eldest.getValue();
+                    it.remove();
+                    final V eldestValue = map.remove(eldestKey);
+                    if (eldestValue != null) evicted.add(new Entry<>(eldestKey, eldestValue));
+                }
+                weight = w;
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        V remove(K key) {
+            lock.lock();
+            try {
+                final Integer entryWeight = order.remove(key);
+                if (entryWeight != null) weight -= entryWeight;
+                return map.remove(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                order.clear();
+                map.clear();
+                weight = 0L;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Entry<K, V> implements Map.Entry<K, V> {
+        private final K key;
+        private final V value;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*****************************************************************************
+ * SingleFlight.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.util;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs at most one computation per key at a time: callers asking for a key which is
+ * being computed wait for this computation and share its result. Different keys run
+ * in parallel on the calling threads.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, FutureTask<V>> mCalls = new ConcurrentHashMap<>();
+
+    /**
+     * Run callable on the current thread, or wait for the one already running for this key.
+     * Exceptions thrown by the callable are rethrown to every caller, checked ones wrapped
+     * in a RuntimeException.
+     * @return the result, or null if the thread was interrupted while waiting
+     */
+    @Nullable
+    public V run(K key, Callable<V> callable) {
+        final FutureTask<V> task = new FutureTask<>(callable);
+        FutureTask<V> call = mCalls.putIfAbsent(key, task);
+        if (call == null) {
+            try {
+                task.run();
+            } finally {
+                mCalls.remove(key, task);
+            }
+            call = task;
+        }
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * @return the number of keys being computed
+     */
+    public int size() {
+        return mCalls.size();
+    }
+}
@@ -0,0 +1,335 @@
+/*****************************************************************************
+ * StartupGraph.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.util;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.videolan.libvlc.util.AndroidUtil;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Application startup tasks, run once their dependencies are done.
+ *
+ * Tasks needed before the first frame are run from {@link #start()}, those on the main thread
+ * inline. Idle tasks wait for {@link #onIdle()}, called once the main thread has nothing left to
+ * do after the first frame. On demand tasks are only run when {@link #require(String)}d, or when a
+ * task depending on them is.
+ *
+ * Each task is timed, and traced in systrace, to report the critical path of a cold start along
+ * with the time to the first frame and to the media library being ready.
+ */
+public class StartupGraph {
+
+    public static final int PRIORITY_FIRST_FRAME = 0;
+    public static final int PRIORITY_IDLE = 1;
+    public static final int PRIORITY_ON_DEMAND = 2;
+
+    private static final String[] PRIORITY_NAMES = { "first-frame", "idle", "on-demand" };
+
+    private static final int STATE_NEW = 0;
+    private static final int STATE_QUEUED = 1;
+    private static final int STATE_RUNNING = 2;
+    private static final int STATE_DONE = 3;
+
+    private static class Task {
+        final String name;
+        final int priority;
+        final boolean mainThread;
+        final Runnable runnable;
+        final Task[] dependencies;
+        final List<Task> dependants = new ArrayList<>();
+        boolean released;
+        int state = STATE_NEW;
+        long start;
+        long end;
+        String thread;
+
+        Task(String name, int priority, boolean mainThread, Runnable runnable, Task[] dependencies) {
+            this.name = name;
+            this.priority = priority;
+            this.mainThread = mainThread;
+            this.runnable = runnable;
+            this.dependencies = dependencies;
+        }
+
+        boolean isReady() {
+            for (Task dependency : dependencies)
+                if (dependency.state != STATE_DONE) return false;
+            return true;
+        }
+    }
+
+    private final Executor mMainExecutor;
+    private final Executor mBackgroundExecutor;
+    private final Map<String, Task> mTasks = new LinkedHashMap<>();
+    private long mOrigin;
+    private long mFirstFrame = -1L;
+    private long mLibraryReady = -1L;
+    private boolean mStarted;
+    private boolean mIdle;
+
+    /**
+     * @param mainExecutor runs tasks on the main thread, inline when called from it
+     * @param backgroundExecutor runs the other tasks
+     */
+    public StartupGraph(Executor mainExecutor, Executor backgroundExecutor) {
+        mMainExecutor = mainExecutor;
+        mBackgroundExecutor = backgroundExecutor;
+        mOrigin = now();
+    }
+
+    @VisibleForTesting
+    long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    @VisibleForTesting
+    void beginSection(String name) {
+        if (AndroidUtil.isJellyBeanMR2OrLater) Trace.beginSection(name);
+    }
+
+    @VisibleForTesting
+    void endSection() {
+        if (AndroidUtil.isJellyBeanMR2OrLater) Trace.endSection();
+    }
+
+    /**
+     * Set the time timings are relative to, the graph creation by default
+     *
+     * @param origin time of the process start, in the {@link SystemClock#elapsedRealtime()} base
+     */
+    public synchronized void setOrigin(long origin) {
+        mOrigin = origin;
+    }
+
+    /**
+     * Declare a task, after its dependencies. It is released right away if its priority already is.
+     *
+     * @param mainThread true to run the task on the main thread
+     * @param dependencies names of the tasks to be done before this one
+     */
+    public void add(String name, int priority, boolean mainThread, Runnable runnable, String... dependencies) {
+        final Task task;
+        synchronized (this) {
+            if (mTasks.containsKey(name)) throw new IllegalArgumentException("Task " + name + " already added");
+            final Task[] tasks = new Task[dependencies.length];
+            for (int i = 0; i < dependencies.length; ++i) {
+                tasks[i] = mTasks.get(dependencies[i]);
+                if (tasks[i] == null) throw new IllegalArgumentException("Unknown dependency " + dependencies[i] + " of " + name);
+            }
+            task = new Task(name, priority, mainThread, runnable, tasks);
+            for (Task dependency : tasks) dependency.dependants.add(task);
+            mTasks.put(name, task);
+            if (!(priority == PRIORITY_FIRST_FRAME && mStarted) && !(priority == PRIORITY_IDLE && mIdle)) return;
+        }
+        release(task);
+    }
+
+    /**
+     * Run the tasks needed before the first frame, to be called from the main thread
+     */
+    public void start() {
+        final List<Task> tasks;
+        synchronized (this) {
+            if (mStarted) return;
+            mStarted = true;
+            tasks = snapshot(PRIORITY_FIRST_FRAME);
+        }
+        for (Task task : tasks) release(task);
+    }
+
+    /**
+     * Run the idle tasks, once the main thread is idle after the first frame
+     */
+    public void onIdle() {
+        final List<Task> tasks;
+        synchronized (this) {
+            if (mIdle) return;
+            mIdle = true;
+            tasks = snapshot(PRIORITY_IDLE);
+        }
+        for (Task task : tasks) release(task);
+    }
+
+    private synchronized List<Task> snapshot(int priority) {
+        final List<Task> tasks = new ArrayList<>();
+        for (Task task : mTasks.values())
+            if (task.priority == priority) tasks.add(task);
+        return tasks;
+    }
+
+    /**
+     * Release a task and its dependencies, the task is dispatched once they are done
+     */
+    private void release(Task task) {
+        final List<Task> ready = new ArrayList<>();
+        synchronized (this) {
+            collect(task, ready);
+        }
+        dispatch(ready);
+    }
+
+    private void collect(Task task, List<Task> ready) {
+        if (task.released) return;
+        task.released = true;
+        for (Task dependency : task.dependencies) collect(dependency, ready);
+        if (task.state == STATE_NEW && task.isReady()) {
+            task.state = STATE_QUEUED;
+            ready.add(task);
+        }
+    }
+
+    private void dispatch(List<Task> tasks) {
+        for (final Task task : tasks) {
+            final Runnable runnable = new Runnable() {
+                @Override
+                public void run() {
+                    runTask(task, STATE_QUEUED);
+                }
+            };
+            if (task.mainThread) mMainExecutor.execute(runnable);
+            else mBackgroundExecutor.execute(runnable);
+        }
+    }
+
+    /**
+     * Run the task if it is still in the expected state
+     */
+    private void runTask(Task task, int expected) {
+        synchronized (this) {
+            if (task.state != expected) return;
+            task.state = STATE_RUNNING;
+            task.start = now();
+            task.thread = Thread.currentThread().getName();
+        }
+        beginSection(task.name);
+        try {
+            task.runnable.run();
+        } finally {
+            endSection();
+            final List<Task> ready = new ArrayList<>();
+            synchronized (this) {
+                task.end = now();
+                task.state = STATE_DONE;
+                for (Task dependant : task.dependants) {
+                    if (dependant.released && dependant.state == STATE_NEW && dependant.isReady()) {
+                        dependant.state = STATE_QUEUED;
+                        ready.add(dependant);
+                    }
+                }
+                notifyAll();
+            }
+            dispatch(ready);
+        }
+    }
+
+    /**
+     * Make sure a task is done, running it and its dependencies on the calling thread if they
+     * have not started yet, or waiting for them otherwise.
+     */
+    public void require(String name) {
+        final Task task;
+        synchronized (this) {
+            task = mTasks.get(name);
+            if (task == null) throw new IllegalArgumentException("Unknown task " + name);
+            if (task.state == STATE_DONE) return;
+        }
+        for (Task dependency : task.dependencies) require(dependency.name);
+        synchronized (this) {
+            task.released = true;
+            if (task.state == STATE_NEW) task.state = STATE_QUEUED;
+        }
+        runTask(task, STATE_QUEUED);
+        synchronized (this) {
+            boolean interrupted = false;
+            while (task.state != STATE_DONE) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized boolean isDone(String name) {
+        final Task task = mTasks.get(name);
+        return task != null && task.state == STATE_DONE;
+    }
+
+    /**
+     * @return true the first time it is called
+     */
+    public synchronized boolean markFirstFrame() {
+        if (mFirstFrame >= 0) return false;
+        mFirstFrame = now() - mOrigin;
+        return true;
+    }
+
+    /**
+     * @return true the first time it is called
+     */
+    public synchronized boolean markLibraryReady() {
+        if (mLibraryReady >= 0) return false;
+        mLibraryReady = now() - mOrigin;
+        return true;
+    }
+
+    /**
+     * @return time from the origin to the first frame in ms, -1 if not drawn yet
+     */
+    public synchronized long getTimeToFirstFrame() {
+        return mFirstFrame;
+    }
+
+    /**
+     * @return time from the origin to the media library being ready in ms, -1 if not ready yet
+     */
+    public synchronized long getTimeToLibraryReady() {
+        return mLibraryReady;
+    }
+
+    /**
+     * @return the timings of the tasks run, in ms from the origin, and the startup milestones
+     */
+    public synchronized String getReport() {
+        final StringBuilder sb = new StringBuilder("Startup: first frame ")
+                .append(mFirstFrame).append("ms, library ready ").append(mLibraryReady).append("ms");
+        for (Task task : mTasks.values()) {
+            sb.append('\n').append(task.name).append(" (").append(PRIORITY_NAMES[task.priority]).append(')');
+            if (task.state == STATE_DONE)
+                sb.append(String.format(Locale.US, " %d+%dms on %s", task.start - mOrigin, task.end - task.start, task.thread));
+            else
+                sb.append(task.state == STATE_RUNNING ? " running" : " not run");
+        }
+        return sb.toString();
+    }
+}
@@ -29,7 +29,6 @@ import android.app.Activity;
 import android.app.ProgressDialog;
 import android.content.DialogInterface;
 import android.icu.text.UnicodeSetIterator;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
@@ -38,13 +37,11 @@ import androidx.annotation.WorkerThread;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import android.text.TextUtils;
-import android.util.Log;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.Toast;
 
 import org.videolan.medialibrary.media.MediaWrapper;
-import org.videolan.vlc.BuildConfig;
 import org.videolan.vlc.R;
 import org.videolan.vlc.VLCApplication;
 import org.videolan.vlc.gui.helpers.UiTools;
@@ -52,8 +49,7 @@ import org.videolan.vlc.gui.video.VideoPlayerActivity;
 import org.videolan.vlc.media.MediaDatabase;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -65,10 +61,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.MissingResourceException;
 import java.util.Set;
-import java.util.zip.GZIPInputStream;
-
-import de.timroes.axmlrpc.XMLRPCClient;
-import de.timroes.axmlrpc.XMLRPCException;
 
 public class SubtitlesDownloader {
 
@@ -82,10 +74,9 @@ public class SubtitlesDownloader {
     private static final String HTTP_USER_AGENT = "VLSub";
     private static final String USER_AGENT = "VLSub 0.9";
     private static final File SUBTITLES_DIRECTORY = new File(VLCApplication.getAppContext().getExternalFilesDir(null), "subs");
+    private static final File CACHE_FILE = new File(VLCApplication.getAppContext().getCacheDir(), "subtitles_cache");
 
-    private Map<String, Object> map = null;
-    private XMLRPCClient mClient;
-    private String mToken = null;
+    private volatile SubtitlesFetcher mFetcher;
     private Activity mContext;
     private ProgressDialog mDialog;
     private volatile boolean stop = false;
@@ -124,56 +115,24 @@ public class SubtitlesDownloader {
 
     @WorkerThread
     private void startDownload(List<MediaWrapper> mediaList, List<String> finalLanguages) {
-        int loginCount = 3;
         mHandler.sendEmptyMessage(DIALOG_SHOW);
-        while (--loginCount >= 0) {
-            if (logIn()) {
-                getSubtitles(mediaList, finalLanguages);
-                return;
-            }
-        }
-        showSnackBar(R.string.service_unavailable);
-        mHandler.sendEmptyMessage(DIALOG_HIDE);
-        stop = true;
-    }
-
-    private void exit() {
-        logOut();
-    }
-
-    @SuppressWarnings("unchecked")
-    @WorkerThread
-    private boolean logIn() {
+        final SubtitlesFetcher fetcher;
         try {
-            mClient = new XMLRPCClient(new URL(OpenSubtitlesAPIUrl));
-            map = ((Map<String, Object>) mClient.call("LogIn","","","fre",USER_AGENT));
-            mToken = (String) map.get("token");
-        } catch (XMLRPCException e) {
-            if (BuildConfig.DEBUG) Log.e(TAG, "logIn", e);
-            return false;
-        } catch (Throwable e){ //for various service outages
-            if (BuildConfig.DEBUG) Log.e(TAG, "logIn", e);
-            e.printStackTrace();
-            return false;
-        }
-        map = null;
-        return true;
-    }
-
-    @SuppressWarnings("unchecked")
-    private void logOut() {
-        if (mToken == null)
+            fetcher = new SubtitlesFetcher(new URL(OpenSubtitlesAPIUrl), USER_AGENT, SUBTITLES_DIRECTORY, CACHE_FILE);
+        } catch (MalformedURLException e) {
             return;
+        }
+        mFetcher = fetcher;
+        if (stop) fetcher.cancel();
         try {
-            map = ((Map<String, Object>)  mClient.call("LogOut", mToken));
-        } catch (Throwable e){ //for various service outages
-            Log.w("subtitles", "XMLRPCException", e);
+            getSubtitles(mediaList, finalLanguages);
+        } finally {
+            fetcher.close();
+            mFetcher = null;
         }
-        mToken = null;
-        map = null;
     }
 
-    @SuppressWarnings("unchecked")
+    @WorkerThread
     private void getSubtitles(final List<MediaWrapper> mediaList, List<String> languages) {
         mHandler.obtainMessage(DIALOG_UPDATE_MSG,R.string.downloading_subtitles, 0).sendToTarget();
         final ListIterator<String> iter = languages.listIterator();
@@ -183,108 +142,63 @@ public class SubtitlesDownloader {
             if (!language.equals(compliant)) iter.set(compliant);
         }
         final boolean single = mediaList.size() == 1;
-        final List<MediaWrapper> notFoundFiles = new ArrayList<>();
-        final Map<String, String> index = new HashMap<>();
         final Map<String, List<String>> success = new HashMap<>();
         final Map<String, List<String>> fails = new HashMap<>();
-        List<Map<String, String>> videoSearchList = prepareRequestList(mediaList, languages, index, true);
-        if (!videoSearchList.isEmpty()) {
-            int retryCount = 3;
-            while (--retryCount >= 0) {
-                try {
-                    map = (Map<String, Object>) mClient.call("SearchSubtitles", mToken, videoSearchList);
-                } catch (Throwable e) { //for various service outages
-                    map = null;
-                }
-            }
-            if (map == null) {
-                stop = true;
-                showSnackBar(R.string.service_unavailable);
-                return;
-            }
-            if(!stop && map.get("data") instanceof Object[]) {
-                final Object[] subtitleMaps = ((Object[]) map.get("data"));
-                if (!single) mHandler.obtainMessage(DIALOG_UPDATE_PROGRESS, mediaList.size(), 0).sendToTarget();
-                if (subtitleMaps.length > 0){
-                    for (Object map : subtitleMaps){
-                        if (stop) break;
-                        final String srtFormat = ((Map<String, String>) map).get("SubFormat");
-                        final String movieHash = ((Map<String, String>) map).get("MovieHash");
-                        final String subLanguageID = ((Map<String, String>) map).get("SubLanguageID");
-                        final String subDownloadLink = ((Map<String, String>) map).get("SubDownloadLink");
-                        final String fileUrl = index.get(movieHash);
-                        if (fileUrl == null) return;
 
-                        final String fileName = fileUrl.substring(fileUrl.lastIndexOf('/') + 1);
-                        if (success.containsKey(fileName) && success.get(fileName).contains(subLanguageID)) {
-                            continue;
-                        } else {
-                            if (success.containsKey(fileName))
-                                success.get(fileName).add(subLanguageID);
-                            else {
-                                List<String> newLanguage = new ArrayList<>();
-                                newLanguage.add(subLanguageID);
-                                success.put(fileName, newLanguage);
-                            }
-                        }
-                        downloadSubtitles(subDownloadLink, fileUrl, fileName, srtFormat, subLanguageID);
-                        if (!single)
-                            mHandler.obtainMessage(DIALOG_UPDATE_PROGRESS, mediaList.size(), success.size()).sendToTarget();
-                    }
-                }
-            }
-            videoSearchList.clear();
-            index.clear();
-        }
+        final List<String> paths = new ArrayList<>();
+        for (MediaWrapper media : mediaList) {
+            if (media != null && FileUtils.canWrite(media.getUri())) paths.add(media.getUri().getPath());
+        } //TODO network files
+        final Map<String, String> hashes = mFetcher.computeHashes(paths);
 
-        //Second pass
+        // Local files are searched by hash, files without any subtitle found by hash are also searched by name
+        final List<SubtitlesFetcher.Query> queries = new ArrayList<>();
+        final List<SubtitlesFetcher.Subtitle> found = new ArrayList<>();
         for (MediaWrapper media : mediaList) {
-            if (media == null) return;
-            final String fileName = media.getUri().getLastPathSegment();
-            if (!success.containsKey(fileName)) notFoundFiles.add(media);
+            if (stop) break;
+            if (media == null) continue;
+            final String path = media.getUri().getPath();
+            if (path == null) continue;
+            final String hash = hashes.get(path);
+            boolean cached = false;
+            if (hash != null) {
+                final long size = new File(path).length();
+                for (String language : languages) {
+                    final SubtitlesFetcher.Query query = new SubtitlesFetcher.Query(path, language, hash, size);
+                    final SubtitlesFetcher.Subtitle subtitle = mFetcher.getCached(query);
+                    if (subtitle != null) {
+                        found.add(subtitle);
+                        cached = true;
+                    } else
+                        queries.add(query);
+                }
+            }
+            if (cached || TextUtils.isEmpty(media.getUri().getLastPathSegment())) continue;
+            for (String language : languages)
+                queries.add(new SubtitlesFetcher.Query(path, language, null, 0));
         }
-        if (!stop && !notFoundFiles.isEmpty() &&
-                !(videoSearchList = prepareRequestList(notFoundFiles, languages, index, false)).isEmpty()) {
-            try {
-                map = (Map<String, Object>) mClient.call("SearchSubtitles", mToken,
-                        videoSearchList);
-            } catch (Throwable e) { //for various service outages
+        if (!stop && !queries.isEmpty()) {
+            final List<SubtitlesFetcher.Subtitle> results = mFetcher.search(queries);
+            if (results == null) {
                 stop = true;
                 showSnackBar(R.string.service_unavailable);
                 return;
             }
-            if (map.get("data") instanceof Object[]) {
-                final Object[] subtitleMaps = ((Object[]) map.get("data"));
-                if (subtitleMaps.length > 0) {
-                    final Object[] paths = index.values().toArray();
-                    for (Object subtitleMap : subtitleMaps) {
-                        if (stop) break;
-                        final Map<String, Object> resultMap = (Map<String, Object>) subtitleMap;
-                        final String srtFormat = (String) resultMap.get("SubFormat");
-                        final String queryNumber = (String) resultMap.get("QueryNumber");
-                        final String subLanguageID = (String) resultMap.get("SubLanguageID");
-                        final String subDownloadLink = (String) resultMap.get("SubDownloadLink");
-                        final String fileUrl = (String) paths[Integer.getInteger(queryNumber, 0) / languages.size()];
-                        if (fileUrl == null) //we keep only result for exact matching name
-                            continue;
-                        final String fileName = fileUrl.substring(fileUrl.lastIndexOf('/') + 1);
-                        if (success.containsKey(fileName) && success.get(fileName).contains(subLanguageID)) {
-                            continue;
-                        } else {
-                            if (success.containsKey(fileName))
-                                success.get(fileName).add(subLanguageID);
-                            else {
-                                final List<String> newLanguage = new ArrayList<>();
-                                newLanguage.add(subLanguageID);
-                                success.put(fileName, newLanguage);
-                            }
-                        }
-                        downloadSubtitles(subDownloadLink, fileUrl, fileName, srtFormat, subLanguageID);
-                        if (!single) mHandler.obtainMessage(DIALOG_UPDATE_PROGRESS, mediaList.size(), success.size()).sendToTarget();
-                    }
-                }
+            if (!single) mHandler.obtainMessage(DIALOG_UPDATE_PROGRESS, mediaList.size(), 0).sendToTarget();
+            if (!stop) found.addAll(mFetcher.download(results));
+        }
+        for (SubtitlesFetcher.Subtitle subtitle : found) {
+            final String fileName = subtitle.query.getFileName();
+            MediaDatabase.getInstance().saveSubtitle(subtitle.file.getPath(), fileName);
+            List<String> fileLanguages = success.get(fileName);
+            if (fileLanguages == null) {
+                fileLanguages = new ArrayList<>();
+                success.put(fileName, fileLanguages);
             }
+            if (!fileLanguages.contains(subtitle.query.language)) fileLanguages.add(subtitle.query.language);
         }
+        if (!single) mHandler.obtainMessage(DIALOG_UPDATE_PROGRESS, mediaList.size(), success.size()).sendToTarget();
+
         //fill fails list
         for (MediaWrapper media : mediaList) {
             if (media == null) continue;
@@ -318,78 +232,6 @@ public class SubtitlesDownloader {
             } else
                 showSumup(buildSumup(success, fails, false));
         }
-        logOut();
-    }
-
-    private void downloadSubtitles(String subUrl, String path, String fileName, String subFormat, String language){
-        if (mToken == null || path == null) return;
-        final StringBuilder sb = new StringBuilder();
-        final String name = fileName.lastIndexOf('.') > 0 ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
-        sb.append(SUBTITLES_DIRECTORY.getPath()).append('/').append(name).append('.').append(language).append('.').append(subFormat);
-        final String srtUrl = sb.toString();
-        FileOutputStream f = null;
-        GZIPInputStream gzIS = null;
-        URL url;
-        HttpURLConnection urlConnection;
-        try {
-            url  = new URL(subUrl);
-            urlConnection = (HttpURLConnection) url.openConnection();
-            // We get the first matching subtitle
-            f = new FileOutputStream(new File(srtUrl));
-            //Base64 then gunzip uncompression
-            gzIS = new GZIPInputStream(urlConnection.getInputStream());
-            int length;
-            byte[] buffer = new byte[1024];
-            while ((length = gzIS.read(buffer)) != -1) {
-                f.write(buffer, 0, length);
-            }
-            MediaDatabase.getInstance().saveSubtitle(srtUrl, fileName);
-        } catch (Throwable e) { //for various service outages
-            if (BuildConfig.DEBUG) Log.e(TAG, "download fail", e);
-        } finally {
-            Util.close(f);
-            Util.close(gzIS);
-        }
-    }
-
-    private List<Map<String, String>> prepareRequestList(List<MediaWrapper> mediaList, List<String> languages, Map<String, String> index, boolean firstPass) {
-        final List<Map<String, String>> videoSearchList = new ArrayList<>();
-        for (MediaWrapper media : mediaList) {
-            if (stop) break;
-            if (media == null) continue;
-            String hash = null, tag = null;
-            long fileLength = 0;
-            final Uri mediaUri = media.getUri();
-            if (firstPass) {
-                if (FileUtils.canWrite(mediaUri)) {
-                    File videoFile = new File(mediaUri.getPath());
-                    hash = FileUtils.computeHash(videoFile);
-                    fileLength = videoFile.length();
-                } //TODO network files
-                if (hash == null) continue;
-            } else { //Second pass, search by TAG (filename)
-                tag = mediaUri.getLastPathSegment();
-            }
-            for (String language : languages){
-                if (stop) break;
-                final Map<String, String> video = new HashMap<>();
-                video.put("sublanguageid", language);
-                if (firstPass) {
-                    index.put(hash, mediaUri.getPath());
-                    video.put("moviehash", hash);
-                    video.put("moviebytesize", String.valueOf(fileLength));
-                } else if (!TextUtils.isEmpty(tag)) {
-                    video.put("tag", tag);
-                    final int dotPos = tag.lastIndexOf('.');
-                    if (dotPos > -1)
-                        index.put(tag.substring(0, dotPos), mediaUri.getPath());
-                    else
-                        index.put(tag, mediaUri.getPath());
-                }
-                videoSearchList.add(video);
-            }
-        }
-        return videoSearchList;
     }
 
     private void showSumup(final String displayText) {
@@ -399,15 +241,9 @@ public class SubtitlesDownloader {
                 mSumUpDialog = new AlertDialog.Builder(mContext).setTitle(R.string.dialog_subloader_sumup)
                         .setMessage(displayText)
                         .setCancelable(true)
-                        .setOnCancelListener(new DialogInterface.OnCancelListener() {
-                            public void onCancel(DialogInterface dialog) {
-                                exit();
-                            }
-                        })
                         .setPositiveButton(android.R.string.yes, new DialogInterface.OnClickListener() {
                             public void onClick(DialogInterface dialog, int which) {
                                 dialog.dismiss();
-                                exit();
                             }
                         }).create();
                 //We catch these exceptions because context might disappear while loading/showing the dialog, no matter if we wipe it in onPause()
@@ -513,6 +349,8 @@ public class SubtitlesDownloader {
                         @Override
                         public void onCancel(DialogInterface dialog) {
                             stop = true;
+                            final SubtitlesFetcher fetcher = mFetcher;
+                            if (fetcher != null) fetcher.cancel();
                         }
                     });
                     break;
@@ -0,0 +1,410 @@
+/*****************************************************************************
+ * SubtitlesFetcher.java
+ *****************************************************************************
+ * Copyright © 2019 VLC authors and VideoLAN
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston MA 02110-1301, USA.
+ *****************************************************************************/
+
+package org.videolan.vlc.util;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import de.timroes.axmlrpc.XMLRPCClient;
+
+/**
+ * OpenSubtitles requests of {@link SubtitlesDownloader}, without any UI.
+ *
+ * Files are hashed in parallel, all the queries are sent in a single SearchSubtitles call,
+ * retried with an exponential backoff only if it fails, and the subtitles are downloaded
+ * concurrently. Downloaded subtitles are recorded by movie hash and language, they are found
+ * again without any request as long as their file exists.
+ */
+public class SubtitlesFetcher {
+
+    private static final int HASH_CHUNK_SIZE = 64 * 1024;
+    private static final int THREADS = 4;
+    private static final int MAX_ATTEMPTS = 3;
+
+    public static class Query {
+        public final String path;
+        public final String language;
+        /* null for queries by file name */
+        @Nullable public final String hash;
+        final long size;
+
+        public Query(String path, String language, @Nullable String hash, long size) {
+            this.path = path;
+            this.language = language;
+            this.hash = hash;
+            this.size = size;
+        }
+
+        String getFileName() {
+            return path.substring(path.lastIndexOf('/') + 1);
+        }
+    }
+
+    public static class Subtitle {
+        public final Query query;
+        public final File file;
+        final String link;
+
+        Subtitle(Query query, File file, String link) {
+            this.query = query;
+            this.file = file;
+            this.link = link;
+        }
+    }
+
+    private final XMLRPCClient mClient;
+    private final String mUserAgent;
+    private final File mDirectory;
+    private final File mCacheFile;
+    private final Properties mCache = new Properties();
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(THREADS);
+    private long mRetryDelay = 1000L;
+    private String mToken = null;
+    private volatile boolean mCancelled = false;
+
+    /**
+     * @param directory where subtitles are downloaded
+     * @param cacheFile where downloaded subtitles are recorded
+     */
+    public SubtitlesFetcher(URL url, String userAgent, File directory, File cacheFile) {
+        mClient = new XMLRPCClient(url);
+        mUserAgent = userAgent;
+        mDirectory = directory;
+        mCacheFile = cacheFile;
+        loadCache();
+    }
+
+    @VisibleForTesting
+    void setRetryDelay(long delay) {
+        mRetryDelay = delay;
+    }
+
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Log out and stop the threads
+     */
+    public void close() {
+        logOut();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the OpenSubtitles hash of each file, files which can't be read are left out
+     */
+    @WorkerThread
+    public Map<String, String> computeHashes(List<String> paths) {
+        final List<Future<String>> hashes = new ArrayList<>(paths.size());
+        for (final String path : paths) {
+            hashes.add(mExecutor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return mCancelled ? null : computeHash(new File(path));
+                }
+            }));
+        }
+        final Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < paths.size(); ++i) {
+            final String hash = getResult(hashes.get(i));
+            if (hash != null) result.put(paths.get(i), hash);
+        }
+        return result;
+    }
+
+    /**
+     * Sum of the file size and of the 64 bits words of its first and last 64kB
+     */
+    static String computeHash(File file) {
+        final long size = file.length();
+        final long chunkSize = Math.min(HASH_CHUNK_SIZE, size);
+        FileInputStream fis = null;
+        try {
+            fis = new FileInputStream(file);
+            final FileChannel channel = fis.getChannel();
+            final long head = computeHashForChunk(channel.map(FileChannel.MapMode.READ_ONLY, 0, chunkSize));
+            final long position = Math.max(size - HASH_CHUNK_SIZE, 0);
+            final ByteBuffer tailChunk;
+            if (position <= Integer.MAX_VALUE)
+                tailChunk = channel.map(FileChannel.MapMode.READ_ONLY, position, chunkSize);
+            else {
+                // Mapping beyond 2GB fails on some devices, the tail of larger files is read
+                tailChunk = ByteBuffer.allocate((int) chunkSize);
+                long offset = position;
+                int read;
+                while (tailChunk.hasRemaining() && (read = channel.read(tailChunk, offset)) > 0) offset += read;
+                tailChunk.flip();
+            }
+            final long tail = computeHashForChunk(tailChunk);
+            return String.format("%016x", size + head + tail);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            Util.close(fis);
+        }
+    }
+
+    private static long computeHashForChunk(ByteBuffer buffer) {
+        final LongBuffer longBuffer = buffer.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        long hash = 0;
+        while (longBuffer.hasRemaining())
+            hash += longBuffer.get();
+        return hash;
+    }
+
+    /**
+     * @return the subtitle previously downloaded for this query, if its file still exists
+     */
+    @Nullable
+    public synchronized Subtitle getCached(Query query) {
+        if (query.hash == null) return null;
+        final String path = mCache.getProperty(query.hash + '.' + query.language);
+        if (path == null) return null;
+        final File file = new File(path);
+        return file.exists() ? new Subtitle(query, file, null) : null;
+    }
+
+    private synchronized void loadCache() {
+        if (!mCacheFile.exists()) return;
+        InputStream in = null;
+        try {
+            in = new FileInputStream(mCacheFile);
+            mCache.load(in);
+        } catch (IOException ignored) {
+        } finally {
+            Util.close(in);
+        }
+        for (Iterator<Object> it = mCache.values().iterator(); it.hasNext(); )
+            if (!new File((String) it.next()).exists()) it.remove();
+    }
+
+    private synchronized void saveCache(List<Subtitle> subtitles) {
+        boolean changed = false;
+        for (Subtitle subtitle : subtitles) {
+            if (subtitle.query.hash == null) continue;
+            mCache.setProperty(subtitle.query.hash + '.' + subtitle.query.language, subtitle.file.getPath());
+            changed = true;
+        }
+        if (!changed) return;
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(mCacheFile);
+            mCache.store(out, null);
+        } catch (IOException ignored) {
+        } finally {
+            Util.close(out);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @WorkerThread
+    public boolean logIn() {
+        if (mToken != null) return true;
+        final Object result = call("LogIn", "", "", "fre", mUserAgent);
+        if (!(result instanceof Map)) return false;
+        mToken = (String) ((Map<String, Object>) result).get("token");
+        return mToken != null;
+    }
+
+    @WorkerThread
+    public void logOut() {
+        if (mToken == null) return;
+        try {
+            mClient.call("LogOut", mToken);
+        } catch (Throwable ignored) {} //for various service outages
+        mToken = null;
+    }
+
+    /**
+     * Search all the queries in a single call. When a file has subtitles found by hash, those
+     * found by name are left out, only the first subtitle of each file and language is kept.
+     * @return null if the service is not available
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    @WorkerThread
+    public List<Subtitle> search(List<Query> queries) {
+        if (queries.isEmpty()) return new ArrayList<>();
+        if (!logIn()) return null;
+        final List<Map<String, String>> request = new ArrayList<>(queries.size());
+        final Map<String, Query> byHash = new HashMap<>();
+        for (Query query : queries) {
+            final Map<String, String> video = new HashMap<>();
+            video.put("sublanguageid", query.language);
+            if (query.hash != null) {
+                video.put("moviehash", query.hash);
+                video.put("moviebytesize", String.valueOf(query.size));
+                byHash.put(query.hash + '.' + query.language, query);
+            } else
+                video.put("tag", query.getFileName());
+            request.add(video);
+        }
+        final Object result = call("SearchSubtitles", mToken, request);
+        if (!(result instanceof Map)) return null;
+        final Object data = ((Map<String, Object>) result).get("data");
+        final Map<String, Subtitle> byHashMatch = new LinkedHashMap<>();
+        final Map<String, Subtitle> byNameMatch = new LinkedHashMap<>();
+        if (data instanceof Object[]) for (Object item : (Object[]) data) {
+            final Map<String, Object> map = (Map<String, Object>) item;
+            final String language = String.valueOf(map.get("SubLanguageID"));
+            Query query = byHash.get(map.get("MovieHash") + "." + language);
+            if (query == null) {
+                try {
+                    query = queries.get(Integer.parseInt(String.valueOf(map.get("QueryNumber"))));
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    continue;
+                }
+                if (query.hash != null || !query.language.equals(language)) continue;
+            }
+            final Map<String, Subtitle> matches = query.hash != null ? byHashMatch : byNameMatch;
+            final String key = query.path + '.' + language;
+            if (matches.containsKey(key)) continue;
+            matches.put(key, new Subtitle(query, getFile(query, (String) map.get("SubFormat")),
+                    (String) map.get("SubDownloadLink")));
+        }
+        final List<Subtitle> subtitles = new ArrayList<>(byHashMatch.values());
+        final Map<String, Boolean> found = new HashMap<>();
+        for (Subtitle subtitle : subtitles) found.put(subtitle.query.path, true);
+        for (Subtitle subtitle : byNameMatch.values())
+            if (!found.containsKey(subtitle.query.path)) subtitles.add(subtitle);
+        return subtitles;
+    }
+
+    private File getFile(Query query, String format) {
+        final String fileName = query.getFileName();
+        final int dot = fileName.lastIndexOf('.');
+        final String name = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return new File(mDirectory, name + '.' + query.language + '.' + format);
+    }
+
+    /**
+     * Call with up to {@link #MAX_ATTEMPTS} attempts, the delay between them doubling each time
+     * @return null if all attempts failed
+     */
+    @Nullable
+    private Object call(String method, Object... params) {
+        long delay = mRetryDelay;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !mCancelled; ++attempt) {
+            if (attempt > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+                delay *= 2;
+            }
+            try {
+                return mClient.call(method, params);
+            } catch (Throwable ignored) {} //for various service outages
+        }
+        return null;
+    }
+
+    /**
+     * Download at most {@link #THREADS} subtitles at once
+     * @return the subtitles downloaded
+     */
+    @WorkerThread
+    public List<Subtitle> download(List<Subtitle> subtitles) {
+        final List<Future<Boolean>> results = new ArrayList<>(subtitles.size());
+        for (final Subtitle subtitle : subtitles) {
+            results.add(mExecutor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return !mCancelled && download(subtitle);
+                }
+            }));
+        }
+        final List<Subtitle> downloaded = new ArrayList<>();
+        for (int i = 0; i < subtitles.size(); ++i)
+            if (Boolean.TRUE.equals(getResult(results.get(i)))) downloaded.add(subtitles.get(i));
+        saveCache(downloaded);
+        return downloaded;
+    }
+
+    private static boolean download(Subtitle subtitle) {
+        final File tmp = new File(subtitle.file.getPath() + ".part");
+        OutputStream out = null;
+        InputStream in = null;
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(subtitle.link).openConnection();
+            in = new GZIPInputStream(connection.getInputStream());
+            out = new FileOutputStream(tmp);
+            final byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) != -1) out.write(buffer, 0, length);
+            out.close();
+            out = null;
+            return tmp.renameTo(subtitle.file);
+        } catch (Throwable e) { //for various service outages
+            return false;
+        } finally {
+            Util.close(out);
+            Util.close(in);
+            if (connection != null) connection.disconnect();
+            tmp.delete();
+        }
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import org.videolan.libvlc.util.VLCUtil;
 import org.videolan.vlc.VLCApplication;
 import org.videolan.vlc.VLCCrashHandler;
 import org.videolan.vlc.gui.CompatErrorActivity;
+import org.videolan.vlc.media.PlayerPool;
 
 public class VLCInstance {
     public final static String TAG = "VLC/I";
@@ -40,15 +41,15 @@ public class VLCInstance {
     private static LibVLC sLibVLC = null;
     private static String sUserAgent = null;
 
-    private static Runnable sCopyLua = new Runnable() {
-        @Override
-        public void run() {
-            final String destinationFolder = VLCApplication.getAppContext().getDir("vlc",
-                    Context.MODE_PRIVATE).getAbsolutePath() + "/.share/lua";
-            AssetManager am = VLCApplication.getAppResources().getAssets();
-            FileUtils.copyAssetFolder(am, "lua", destinationFolder);
-        }
-    };
+    /**
+     * Copy the lua scripts from the assets, done once the application startup is idle
+     */
+    public static void copyLua() {
+        final String destinationFolder = VLCApplication.getAppContext().getDir("vlc",
+                Context.MODE_PRIVATE).getAbsolutePath() + "/.share/lua";
+        AssetManager am = VLCApplication.getAppResources().getAssets();
+        FileUtils.copyAssetFolder(am, "lua", destinationFolder);
+    }
 
     public synchronized static void setUserAgent(String userAgent) {
         if(BuildConfig.DEBUG) {
@@ -84,8 +85,6 @@ public class VLCInstance {
             if(sUserAgent != null) {
                 sLibVLC.setUserAgent(sUserAgent, sUserAgent);
             }
-
-            VLCApplication.runBackground(sCopyLua);
         }
         return sLibVLC;
     }
@@ -104,6 +103,7 @@ public class VLCInstance {
             // init new instance
             get();
         }
+        PlayerPool.invalidate(force);
     }
 
     public static synchronized void destroy() {
@@ -113,6 +113,7 @@ public class VLCInstance {
             sLibVLC = null;
             sUserAgent = null;
         }
+        PlayerPool.invalidate(false);
     }
 
     public static synchronized void setDeinterlace(String mode, boolean forceRestart) {
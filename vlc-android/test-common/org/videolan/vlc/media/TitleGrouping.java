@@ -0,0 +1,78 @@
+package org.videolan.vlc.media;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups titles with {@link TitleGrouper} and with the previous MediaGroup.insertInto,
+ * shared by the unit test and the benchmark comparing them
+ */
+final class TitleGrouping {
+
+    static final class Entry {
+        final String title;
+        final String groupName;
+
+        Entry(String title, String groupName) {
+            this.title = title;
+            this.groupName = groupName;
+        }
+    }
+
+    static List<String> grouped(Entry[] entries, int minGroupLength) {
+        final TitleGrouper grouper = new TitleGrouper(minGroupLength);
+        final List<StringBuilder> groups = new ArrayList<>();
+        for (int i = 0; i < entries.length; ++i) {
+            final int index = grouper.add(entries[i].title, entries[i].groupName);
+            if (index == groups.size()) groups.add(new StringBuilder());
+            groups.get(index).append(i).append(',');
+        }
+        final List<String> result = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); ++i) result.add(grouper.getTitle(i) + ":" + groups.get(i));
+        return result;
+    }
+
+    /**
+     * Previous MediaGroup.insertInto, on strings
+     */
+    static List<String> legacy(Entry[] entries, int minGroupLength) {
+        final List<String[]> groups = new ArrayList<>(); // {title, group name}
+        final List<StringBuilder> members = new ArrayList<>();
+        entryLoop:
+        for (int i = 0; i < entries.length; ++i) {
+            final Entry entry = entries[i];
+            final boolean explicit = entry.groupName != null && !entry.groupName.isEmpty();
+            for (int g = 0; g < groups.size(); ++g) {
+                final String[] mediaGroup = groups.get(g);
+                if (explicit) {
+                    if (entry.groupName.equals(mediaGroup[1])) {
+                        members.get(g).append(i).append(',');
+                        continue entryLoop;
+                    }
+                    continue;
+                }
+                final String group = mediaGroup[0].toLowerCase();
+                String title = entry.title.toLowerCase();
+                final int groupOffset = group.startsWith("the") ? 4 : 0;
+                if (title.startsWith("the")) title = title.substring(Math.min(4, title.length()));
+                int commonLength = 0;
+                final String groupTitle = group.substring(Math.min(groupOffset, group.length()));
+                final int minLength = Math.min(groupTitle.length(), title.length());
+                while (commonLength < minLength && groupTitle.charAt(commonLength) == title.charAt(commonLength))
+                    ++commonLength;
+                if (commonLength >= minGroupLength && minGroupLength != 0) {
+                    if (commonLength != group.length()) {
+                        mediaGroup[0] = mediaGroup[1] = group.substring(0, commonLength + groupOffset);
+                    }
+                    members.get(g).append(i).append(',');
+                    continue entryLoop;
+                }
+            }
+            groups.add(new String[] {explicit ? entry.groupName : entry.title, explicit ? entry.groupName : null});
+            members.add(new StringBuilder().append(i).append(','));
+        }
+        final List<String> result = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); ++i) result.add(groups.get(i)[0] + ":" + members.get(i));
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package org.videolan.vlc.media;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DatabaseStatsTest {
+
+    @Test
+    public void testBuckets() {
+        assertEquals(0, DatabaseStats.bucket(0));
+        assertEquals(2, DatabaseStats.bucket(2));
+        assertEquals(3, DatabaseStats.bucket(3));
+        assertEquals(4, DatabaseStats.bucket(4));
+        assertEquals(5, DatabaseStats.bucket(6));
+        assertEquals(63, DatabaseStats.bucket(Long.MAX_VALUE));
+        for (long micros = 1; micros < 1000000; micros = micros * 3 / 2 + 1) {
+            final long bound = DatabaseStats.upperBound(DatabaseStats.bucket(micros));
+            assertTrue(micros + " <= " + bound, micros <= bound && bound <= micros * 2);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        final DatabaseStats stats = new DatabaseStats();
+        for (int i = 0; i < 98; ++i) stats.add("media_table", 100000, 1); // 100µs
+        stats.add("media_table", 50000000, 50); // 50ms
+        stats.add("media_table", 50000000, 50);
+        stats.add("slaves_table", 1000000, 0);
+
+        assertEquals(100, stats.getCalls("media_table"));
+        assertEquals(198, stats.getRows("media_table"));
+        final long p50 = stats.getLatency("media_table", 50);
+        assertTrue(String.valueOf(p50), p50 >= 100 && p50 < 150);
+        final long p99 = stats.getLatency("media_table", 99);
+        assertTrue(String.valueOf(p99), p99 >= 50000 && p99 < 75000);
+        assertEquals(0, stats.getLatency("unknown_table", 50));
+
+        final List<String> lines = stats.dump();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0), lines.get(0).startsWith("media_table: 100 calls, 198 rows"));
+        stats.reset();
+        assertEquals(0, stats.dump().size());
+    }
+}
@@ -0,0 +1,165 @@
+package org.videolan.vlc.media;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PlayQueueStoreTest {
+
+    private File mFile;
+    private final List<Runnable> mTasks = new ArrayList<>();
+    private final Executor mExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("queue", "");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private void runTasks() {
+        for (Runnable task : mTasks) task.run();
+        mTasks.clear();
+    }
+
+    @Test
+    public void testEdits() {
+        final PlayQueueStore store = new PlayQueueStore(mFile, mExecutor);
+        assertFalse(store.exists());
+        assertNull(store.load());
+        store.reset(Arrays.asList("a", "b", null, "c"));
+        assertTrue(store.exists());
+        runTasks();
+        store.add(1, "d");
+        runTasks();
+        store.move(0, 3);
+        store.remove(4);
+        store.add(10, "e");
+        // edits queued together are written in a single task
+        assertEquals(1, mTasks.size());
+        runTasks();
+        final List<String> expected = Arrays.asList("d", "b", "a", "e");
+        assertEquals(expected, store.load());
+        assertEquals(expected, new PlayQueueStore(mFile, mExecutor).load());
+    }
+
+    /**
+     * Loads run on another thread than the writes, the edits must still be written in order
+     */
+    @Test
+    public void testConcurrentLoads() throws Exception {
+        final ExecutorService writer = Executors.newSingleThreadExecutor();
+        final PlayQueueStore store = new PlayQueueStore(mFile, writer);
+        final List<String> expected = new ArrayList<>();
+        store.reset(expected);
+        final Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 200; ++i) store.load();
+            }
+        });
+        loader.start();
+        for (int i = 0; i < 2000; ++i) {
+            final String item = Integer.toString(i);
+            // each remove depends on the add before it
+            store.add(0, item);
+            store.add(0, "tmp");
+            store.remove(0);
+            expected.add(0, item);
+        }
+        loader.join();
+        writer.shutdown();
+        assertTrue(writer.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(expected, store.load());
+        assertEquals(expected, new PlayQueueStore(mFile, mExecutor).load());
+    }
+
+    @Test
+    public void testResetDropsPendingEdits() {
+        final PlayQueueStore store = new PlayQueueStore(mFile, mExecutor);
+        store.reset(Collections.singletonList("a"));
+        store.add(0, "b");
+        store.reset(Collections.singletonList("c"));
+        store.remove(5);
+        runTasks();
+        assertEquals(Collections.singletonList("c"), store.load());
+    }
+
+    @Test
+    public void testCompaction() {
+        final PlayQueueStore store = new PlayQueueStore(mFile, mExecutor);
+        store.reset(Collections.<String>emptyList());
+        runTasks();
+        long previous = 0;
+        boolean compacted = false;
+        for (int i = 0; i < 200; ++i) {
+            store.add(0, "item " + i);
+            runTasks();
+            store.remove(0);
+            runTasks();
+            compacted |= mFile.length() < previous;
+            previous = mFile.length();
+        }
+        assertTrue(compacted);
+        assertTrue(store.load().isEmpty());
+    }
+
+    @Test
+    public void testTruncatedAppend() throws IOException {
+        final PlayQueueStore store = new PlayQueueStore(mFile, mExecutor);
+        store.reset(Arrays.asList("a", "b"));
+        runTasks();
+        store.add(2, "c");
+        runTasks();
+        final long length = mFile.length();
+        store.remove(0);
+        runTasks();
+        // an append interrupted by the process being killed
+        final FileOutputStream out = new FileOutputStream(mFile, true);
+        out.write(new byte[] { 0, 0, 0, 9, 1, 2 });
+        out.close();
+        assertEquals(Arrays.asList("b", "c"), new PlayQueueStore(mFile, mExecutor).load());
+        final RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(length + 10);
+        file.close();
+        assertEquals(Arrays.asList("a", "b", "c"), new PlayQueueStore(mFile, mExecutor).load());
+    }
+
+    @Test
+    public void testEditsWithoutSnapshot() {
+        final PlayQueueStore store = new PlayQueueStore(mFile, mExecutor);
+        store.reset(Collections.singletonList("a"));
+        runTasks();
+        final PlayQueueStore restarted = new PlayQueueStore(mFile, mExecutor);
+        restarted.add(0, "b");
+        runTasks();
+        assertEquals(Collections.singletonList("a"), restarted.load());
+    }
+}
@@ -0,0 +1,139 @@
+package org.videolan.vlc.media;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.videolan.libvlc.Media;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QosSamplerTest {
+
+    private long mNow;
+    private Media.Stats mStats;
+    private QosSampler mSampler;
+
+    private final QosSampler.StatsSource mSource = new QosSampler.StatsSource() {
+        @Override
+        public Media.Stats getStats() {
+            return mStats;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mNow = 1000L;
+        mSampler = new QosSampler(null, 4, 1000L) {
+            @Override
+            long now() {
+                return mNow;
+            }
+        };
+    }
+
+    private void sample(float bitrate, int displayed, int lost) {
+        mStats = new Media.Stats(0, bitrate / 8000f, 0, 0f, 0, 0, displayed + lost, 0, displayed, lost, 0, 0, 0, 0, 0f);
+        mNow += 1000L;
+        mSampler.sample();
+    }
+
+    @Test
+    public void testRing() {
+        assertNull(mSampler.stop());
+        mSampler.start("42", mSource);
+        sample(1000f, 0, 0);
+        sample(3000f, 100, 0);
+        assertEquals(2, mSampler.getSampleCount());
+        assertEquals(2000f, mSampler.getMeanBitrate(), 0.01f);
+        assertEquals(1000000f, mSampler.getBitrateVariance(), 1f);
+        for (int i = 0; i < 5; ++i) sample(2000f, 200 + 100 * i, 10 * i);
+        assertEquals(4, mSampler.getSampleCount());
+        final QosSampler.Sample sample = new QosSampler.Sample();
+        mSampler.getSample(0, sample);
+        assertEquals(300, sample.displayedPictures);
+        mSampler.getSample(3, sample);
+        assertEquals(600, sample.displayedPictures);
+        assertEquals(40, sample.lostPictures);
+        assertEquals(mNow, sample.time);
+        assertEquals(0f, mSampler.getBitrateVariance(), 0.01f);
+        // 30 pictures lost over the 330 of the samples kept
+        assertEquals(100f * 30 / 330, mSampler.getDroppedFramePercent(), 0.01f);
+
+        final QosSampler.Summary summary = mSampler.stop();
+        assertNotNull(summary);
+        assertEquals("42", summary.key);
+        // sampled again when stopped
+        assertEquals(8, summary.samples);
+        assertEquals(2000f, summary.meanBitrate, 0.01f);
+        assertEquals(100f * 40 / 640, summary.droppedFramePercent, 0.01f);
+        assertNull(mSampler.getSummary());
+    }
+
+    @Test
+    public void testRebuffers() {
+        mSampler.start("42", mSource);
+        // initial buffering is not a stall
+        mSampler.onBuffering(10f);
+        mSampler.onBuffering(100f);
+        mSampler.onPlaying();
+        assertEquals(0, mSampler.getRebufferCount());
+        mSampler.onBuffering(30f);
+        mNow += 2000L;
+        mSampler.onBuffering(60f);
+        sample(1000f, 10, 0);
+        mSampler.onBuffering(100f);
+        mSampler.onSeek();
+        mSampler.onBuffering(0f);
+        mSampler.onBuffering(100f);
+        mSampler.onBuffering(50f);
+        mNow += 500L;
+        mSampler.onPlaying();
+        assertEquals(2, mSampler.getRebufferCount());
+        final QosSampler.Sample sample = new QosSampler.Sample();
+        mSampler.getSample(0, sample);
+        assertTrue(sample.stalled);
+        final QosSampler.Summary summary = mSampler.stop();
+        assertEquals(2, summary.rebuffers);
+        assertEquals(3500L, summary.rebufferTime);
+    }
+
+    @Test
+    public void testEngineStatus() {
+        mSampler.start("p2p", mSource);
+        sample(1000f, 0, 0);
+        mSampler.onEngineStatus("prebuf", 3, 100, 10);
+        sample(1000f, 0, 0);
+        mSampler.onEngineStatus("dl", 9, 300, 20);
+        sample(1000f, 0, 0);
+        final QosSampler.Sample sample = new QosSampler.Sample();
+        mSampler.getSample(1, sample);
+        assertEquals(QosSampler.ENGINE_PREBUFFERING, sample.engineState);
+        assertEquals(3, sample.peers);
+        final QosSampler.Summary summary = mSampler.stop();
+        assertEquals(3, summary.minPeers);
+        // sampled three times while downloading, stop included
+        assertEquals((3 + 9 * 2) / 3f, summary.meanPeers, 0.01f);
+        assertEquals(QosSampler.ENGINE_DOWNLOADING, summary.engineState);
+        assertEquals(QosSampler.ENGINE_OTHER, QosSampler.getEngineState("idle"));
+    }
+
+    @Test
+    public void testSummaryEncoding() {
+        final QosSampler.Summary summary = new QosSampler.Summary("42", 1546300800000L, 60000L, 60, 1.25f,
+                0.5f, 2, 3500L, 2500.5f, 120.2f, 1, 3, 8.5f, 2, 350.0f, QosSampler.ENGINE_DOWNLOADING);
+        final QosSampler.Summary decoded = QosSampler.Summary.decode("42", summary.encode());
+        assertNotNull(decoded);
+        assertEquals(summary.date, decoded.date);
+        assertEquals(summary.duration, decoded.duration);
+        assertEquals(summary.droppedFramePercent, decoded.droppedFramePercent, 0.001f);
+        assertEquals(summary.rebuffers, decoded.rebuffers);
+        assertEquals(summary.rebufferTime, decoded.rebufferTime);
+        assertEquals(summary.meanBitrate, decoded.meanBitrate, 0.01f);
+        assertEquals(summary.minPeers, decoded.minPeers);
+        assertEquals(summary.engineState, decoded.engineState);
+        assertNull(QosSampler.Summary.decode("42", "2,1,2"));
+        assertNull(QosSampler.Summary.decode("42", null));
+    }
+}
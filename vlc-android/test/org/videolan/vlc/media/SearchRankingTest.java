@@ -0,0 +1,60 @@
+package org.videolan.vlc.media;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SearchRankingTest {
+
+    private static final double[] WEIGHTS = { 10, 1 };
+
+    @Test
+    public void testMatchQuery() {
+        assertEquals("star wa*", SearchRanking.toMatchQuery("Star Wa"));
+        assertEquals("star wars", SearchRanking.toMatchQuery("star wars "));
+        assertEquals("ac dc*", SearchRanking.toMatchQuery("\"AC/DC"));
+        assertEquals("or not*", SearchRanking.toMatchQuery("OR NOT"));
+        assertEquals("été*", SearchRanking.toMatchQuery("été"));
+        assertNull(SearchRanking.toMatchQuery(" -*\" "));
+        assertNull(SearchRanking.toMatchQuery(null));
+    }
+
+    @Test
+    public void testParseMatchinfo() {
+        final ByteBuffer buffer = ByteBuffer.allocate(12).order(ByteOrder.nativeOrder());
+        buffer.putInt(1).putInt(2).putInt(100000);
+        assertArrayEquals(new int[] { 1, 2, 100000 }, SearchRanking.parseMatchinfo(buffer.array()));
+    }
+
+    /**
+     * matchinfo 'pcnalx' for one phrase and two columns (title, artist) in a 1000 rows table
+     */
+    private static int[] matchinfo(int titleHits, int titleLength, int artistHits, int rowsWithHits) {
+        return new int[] { 1, 2, 1000,
+                3, 2,                                     // average lengths
+                titleLength, 2,                           // lengths of the row
+                titleHits, 0, rowsWithHits,               // title hits
+                artistHits, 0, rowsWithHits };            // artist hits
+    }
+
+    @Test
+    public void testBm25() {
+        final double title = SearchRanking.bm25(matchinfo(1, 3, 0, 10), WEIGHTS);
+        final double artist = SearchRanking.bm25(matchinfo(0, 3, 1, 10), WEIGHTS);
+        final double shortTitle = SearchRanking.bm25(matchinfo(1, 1, 0, 10), WEIGHTS);
+        final double rareTerm = SearchRanking.bm25(matchinfo(1, 3, 0, 2), WEIGHTS);
+        final double commonTerm = SearchRanking.bm25(matchinfo(1, 3, 0, 900), WEIGHTS);
+        assertTrue(title > artist);
+        assertTrue(shortTitle > title);
+        assertTrue(rareTerm > title);
+        assertTrue(commonTerm > 0 && commonTerm < title);
+        assertEquals(0, SearchRanking.bm25(matchinfo(0, 3, 0, 10), WEIGHTS), 0);
+        assertEquals(0, SearchRanking.bm25(matchinfo(1, 3, 0, 10), new double[] { 0, 1 }), 0);
+    }
+}
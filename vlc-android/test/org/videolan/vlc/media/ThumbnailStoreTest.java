@@ -0,0 +1,63 @@
+package org.videolan.vlc.media;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ThumbnailStoreTest {
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("thumbnails", "");
+        mDir.delete();
+        mDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(mDir);
+    }
+
+    private static void delete(File file) {
+        final File[] files = file.listFiles();
+        if (files != null) for (File child : files) delete(child);
+        file.delete();
+    }
+
+    @Test
+    public void testContentAddressing() {
+        final ThumbnailStore store = new ThumbnailStore(mDir);
+        final byte[] image = {1, 2, 3, 4};
+        final String hash = store.put(image);
+        assertNotNull(hash);
+        assertEquals(hash, store.put(new byte[] {1, 2, 3, 4}));
+        assertTrue(store.contains(hash));
+        assertEquals(image.length, store.getFile(hash).length());
+        assertFalse(hash.equals(store.put(new byte[] {4, 3, 2, 1})));
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", ThumbnailStore.hash("abc".getBytes()));
+    }
+
+    @Test
+    public void testCompaction() {
+        final ThumbnailStore store = new ThumbnailStore(mDir);
+        final String kept = store.put(new byte[] {1});
+        final String orphan = store.put(new byte[] {2});
+        final HashSet<String> live = new HashSet<>(Collections.singleton(kept));
+        assertEquals(1, store.compact(live));
+        assertTrue(store.contains(kept));
+        assertFalse(store.contains(orphan));
+        assertEquals(0, store.compact(live));
+    }
+}
@@ -0,0 +1,73 @@
+package org.videolan.vlc.media;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TitleGrouperTest {
+
+    private static final String[] WORDS = {"the", "star", "stargate", "matrix", "mat", "episode", "s01e0", "theater", "doc", "a"};
+
+    @Test
+    public void testGrouping() {
+        final TitleGrouper grouper = new TitleGrouper(6);
+        assertEquals(0, grouper.add("Stargate S01E01", null));
+        assertEquals(0, grouper.add("Stargate S01E02", null));
+        assertEquals("stargate s01e0", grouper.getMergedTitle());
+        assertEquals(1, grouper.add("The Matrix", null));
+        assertEquals(1, grouper.add("Matrix Reloaded", null));
+        assertEquals("the matrix", grouper.getMergedTitle());
+        assertEquals(2, grouper.add("Short", null));
+        assertEquals(3, grouper.add("Channel 1", "Sports"));
+        assertEquals(3, grouper.add("Channel 2", "Sports"));
+        assertEquals(null, grouper.getMergedTitle());
+        assertEquals(4, grouper.getGroupCount());
+        assertEquals("Sports", grouper.getTitle(3));
+    }
+
+    @Test
+    public void testNoGrouping() {
+        final TitleGrouper grouper = new TitleGrouper(0);
+        assertEquals(0, grouper.add("Stargate S01E01", null));
+        assertEquals(1, grouper.add("Stargate S01E01", null));
+    }
+
+    @Test
+    public void testShortTheTitles() {
+        final TitleGrouper grouper = new TitleGrouper(2);
+        assertEquals(0, grouper.add("The", null));
+        assertEquals(1, grouper.add("the", null));
+        assertEquals(2, grouper.add("Them", null));
+    }
+
+    @Test
+    public void testSameResultAsLegacy() {
+        for (int minGroupLength : new int[] {0, 1, 3, 6, 10}) {
+            for (long seed = 0; seed < 20; ++seed) {
+                final TitleGrouping.Entry[] entries = randomEntries(new Random(seed), 500);
+                assertEquals("min length " + minGroupLength + ", seed " + seed,
+                        TitleGrouping.legacy(entries, minGroupLength), TitleGrouping.grouped(entries, minGroupLength));
+            }
+        }
+    }
+
+    private static TitleGrouping.Entry[] randomEntries(Random random, int count) {
+        final TitleGrouping.Entry[] entries = new TitleGrouping.Entry[count];
+        for (int i = 0; i < count; ++i) {
+            final StringBuilder title = new StringBuilder();
+            final int words = 1 + random.nextInt(3);
+            for (int w = 0; w < words; ++w) {
+                if (w > 0) title.append(' ');
+                String word = WORDS[random.nextInt(WORDS.length)];
+                if (random.nextBoolean()) word = word.substring(0, 1).toUpperCase() + word.substring(1);
+                title.append(word);
+            }
+            if (random.nextInt(4) == 0) title.append(random.nextInt(10));
+            final String groupName = random.nextInt(8) == 0 ? "group" + random.nextInt(3) : null;
+            entries[i] = new TitleGrouping.Entry(title.toString(), groupName);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,161 @@
+package org.videolan.vlc.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HttpImageCacheTest {
+
+    private static final byte[] IMAGE = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    private HttpServer mServer;
+    private File mDir;
+    private String mBaseUrl;
+    private volatile String mEtag = "\"v1\"";
+    private volatile String mCacheControl = "max-age=0";
+    private volatile long mDelay = 0L;
+    private final AtomicInteger mRequests = new AtomicInteger();
+    private final AtomicInteger mActive = new AtomicInteger();
+    private final AtomicInteger mMaxActive = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("httpimagecache", "");
+        mDir.delete();
+        mDir.mkdirs();
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequests.incrementAndGet();
+                final int active = mActive.incrementAndGet();
+                int max;
+                while (active > (max = mMaxActive.get()) && !mMaxActive.compareAndSet(max, active));
+                try {
+                    if (mDelay > 0L) Thread.sleep(mDelay);
+                } catch (InterruptedException ignored) {}
+                if (exchange.getRequestURI().getPath().equals("/missing")) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else if (mEtag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.getResponseHeaders().set("ETag", mEtag);
+                    exchange.getResponseHeaders().set("Cache-Control", mCacheControl);
+                    exchange.sendResponseHeaders(304, -1);
+                } else {
+                    exchange.getResponseHeaders().set("ETag", mEtag);
+                    exchange.getResponseHeaders().set("Cache-Control", mCacheControl);
+                    exchange.sendResponseHeaders(200, IMAGE.length);
+                    final OutputStream out = exchange.getResponseBody();
+                    out.write(IMAGE);
+                    out.close();
+                }
+                mActive.decrementAndGet();
+                exchange.close();
+            }
+        });
+        mServer.start();
+        mBaseUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        final File[] files = mDir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        mDir.delete();
+    }
+
+    @Test
+    public void testRevalidation() {
+        final HttpImageCache cache = new HttpImageCache(mDir, 1024 * 1024, 2);
+        final String url = mBaseUrl + "/icon.png";
+        final File first = cache.get(url);
+        assertNotNull(first);
+        assertEquals(IMAGE.length, first.length());
+        assertEquals(0, cache.getRevalidatedCount());
+
+        // Stale entry, same ETag: 304
+        assertNotNull(cache.get(url));
+        assertEquals(2, mRequests.get());
+        assertEquals(1, cache.getRevalidatedCount());
+
+        // Content changed on server
+        mEtag = "\"v2\"";
+        assertNotNull(cache.get(url));
+        assertEquals(3, mRequests.get());
+        assertEquals(1, cache.getRevalidatedCount());
+    }
+
+    @Test
+    public void testFreshEntryIsNotRequested() {
+        mCacheControl = "max-age=3600";
+        final HttpImageCache cache = new HttpImageCache(mDir, 1024 * 1024, 2);
+        final String url = mBaseUrl + "/icon.png";
+        assertNotNull(cache.get(url));
+        assertNotNull(cache.get(url));
+        assertEquals(1, mRequests.get());
+    }
+
+    @Test
+    public void testStaleEntryServedWhenOffline() {
+        final HttpImageCache cache = new HttpImageCache(mDir, 1024 * 1024, 2);
+        final String url = mBaseUrl + "/icon.png";
+        assertNotNull(cache.get(url));
+        mServer.stop(0);
+        assertNotNull(cache.get(url));
+    }
+
+    @Test
+    public void testMissingImage() {
+        final HttpImageCache cache = new HttpImageCache(mDir, 1024 * 1024, 2);
+        assertNull(cache.get(mBaseUrl + "/missing"));
+    }
+
+    @Test
+    public void testSizeLimit() {
+        final HttpImageCache cache = new HttpImageCache(mDir, 2 * IMAGE.length, 2);
+        for (int i = 0; i < 10; ++i) assertNotNull(cache.get(mBaseUrl + "/icon" + i + ".png"));
+        long size = 0L;
+        for (File file : mDir.listFiles())
+            if (file.getName().endsWith(".img")) size += file.length();
+        assertTrue(size <= 2 * IMAGE.length);
+    }
+
+    @Test
+    public void testHostConcurrencyLimit() throws InterruptedException {
+        mDelay = 50L;
+        final HttpImageCache cache = new HttpImageCache(mDir, 1024 * 1024, 2);
+        final int count = 8;
+        final CountDownLatch done = new CountDownLatch(count);
+        for (int i = 0; i < count; ++i) {
+            final String url = mBaseUrl + "/icon" + i + ".png";
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    cache.get(url);
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        assertEquals(count, mRequests.get());
+        assertTrue(mMaxActive.get() <= 2);
+    }
+}
@@ -0,0 +1,89 @@
+package org.videolan.vlc.util;
+
+import android.util.Log;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogBufferTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static boolean add(LogBuffer buffer, String line) {
+        // lines are given in the middle of a larger buffer, as Logcat does
+        final byte[] bytes = ("xx" + line + "\nyy").getBytes(UTF8);
+        return buffer.add(bytes, 2, bytes.length - 5);
+    }
+
+    private static String content(LogBuffer buffer) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        return new String(out.toByteArray(), UTF8);
+    }
+
+    @Test
+    public void testWrapAround() throws IOException {
+        final LogBuffer buffer = new LogBuffer(16, 100);
+        add(buffer, "one");
+        add(buffer, "two");
+        add(buffer, "three");
+        assertEquals("one\ntwo\nthree\n", content(buffer));
+        // 5 bytes needed, "one" is dropped and "four" wraps around the end of the ring
+        add(buffer, "four");
+        assertEquals(3, buffer.size());
+        assertEquals("two\nthree\nfour\n", content(buffer));
+        final List<String> lines = new ArrayList<>();
+        assertEquals(4L, buffer.read(0, 10, lines));
+        assertEquals(Arrays.asList("two", "three", "four"), lines);
+        // longer than the ring
+        add(buffer, "a line longer than the ring");
+        assertEquals(1, buffer.size());
+        assertEquals("a line longer t\n", content(buffer));
+    }
+
+    @Test
+    public void testSequence() throws IOException {
+        final LogBuffer buffer = new LogBuffer(1024, 3);
+        for (int i = 0; i < 5; ++i) add(buffer, "line " + i + "\r");
+        assertEquals(5L, buffer.getSequence());
+        assertEquals("line 2\nline 3\nline 4\n", content(buffer));
+        final List<String> lines = new ArrayList<>();
+        assertEquals(5L, buffer.read(4, 10, lines));
+        assertEquals(Arrays.asList("line 4"), lines);
+        lines.clear();
+        buffer.read(0, 2, lines);
+        assertEquals(Arrays.asList("line 3", "line 4"), lines);
+        buffer.clear();
+        assertEquals("", content(buffer));
+        lines.clear();
+        assertEquals(5L, buffer.read(0, 10, lines));
+        assertTrue(lines.isEmpty());
+        add(buffer, "é");
+        assertEquals(6L, buffer.read(5, 10, lines));
+        assertEquals(Arrays.asList("é"), lines);
+    }
+
+    @Test
+    public void testFilter() throws IOException {
+        final LogBuffer buffer = new LogBuffer(1024, 100);
+        buffer.setFilter(Log.INFO, new String[] { "VLC", "libvlc" });
+        assertFalse(add(buffer, "01-17 12:34:56.789 D/VLC/PlaybackService( 1234): debug"));
+        assertTrue(add(buffer, "01-17 12:34:56.789 I/VLC/PlaybackService( 1234): info"));
+        assertTrue(add(buffer, "01-17 12:34:56.789 E/libvlc  ( 1234): error"));
+        assertFalse(add(buffer, "01-17 12:34:56.789 E/ActivityManager( 99): error"));
+        assertTrue(add(buffer, "--------- beginning of main"));
+        assertEquals(3, buffer.size());
+        buffer.setFilter(Log.VERBOSE, null);
+        assertTrue(add(buffer, "01-17 12:34:56.789 V/ActivityManager( 99): verbose"));
+    }
+}
@@ -0,0 +1,54 @@
+package org.videolan.vlc.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogcatTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static List<String> split(String content) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        // give the content in small reads, as a pipe does
+        final InputStream input = new ByteArrayInputStream(content.getBytes(UTF8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1000));
+            }
+        };
+        Logcat.split(input, new Logcat.Callback() {
+            @Override
+            public void onLog(byte[] line, int offset, int length) {
+                lines.add(new String(line, offset, length, UTF8));
+            }
+        });
+        return lines;
+    }
+
+    private static String repeat(char c, int count) {
+        final char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void testLines() throws IOException {
+        assertEquals(Arrays.asList("one", "", "two", "three"), split("one\n\ntwo\nthree"));
+    }
+
+    @Test
+    public void testLongLineIsCut() throws IOException {
+        final String head = "01-01 00:00:00.000 I/VLC(1): " + repeat('a', 8 * 1024);
+        assertEquals(Arrays.asList("first", head.substring(0, 8 * 1024), "last"),
+                split("first\n" + head + repeat('b', 20000) + "\nlast\n"));
+    }
+}
@@ -0,0 +1,132 @@
+package org.videolan.vlc.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedLruCacheTest {
+
+    private static final int CACHE_WEIGHT = 512 * 1024;
+    private static final int KEY_COUNT = 2048;
+    private static final int VALUE_SIZE = 512;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 50000;
+
+    private static final SegmentedLruCache.Weigher<String, byte[]> WEIGHER = new SegmentedLruCache.Weigher<String, byte[]>() {
+        @Override
+        public int weightOf(String key, byte[] value) {
+            return value.length;
+        }
+    };
+
+    @Test
+    public void testPutIfAbsent() {
+        final SegmentedLruCache<String, byte[]> cache = new SegmentedLruCache<>(1000, 1, WEIGHER);
+        final byte[] a = new byte[10], b = new byte[10];
+        assertNull(cache.putIfAbsent("a", a));
+        assertSame(a, cache.putIfAbsent("a", b));
+        assertSame(a, cache.get("a"));
+        assertEquals(10, cache.weight());
+        assertSame(a, cache.remove("a"));
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testLruEviction() {
+        final SegmentedLruCache<String, byte[]> cache = new SegmentedLruCache<>(30, 1, WEIGHER);
+        final List<String> evicted = new ArrayList<>();
+        cache.setEvictionListener(new SegmentedLruCache.EvictionListener<String, byte[]>() {
+            @Override
+            public void onEvicted(String key, byte[] value) {
+                evicted.add(key);
+            }
+        });
+        cache.putIfAbsent("a", new byte[10]);
+        cache.putIfAbsent("b", new byte[10]);
+        cache.putIfAbsent("c", new byte[10]);
+        // refresh "a", "b" becomes the eldest entry
+        assertNotNull(cache.get("a"));
+        cache.putIfAbsent("d", new byte[10]);
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertEquals(1, evicted.size());
+        assertEquals("b", evicted.get(0));
+        assertTrue(cache.weight() <= 30);
+    }
+
+    /**
+     * Threads add, read and remove entries concurrently, every entry added must be found,
+     * evicted or removed, and the weight must match the entries left.
+     */
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        final SegmentedLruCache<String, byte[]> cache = new SegmentedLruCache<>(CACHE_WEIGHT, 8, WEIGHER);
+        final String[] keys = new String[KEY_COUNT];
+        final byte[][] values = new byte[KEY_COUNT][];
+        for (int i = 0; i < KEY_COUNT; ++i) {
+            keys[i] = "file:///sdcard/Music/cover_" + i + ".jpg";
+            values[i] = new byte[VALUE_SIZE];
+        }
+        final AtomicLong added = new AtomicLong();
+        final AtomicLong removed = new AtomicLong();
+        final AtomicLong evicted = new AtomicLong();
+        final AtomicLong mismatches = new AtomicLong();
+        cache.setEvictionListener(new SegmentedLruCache.EvictionListener<String, byte[]>() {
+            @Override
+            public void onEvicted(String key, byte[] value) {
+                evicted.incrementAndGet();
+            }
+        });
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; ++t) {
+            final Random random = new Random(t);
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ignored) {}
+                    for (int i = 0; i < OPERATIONS; ++i) {
+                        final int k = random.nextInt(KEY_COUNT);
+                        final int op = random.nextInt(10);
+                        if (op == 0) {
+                            if (cache.remove(keys[k]) != null) removed.incrementAndGet();
+                        } else if (op < 4) {
+                            if (cache.putIfAbsent(keys[k], values[k]) == null) added.incrementAndGet();
+                        } else {
+                            final byte[] value = cache.get(keys[k]);
+                            if (value != null && value != values[k]) mismatches.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(0, mismatches.get());
+        assertEquals(added.get(), cache.size() + removed.get() + evicted.get());
+        assertEquals((long) cache.size() * VALUE_SIZE, cache.weight());
+        assertTrue(cache.weight() <= CACHE_WEIGHT);
+        int found = 0;
+        for (int i = 0; i < KEY_COUNT; ++i) {
+            final byte[] value = cache.get(keys[i]);
+            if (value == null) continue;
+            assertSame(values[i], value);
+            ++found;
+        }
+        assertEquals(cache.size(), found);
+    }
+}
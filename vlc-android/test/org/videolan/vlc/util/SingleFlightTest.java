@@ -0,0 +1,102 @@
+package org.videolan.vlc.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testSameKeyRunsOnce() throws InterruptedException {
+        final SingleFlight<String, String> flight = new SingleFlight<>();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final int threads = 8;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger results = new AtomicInteger();
+        for (int i = 0; i < threads; ++i) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final String result = flight.run("album", new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            calls.incrementAndGet();
+                            started.countDown();
+                            release.await();
+                            return "cover";
+                        }
+                    });
+                    if ("cover".equals(result)) results.incrementAndGet();
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // let the other threads join the running call
+        Thread.sleep(100);
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(threads, results.get());
+        assertEquals(0, flight.size());
+    }
+
+    @Test
+    public void testDifferentKeysRunInParallel() throws InterruptedException {
+        final SingleFlight<String, String> flight = new SingleFlight<>();
+        final int threads = 4;
+        // every call waits for all the others to be running
+        final CountDownLatch running = new CountDownLatch(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger completed = new AtomicInteger();
+        for (int i = 0; i < threads; ++i) {
+            final String key = "album" + i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final String result = flight.run(key, new Callable<String>() {
+                        @Override
+                        public String call() throws Exception {
+                            running.countDown();
+                            return running.await(5, TimeUnit.SECONDS) ? key : null;
+                        }
+                    });
+                    if (key.equals(result)) completed.incrementAndGet();
+                    done.countDown();
+                }
+            }).start();
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(threads, completed.get());
+    }
+
+    @Test
+    public void testExceptionIsRethrownAndKeyReleased() {
+        final SingleFlight<String, String> flight = new SingleFlight<>();
+        try {
+            flight.run("album", new Callable<String>() {
+                @Override
+                public String call() {
+                    throw new IllegalStateException("failed");
+                }
+            });
+            fail("exception expected");
+        } catch (IllegalStateException ignored) {}
+        assertEquals(0, flight.size());
+        assertEquals("cover", flight.run("album", new Callable<String>() {
+            @Override
+            public String call() {
+                return "cover";
+            }
+        }));
+    }
+}
@@ -0,0 +1,128 @@
+package org.videolan.vlc.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StartupGraphTest {
+
+    private long mNow;
+    private final List<String> mRun = new ArrayList<>();
+    private final List<Runnable> mBackground = new ArrayList<>();
+    private StartupGraph mGraph;
+
+    @Before
+    public void setUp() {
+        mNow = 100L;
+        final Executor main = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        final Executor background = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mBackground.add(command);
+            }
+        };
+        mGraph = new StartupGraph(main, background) {
+            @Override
+            long now() {
+                return mNow;
+            }
+
+            @Override
+            void beginSection(String name) {}
+
+            @Override
+            void endSection() {}
+        };
+    }
+
+    private Runnable task(final String name, final long duration) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mRun.add(name);
+                mNow += duration;
+            }
+        };
+    }
+
+    private void runBackground() {
+        while (!mBackground.isEmpty()) mBackground.remove(0).run();
+    }
+
+    @Test
+    public void testFirstFrame() {
+        mGraph.add("settings", StartupGraph.PRIORITY_FIRST_FRAME, true, task("settings", 5L));
+        mGraph.add("prefetch", StartupGraph.PRIORITY_FIRST_FRAME, false, task("prefetch", 20L));
+        mGraph.add("locale", StartupGraph.PRIORITY_FIRST_FRAME, true, task("locale", 2L), "settings");
+        mGraph.add("apply", StartupGraph.PRIORITY_FIRST_FRAME, true, task("apply", 1L), "prefetch", "locale");
+        mGraph.add("cache", StartupGraph.PRIORITY_IDLE, false, task("cache", 10L));
+        mGraph.start();
+        // main thread tasks run inline, the others wait for the background executor
+        assertEquals(Arrays.asList("settings", "locale"), mRun);
+        assertEquals(1, mBackground.size());
+        runBackground();
+        assertEquals(Arrays.asList("settings", "locale", "prefetch", "apply"), mRun);
+        assertTrue(mGraph.isDone("apply"));
+        assertFalse(mGraph.isDone("cache"));
+        assertTrue(mGraph.markFirstFrame());
+        assertFalse(mGraph.markFirstFrame());
+        assertEquals(28L, mGraph.getTimeToFirstFrame());
+
+        mGraph.onIdle();
+        runBackground();
+        assertTrue(mGraph.isDone("cache"));
+        // added once idle, run right away
+        mGraph.add("late", StartupGraph.PRIORITY_IDLE, true, task("late", 1L));
+        assertTrue(mGraph.isDone("late"));
+    }
+
+    @Test
+    public void testOnDemand() {
+        mGraph.add("cpu", StartupGraph.PRIORITY_ON_DEMAND, false, task("cpu", 3L));
+        mGraph.add("libvlc", StartupGraph.PRIORITY_IDLE, false, task("libvlc", 50L), "cpu");
+        mGraph.add("lua", StartupGraph.PRIORITY_ON_DEMAND, false, task("lua", 30L));
+        mGraph.add("covers", StartupGraph.PRIORITY_ON_DEMAND, false, task("covers", 1L), "lua");
+        mGraph.start();
+        assertTrue(mBackground.isEmpty());
+        // on demand dependencies are run along with the tasks depending on them
+        mGraph.onIdle();
+        runBackground();
+        assertEquals(Arrays.asList("cpu", "libvlc"), mRun);
+        assertFalse(mGraph.isDone("lua"));
+
+        // required tasks run on the calling thread
+        mGraph.require("covers");
+        assertTrue(mBackground.isEmpty());
+        assertEquals(Arrays.asList("cpu", "libvlc", "lua", "covers"), mRun);
+        mGraph.require("covers");
+        assertEquals(4, mRun.size());
+
+        assertTrue(mGraph.markLibraryReady());
+        final String report = mGraph.getReport();
+        assertTrue(report, report.contains("library ready 84ms"));
+        assertTrue(report, report.contains("libvlc (idle) 3+50ms"));
+        assertTrue(report, report.contains("covers (on-demand) 83+1ms"));
+    }
+
+    @Test
+    public void testUnknownDependency() {
+        try {
+            mGraph.add("locale", StartupGraph.PRIORITY_FIRST_FRAME, true, task("locale", 1L), "settings");
+            fail("unknown dependency accepted");
+        } catch (IllegalArgumentException ignored) {}
+    }
+}
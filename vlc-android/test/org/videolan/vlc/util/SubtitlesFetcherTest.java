@@ -0,0 +1,211 @@
+package org.videolan.vlc.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs against a local stand-in of the OpenSubtitles XML-RPC API
+ */
+public class SubtitlesFetcherTest {
+
+    private static final Pattern METHOD = Pattern.compile("<methodName>(.*)</methodName>");
+
+    private File mDir;
+    private HttpServer mServer;
+    private String mBaseUrl;
+    private String mMovieHash;
+    private final AtomicInteger mLogIns = new AtomicInteger();
+    private final AtomicInteger mSearches = new AtomicInteger();
+    private final AtomicInteger mDownloads = new AtomicInteger();
+    /* number of searches to fail before answering */
+    private int mSearchFailures = 0;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("subtitles", "");
+        mDir.delete();
+        mDir.mkdirs();
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/xml-rpc", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                final Matcher matcher = METHOD.matcher(new String(read(exchange.getRequestBody()), "UTF-8"));
+                final String method = matcher.find() ? matcher.group(1) : "";
+                if ("LogIn".equals(method)) {
+                    mLogIns.incrementAndGet();
+                    respond(exchange, 200, response(struct("token", "<string>token</string>")));
+                } else if ("SearchSubtitles".equals(method)) {
+                    if (mSearches.incrementAndGet() <= mSearchFailures)
+                        respond(exchange, 503, new byte[0]);
+                    else
+                        respond(exchange, 200, response(struct("data", "<array><data>"
+                                + result(mMovieHash, "0", "movie") + result("0", "2", "other")
+                                + result(mMovieHash, "0", "duplicate") + "</data></array>")));
+                } else
+                    respond(exchange, 200, response(struct("status", "<string>200 OK</string>")));
+            }
+        });
+        mServer.createContext("/sub/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mDownloads.incrementAndGet();
+                final String name = exchange.getRequestURI().getPath().substring(5);
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                final GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+                gzip.write(("subtitles of " + name).getBytes("UTF-8"));
+                gzip.close();
+                respond(exchange, 200, bytes.toByteArray());
+            }
+        });
+        mServer.start();
+        mBaseUrl = "http://127.0.0.1:" + mServer.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        final File[] files = mDir.listFiles();
+        if (files != null) for (File file : files) file.delete();
+        mDir.delete();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int length;
+        while ((length = in.read(buffer)) != -1) out.write(buffer, 0, length);
+        return out.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int code, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/xml");
+        exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+        final OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private static byte[] response(String value) throws IOException {
+        return ("<?xml version=\"1.0\"?><methodResponse><params><param><value>" + value
+                + "</value></param></params></methodResponse>").getBytes("UTF-8");
+    }
+
+    private static String struct(String... members) {
+        final StringBuilder sb = new StringBuilder("<struct>");
+        for (int i = 0; i < members.length; i += 2)
+            sb.append("<member><name>").append(members[i]).append("</name><value>")
+                    .append(members[i + 1]).append("</value></member>");
+        return sb.append("</struct>").toString();
+    }
+
+    private String result(String hash, String queryNumber, String name) {
+        return "<value>" + struct("MovieHash", "<string>" + hash + "</string>",
+                "SubLanguageID", "<string>eng</string>",
+                "SubFormat", "<string>srt</string>",
+                "QueryNumber", "<string>" + queryNumber + "</string>",
+                "SubDownloadLink", "<string>" + mBaseUrl + "/sub/" + name + "</string>") + "</value>";
+    }
+
+    private File createFile(String name, int size) throws IOException {
+        final File file = new File(mDir, name);
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; ++i) data[i] = (byte) i;
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+        return file;
+    }
+
+    private SubtitlesFetcher createFetcher() throws IOException {
+        final SubtitlesFetcher fetcher = new SubtitlesFetcher(new URL(mBaseUrl + "/xml-rpc"), "test",
+                mDir, new File(mDir, "cache"));
+        fetcher.setRetryDelay(10);
+        return fetcher;
+    }
+
+    @Test
+    public void testHash() throws IOException {
+        assertNull(SubtitlesFetcher.computeHash(new File(mDir, "missing")));
+        final File file = new File(mDir, "zeros");
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[16]);
+        out.close();
+        assertEquals("0000000000000010", SubtitlesFetcher.computeHash(file));
+        final File movie = createFile("movie.mkv", 200000);
+        final SubtitlesFetcher fetcher = createFetcher();
+        assertEquals(SubtitlesFetcher.computeHash(movie),
+                fetcher.computeHashes(Arrays.asList(file.getPath(), movie.getPath())).get(movie.getPath()));
+        fetcher.close();
+    }
+
+    @Test
+    public void testSearchAndDownload() throws IOException {
+        final File movie = createFile("movie.mkv", 200000);
+        final File other = createFile("other.avi", 1000);
+        mMovieHash = SubtitlesFetcher.computeHash(movie);
+        mSearchFailures = 1;
+
+        SubtitlesFetcher fetcher = createFetcher();
+        final SubtitlesFetcher.Query movieQuery = new SubtitlesFetcher.Query(movie.getPath(), "eng", mMovieHash, movie.length());
+        final List<SubtitlesFetcher.Query> queries = new ArrayList<>(Arrays.asList(movieQuery,
+                new SubtitlesFetcher.Query(other.getPath(), "eng", SubtitlesFetcher.computeHash(other), other.length()),
+                new SubtitlesFetcher.Query(other.getPath(), "eng", null, 0)));
+        final List<SubtitlesFetcher.Subtitle> results = fetcher.search(queries);
+        assertNotNull(results);
+        // one failed search, retried once
+        assertEquals(1, mLogIns.get());
+        assertEquals(2, mSearches.get());
+        assertEquals(2, results.size());
+
+        final List<SubtitlesFetcher.Subtitle> downloaded = fetcher.download(results);
+        assertEquals(2, downloaded.size());
+        assertEquals(2, mDownloads.get());
+        assertEquals("subtitles of movie", new String(read(new FileInputStream(new File(mDir, "movie.eng.srt"))), "UTF-8"));
+        assertEquals("subtitles of other", new String(read(new FileInputStream(new File(mDir, "other.eng.srt"))), "UTF-8"));
+        fetcher.close();
+
+        // found again without any request
+        fetcher = createFetcher();
+        final SubtitlesFetcher.Subtitle cached = fetcher.getCached(movieQuery);
+        assertNotNull(cached);
+        assertEquals(new File(mDir, "movie.eng.srt"), cached.file);
+        assertNull(fetcher.getCached(new SubtitlesFetcher.Query(movie.getPath(), "fre", mMovieHash, movie.length())));
+        fetcher.close();
+        assertEquals(1, mLogIns.get());
+    }
+
+    @Test
+    public void testServiceUnavailable() throws IOException {
+        mSearchFailures = 3;
+        final SubtitlesFetcher fetcher = createFetcher();
+        assertNull(fetcher.search(Arrays.asList(new SubtitlesFetcher.Query("/sdcard/movie.mkv", "eng", null, 0))));
+        assertEquals(3, mSearches.get());
+        fetcher.close();
+    }
+}